@@ -96,6 +96,9 @@ public final class GraalOptions {
     @Option(help = "Re-associate loop invariants and constants.", type = OptionType.Debug)
     public static final OptionKey<Boolean> ReassociateExpressions = new OptionKey<>(true);
 
+    @Option(help = "Shorten the dependency chain of integer reductions in partially unrolled loops.", type = OptionType.Debug)
+    public static final OptionKey<Boolean> ReassociateLoopReductions = new OptionKey<>(true);
+
     @Option(help = "", type = OptionType.Debug)
     public static final OptionKey<Boolean> FullUnroll = new OptionKey<>(true);
 
@@ -105,6 +108,12 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionKey<Boolean> PartialUnroll = new OptionKey<>(true);
 
+    @Option(help = "Split counted loops over long induction variables into an outer loop with a safepoint and an inner loop without one.", type = OptionType.Expert)
+    public static final OptionKey<Boolean> LoopStripMining = new OptionKey<>(false);
+
+    @Option(help = "The maximum number of iterations of the inner loop created by loop strip mining, which bounds the time between two safepoint polls of a strip mined loop. The default matches HotSpot.", type = OptionType.Expert)
+    public static final OptionKey<Integer> LoopStripMiningIterations = new OptionKey<>(1000);
+
     @Option(help = "", type = OptionType.Expert)
     public static final OptionKey<Float> MinimumPeelFrequency = new OptionKey<>(0.35f);
 
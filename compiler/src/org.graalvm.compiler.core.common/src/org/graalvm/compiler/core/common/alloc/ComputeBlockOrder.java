@@ -33,6 +33,10 @@ import java.util.PriorityQueue;
 
 import org.graalvm.compiler.core.common.cfg.AbstractBlockBase;
 import org.graalvm.compiler.core.common.cfg.Loop;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionKey;
+import org.graalvm.compiler.options.OptionType;
+import org.graalvm.compiler.options.OptionValues;
 
 /**
  * Computes an ordering of the block that can be used by the linear scan register allocator and the
@@ -53,9 +57,23 @@ import org.graalvm.compiler.core.common.cfg.Loop;
  * together in the schedule thus decreasing the probability for inserted phi moves. Also, the
  * algorithm sets the linear scan order number of the block that corresponds to its index in the
  * linear scan order.
+ *
+ * With {@link Options#SplitColdBlocks}, the code emission order additionally moves all blocks whose
+ * relative frequency is below {@link Options#ColdBlockFrequency} behind the hot blocks of the method.
+ * Rarely executed paths such as exception handlers and deoptimizing branches then no longer occupy
+ * instruction cache lines and pages between the frequently executed blocks.
  */
 public final class ComputeBlockOrder {
 
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Emit blocks that are rarely executed according to the profile after all other blocks of a method.", type = OptionType.Expert)
+        public static final OptionKey<Boolean> SplitColdBlocks = new OptionKey<>(false);
+        @Option(help = "Relative frequency (with respect to the method entry) below which a block is considered cold by SplitColdBlocks.", type = OptionType.Expert)
+        public static final OptionKey<Double> ColdBlockFrequency = new OptionKey<>(0.001D);
+        // @formatter:on
+    }
+
     /**
      * The initial capacities of the worklists used for iteratively finding the block order.
      */
@@ -96,6 +114,43 @@ public final class ComputeBlockOrder {
         return order.toArray(new AbstractBlockBase<?>[0]);
     }
 
+    /**
+     * Computes the block order used for code emission, moving cold blocks to the end if requested
+     * by {@link Options#SplitColdBlocks}.
+     *
+     * @return sorted list of blocks
+     */
+    public static <T extends AbstractBlockBase<T>> AbstractBlockBase<?>[] computeCodeEmittingOrder(int blockCount, T startBlock, OptionValues options) {
+        AbstractBlockBase<?>[] order = computeCodeEmittingOrder(blockCount, startBlock);
+        if (Options.SplitColdBlocks.getValue(options)) {
+            splitColdBlocks(order, Options.ColdBlockFrequency.getValue(options));
+        }
+        return order;
+    }
+
+    /**
+     * Stably partitions {@code order} such that all blocks with a relative frequency below
+     * {@code threshold} follow all other blocks. The first block is always kept in place since it
+     * is the entry of the method.
+     */
+    private static void splitColdBlocks(AbstractBlockBase<?>[] order, double threshold) {
+        List<AbstractBlockBase<?>> coldBlocks = new ArrayList<>();
+        int hotCount = 0;
+        for (int i = 0; i < order.length; i++) {
+            AbstractBlockBase<?> block = order[i];
+            if (i > 0 && block.getRelativeFrequency() < threshold) {
+                coldBlocks.add(block);
+            } else {
+                order[hotCount++] = block;
+            }
+        }
+        for (AbstractBlockBase<?> block : coldBlocks) {
+            /* Aligning the targets of cold backward jumps only wastes space. */
+            block.setAlign(false);
+            order[hotCount++] = block;
+        }
+    }
+
     /**
      * Iteratively adds paths to the code emission block order.
      */
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.core.common.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.graalvm.compiler.debug.CounterKey;
+import org.graalvm.compiler.debug.DebugCloseable;
+import org.graalvm.compiler.debug.DebugContext;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionKey;
+import org.graalvm.compiler.options.OptionType;
+import org.graalvm.compiler.options.OptionValues;
+
+/**
+ * Time budget of a single compilation that optional phases consult to limit their work. Unlike a
+ * {@link CompilationAlarm}, which stops runaway compilations, the budget lets a compilation of a
+ * huge graph finish with less optimized code instead of spending most of its time in expensive
+ * optimizations. The budget has two cut-offs:
+ * <ul>
+ * <li>Once {@link #DEGRADE_PERCENT} of the budget is used, the budget is {@linkplain #isLow()
+ * low} and phases should {@linkplain #degradePhase degrade}, e.g., by running fewer iterations.</li>
+ * <li>Once the budget is used up, it is {@linkplain #isExhausted() exhausted} and optional phases
+ * should {@linkplain #skipPhase skip} their work entirely.</li>
+ * </ul>
+ */
+public final class CompilationBudget implements AutoCloseable {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Time budget in milliseconds of a single compilation (0 to disable the budget). " +
+                       "Expensive optional optimizations are reduced once half of the budget is used and skipped " +
+                       "once the budget is exhausted.", type = OptionType.Expert)
+        public static final OptionKey<Integer> CompilationTimeBudget = new OptionKey<>(0);
+        // @formatter:on
+    }
+
+    /**
+     * Percentage of the budget after which phases degrade.
+     */
+    public static final int DEGRADE_PERCENT = 50;
+
+    private static final CounterKey DEGRADED_PHASES = DebugContext.counter("CompilationBudget_DegradedPhases");
+    private static final CounterKey SKIPPED_PHASES = DebugContext.counter("CompilationBudget_SkippedPhases");
+
+    /**
+     * Thread local storage for the budget of the active compilation.
+     */
+    private static final ThreadLocal<CompilationBudget> currentBudget = new ThreadLocal<>();
+
+    private static final CompilationBudget UNLIMITED = new CompilationBudget(0, 0);
+
+    private final long budgetNanos;
+    private final long startNanos;
+    private int degradedPhases;
+    private int skippedPhases;
+
+    private CompilationBudget(long budgetNanos, long usedNanos) {
+        this.budgetNanos = budgetNanos;
+        this.startNanos = System.nanoTime() - usedNanos;
+    }
+
+    /**
+     * Gets the budget of the current compilation. If there is no current budget, a non-null value
+     * is returned that is never {@linkplain #isLow() low}.
+     */
+    public static CompilationBudget current() {
+        CompilationBudget budget = currentBudget.get();
+        return budget == null ? UNLIMITED : budget;
+    }
+
+    /**
+     * Starts a budget for the current compilation if there isn't already an active budget and
+     * {@link CompilationBudget.Options#CompilationTimeBudget}{@code > 0}. The returned value can be
+     * used in a try-with-resource statement to remove the budget once the compilation is finished.
+     *
+     * @return a {@link CompilationBudget} if there was no current budget for the calling thread
+     *         before this call otherwise {@code null}
+     */
+    public static CompilationBudget trackCompilationBudget(OptionValues options) {
+        int budgetMillis = Options.CompilationTimeBudget.getValue(options);
+        if (budgetMillis > 0) {
+            return trackCompilationBudget(TimeUnit.MILLISECONDS.toNanos(budgetMillis), 0);
+        }
+        return null;
+    }
+
+    /**
+     * Starts a budget of {@code budgetNanos} for the current compilation if there isn't already an
+     * active budget. The first {@code usedNanos} of the budget are considered used up already,
+     * which allows tests to start with a budget that is {@linkplain #isLow() low} or
+     * {@linkplain #isExhausted() exhausted} independently of the speed of the machine.
+     *
+     * @return a {@link CompilationBudget} if there was no current budget for the calling thread
+     *         before this call otherwise {@code null}
+     */
+    public static CompilationBudget trackCompilationBudget(long budgetNanos, long usedNanos) {
+        assert budgetNanos > 0 && usedNanos >= 0 : budgetNanos + " " + usedNanos;
+        if (currentBudget.get() == null) {
+            CompilationBudget budget = new CompilationBudget(budgetNanos, usedNanos);
+            currentBudget.set(budget);
+            return budget;
+        }
+        return null;
+    }
+
+    /**
+     * Suspends the budget of the current compilation until the returned value is closed. Graphs
+     * that outlive the compilation, such as cached snippet templates, must not be optimized less
+     * because the compilation that happens to build them is short of time. The same holds for
+     * partial evaluation, whose escape analysis is needed to virtualize Truffle frames. The time
+     * spent while the budget is suspended still counts as used.
+     */
+    public static DebugCloseable suspend() {
+        CompilationBudget budget = currentBudget.get();
+        if (budget == null) {
+            return DebugCloseable.VOID_CLOSEABLE;
+        }
+        currentBudget.set(null);
+        return new DebugCloseable() {
+            @Override
+            public void close() {
+                currentBudget.set(budget);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (this != UNLIMITED) {
+            currentBudget.set(null);
+        }
+    }
+
+    public boolean isLimited() {
+        return this != UNLIMITED;
+    }
+
+    public long getElapsedNanos() {
+        return isLimited() ? System.nanoTime() - startNanos : 0;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * Gets the used part of the budget in percent, which exceeds 100 if the compilation took longer
+     * than budgeted.
+     */
+    public int getUsedPercent() {
+        return isLimited() ? (int) (getElapsedNanos() * 100 / budgetNanos) : 0;
+    }
+
+    /**
+     * Determines if at least {@link #DEGRADE_PERCENT} of this budget is used.
+     */
+    public boolean isLow() {
+        return isLimited() && getElapsedNanos() >= budgetNanos / 100 * DEGRADE_PERCENT;
+    }
+
+    /**
+     * Determines if this budget is used up.
+     */
+    public boolean isExhausted() {
+        return isLimited() && getElapsedNanos() >= budgetNanos;
+    }
+
+    /**
+     * Checks if {@code phase} should do less work because the budget is {@linkplain #isLow() low}
+     * and records the decision.
+     */
+    public boolean degradePhase(DebugContext debug, CharSequence phase) {
+        if (isLow()) {
+            degradedPhases++;
+            DEGRADED_PHASES.increment(debug);
+            debug.log(DebugContext.BASIC_LEVEL, "Compilation budget low (%d%% used), degrading %s", getUsedPercent(), phase);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the optional {@code phase} should be skipped because the budget is
+     * {@linkplain #isExhausted() exhausted} and records the decision.
+     */
+    public boolean skipPhase(DebugContext debug, CharSequence phase) {
+        if (isExhausted()) {
+            skippedPhases++;
+            SKIPPED_PHASES.increment(debug);
+            debug.log(DebugContext.BASIC_LEVEL, "Compilation budget exhausted (%d%% used), skipping %s", getUsedPercent(), phase);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of phases that were degraded because the budget was low.
+     */
+    public int getDegradedPhases() {
+        return degradedPhases;
+    }
+
+    /**
+     * Gets the number of phases that were skipped because the budget was exhausted.
+     */
+    public int getSkippedPhases() {
+        return skippedPhases;
+    }
+}
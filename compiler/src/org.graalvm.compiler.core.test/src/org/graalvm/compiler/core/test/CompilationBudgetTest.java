@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.core.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.graalvm.compiler.core.common.util.CompilationBudget;
+import org.graalvm.compiler.debug.DebugCloseable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jdk.vm.ci.code.InstalledCode;
+import jdk.vm.ci.code.InvalidInstalledCodeException;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Checks that compilations are still correct when optional phases are degraded or skipped because
+ * the {@link CompilationBudget} is used up.
+ */
+public class CompilationBudgetTest extends GraalCompilerTest {
+
+    static final class Box {
+        int value;
+
+        Box(int value) {
+            this.value = value;
+        }
+    }
+
+    public static int snippet(int[] array, int x) {
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            Box box = new Box(array[i]);
+            if (x > 0 && box.value > x) {
+                sum += box.value;
+            } else if (x > 0) {
+                sum -= box.value;
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            sum = sum * 31 + i;
+        }
+        return sum;
+    }
+
+    private static final long BUDGET_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    /**
+     * Compiles a freshly parsed graph of the snippet, so code cached by an earlier test is not
+     * reused, and compares it with the interpreter.
+     */
+    private void testSnippet() throws InvalidInstalledCodeException {
+        ResolvedJavaMethod method = getResolvedJavaMethod("snippet");
+        InstalledCode code = getCode(method, null, true, false, getInitialOptions());
+        int[] array = {5, -3, 12, 7, 0, 42};
+        for (int x : new int[]{-1, 0, 6, 100}) {
+            Result expected = executeExpected(method, null, array, x);
+            Assert.assertEquals(expected.returnValue, code.executeVarargs(array, x));
+        }
+    }
+
+    @Test
+    public void testExhaustedBudget() throws InvalidInstalledCodeException {
+        try (CompilationBudget budget = CompilationBudget.trackCompilationBudget(BUDGET_NANOS, BUDGET_NANOS)) {
+            Assert.assertNotNull(budget);
+            Assert.assertTrue(budget.isExhausted());
+            testSnippet();
+            Assert.assertTrue(budget.getSkippedPhases() > 0);
+        }
+    }
+
+    @Test
+    public void testLowBudget() throws InvalidInstalledCodeException {
+        try (CompilationBudget budget = CompilationBudget.trackCompilationBudget(BUDGET_NANOS, BUDGET_NANOS / 100 * CompilationBudget.DEGRADE_PERCENT)) {
+            Assert.assertNotNull(budget);
+            Assert.assertTrue(budget.isLow());
+            testSnippet();
+            Assert.assertTrue(budget.getDegradedPhases() > 0);
+            Assert.assertEquals(0, budget.getSkippedPhases());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testSuspendedBudget() {
+        try (CompilationBudget budget = CompilationBudget.trackCompilationBudget(BUDGET_NANOS, BUDGET_NANOS)) {
+            Assert.assertNotNull(budget);
+            try (DebugCloseable s = CompilationBudget.suspend()) {
+                // cached graphs such as snippet templates are built while the budget is suspended
+                Assert.assertFalse(CompilationBudget.current().isLimited());
+                Assert.assertFalse(CompilationBudget.current().skipPhase(getDebugContext(), "phase"));
+            }
+            Assert.assertSame(budget, CompilationBudget.current());
+            Assert.assertEquals(0, budget.getSkippedPhases());
+        }
+    }
+
+    @Test
+    public void testNoBudget() {
+        CompilationBudget budget = CompilationBudget.current();
+        Assert.assertFalse(budget.isLimited());
+        Assert.assertFalse(budget.isLow());
+        Assert.assertFalse(budget.isExhausted());
+        Assert.assertFalse(budget.skipPhase(getDebugContext(), "phase"));
+        Assert.assertEquals(0, budget.getSkippedPhases());
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.core.test.backend;
+
+import org.graalvm.compiler.core.phases.HighTier;
+import org.graalvm.compiler.core.test.GraalCompilerTest;
+import org.graalvm.compiler.debug.Assertions;
+import org.graalvm.compiler.lir.alloc.AllocationStageVerifier;
+import org.graalvm.compiler.lir.phases.LIRSuites;
+import org.graalvm.compiler.lir.phases.LocalAllocationStage;
+import org.graalvm.compiler.options.OptionValues;
+import org.graalvm.compiler.phases.tiers.Suites;
+import org.junit.Test;
+
+/**
+ * Compiles methods with the {@link LocalAllocationStage} and compares the results with the
+ * interpreter. The {@link AllocationStageVerifier} checks that no virtual operands are left.
+ */
+public class LocalRegisterAllocationTest extends GraalCompilerTest {
+
+    @Override
+    protected Suites createSuites(OptionValues options) {
+        return super.createSuites(new OptionValues(options, HighTier.Options.Inline, false));
+    }
+
+    @Override
+    protected LIRSuites createLIRSuites(OptionValues options) {
+        LIRSuites suites = super.createLIRSuites(options);
+        LocalAllocationStage allocationStage = new LocalAllocationStage(options);
+        if (!Assertions.detailedAssertionsEnabled(options)) {
+            /* The stage only adds the verifier with detailed assertions. */
+            allocationStage.appendPhase(new AllocationStageVerifier());
+        }
+        return new LIRSuites(suites.getPreAllocationOptimizationStage(), allocationStage, suites.getPostAllocationOptimizationStage());
+    }
+
+    @BytecodeParserNeverInline
+    public static int callee(int a, long b) {
+        return a * 3 + (int) (b >>> 7);
+    }
+
+    @BytecodeParserNeverInline
+    public static double calleeDouble(double a, int b) {
+        return a / 3 + b;
+    }
+
+    public static long callSnippet(int a, long b, double c, String s) {
+        int x = callee(a, b);
+        int y = callee(x, a + b);
+        double d = calleeDouble(c, y);
+        int z = callee(s.length(), (long) d);
+        return a + b + x + y + (long) d + z + s.charAt(0);
+    }
+
+    @Test
+    public void testCalls() {
+        test("callSnippet", 17, 123456789012L, 2.5d, "allocation");
+        test("callSnippet", -1, -1L, -0.0d, "x");
+    }
+
+    public static long loopSnippet(int n, long start, double scale) {
+        int i = 0;
+        long sum = start;
+        double product = 1.0;
+        Object last = null;
+        while (i < n) {
+            sum += i * start;
+            product *= scale;
+            if ((i & 3) == 0) {
+                last = Integer.valueOf(i);
+            }
+            i++;
+        }
+        return sum + (long) product + (last == null ? 0 : (Integer) last);
+    }
+
+    @Test
+    public void testLoopPhis() {
+        test("loopSnippet", 0, 7L, 1.5d);
+        test("loopSnippet", 1, 7L, 1.5d);
+        test("loopSnippet", 1000, -3L, 1.0001d);
+    }
+
+    public static int swapSnippet(int n, int x, int y) {
+        int a = x;
+        int b = y;
+        for (int i = 0; i < n; i++) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        return a * 31 + b;
+    }
+
+    public static long rotateSnippet(int n, long x, long y, long z) {
+        long a = x;
+        long b = y;
+        long c = z;
+        for (int i = 0; i < n; i++) {
+            long t = a;
+            a = b;
+            b = c;
+            c = t + i;
+        }
+        return a * 961 + b * 31 + c;
+    }
+
+    @Test
+    public void testSwappingPhis() {
+        test("swapSnippet", 0, 1, 2);
+        test("swapSnippet", 7, 1, 2);
+        test("swapSnippet", 8, 1, 2);
+        test("rotateSnippet", 0, 1L, 2L, 3L);
+        test("rotateSnippet", 11, 1L, 2L, 3L);
+    }
+
+    public static long constantPhiSnippet(int n, boolean flag, long x) {
+        int v = flag ? 1 : 2;
+        long w = flag ? 10L : x;
+        double d = flag ? 0.5 : 2.0;
+        Object o = flag ? null : "constant";
+        int acc = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % 3 == 0) {
+                acc = 0;
+            } else {
+                acc += i;
+            }
+        }
+        return v + w + (long) (d * 4) + (o == null ? 0 : 1) + acc;
+    }
+
+    @Test
+    public void testConstantsIntoPhis() {
+        test("constantPhiSnippet", 0, true, 5L);
+        test("constantPhiSnippet", 10, false, 5L);
+        test("constantPhiSnippet", 11, true, -5L);
+    }
+
+    public static long manyLiveValuesSnippet(int n, long seed, double f) {
+        long v0 = seed;
+        long v1 = seed * 3;
+        long v2 = seed ^ 0x55;
+        long v3 = seed + 11;
+        long v4 = seed >>> 3;
+        long v5 = seed * seed;
+        long v6 = -seed;
+        long v7 = seed | 0xF0;
+        long v8 = seed & 0x0F;
+        long v9 = seed << 5;
+        long v10 = seed - 7;
+        long v11 = seed * 17;
+        long v12 = seed ^ v3;
+        long v13 = seed + v4;
+        long v14 = seed * v8;
+        long v15 = seed - v9;
+        double d0 = f;
+        double d1 = f * 2;
+        double d2 = f + 3;
+        double d3 = f / 4;
+        double d4 = f - 5;
+        double d5 = f * f;
+        double d6 = -f;
+        double d7 = f * 0.25;
+        double d8 = f + 0.125;
+        double d9 = f * 9;
+        double d10 = f - 10;
+        double d11 = f * 11;
+        double d12 = f + 12;
+        double d13 = f / 13;
+        double d14 = f - 14;
+        double d15 = f * 15;
+        double d16 = f + 16;
+        for (int i = 0; i < n; i++) {
+            v0 += v15;
+            v15 = v1 + callee(i, v14);
+            v14 ^= v2;
+            v2 += i;
+            d0 += d16;
+            d16 = d1 * 0.5;
+            d1 = calleeDouble(d2, i);
+        }
+        return v0 + v1 + v2 + v3 + v4 + v5 + v6 + v7 + v8 + v9 + v10 + v11 + v12 + v13 + v14 + v15 +
+                        (long) (d0 + d1 + d2 + d3 + d4 + d5 + d6 + d7 + d8 + d9 + d10 + d11 + d12 + d13 + d14 + d15 + d16);
+    }
+
+    @Test
+    public void testManyLiveValues() {
+        test("manyLiveValuesSnippet", 0, 42L, 1.5d);
+        test("manyLiveValuesSnippet", 5, 42L, 1.5d);
+        test("manyLiveValuesSnippet", 100, -12345678901L, -0.75d);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.core.test.backend;
+
+import org.graalvm.compiler.api.directives.GraalDirectives;
+import org.graalvm.compiler.core.common.alloc.ComputeBlockOrder;
+import org.graalvm.compiler.core.common.cfg.AbstractBlockBase;
+import org.graalvm.compiler.core.phases.HighTier;
+import org.graalvm.compiler.core.test.GraalCompilerTest;
+import org.graalvm.compiler.lir.LIR;
+import org.graalvm.compiler.lir.gen.LIRGenerationResult;
+import org.graalvm.compiler.lir.phases.LIRSuites;
+import org.graalvm.compiler.lir.phases.PostAllocationOptimizationPhase;
+import org.graalvm.compiler.options.OptionValues;
+import org.graalvm.compiler.phases.OptimisticOptimizations;
+import org.graalvm.compiler.phases.tiers.Suites;
+import org.junit.Test;
+
+import jdk.vm.ci.code.TargetDescription;
+
+/**
+ * Compiles methods with {@link ComputeBlockOrder.Options#SplitColdBlocks} enabled and checks that
+ * the start block is still emitted first and that every block below
+ * {@link ComputeBlockOrder.Options#ColdBlockFrequency} is emitted after all hot blocks.
+ */
+public class SplitColdBlocksTest extends GraalCompilerTest {
+
+    private static final double COLD_BLOCK_FREQUENCY = 0.01;
+
+    private int coldBlocks;
+
+    private final class CheckCodeEmittingOrderPhase extends PostAllocationOptimizationPhase {
+
+        @Override
+        protected void run(TargetDescription target, LIRGenerationResult lirGenRes, PostAllocationOptimizationContext context) {
+            LIR lir = lirGenRes.getLIR();
+            AbstractBlockBase<?>[] order = lir.codeEmittingOrder();
+            assertTrue(order[0] == lir.getControlFlowGraph().getStartBlock(), "start block must be emitted first: %s", order[0]);
+            AbstractBlockBase<?> firstCold = null;
+            for (int i = 1; i < order.length; i++) {
+                AbstractBlockBase<?> block = order[i];
+                if (block == null) {
+                    /* Deleted by the ControlFlowOptimizer. */
+                    continue;
+                }
+                if (block.getRelativeFrequency() < COLD_BLOCK_FREQUENCY) {
+                    if (firstCold == null) {
+                        firstCold = block;
+                    }
+                    coldBlocks++;
+                } else {
+                    assertTrue(firstCold == null, "hot block %s (frequency %s) emitted after cold block %s", block, block.getRelativeFrequency(), firstCold);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Suites createSuites(OptionValues options) {
+        return super.createSuites(new OptionValues(options, HighTier.Options.Inline, false));
+    }
+
+    @Override
+    protected LIRSuites createLIRSuites(OptionValues options) {
+        LIRSuites suites = super.createLIRSuites(options);
+        suites.getPostAllocationOptimizationStage().appendPhase(new CheckCodeEmittingOrderPhase());
+        return suites;
+    }
+
+    @Override
+    protected OptimisticOptimizations getOptimisticOptimizations() {
+        /* Keep the exception edges instead of replacing them with deoptimizations. */
+        return OptimisticOptimizations.NONE;
+    }
+
+    private void testColdBlocks(String name, Object[]... argsList) {
+        OptionValues options = new OptionValues(getInitialOptions(), ComputeBlockOrder.Options.SplitColdBlocks, true, ComputeBlockOrder.Options.ColdBlockFrequency, COLD_BLOCK_FREQUENCY);
+        coldBlocks = 0;
+        for (Object[] args : argsList) {
+            test(options, name, args);
+        }
+        assertTrue(coldBlocks > 0, "expected cold blocks in %s", name);
+    }
+
+    @BytecodeParserNeverInline
+    public static int divide(int a, int b) {
+        return a / b;
+    }
+
+    public static int exceptionHandlerSnippet(int[] array, int divisor) {
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            try {
+                sum += divide(array[i], divisor);
+            } catch (ArithmeticException e) {
+                sum = -sum - 1;
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testExceptionHandler() {
+        testColdBlocks("exceptionHandlerSnippet", new Object[]{new int[]{10, 20, 30, -7}, 3}, new Object[]{new int[]{10, 20, 30, -7}, 0}, new Object[]{new int[0], 0});
+    }
+
+    public static int deoptimizeSnippet(int a, int b) {
+        int result = a * 31 + b;
+        if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, b == 7)) {
+            GraalDirectives.deoptimize();
+            result = divide(result, a);
+        }
+        for (int i = 0; i < a; i++) {
+            result ^= result >>> 3;
+            if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, result == 12345)) {
+                result = divide(result, b);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testDeoptimization() {
+        testColdBlocks("deoptimizeSnippet", new Object[]{100, 3}, new Object[]{100, 7}, new Object[]{0, 7});
+    }
+
+    public static int mixedSnippet(int[] array, int divisor) {
+        if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, array == null)) {
+            GraalDirectives.deoptimize();
+            return -1;
+        }
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            try {
+                sum += divide(array[i], divisor);
+            } catch (ArithmeticException e) {
+                return sum;
+            }
+            if (GraalDirectives.injectBranchProbability(GraalDirectives.SLOWPATH_PROBABILITY, sum < 0)) {
+                GraalDirectives.deoptimize();
+                sum = -sum;
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void testMixed() {
+        testColdBlocks("mixedSnippet", new Object[]{new int[]{4, 8, 15, 16, 23, 42}, 2}, new Object[]{new int[]{4, -8}, 1}, new Object[]{new int[]{1}, 0}, new Object[]{null, 1});
+    }
+}
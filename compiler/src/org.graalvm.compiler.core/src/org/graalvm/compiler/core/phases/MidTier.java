@@ -26,10 +26,12 @@ package org.graalvm.compiler.core.phases;
 
 import static org.graalvm.compiler.core.common.GraalOptions.ConditionalElimination;
 import static org.graalvm.compiler.core.common.GraalOptions.LoopPredication;
+import static org.graalvm.compiler.core.common.GraalOptions.LoopStripMining;
 import static org.graalvm.compiler.core.common.GraalOptions.OptDeoptimizationGrouping;
 import static org.graalvm.compiler.core.common.GraalOptions.OptFloatingReads;
 import static org.graalvm.compiler.core.common.GraalOptions.PartialUnroll;
 import static org.graalvm.compiler.core.common.GraalOptions.ReassociateExpressions;
+import static org.graalvm.compiler.core.common.GraalOptions.ReassociateLoopReductions;
 import static org.graalvm.compiler.core.common.GraalOptions.VerifyHeapAtReturn;
 import static org.graalvm.compiler.core.common.SpectrePHTMitigations.GuardTargets;
 import static org.graalvm.compiler.core.common.SpectrePHTMitigations.NonDeoptGuardTargets;
@@ -39,7 +41,9 @@ import org.graalvm.compiler.loop.DefaultLoopPolicies;
 import org.graalvm.compiler.loop.LoopPolicies;
 import org.graalvm.compiler.loop.phases.LoopPartialUnrollPhase;
 import org.graalvm.compiler.loop.phases.LoopPredicationPhase;
+import org.graalvm.compiler.loop.phases.LoopReductionReassociationPhase;
 import org.graalvm.compiler.loop.phases.LoopSafepointEliminationPhase;
+import org.graalvm.compiler.loop.phases.LoopStripMiningPhase;
 import org.graalvm.compiler.nodes.spi.LoweringTool;
 import org.graalvm.compiler.options.OptionValues;
 import org.graalvm.compiler.phases.common.CanonicalizerPhase;
@@ -93,6 +97,10 @@ public class MidTier extends BaseTier<MidTierContext> {
 
         appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new RemoveValueProxyPhase()));
 
+        if (LoopStripMining.getValue(options)) {
+            appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new LoopStripMiningPhase()));
+        }
+
         appendPhase(new LoopSafepointInsertionPhase());
 
         appendPhase(new LoweringPhase(canonicalizer, LoweringTool.StandardLoweringStage.MID_TIER));
@@ -104,6 +112,9 @@ public class MidTier extends BaseTier<MidTierContext> {
         if (PartialUnroll.getValue(options)) {
             LoopPolicies loopPolicies = createLoopPolicies(options);
             appendPhase(new LoopPartialUnrollPhase(loopPolicies, canonicalizer));
+            if (ReassociateLoopReductions.getValue(options)) {
+                appendPhase(new LoopReductionReassociationPhase(canonicalizer));
+            }
         }
 
         if (ReassociateExpressions.getValue(options)) {
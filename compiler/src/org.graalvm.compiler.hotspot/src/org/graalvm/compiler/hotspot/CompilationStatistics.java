@@ -40,6 +40,7 @@ import java.util.Deque;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.CSVUtil;
 import org.graalvm.compiler.options.Option;
 import org.graalvm.compiler.options.OptionKey;
@@ -97,6 +98,9 @@ public final class CompilationStatistics {
     private int codeSize;
     @TimeValue private long duration;
     private long memoryUsed;
+    private int budgetUsedPercent;
+    private int degradedPhases;
+    private int skippedPhases;
     private final boolean osr;
     private final String holder;
     private final String name;
@@ -125,6 +129,10 @@ public final class CompilationStatistics {
             duration = System.nanoTime() - startTime;
             codeSize = (int) code.getCodeSize();
             memoryUsed = getThreadAllocatedBytes() - threadAllocatedBytesStart;
+            CompilationBudget budget = CompilationBudget.current();
+            budgetUsedPercent = budget.getUsedPercent();
+            degradedPhases = budget.getDegradedPhases();
+            skippedPhases = budget.getSkippedPhases();
             if (current.get().getLast() != this) {
                 throw new RuntimeException("mismatch in finish()");
             }
@@ -38,6 +38,7 @@ import org.graalvm.compiler.code.CompilationResult;
 import org.graalvm.compiler.core.GraalCompiler;
 import org.graalvm.compiler.core.common.CompilationIdentifier;
 import org.graalvm.compiler.core.common.util.CompilationAlarm;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.DebugContext;
 import org.graalvm.compiler.debug.DebugContext.Activation;
 import org.graalvm.compiler.debug.DebugHandlersFactory;
@@ -134,7 +135,8 @@ public class HotSpotGraalCompiler implements GraalJVMCICompiler, Cancellable {
             OptionValues options = task.filterOptions(initialOptions);
             try (CompilationWatchDog w1 = CompilationWatchDog.watch(method, hsRequest.getId(), options);
                             BootstrapWatchDog.Watch w2 = bootstrapWatchDog == null ? null : bootstrapWatchDog.watch(request);
-                            CompilationAlarm alarm = CompilationAlarm.trackCompilationPeriod(options);) {
+                            CompilationAlarm alarm = CompilationAlarm.trackCompilationPeriod(options);
+                            CompilationBudget budget = CompilationBudget.trackCompilationBudget(options);) {
                 if (compilationCounters != null) {
                     compilationCounters.countCompilation(method);
                 }
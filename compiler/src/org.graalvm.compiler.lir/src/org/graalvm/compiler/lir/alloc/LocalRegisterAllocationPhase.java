@@ -0,0 +1,519 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.lir.alloc;
+
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+import static org.graalvm.compiler.lir.LIRValueUtil.asConstant;
+import static org.graalvm.compiler.lir.LIRValueUtil.asVariable;
+import static org.graalvm.compiler.lir.LIRValueUtil.isConstantValue;
+import static org.graalvm.compiler.lir.LIRValueUtil.isVariable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graalvm.compiler.core.common.alloc.RegisterAllocationConfig;
+import org.graalvm.compiler.core.common.cfg.AbstractBlockBase;
+import org.graalvm.compiler.debug.CounterKey;
+import org.graalvm.compiler.debug.DebugContext;
+import org.graalvm.compiler.debug.GraalError;
+import org.graalvm.compiler.debug.Indent;
+import org.graalvm.compiler.lir.InstructionValueProcedure;
+import org.graalvm.compiler.lir.LIR;
+import org.graalvm.compiler.lir.LIRInstruction;
+import org.graalvm.compiler.lir.LIRInstruction.OperandFlag;
+import org.graalvm.compiler.lir.LIRInstruction.OperandMode;
+import org.graalvm.compiler.lir.StandardOp.BlockEndOp;
+import org.graalvm.compiler.lir.StandardOp.JumpOp;
+import org.graalvm.compiler.lir.StandardOp.LabelOp;
+import org.graalvm.compiler.lir.StandardOp.ValueMoveOp;
+import org.graalvm.compiler.lir.ValueConsumer;
+import org.graalvm.compiler.lir.Variable;
+import org.graalvm.compiler.lir.VirtualStackSlot;
+import org.graalvm.compiler.lir.framemap.FrameMapBuilder;
+import org.graalvm.compiler.lir.gen.LIRGenerationResult;
+import org.graalvm.compiler.lir.gen.LIRGeneratorTool.MoveFactory;
+import org.graalvm.compiler.lir.ssa.SSAUtil;
+
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.AllocatableValue;
+import jdk.vm.ci.meta.Constant;
+import jdk.vm.ci.meta.Value;
+import jdk.vm.ci.meta.ValueKind;
+
+/**
+ * A register allocator that trades code quality for allocation speed, intended for compilations
+ * where compile time matters more than peak performance, such as first-tier Truffle compilations.
+ *
+ * Every {@link Variable} lives in a {@link VirtualStackSlot} for its whole lifetime. Operands that
+ * may reside on the stack are replaced by that slot. Operands that must be in a register are loaded
+ * into a free register immediately before the instruction, and results are stored immediately after
+ * it. Registers are therefore never live across instructions and no intervals are built. The
+ * allocation consists of one forward pass that computes the liveness of fixed registers and one
+ * backward pass per block that rewrites the instructions. Variables that are only used in the block
+ * that defines them share stack slots once they are dead.
+ *
+ * Phis are resolved by stack-to-stack moves at the end of the predecessor blocks.
+ */
+public final class LocalRegisterAllocationPhase extends RegisterAllocationPhase {
+
+    private static final CounterKey numLoads = DebugContext.counter("LocalRA[numLoads]");
+    private static final CounterKey numStores = DebugContext.counter("LocalRA[numStores]");
+    private static final CounterKey numPhiMoves = DebugContext.counter("LocalRA[numPhiMoves]");
+
+    @Override
+    protected void run(TargetDescription target, LIRGenerationResult lirGenRes, AllocationContext context) {
+        new Allocator(lirGenRes, context).allocate();
+    }
+
+    private static final class Allocator {
+        private final LIR lir;
+        private final DebugContext debug;
+        private final FrameMapBuilder frameMapBuilder;
+        private final MoveFactory moveFactory;
+        private final RegisterAllocationConfig registerAllocationConfig;
+        private final AbstractBlockBase<?>[] blocks;
+
+        /** The stack slot of each variable, or {@code null} if none has been assigned yet. */
+        private final VirtualStackSlot[] slots;
+        /** The block in which each variable was first seen, or -1. */
+        private final int[] variableBlocks;
+        /** Variables that are used outside of their defining block or take part in a phi. */
+        private final BitSet globalVariables;
+        /** Dead stack slots of block-local variables, available for reuse. */
+        private final Map<ValueKind<?>, ArrayDeque<VirtualStackSlot>> freeSlots = new HashMap<>();
+
+        /** Fixed registers that are live at the beginning of each block. */
+        private final BitSet[] liveIn;
+        /** Fixed registers that are live before the last instruction of each block. */
+        private final BitSet[] liveBeforeBlockEnd;
+
+        /* State of the instruction that is currently processed. */
+        private final BitSet fixedUses = new BitSet();
+        private final BitSet fixedAlive = new BitSet();
+        private final BitSet fixedDefs = new BitSet();
+        private final BitSet useTaken = new BitSet();
+        private final BitSet defTaken = new BitSet();
+        private final Map<Variable, Value> useRegisters = new HashMap<>();
+        private final List<LIRInstruction> loads = new ArrayList<>();
+        private final List<LIRInstruction> stores = new ArrayList<>();
+        private final List<Variable> releasedAfterInstruction = new ArrayList<>();
+
+        Allocator(LIRGenerationResult lirGenRes, AllocationContext context) {
+            this.lir = lirGenRes.getLIR();
+            this.debug = lir.getDebug();
+            this.frameMapBuilder = lirGenRes.getFrameMapBuilder();
+            this.moveFactory = context.spillMoveFactory;
+            this.registerAllocationConfig = context.registerAllocationConfig;
+            this.blocks = lir.linearScanOrder();
+            this.slots = new VirtualStackSlot[lir.numVariables()];
+            this.variableBlocks = new int[lir.numVariables()];
+            this.globalVariables = new BitSet(lir.numVariables());
+            int blockCount = lir.getControlFlowGraph().getBlocks().length;
+            this.liveIn = new BitSet[blockCount];
+            this.liveBeforeBlockEnd = new BitSet[blockCount];
+        }
+
+        @SuppressWarnings("try")
+        void allocate() {
+            try (Indent indent = debug.logAndIndent("local register allocation")) {
+                BitSet[] gen = new BitSet[liveIn.length];
+                BitSet[] kill = new BitSet[liveIn.length];
+                analyze(gen, kill);
+                computeLiveIn(gen, kill);
+                for (AbstractBlockBase<?> block : blocks) {
+                    allocateBlock(block);
+                }
+                for (AbstractBlockBase<?> block : blocks) {
+                    if (block.getPredecessorCount() > 1) {
+                        resolvePhis(block);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Determines which variables are block-local and computes the fixed registers used and
+         * defined by each block.
+         */
+        private void analyze(BitSet[] gen, BitSet[] kill) {
+            Arrays.fill(variableBlocks, -1);
+            for (AbstractBlockBase<?> block : blocks) {
+                int blockId = block.getId();
+                BitSet blockGen = new BitSet();
+                BitSet blockKill = new BitSet();
+                ValueConsumer useConsumer = (value, mode, flags) -> {
+                    if (isRegister(value)) {
+                        int number = asRegister(value).number;
+                        if (!blockKill.get(number)) {
+                            blockGen.set(number);
+                        }
+                    }
+                };
+                ValueConsumer defConsumer = (value, mode, flags) -> {
+                    if (isRegister(value)) {
+                        blockKill.set(asRegister(value).number);
+                    }
+                };
+                for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                    boolean phiOp = op instanceof LabelOp || op instanceof JumpOp;
+                    ValueConsumer variableConsumer = (value, mode, flags) -> {
+                        if (isVariable(value)) {
+                            int index = asVariable(value).index;
+                            if (phiOp) {
+                                globalVariables.set(index);
+                            } else if (variableBlocks[index] == -1) {
+                                variableBlocks[index] = blockId;
+                            } else if (variableBlocks[index] != blockId) {
+                                globalVariables.set(index);
+                            }
+                        }
+                    };
+                    op.visitEachInput(variableConsumer);
+                    op.visitEachAlive(variableConsumer);
+                    op.visitEachState(variableConsumer);
+                    op.visitEachTemp(variableConsumer);
+                    op.visitEachOutput(variableConsumer);
+
+                    op.visitEachInput(useConsumer);
+                    op.visitEachAlive(useConsumer);
+                    op.visitEachState(useConsumer);
+                    op.visitEachTemp(defConsumer);
+                    op.visitEachOutput(defConsumer);
+                }
+                gen[blockId] = blockGen;
+                kill[blockId] = blockKill;
+            }
+        }
+
+        /**
+         * Fixed registers are usually only live within a block, so this fixed point iteration
+         * typically converges after the first round.
+         */
+        private void computeLiveIn(BitSet[] gen, BitSet[] kill) {
+            for (AbstractBlockBase<?> block : blocks) {
+                liveIn[block.getId()] = new BitSet();
+            }
+            boolean changed;
+            do {
+                changed = false;
+                for (int i = blocks.length - 1; i >= 0; i--) {
+                    AbstractBlockBase<?> block = blocks[i];
+                    BitSet live = liveOut(block);
+                    live.andNot(kill[block.getId()]);
+                    live.or(gen[block.getId()]);
+                    if (!live.equals(liveIn[block.getId()])) {
+                        liveIn[block.getId()] = live;
+                        changed = true;
+                    }
+                }
+            } while (changed);
+        }
+
+        private BitSet liveOut(AbstractBlockBase<?> block) {
+            BitSet live = new BitSet();
+            for (AbstractBlockBase<?> successor : block.getSuccessors()) {
+                live.or(liveIn[successor.getId()]);
+            }
+            return live;
+        }
+
+        private void allocateBlock(AbstractBlockBase<?> block) {
+            ArrayList<LIRInstruction> instructions = lir.getLIRforBlock(block);
+            ArrayList<LIRInstruction> reversed = new ArrayList<>(instructions.size() * 2);
+            BitSet live = liveOut(block);
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                LIRInstruction op = instructions.get(i);
+                allocateInstruction(op, live);
+
+                for (int j = stores.size() - 1; j >= 0; j--) {
+                    reversed.add(stores.get(j));
+                }
+                if (!(ValueMoveOp.isValueMoveOp(op) && ValueMoveOp.asValueMoveOp(op).getInput().equals(ValueMoveOp.asValueMoveOp(op).getResult()))) {
+                    reversed.add(op);
+                }
+                for (int j = loads.size() - 1; j >= 0; j--) {
+                    reversed.add(loads.get(j));
+                }
+                if (i == instructions.size() - 1) {
+                    liveBeforeBlockEnd[block.getId()] = (BitSet) live.clone();
+                }
+            }
+            Collections.reverse(reversed);
+            lir.setLIRforBlock(block, reversed);
+        }
+
+        /**
+         * Replaces the variables of {@code op} by stack slots or registers.
+         *
+         * @param live the fixed registers that are live after {@code op}; updated to the registers
+         *            live before {@code op}
+         */
+        private void allocateInstruction(LIRInstruction op, BitSet live) {
+            loads.clear();
+            stores.clear();
+            useRegisters.clear();
+            releasedAfterInstruction.clear();
+
+            fixedUses.clear();
+            fixedAlive.clear();
+            fixedDefs.clear();
+            op.visitEachInput((ValueConsumer) (value, mode, flags) -> collectRegister(fixedUses, value));
+            op.visitEachState((ValueConsumer) (value, mode, flags) -> collectRegister(fixedUses, value));
+            op.visitEachAlive((ValueConsumer) (value, mode, flags) -> collectRegister(fixedAlive, value));
+            op.visitEachTemp((ValueConsumer) (value, mode, flags) -> collectRegister(fixedDefs, value));
+            op.visitEachOutput((ValueConsumer) (value, mode, flags) -> collectRegister(fixedDefs, value));
+
+            /*
+             * Scratch registers for inputs must not hold a fixed register that is live before or
+             * after the instruction. Scratch registers for results and temporaries must in
+             * addition not conflict with fixed results or temporaries. Both may overlap, since
+             * results are written only after all inputs have been read, except for alive inputs.
+             */
+            useTaken.clear();
+            useTaken.or(live);
+            live.andNot(fixedDefs);
+            live.or(fixedUses);
+            live.or(fixedAlive);
+            useTaken.or(live);
+            defTaken.clear();
+            defTaken.or(useTaken);
+            defTaken.or(fixedDefs);
+
+            op.forEachAlive(aliveProc);
+            op.forEachInput(inputProc);
+            op.forEachTemp(tempProc);
+            op.forEachOutput(outputProc);
+            op.forEachState(stateProc);
+
+            if (!stores.isEmpty() && op instanceof BlockEndOp) {
+                throw GraalError.shouldNotReachHere("Cannot store the result of a block end: " + op);
+            }
+            for (Variable variable : releasedAfterInstruction) {
+                releaseSlot(variable);
+            }
+        }
+
+        private static void collectRegister(BitSet set, Value value) {
+            if (isRegister(value)) {
+                set.set(asRegister(value).number);
+            }
+        }
+
+        private final InstructionValueProcedure outputProc = this::outputOperand;
+
+        private Value outputOperand(LIRInstruction op, Value value, @SuppressWarnings("unused") OperandMode mode, EnumSet<OperandFlag> flags) {
+            if (!isVariable(value)) {
+                return value;
+            }
+            Variable variable = asVariable(value);
+            VirtualStackSlot slot = slotFor(variable);
+            if (!globalVariables.get(variable.index)) {
+                releasedAfterInstruction.add(variable);
+            }
+            if (flags.contains(OperandFlag.STACK)) {
+                return slot;
+            }
+            Value register = allocateRegister(op, variable, value, defTaken);
+            stores.add(moveFactory.createMove(slot, asRegister(register).asValue(variable.getValueKind())));
+            numStores.increment(debug);
+            return register;
+        }
+
+        private final InstructionValueProcedure tempProc = this::tempOperand;
+
+        private Value tempOperand(LIRInstruction op, Value value, @SuppressWarnings("unused") OperandMode mode, EnumSet<OperandFlag> flags) {
+            if (!isVariable(value)) {
+                return value;
+            }
+            Variable variable = asVariable(value);
+            if (flags.contains(OperandFlag.REG)) {
+                return allocateRegister(op, variable, value, defTaken);
+            }
+            releasedAfterInstruction.add(variable);
+            return slotFor(variable);
+        }
+
+        private final InstructionValueProcedure aliveProc = this::aliveOperand;
+
+        private Value aliveOperand(LIRInstruction op, Value value, @SuppressWarnings("unused") OperandMode mode, EnumSet<OperandFlag> flags) {
+            if (!isVariable(value)) {
+                return value;
+            }
+            Variable variable = asVariable(value);
+            VirtualStackSlot slot = slotFor(variable);
+            if (flags.contains(OperandFlag.STACK)) {
+                return slot;
+            }
+            Value register = useRegisters.get(variable);
+            if (register == null) {
+                register = allocateRegister(op, variable, value, useTaken);
+                defTaken.set(asRegister(register).number);
+                useRegisters.put(variable, register);
+                load(variable, register, slot);
+            }
+            return asRegister(register).asValue(value.getValueKind());
+        }
+
+        private final InstructionValueProcedure inputProc = this::inputOperand;
+
+        private Value inputOperand(LIRInstruction op, Value value, @SuppressWarnings("unused") OperandMode mode, EnumSet<OperandFlag> flags) {
+            if (!isVariable(value)) {
+                return value;
+            }
+            Variable variable = asVariable(value);
+            VirtualStackSlot slot = slotFor(variable);
+            if (flags.contains(OperandFlag.STACK)) {
+                return slot;
+            }
+            Value register = useRegisters.get(variable);
+            if (register == null) {
+                register = allocateRegister(op, variable, value, useTaken);
+                useRegisters.put(variable, register);
+                load(variable, register, slot);
+            }
+            return asRegister(register).asValue(value.getValueKind());
+        }
+
+        private final InstructionValueProcedure stateProc = this::stateOperand;
+
+        @SuppressWarnings("unused")
+        private Value stateOperand(LIRInstruction op, Value value, OperandMode mode, EnumSet<OperandFlag> flags) {
+            if (!isVariable(value)) {
+                return value;
+            }
+            return slotFor(asVariable(value));
+        }
+
+        private void load(Variable variable, Value register, VirtualStackSlot slot) {
+            loads.add(moveFactory.createMove(asRegister(register).asValue(variable.getValueKind()), slot));
+            numLoads.increment(debug);
+        }
+
+        private Value allocateRegister(LIRInstruction op, Variable variable, Value value, BitSet taken) {
+            for (Register register : registerAllocationConfig.getAllocatableRegisters(variable.getPlatformKind()).allocatableRegisters) {
+                if (!taken.get(register.number)) {
+                    taken.set(register.number);
+                    return register.asValue(value.getValueKind());
+                }
+            }
+            throw new OutOfRegistersException("LocalRegisterAllocation: no register available for " + variable, op.toString());
+        }
+
+        private VirtualStackSlot slotFor(Variable variable) {
+            VirtualStackSlot slot = slots[variable.index];
+            if (slot == null) {
+                ArrayDeque<VirtualStackSlot> free = globalVariables.get(variable.index) ? null : freeSlots.get(variable.getValueKind());
+                slot = free == null || free.isEmpty() ? frameMapBuilder.allocateSpillSlot(variable.getValueKind()) : free.pop();
+                slots[variable.index] = slot;
+            }
+            return slot;
+        }
+
+        private void releaseSlot(Variable variable) {
+            VirtualStackSlot slot = slots[variable.index];
+            if (slot != null) {
+                slots[variable.index] = null;
+                freeSlots.computeIfAbsent(variable.getValueKind(), k -> new ArrayDeque<>()).push(slot);
+            }
+        }
+
+        /**
+         * Inserts the moves from the outgoing values of each predecessor to the stack slots of the
+         * phis of {@code merge}. If a phi slot is also the source of another move on the same edge,
+         * all sources are first copied to temporary slots.
+         */
+        private void resolvePhis(AbstractBlockBase<?> merge) {
+            for (AbstractBlockBase<?> pred : merge.getPredecessors()) {
+                List<Value> sources = new ArrayList<>();
+                List<AllocatableValue> destinations = new ArrayList<>();
+                SSAUtil.forEachPhiValuePair(lir, merge, pred, (phiIn, phiOut) -> {
+                    if (!phiIn.equals(phiOut)) {
+                        destinations.add((AllocatableValue) phiIn);
+                        sources.add(phiOut);
+                    }
+                });
+                if (destinations.isEmpty()) {
+                    SSAUtil.removePhiOut(lir, pred);
+                    continue;
+                }
+                boolean overlapping = false;
+                for (AllocatableValue destination : destinations) {
+                    overlapping |= sources.contains(destination);
+                }
+                List<LIRInstruction> moves = new ArrayList<>();
+                if (overlapping) {
+                    for (int i = 0; i < sources.size(); i++) {
+                        Value source = sources.get(i);
+                        if (!isConstantValue(source)) {
+                            VirtualStackSlot temp = frameMapBuilder.allocateSpillSlot(source.getValueKind());
+                            moves.add(moveFactory.createStackMove(temp, (AllocatableValue) source));
+                            sources.set(i, temp);
+                        }
+                    }
+                }
+                for (int i = 0; i < sources.size(); i++) {
+                    addPhiMove(pred, destinations.get(i), sources.get(i), moves);
+                }
+                numPhiMoves.add(debug, moves.size());
+
+                ArrayList<LIRInstruction> instructions = lir.getLIRforBlock(pred);
+                instructions.addAll(SSAUtil.phiOutIndex(lir, pred), moves);
+                SSAUtil.removePhiOut(lir, pred);
+            }
+            SSAUtil.removePhiIn(lir, merge);
+        }
+
+        private void addPhiMove(AbstractBlockBase<?> pred, AllocatableValue destination, Value source, List<LIRInstruction> moves) {
+            if (!isConstantValue(source)) {
+                moves.add(moveFactory.createStackMove(destination, (AllocatableValue) source));
+                return;
+            }
+            Constant constant = asConstant(source);
+            if (moveFactory.allowConstantToStackMove(constant)) {
+                moves.add(moveFactory.createStackLoad(destination, constant));
+                return;
+            }
+            BitSet taken = liveBeforeBlockEnd[pred.getId()];
+            for (Register register : registerAllocationConfig.getAllocatableRegisters(destination.getPlatformKind()).allocatableRegisters) {
+                if (!taken.get(register.number)) {
+                    Value scratch = register.asValue(destination.getValueKind());
+                    moves.add(moveFactory.createLoad((AllocatableValue) scratch, constant));
+                    moves.add(moveFactory.createMove(destination, scratch));
+                    return;
+                }
+            }
+            throw new OutOfRegistersException("LocalRegisterAllocation: no register available for phi constant " + constant);
+        }
+    }
+}
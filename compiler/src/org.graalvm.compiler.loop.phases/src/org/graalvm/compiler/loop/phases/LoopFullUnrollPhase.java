@@ -30,6 +30,7 @@ import java.util.function.ToDoubleFunction;
 import java.util.function.ToIntFunction;
 
 import org.graalvm.compiler.core.common.GraalOptions;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.CounterKey;
 import org.graalvm.compiler.debug.DebugContext;
 import org.graalvm.compiler.loop.LoopEx;
@@ -66,9 +67,11 @@ public class LoopFullUnrollPhase extends LoopPhase<LoopPolicies> {
     protected void run(StructuredGraph graph, CoreProviders context) {
         if (GraalOptions.FullUnroll.getValue(graph.getOptions())) {
             DebugContext debug = graph.getDebug();
-            if (graph.hasLoops()) {
+            CompilationBudget budget = CompilationBudget.current();
+            if (graph.hasLoops() && !budget.skipPhase(debug, getName())) {
                 boolean peeled;
                 int applications = 0;
+                int maxApplications = budget.degradePhase(debug, getName()) ? 1 : Options.FullUnrollMaxApplication.getValue(graph.getOptions());
                 do {
                     peeled = false;
                     final LoopsData dataCounted = new LoopsData(graph);
@@ -87,7 +90,7 @@ public class LoopFullUnrollPhase extends LoopPhase<LoopPolicies> {
                     }
                     dataCounted.deleteUnusedNodes();
                     applications++;
-                } while (peeled && applications < Options.FullUnrollMaxApplication.getValue(graph.getOptions()));
+                } while (peeled && applications < maxApplications);
             }
         }
     }
@@ -26,6 +26,7 @@ package org.graalvm.compiler.loop.phases;
 
 import org.graalvm.collections.EconomicMap;
 import org.graalvm.collections.Equivalence;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.graph.Graph;
 import org.graalvm.compiler.loop.LoopEx;
 import org.graalvm.compiler.loop.LoopPolicies;
@@ -49,7 +50,8 @@ public class LoopPartialUnrollPhase extends LoopPhase<LoopPolicies> {
     @Override
     @SuppressWarnings("try")
     protected void run(StructuredGraph graph, CoreProviders context) {
-        if (graph.hasLoops()) {
+        // partial unrolling multiplies the size of loop bodies for all later phases
+        if (graph.hasLoops() && !CompilationBudget.current().degradePhase(graph.getDebug(), getName())) {
             EconomicSetNodeEventListener listener = new EconomicSetNodeEventListener();
             boolean changed = true;
             EconomicMap<LoopBeginNode, OpaqueNode> opaqueUnrolledStrides = null;
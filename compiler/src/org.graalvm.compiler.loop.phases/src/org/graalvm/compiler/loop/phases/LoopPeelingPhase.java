@@ -24,6 +24,7 @@
  */
 package org.graalvm.compiler.loop.phases;
 
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.CounterKey;
 import org.graalvm.compiler.debug.DebugContext;
 import org.graalvm.compiler.loop.LoopEx;
@@ -44,7 +45,7 @@ public class LoopPeelingPhase extends LoopPhase<LoopPolicies> {
     @SuppressWarnings("try")
     protected void run(StructuredGraph graph, CoreProviders context) {
         DebugContext debug = graph.getDebug();
-        if (graph.hasLoops()) {
+        if (graph.hasLoops() && !CompilationBudget.current().skipPhase(debug, getName())) {
             LoopsData data = new LoopsData(graph);
             try (DebugContext.Scope s = debug.scope("peeling", data.getCFG())) {
                 for (LoopEx loop : data.outerFirst()) {
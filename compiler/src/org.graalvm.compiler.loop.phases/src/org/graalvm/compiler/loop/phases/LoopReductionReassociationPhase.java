@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.loop.phases;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.graalvm.compiler.core.common.type.IntegerStamp;
+import org.graalvm.compiler.debug.CounterKey;
+import org.graalvm.compiler.debug.DebugContext;
+import org.graalvm.compiler.graph.Graph.NodeEvent;
+import org.graalvm.compiler.graph.Graph.NodeEventScope;
+import org.graalvm.compiler.nodes.LoopBeginNode;
+import org.graalvm.compiler.nodes.LoopEndNode;
+import org.graalvm.compiler.nodes.NodeView;
+import org.graalvm.compiler.nodes.StructuredGraph;
+import org.graalvm.compiler.nodes.ValueNode;
+import org.graalvm.compiler.nodes.ValuePhiNode;
+import org.graalvm.compiler.nodes.calc.AddNode;
+import org.graalvm.compiler.nodes.calc.AndNode;
+import org.graalvm.compiler.nodes.calc.BinaryArithmeticNode;
+import org.graalvm.compiler.nodes.calc.MulNode;
+import org.graalvm.compiler.nodes.calc.OrNode;
+import org.graalvm.compiler.nodes.calc.XorNode;
+import org.graalvm.compiler.nodes.spi.CoreProviders;
+import org.graalvm.compiler.nodes.util.GraphUtil;
+import org.graalvm.compiler.phases.BasePhase;
+import org.graalvm.compiler.phases.common.CanonicalizerPhase;
+import org.graalvm.compiler.phases.common.util.EconomicSetNodeEventListener;
+
+//@formatter:off
+/**
+ * Shortens the loop-carried dependency chain of integer reductions. After
+ * {@link LoopPartialUnrollPhase partial unrolling}, a reduction such as an array sum computes the
+ * new value of the accumulator with a chain of operations that each depend on the previous one:
+ *
+ * <pre>
+ *     sum = (((sum + a[i]) + a[i + 1]) + a[i + 2]) + a[i + 3];
+ *  =>
+ *     sum = sum + ((a[i] + a[i + 1]) + (a[i + 2] + a[i + 3]));
+ * </pre>
+ *
+ * The rewritten form combines the elements of the unrolled iterations independently of each other
+ * and of the accumulator, so that they can execute in parallel and only one operation remains on the
+ * loop-carried path.
+ *
+ * This is only done for {@link IntegerStamp integer} operations that are associative and
+ * commutative ({@code +}, {@code *}, {@code &}, {@code |}, {@code ^}) and whose intermediate results
+ * have no other usages. Floating-point reductions are not reassociated since that would change the
+ * result.
+ */
+//@formatter:on
+public class LoopReductionReassociationPhase extends BasePhase<CoreProviders> {
+
+    private static final CounterKey REASSOCIATED_REDUCTIONS = DebugContext.counter("ReassociatedLoopReductions");
+
+    private final CanonicalizerPhase canonicalizer;
+
+    public LoopReductionReassociationPhase(CanonicalizerPhase canonicalizer) {
+        this.canonicalizer = canonicalizer;
+    }
+
+    @Override
+    @SuppressWarnings("try")
+    protected void run(StructuredGraph graph, CoreProviders context) {
+        if (!graph.hasLoops()) {
+            return;
+        }
+        EconomicSetNodeEventListener changedNodes = new EconomicSetNodeEventListener(EnumSet.of(NodeEvent.NODE_ADDED));
+        try (NodeEventScope nes = graph.trackNodeEvents(changedNodes)) {
+            for (LoopBeginNode loopBegin : graph.getNodes(LoopBeginNode.TYPE)) {
+                if (loopBegin.getLoopEndCount() != 1) {
+                    continue;
+                }
+                LoopEndNode loopEnd = loopBegin.loopEnds().first();
+                for (ValuePhiNode phi : loopBegin.valuePhis().snapshot()) {
+                    reassociate(graph, phi, phi.valueAt(loopEnd));
+                }
+            }
+        }
+        if (!changedNodes.getNodes().isEmpty()) {
+            canonicalizer.applyIncremental(graph, context, changedNodes.getNodes());
+        }
+    }
+
+    private static void reassociate(StructuredGraph graph, ValuePhiNode phi, ValueNode backValue) {
+        if (!(phi.stamp(NodeView.DEFAULT) instanceof IntegerStamp) || !isReassociable(backValue)) {
+            return;
+        }
+        BinaryArithmeticNode<?> root = (BinaryArithmeticNode<?>) backValue;
+        List<ValueNode> operands = new ArrayList<>();
+        int phiDepth = collectOperands(root, root, phi, operands, 0);
+        if (phiDepth <= 1 || operands.size() < 2 || operands.contains(phi)) {
+            /* The accumulator is already combined last, or it is not a reduction of this chain. */
+            return;
+        }
+
+        ValueNode combined = combineBalanced(graph, root, operands, 0, operands.size());
+        ValueNode result = combine(graph, root, phi, combined);
+        DebugContext debug = graph.getDebug();
+        if (debug.isLogEnabled()) {
+            debug.log("%s : Re-associated reduction %s of %s into %s", graph.method() != null ? graph.method().format("%H::%n") : graph, root, phi, result);
+        }
+        REASSOCIATED_REDUCTIONS.increment(debug);
+        root.replaceAtUsages(result);
+        GraphUtil.killWithUnusedFloatingInputs(root);
+    }
+
+    private static boolean isReassociable(ValueNode node) {
+        if (!(node instanceof BinaryArithmeticNode) || !(node.stamp(NodeView.DEFAULT) instanceof IntegerStamp)) {
+            return false;
+        }
+        Class<?> c = node.getClass();
+        if (c != AddNode.class && c != MulNode.class && c != AndNode.class && c != OrNode.class && c != XorNode.class) {
+            /* Subclasses such as the exact arithmetic nodes have different semantics. */
+            return false;
+        }
+        BinaryArithmeticNode<?> binary = (BinaryArithmeticNode<?>) node;
+        return binary.isAssociative() && binary.getArithmeticOp().isCommutative();
+    }
+
+    /**
+     * Flattens the operation tree rooted at {@code root} into its operands, except for the
+     * accumulator {@code phi}. Only nodes of the same operation as the root whose sole usage is
+     * within the tree are flattened.
+     *
+     * @return the depth of the accumulator in the tree, or -1 if it does not occur in the tree
+     */
+    private static int collectOperands(BinaryArithmeticNode<?> root, ValueNode node, ValuePhiNode phi, List<ValueNode> operands, int depth) {
+        if (node == phi) {
+            return depth;
+        }
+        if (node != root && (node.getClass() != root.getClass() || !node.hasExactlyOneUsage() || !node.stamp(NodeView.DEFAULT).isCompatible(root.stamp(NodeView.DEFAULT)))) {
+            operands.add(node);
+            return -1;
+        }
+        BinaryArithmeticNode<?> binary = (BinaryArithmeticNode<?>) node;
+        int xDepth = collectOperands(root, binary.getX(), phi, operands, depth + 1);
+        int yDepth = collectOperands(root, binary.getY(), phi, operands, depth + 1);
+        if (xDepth >= 0 && yDepth >= 0) {
+            /* The accumulator occurs twice, e.g., sum = sum + sum. */
+            operands.add(phi);
+        }
+        return Math.max(xDepth, yDepth);
+    }
+
+    private static ValueNode combineBalanced(StructuredGraph graph, BinaryArithmeticNode<?> root, List<ValueNode> operands, int from, int to) {
+        if (to - from == 1) {
+            return operands.get(from);
+        }
+        int middle = (from + to) >>> 1;
+        return combine(graph, root, combineBalanced(graph, root, operands, from, middle), combineBalanced(graph, root, operands, middle, to));
+    }
+
+    private static ValueNode combine(StructuredGraph graph, BinaryArithmeticNode<?> root, ValueNode x, ValueNode y) {
+        NodeView view = NodeView.DEFAULT;
+        ValueNode result;
+        if (root instanceof AddNode) {
+            result = AddNode.create(x, y, view);
+        } else if (root instanceof MulNode) {
+            result = MulNode.create(x, y, view);
+        } else if (root instanceof AndNode) {
+            result = AndNode.create(x, y, view);
+        } else if (root instanceof OrNode) {
+            result = OrNode.create(x, y, view);
+        } else {
+            assert root instanceof XorNode : root;
+            result = XorNode.create(x, y, view);
+        }
+        return graph.addOrUniqueWithInputs(result);
+    }
+
+    @Override
+    public float codeSizeIncrease() {
+        return 1.0f;
+    }
+}
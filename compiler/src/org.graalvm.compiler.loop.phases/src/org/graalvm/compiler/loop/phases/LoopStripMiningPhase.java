@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.loop.phases;
+
+import static org.graalvm.compiler.core.common.GraalOptions.LoopStripMiningIterations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graalvm.compiler.core.common.GraalOptions;
+import org.graalvm.compiler.debug.CounterKey;
+import org.graalvm.compiler.debug.DebugContext;
+import org.graalvm.compiler.loop.LoopEx;
+import org.graalvm.compiler.loop.LoopsData;
+import org.graalvm.compiler.nodes.StructuredGraph;
+import org.graalvm.compiler.nodes.spi.CoreProviders;
+import org.graalvm.compiler.phases.BasePhase;
+
+/**
+ * Strip mines counted loops over {@code long} induction variables. Such loops keep their safepoint
+ * in {@link LoopSafepointEliminationPhase} because the number of iterations is not bounded by the
+ * range of an {@code int}. {@link LoopTransformations#stripMine Strip mining} moves the safepoint
+ * to an outer loop and leaves an inner loop with at most
+ * {@link GraalOptions#LoopStripMiningIterations} iterations that runs without a safepoint and can
+ * be partially unrolled.
+ *
+ * This phase runs after value proxies have been removed and before
+ * {@link org.graalvm.compiler.phases.common.LoopSafepointInsertionPhase safepoints are inserted}.
+ */
+public class LoopStripMiningPhase extends BasePhase<CoreProviders> {
+
+    private static final CounterKey STRIP_MINED_LOOPS = DebugContext.counter("StripMinedLoops");
+
+    @Override
+    protected void run(StructuredGraph graph, CoreProviders context) {
+        if (!graph.hasLoops() || graph.hasValueProxies()) {
+            return;
+        }
+        long iterations = LoopStripMiningIterations.getValue(graph.getOptions());
+        if (iterations <= 0) {
+            return;
+        }
+        LoopsData loops = new LoopsData(graph);
+        loops.detectedCountedLoops();
+        List<LoopEx> candidates = new ArrayList<>();
+        for (LoopEx loop : loops.countedLoops()) {
+            if (LoopTransformations.isStripMinableLoop(loop, iterations)) {
+                candidates.add(loop);
+            }
+        }
+        // Innermost loops are disjoint, so strip mining one does not affect the others.
+        for (LoopEx loop : candidates) {
+            LoopTransformations.stripMine(loop, iterations);
+            STRIP_MINED_LOOPS.increment(graph.getDebug());
+        }
+        loops.deleteUnusedNodes();
+    }
+
+    @Override
+    public float codeSizeIncrease() {
+        return 1.5f;
+    }
+}
@@ -31,6 +31,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.graalvm.collections.EconomicMap;
+import org.graalvm.collections.Equivalence;
 import org.graalvm.compiler.core.common.RetryableBailoutException;
 import org.graalvm.compiler.core.common.calc.CanonicalCondition;
 import org.graalvm.compiler.debug.DebugContext;
@@ -52,6 +53,7 @@ import org.graalvm.compiler.nodes.AbstractBeginNode;
 import org.graalvm.compiler.nodes.AbstractEndNode;
 import org.graalvm.compiler.nodes.AbstractMergeNode;
 import org.graalvm.compiler.nodes.BeginNode;
+import org.graalvm.compiler.nodes.ConstantNode;
 import org.graalvm.compiler.nodes.ControlSplitNode;
 import org.graalvm.compiler.nodes.EndNode;
 import org.graalvm.compiler.nodes.FixedGuardNode;
@@ -61,6 +63,7 @@ import org.graalvm.compiler.nodes.FrameState;
 import org.graalvm.compiler.nodes.IfNode;
 import org.graalvm.compiler.nodes.LogicNode;
 import org.graalvm.compiler.nodes.LoopBeginNode;
+import org.graalvm.compiler.nodes.LoopEndNode;
 import org.graalvm.compiler.nodes.LoopExitNode;
 import org.graalvm.compiler.nodes.NodeView;
 import org.graalvm.compiler.nodes.PhiNode;
@@ -73,6 +76,9 @@ import org.graalvm.compiler.nodes.VirtualState.NodePositionClosure;
 import org.graalvm.compiler.nodes.calc.AddNode;
 import org.graalvm.compiler.nodes.calc.CompareNode;
 import org.graalvm.compiler.nodes.calc.ConditionalNode;
+import org.graalvm.compiler.nodes.calc.IntegerBelowNode;
+import org.graalvm.compiler.nodes.calc.IntegerLessThanNode;
+import org.graalvm.compiler.nodes.calc.SubNode;
 import org.graalvm.compiler.nodes.extended.OpaqueNode;
 import org.graalvm.compiler.nodes.extended.SwitchNode;
 import org.graalvm.compiler.nodes.spi.CoreProviders;
@@ -564,6 +570,159 @@ public abstract class LoopTransformations {
         compareNode.replaceFirstInput(ub, compareNode.graph().addOrUniqueWithInputs(newLimit));
     }
 
+    /**
+     * Splits a counted loop with a {@code long} induction variable into an outer loop that keeps
+     * the safepoint and an inner loop that runs at most {@code iterations} iterations without a
+     * safepoint:
+     *
+     * <pre>
+     * for (long i = start; i < limit; i += stride) {
+     *     body(i);
+     * }
+     * </pre>
+     *
+     * becomes
+     *
+     * <pre>
+     * long i = start;
+     * do {
+     *     long innerLimit = (limit - i) |<| iterations * stride ? limit : i + iterations * stride;
+     *     for (; i < innerLimit; i += stride) {
+     *         body(i);
+     *     }
+     * } while (i < limit);
+     * </pre>
+     *
+     * where {@code innerLimit} falls back to {@code limit} if the loop is not entered. The inner
+     * loop is a simple counted loop again and thus subject to partial unrolling.
+     *
+     * The graph must not have value proxies and the loop must satisfy
+     * {@link #isStripMinableLoop(LoopEx, long)}.
+     */
+    public static void stripMine(LoopEx loop, long iterations) {
+        assert isStripMinableLoop(loop, iterations);
+        LoopBeginNode innerBegin = loop.loopBegin();
+        StructuredGraph graph = innerBegin.graph();
+        assert !graph.hasValueProxies() : "strip mining requires a graph without value proxies";
+        graph.getDebug().log("LoopTransformations.stripMine %s", loop);
+
+        CountedLoopInfo counted = loop.counted();
+        IfNode limitTest = counted.getLimitTest();
+        LoopExitNode innerExit = (LoopExitNode) counted.getCountedExit();
+        ValueNode limit = counted.getLimit();
+        PhiNode counterPhi = (PhiNode) counted.getCounter().valueNode();
+        long strideLength = Math.multiplyExact(iterations, Math.abs(counted.getCounter().constantStride()));
+
+        // Insert the outer loop header between the loop entry and the inner loop header.
+        AbstractEndNode innerEntry = innerBegin.forwardEnd();
+        LoopBeginNode outerBegin = graph.add(new LoopBeginNode());
+        EndNode outerEntry = graph.add(new EndNode());
+        innerEntry.replaceAtPredecessor(outerEntry);
+        outerBegin.addForwardEnd(outerEntry);
+        outerBegin.setNext(innerEntry);
+
+        LoopEndNode outerEnd = graph.add(new LoopEndNode(outerBegin));
+        EconomicMap<PhiNode, PhiNode> outerPhis = EconomicMap.create(Equivalence.IDENTITY);
+        for (PhiNode innerPhi : innerBegin.phis()) {
+            PhiNode outerPhi = innerPhi.duplicateOn(outerBegin);
+            outerPhi.addInput(innerPhi.valueAt(innerEntry));
+            outerPhi.addInput(innerPhi);
+            innerPhi.setValueAt(innerEntry, outerPhi);
+            outerPhis.put(innerPhi, outerPhi);
+        }
+        FrameState outerState = innerBegin.stateAfter().duplicateWithVirtualState();
+        outerState.applyToNonVirtual(new NodePositionClosure<Node>() {
+            @Override
+            public void apply(Node from, Position p) {
+                ValueNode value = (ValueNode) p.get(from);
+                if (innerBegin.isPhiAtMerge(value)) {
+                    p.set(from, outerPhis.get((PhiNode) value));
+                }
+            }
+        });
+        outerBegin.setStateAfter(outerState);
+
+        // The original exit test now decides whether another strip has to be executed.
+        FixedNode continuation = innerExit.next();
+        innerExit.setNext(null);
+        LoopExitNode outerExit = graph.add(new LoopExitNode(outerBegin));
+        if (innerExit.stateAfter() != null) {
+            outerExit.setStateAfter(innerExit.stateAfter().duplicateWithVirtualState());
+        }
+        outerExit.setNext(continuation);
+        AbstractBeginNode outerContinue = graph.add(new BeginNode());
+        outerContinue.setNext(outerEnd);
+        LogicNode outerCondition = limitTest.condition();
+        IfNode outerTest;
+        if (limitTest.trueSuccessor() == innerExit) {
+            outerTest = graph.add(new IfNode(outerCondition, outerExit, outerContinue, limitTest.getTrueSuccessorProbability()));
+        } else {
+            outerTest = graph.add(new IfNode(outerCondition, outerContinue, outerExit, limitTest.getTrueSuccessorProbability()));
+        }
+        innerExit.setNext(outerTest);
+
+        // Bound the inner loop to the current strip.
+        ValueNode start = outerPhis.get(counterPhi);
+        ValueNode strideLengthNode = ConstantNode.forIntegerStamp(start.stamp(NodeView.DEFAULT), strideLength);
+        ValueNode distance;
+        ValueNode stripLimit;
+        LogicNode entered;
+        if (counted.getDirection() == Direction.Up) {
+            distance = SubNode.create(limit, start, NodeView.DEFAULT);
+            stripLimit = AddNode.create(start, strideLengthNode, NodeView.DEFAULT);
+            entered = IntegerLessThanNode.create(start, limit, NodeView.DEFAULT);
+        } else {
+            distance = SubNode.create(start, limit, NodeView.DEFAULT);
+            stripLimit = SubNode.create(start, strideLengthNode, NodeView.DEFAULT);
+            entered = IntegerLessThanNode.create(limit, start, NodeView.DEFAULT);
+        }
+        ValueNode innerLimit = ConditionalNode.create(IntegerBelowNode.create(distance, strideLengthNode, NodeView.DEFAULT), limit, stripLimit, NodeView.DEFAULT);
+        innerLimit = ConditionalNode.create(entered, innerLimit, limit, NodeView.DEFAULT);
+        CompareNode innerCondition = (CompareNode) outerCondition.copyWithInputs();
+        innerCondition.replaceFirstInput(limit, graph.addOrUniqueWithInputs(innerLimit));
+        limitTest.setCondition(innerCondition);
+
+        outerBegin.setLoopFrequency(Math.max(1.0, innerBegin.loopFrequency() / iterations));
+        innerBegin.setLoopFrequency(Math.max(1.0, Math.min(innerBegin.loopFrequency(), iterations)));
+        innerBegin.disableSafepoint();
+        graph.getDebug().dump(DebugContext.DETAILED_LEVEL, graph, "StripMine %s", loop);
+    }
+
+    /**
+     * Determines if {@link #stripMine} can be applied to a loop, i.e., if it is an innermost
+     * counted loop over a {@code long} induction variable that is tested at the loop header and
+     * that has a safepoint to be removed.
+     */
+    public static boolean isStripMinableLoop(LoopEx loop, long iterations) {
+        if (!loop.isCounted() || !loop.counted().getCounter().isConstantStride() || !loop.loop().getChildren().isEmpty() || loop.counted().isUnsignedCheck()) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        if (!loopBegin.isSimpleLoop() || loopBegin.isOsrLoop() || !loopBegin.isSingleEntryLoop() || loopBegin.loopEnds().count() != 1 || loopBegin.loopExits().count() != 1 ||
+                        !loopBegin.getSingleLoopEnd().canSafepoint() || loopBegin.stateAfter() == null) {
+            return false;
+        }
+        CountedLoopInfo counted = loop.counted();
+        if (counted.getStamp().getBits() <= 32 || !(counted.getCountedExit() instanceof LoopExitNode) || loopBegin.next() != counted.getLimitTest()) {
+            return false;
+        }
+        if (!(counted.getLimitTest().condition() instanceof IntegerLessThanNode)) {
+            return false;
+        }
+        ValueNode counter = counted.getCounter().valueNode();
+        if (!(counter instanceof PhiNode) || !loopBegin.isPhiAtMerge(counter)) {
+            return false;
+        }
+        long stride = counted.getCounter().constantStride();
+        try {
+            Math.multiplyExact(iterations, Math.abs(Math.negateExact(stride)));
+        } catch (ArithmeticException ae) {
+            loopBegin.getDebug().log(DebugContext.VERBOSE_LEVEL, "isStripMinableLoop %s the strip length overflows %d", loopBegin, stride);
+            return false;
+        }
+        return true;
+    }
+
     public static List<ControlSplitNode> findUnswitchable(LoopEx loop) {
         List<ControlSplitNode> controls = null;
         ValueNode invariantValue = null;
@@ -27,6 +27,7 @@ package org.graalvm.compiler.loop.phases;
 import java.util.Iterator;
 import java.util.List;
 
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.CounterKey;
 import org.graalvm.compiler.debug.DebugContext;
 import org.graalvm.compiler.graph.Node;
@@ -49,7 +50,8 @@ public class LoopUnswitchingPhase extends ContextlessLoopPhase<LoopPolicies> {
     @Override
     protected void run(StructuredGraph graph) {
         DebugContext debug = graph.getDebug();
-        if (graph.hasLoops()) {
+        // unswitching duplicates whole loops, which makes all later phases more expensive
+        if (graph.hasLoops() && !CompilationBudget.current().degradePhase(debug, getName())) {
             boolean unswitched;
             do {
                 unswitched = false;
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.loop.test;
+
+import static org.graalvm.compiler.api.directives.GraalDirectives.injectBranchProbability;
+
+import org.graalvm.compiler.core.test.GraalCompilerTest;
+import org.graalvm.compiler.nodes.LoopBeginNode;
+import org.graalvm.compiler.nodes.LoopEndNode;
+import org.graalvm.compiler.nodes.StructuredGraph;
+import org.graalvm.compiler.nodes.ValueNode;
+import org.graalvm.compiler.nodes.ValuePhiNode;
+import org.graalvm.compiler.nodes.calc.BinaryArithmeticNode;
+import org.junit.Test;
+
+public class LoopReductionReassociationTest extends GraalCompilerTest {
+
+    /**
+     * Checks that the partially unrolled main loop combines the accumulator last, i.e., computes
+     * {@code phi + (a + b)} instead of {@code (phi + a) + b}, and that floating-point reductions
+     * are left alone.
+     */
+    @Override
+    protected void checkMidTierGraph(StructuredGraph graph) {
+        LoopBeginNode mainLoop = null;
+        for (LoopBeginNode loop : graph.getNodes(LoopBeginNode.TYPE)) {
+            if (loop.isMainLoop()) {
+                mainLoop = loop;
+            }
+        }
+        assertTrue(mainLoop != null, "expected a main loop");
+        LoopEndNode loopEnd = mainLoop.loopEnds().first();
+        boolean reassociated = false;
+        for (ValuePhiNode phi : mainLoop.valuePhis()) {
+            reassociated |= isReassociated(phi, phi.valueAt(loopEnd));
+        }
+        boolean floatingPoint = graph.method().getName().equals("doubleSumSnippet");
+        assertTrue(reassociated != floatingPoint, "%s reduction in %s", reassociated ? "unexpected reassociated" : "expected a reassociated", graph.method().getName());
+    }
+
+    private static boolean isReassociated(ValuePhiNode phi, ValueNode backValue) {
+        if (!(backValue instanceof BinaryArithmeticNode)) {
+            return false;
+        }
+        BinaryArithmeticNode<?> binary = (BinaryArithmeticNode<?>) backValue;
+        if (binary.getX() == phi) {
+            return binary.getY().getClass() == binary.getClass();
+        }
+        if (binary.getY() == phi) {
+            return binary.getX().getClass() == binary.getClass();
+        }
+        return false;
+    }
+
+    private static int[] intArray(int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 37 - 500;
+        }
+        return array;
+    }
+
+    private static long[] longArray(int length) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = i * 1000003L - 20000000L;
+        }
+        return array;
+    }
+
+    public static int sumSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; injectBranchProbability(0.99, i < a.length); i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static long dotProductSnippet(long[] a, long[] b) {
+        long sum = 0;
+        for (int i = 0; injectBranchProbability(0.99, i < a.length); i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public static int xorSnippet(int[] a) {
+        int hash = 0x12345678;
+        for (int i = 0; injectBranchProbability(0.99, i < a.length); i++) {
+            hash ^= a[i];
+        }
+        return hash;
+    }
+
+    public static int productSnippet(int[] a) {
+        int product = 1;
+        for (int i = 0; injectBranchProbability(0.99, i < a.length); i++) {
+            product *= a[i] | 1;
+        }
+        return product;
+    }
+
+    public static double doubleSumSnippet(double[] a) {
+        double sum = 0;
+        for (int i = 0; injectBranchProbability(0.99, i < a.length); i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    @Test
+    public void testSum() {
+        for (int i = 0; i < 40; i++) {
+            test("sumSnippet", intArray(i));
+        }
+    }
+
+    @Test
+    public void testDotProduct() {
+        for (int i = 0; i < 40; i++) {
+            test("dotProductSnippet", longArray(i), longArray(i));
+        }
+    }
+
+    @Test
+    public void testXor() {
+        for (int i = 0; i < 40; i++) {
+            test("xorSnippet", intArray(i));
+        }
+    }
+
+    @Test
+    public void testProduct() {
+        for (int i = 0; i < 40; i++) {
+            test("productSnippet", intArray(i));
+        }
+    }
+
+    @Test
+    public void testDoubleSum() {
+        double[] array = new double[37];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = 1.0 / (i + 1);
+        }
+        test("doubleSumSnippet", array);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.loop.test;
+
+import org.graalvm.compiler.core.common.GraalOptions;
+import org.graalvm.compiler.core.test.GraalCompilerTest;
+import org.graalvm.compiler.loop.LoopEx;
+import org.graalvm.compiler.loop.LoopsData;
+import org.graalvm.compiler.nodes.LoopEndNode;
+import org.graalvm.compiler.nodes.StructuredGraph;
+import org.graalvm.compiler.options.OptionValues;
+import org.junit.Test;
+
+public class LoopStripMiningTest extends GraalCompilerTest {
+
+    private static final long[] LIMITS = {Long.MIN_VALUE, -7, -1, 0, 1, 2, 3, 4, 5, 6, 7, 8, 13, 100};
+
+    private OptionValues stripMiningOptions(int iterations) {
+        return new OptionValues(getInitialOptions(), GraalOptions.LoopStripMining, true, GraalOptions.LoopStripMiningIterations, iterations);
+    }
+
+    /**
+     * Checks that the loop was strip mined: an inner loop without safepoints nested in an outer
+     * loop that keeps its safepoint.
+     */
+    @Override
+    protected void checkMidTierGraph(StructuredGraph graph) {
+        LoopsData loops = new LoopsData(graph);
+        for (LoopEx loop : loops.loops()) {
+            if (loop.parent() != null && canSafepoint(loop.parent()) && !canSafepoint(loop)) {
+                return;
+            }
+        }
+        fail("expected a strip mined loop");
+    }
+
+    private static boolean canSafepoint(LoopEx loop) {
+        for (LoopEndNode loopEnd : loop.loopBegin().loopEnds()) {
+            if (loopEnd.canSafepoint()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static long countUpSnippet(long start, long limit) {
+        long sum = 0;
+        for (long i = start; i < limit; i++) {
+            sum += i * 31 + 7;
+        }
+        return sum;
+    }
+
+    public static long countUpStrideSnippet(long start, long limit) {
+        long sum = 0;
+        for (long i = start; i < limit; i += 3) {
+            sum = sum * 17 + i;
+        }
+        return sum;
+    }
+
+    public static long countDownSnippet(long start, long limit) {
+        long sum = 0;
+        for (long i = start; i > limit; i -= 2) {
+            sum = sum * 13 + i;
+        }
+        return sum;
+    }
+
+    public static long countUpIncludedSnippet(long start, long limit) {
+        long sum = 0;
+        for (long i = start; i <= limit; i++) {
+            sum = sum * 7 + i;
+        }
+        return sum;
+    }
+
+    public static long arraySumSnippet(int[] array, long length) {
+        long sum = 0;
+        for (long i = 0; i < length; i++) {
+            sum += array[(int) i];
+        }
+        return sum;
+    }
+
+    private void testRange(String name) {
+        for (int iterations : new int[]{1, 3, 4, Integer.MAX_VALUE}) {
+            OptionValues options = stripMiningOptions(iterations);
+            for (long limit : LIMITS) {
+                test(options, name, 0L, limit);
+                test(options, name, -5L, limit);
+                test(options, name, limit - 9, limit);
+            }
+        }
+    }
+
+    @Test
+    public void testCountUp() {
+        testRange("countUpSnippet");
+        test(stripMiningOptions(4), "countUpSnippet", Long.MAX_VALUE - 10, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testCountUpStride() {
+        testRange("countUpStrideSnippet");
+        test(stripMiningOptions(4), "countUpStrideSnippet", Long.MAX_VALUE - 20, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testCountDown() {
+        testRange("countDownSnippet");
+        test(stripMiningOptions(4), "countDownSnippet", Long.MIN_VALUE + 20, Long.MIN_VALUE);
+    }
+
+    @Test
+    public void testCountUpIncluded() {
+        testRange("countUpIncludedSnippet");
+    }
+
+    /** The default number of inner iterations, with loops that run several strips. */
+    @Test
+    public void testDefaultIterations() {
+        OptionValues options = new OptionValues(getInitialOptions(), GraalOptions.LoopStripMining, true);
+        for (long limit : new long[]{999, 1000, 1001, 2500}) {
+            test(options, "countUpSnippet", 0L, limit);
+            test(options, "countDownSnippet", limit, -limit);
+        }
+    }
+
+    @Test
+    public void testArraySum() {
+        int[] array = new int[50];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = i * 1001 - 25000;
+        }
+        for (int iterations : new int[]{1, 3, 8, Integer.MAX_VALUE}) {
+            for (long length = 0; length <= array.length; length += 7) {
+                test(stripMiningOptions(iterations), "arraySumSnippet", array, length);
+            }
+        }
+    }
+}
@@ -25,7 +25,10 @@
 package org.graalvm.compiler.microbenchmarks.lir;
 
 import org.graalvm.compiler.lir.gen.LIRGenerationResult;
+import org.graalvm.compiler.lir.phases.LIRSuites;
+import org.graalvm.compiler.lir.phases.LocalAllocationStage;
 import org.graalvm.compiler.microbenchmarks.graal.GraalBenchmark;
+import org.graalvm.compiler.options.OptionValues;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Param;
 
@@ -36,6 +39,21 @@ public class RegisterAllocationTimeBenchmark extends GraalBenchmark {
                         "java.lang.String#equals",
                         "java.util.HashMap#computeIfAbsent"
         }) public String method;
+
+        /**
+         * The register allocator to measure: {@code LinearScan} uses the allocation stage of the
+         * default LIR suites, {@code Local} the {@link LocalAllocationStage}.
+         */
+        @Param({"LinearScan", "Local"}) public String allocator;
+
+        @Override
+        protected LIRSuites createLIRSuites(OptionValues opts) {
+            LIRSuites lirSuites = super.createLIRSuites(opts);
+            if (allocator.equals("Local")) {
+                return new LIRSuites(lirSuites.getPreAllocationOptimizationStage(), new LocalAllocationStage(opts), lirSuites.getPostAllocationOptimizationStage());
+            }
+            return lirSuites;
+        }
     }
 
     @Benchmark
@@ -26,6 +26,7 @@ package org.graalvm.compiler.phases.common;
 
 import org.graalvm.compiler.core.common.GraalOptions;
 import org.graalvm.compiler.core.common.PermanentBailoutException;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.TTY;
 import org.graalvm.compiler.graph.Graph.NodeEventScope;
 import org.graalvm.compiler.graph.Node;
@@ -51,7 +52,7 @@ public class IterativeConditionalEliminationPhase extends BasePhase<CoreProvider
     @Override
     @SuppressWarnings("try")
     protected void run(StructuredGraph graph, CoreProviders context) {
-        final int maxIterations = GraalOptions.ConditionalEliminationMaxIterations.getValue(graph.getOptions());
+        final int maxIterations = CompilationBudget.current().degradePhase(graph.getDebug(), getName()) ? 1 : GraalOptions.ConditionalEliminationMaxIterations.getValue(graph.getOptions());
         EconomicSetNodeEventListener listener = new EconomicSetNodeEventListener();
         int count = 0;
 
@@ -39,6 +39,7 @@ import org.graalvm.collections.EconomicMap;
 import org.graalvm.compiler.api.replacements.SnippetReflectionProvider;
 import org.graalvm.compiler.core.common.CompilationIdentifier;
 import org.graalvm.compiler.core.common.type.StampPair;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.DebugCloseable;
 import org.graalvm.compiler.debug.DebugContext;
 import org.graalvm.compiler.debug.Indent;
@@ -337,7 +338,7 @@ public abstract class PartialEvaluator {
 
     @SuppressWarnings("try")
     public final StructuredGraph evaluate(Request request) {
-        try (PerformanceInformationHandler handler = PerformanceInformationHandler.install(request.options)) {
+        try (PerformanceInformationHandler handler = PerformanceInformationHandler.install(request.options); DebugCloseable budget = CompilationBudget.suspend()) {
             try (DebugContext.Scope s = request.debug.scope("CreateGraph", request.graph);
                             Indent indent = request.debug.logAndIndent("evaluate %s", request.graph);) {
                 inliningGraphPE(request);
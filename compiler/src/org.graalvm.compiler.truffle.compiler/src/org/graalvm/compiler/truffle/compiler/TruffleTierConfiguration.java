@@ -68,4 +68,12 @@ public final class TruffleTierConfiguration {
     public LIRSuites lirSuites() {
         return lirSuites;
     }
+
+    /**
+     * Returns a copy of this tier that compiles with the given LIR suites, e.g., to select a
+     * different register allocator for this tier.
+     */
+    public TruffleTierConfiguration withLIRSuites(LIRSuites newLirSuites) {
+        return new TruffleTierConfiguration(configuration, backend, providers, suites, newLirSuites);
+    }
 }
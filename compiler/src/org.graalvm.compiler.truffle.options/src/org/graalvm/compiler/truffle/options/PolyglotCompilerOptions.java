@@ -292,6 +292,9 @@ public final class PolyglotCompilerOptions {
     @Option(help = "Whether to use the economy configuration in the first-tier compilations.", category = OptionCategory.EXPERT)
     public static final OptionKey<Boolean> FirstTierUseEconomy = new OptionKey<>(true);
 
+    @Option(help = "Whether to use the local register allocator, which is faster but produces slower code than linear scan, in the first-tier compilations.", category = OptionCategory.EXPERT)
+    public static final OptionKey<Boolean> FirstTierUseLocalRegisterAllocator = new OptionKey<>(false);
+
     @Option(help = "Whether to emit look-back-edge counters in the first-tier compilations.", category = OptionCategory.EXPERT)
     public static final OptionKey<Boolean> FirstTierBackedgeCounts = new OptionKey<>(true);
 
@@ -483,10 +486,24 @@ public final class PolyglotCompilerOptions {
             category = OptionCategory.EXPERT)
     public static final OptionKey<Integer> EncodedGraphCachePurgeDelay = new OptionKey<>(10_000);
 
+    @Option(help = "Path of a file that records which call targets were compiled. After a restart, call targets whose source and AST shape match a record " +
+            "are compiled on their first call instead of after reaching the compilation thresholds. Disabled if empty.", category = OptionCategory.EXPERT)
+    public static final OptionKey<String> CompilationProfileCache = new OptionKey<>("");
+
     // Compilation queue
     @Option(help = "Use the priority of compilation jobs in the compilation queue.", category = OptionCategory.INTERNAL)
     public static final OptionKey<Boolean> PriorityQueue = new OptionKey<>(true);
 
+    @Option(help = "Select compilation jobs by their recent call and loop counts instead of the counts at the time they were queued, " +
+            "and share the compiler threads fairly between engines.", category = OptionCategory.INTERNAL)
+    public static final OptionKey<Boolean> TraversingCompilationQueue = new OptionKey<>(false);
+
+    @Option(help = "Half-life, in milliseconds, of the call and loop counts that weight queued compilation jobs.", category = OptionCategory.INTERNAL)
+    public static final OptionKey<Integer> TraversingQueueWeightHalfLife = new OptionKey<>(1000);
+
+    @Option(help = "Dequeue compilation jobs whose targets are no longer called frequently. They are queued again once they become hot.", category = OptionCategory.INTERNAL)
+    public static final OptionKey<Boolean> TraversingQueueDropColdTargets = new OptionKey<>(false);
+
     // Language agnostic inlining
 
     @Option(help = "Print detailed information for inlining (i.e. the entire explored call tree).", category = OptionCategory.INTERNAL)
@@ -52,13 +52,17 @@ import org.graalvm.compiler.truffle.options.PolyglotCompilerOptions;
  * (first-in-first-out).
  *
  * Note that all the compilation requests are second tier when the multi-tier option is turned off.
+ *
+ * With {@link PolyglotCompilerOptions#TraversingCompilationQueue}, requests of the same tier are
+ * instead ordered by their recent call and loop counts, cold requests are dropped and the compiler
+ * threads are shared fairly between engines, see {@link TraversingBlockingQueue}.
  */
 public class BackgroundCompileQueue {
 
     protected final GraalTruffleRuntime runtime;
     private final AtomicLong idCounter;
     private volatile ThreadPoolExecutor compilationExecutorService;
-    private volatile IdlingPriorityBlockingQueue<Runnable> compilationQueue;
+    private volatile BlockingQueue<Runnable> compilationQueue;
     private boolean shutdown = false;
     private long delayMillis;
 
@@ -129,15 +133,36 @@ public class BackgroundCompileQueue {
             long compilerIdleDelay = runtime.getCompilerIdleDelay(callTarget);
             long keepAliveTime = compilerIdleDelay >= 0 ? compilerIdleDelay : 0;
 
-            this.compilationQueue = new IdlingPriorityBlockingQueue<>();
+            BlockingQueue<Runnable> queue;
+            if (callTarget.getOptionValue(PolyglotCompilerOptions.TraversingCompilationQueue)) {
+                queue = new IdlingTraversingBlockingQueue(threads, callTarget.getOptionValue(PolyglotCompilerOptions.TraversingQueueWeightHalfLife),
+                                callTarget.getOptionValue(PolyglotCompilerOptions.TraversingQueueDropColdTargets));
+            } else {
+                queue = new IdlingPriorityBlockingQueue<>();
+            }
+            this.compilationQueue = queue;
             ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads,
                             keepAliveTime, TimeUnit.MILLISECONDS,
-                            compilationQueue, factory) {
+                            queue, factory) {
                 @Override
                 @SuppressWarnings({"unchecked"})
                 protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
                     return (RunnableFuture<T>) new CompilationTask.ExecutorServiceWrapper((CompilationTask) callable);
                 }
+
+                @Override
+                protected void beforeExecute(Thread t, Runnable r) {
+                    if (queue instanceof TraversingBlockingQueue) {
+                        ((TraversingBlockingQueue) queue).beforeExecute(r);
+                    }
+                }
+
+                @Override
+                protected void afterExecute(Runnable r, Throwable t) {
+                    if (queue instanceof TraversingBlockingQueue) {
+                        ((TraversingBlockingQueue) queue).afterExecute(r);
+                    }
+                }
             };
 
             if (compilerIdleDelay > 0) {
@@ -199,7 +224,7 @@ public class BackgroundCompileQueue {
      * compiled.
      */
     public Collection<OptimizedCallTarget> getQueuedTargets(EngineData engine) {
-        IdlingPriorityBlockingQueue<Runnable> queue = this.compilationQueue;
+        BlockingQueue<Runnable> queue = this.compilationQueue;
         if (queue == null) {
             // queue not initialized
             return Collections.emptyList();
@@ -322,4 +347,29 @@ public class BackgroundCompileQueue {
         }
     }
 
+    /**
+     * {@link TraversingBlockingQueue} with the idling notification of
+     * {@link IdlingPriorityBlockingQueue}.
+     */
+    private final class IdlingTraversingBlockingQueue extends TraversingBlockingQueue {
+
+        IdlingTraversingBlockingQueue(int threads, long halfLifeMillis, boolean dropColdTargets) {
+            super(threads, halfLifeMillis, dropColdTargets);
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            while (!compilationExecutorService.allowsCoreThreadTimeOut()) {
+                Runnable elem = poll(delayMillis, TimeUnit.MILLISECONDS);
+                if (elem == null) {
+                    compilerThreadIdled();
+                } else {
+                    return elem;
+                }
+            }
+            // Fallback to blocking version.
+            return super.take();
+        }
+    }
+
 }
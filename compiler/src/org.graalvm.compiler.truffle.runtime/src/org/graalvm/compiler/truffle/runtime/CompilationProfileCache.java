@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.truffle.runtime;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import org.graalvm.compiler.truffle.runtime.OptimizedOSRLoopNode.OSRRootNode;
+
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.NodeVisitor;
+import com.oracle.truffle.api.nodes.RootNode;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
+
+/**
+ * Records which call targets of an engine were compiled and stores the records in the file given by
+ * {@link org.graalvm.compiler.truffle.options.PolyglotCompilerOptions#CompilationProfileCache} when
+ * the engine is closed. When an engine of a later process loads the file, call targets that match
+ * a record are compiled on their first call instead of after reaching the compilation thresholds,
+ * which shortens the warmup after restarts.
+ *
+ * A call target matches a record if the {@linkplain #computeKey key} of its first call is equal,
+ * i.e., if it has the same language, source, source location and AST shape. Only the AST shape is
+ * computed on the first call, as the shape changes when the AST is specialized. The key is built
+ * from it when it is first needed, i.e., on the first call only if there are records to match,
+ * and otherwise when the call target is compiled. The source is identified by
+ * {@link Source#hashCode()}, which is computed from its content once per source and is stable
+ * across processes. Compiled code itself is not stored because it embeds heap constants of the
+ * process that compiled it. Records that do not match any call target are harmless and records of
+ * a file with a different format or runtime are discarded when the file is loaded.
+ *
+ * @see CompilationProfileCacheSupport
+ */
+final class CompilationProfileCache {
+
+    private static final String HEADER = "# Truffle compilation profile cache, version 2, ";
+
+    private final Path file;
+    private final String header;
+    /** Maps keys to {@code true} if the call target reached the last tier. */
+    private final Map<String, Boolean> records = new ConcurrentHashMap<>();
+
+    private CompilationProfileCache(Path file) {
+        this.file = file;
+        this.header = HEADER + GraalTruffleRuntime.getRuntime().getName();
+    }
+
+    static CompilationProfileCache load(EngineData engine, String fileName) {
+        CompilationProfileCache cache = new CompilationProfileCache(Paths.get(fileName));
+        try (BufferedReader reader = Files.newBufferedReader(cache.file, StandardCharsets.UTF_8)) {
+            if (!cache.header.equals(reader.readLine())) {
+                engine.getEngineLogger().log(Level.INFO, "Discarding compilation profile cache " + fileName + " written by a different runtime.");
+                return cache;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    cache.records.put(line.substring(separator + 1), line.charAt(0) == 'L');
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // nothing was stored yet
+        } catch (IOException e) {
+            engine.getEngineLogger().log(Level.WARNING, "Could not read compilation profile cache " + fileName + ": " + e);
+            cache.records.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Stores the records. The file is replaced atomically so that concurrently starting processes
+     * never read a partially written file.
+     */
+    void store(EngineData engine) {
+        try {
+            Path absolute = file.toAbsolutePath();
+            Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    writer.write(header);
+                    writer.newLine();
+                    for (Map.Entry<String, Boolean> record : records.entrySet()) {
+                        writer.write(record.getValue() ? "L " : "F ");
+                        writer.write(record.getKey());
+                        writer.newLine();
+                    }
+                }
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            engine.getEngineLogger().log(Level.WARNING, "Could not write compilation profile cache " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Called on the first call of {@code target}. Records its AST shape and, if the key of the call
+     * target matches a record, makes this call compile it.
+     */
+    void onTargetInitialized(OptimizedCallTarget target) {
+        RootNode rootNode = target.getRootNode();
+        if (rootNode instanceof OSRRootNode || !hasSource(rootNode)) {
+            return;
+        }
+        ShapeHash shape = new ShapeHash();
+        rootNode.accept(shape);
+        /* 0 means that no shape was recorded. */
+        target.compilationProfileShape = shape.hash == 0 ? 1 : shape.hash;
+        if (!records.isEmpty()) {
+            Boolean lastTier = records.get(key(target));
+            if (lastTier != null) {
+                target.setCompilationProfile(lastTier);
+            }
+        }
+    }
+
+    void onCompilationSuccess(OptimizedCallTarget target) {
+        if (target.compilationProfileShape != 0) {
+            records.merge(key(target), target.isValidLastTier(), Boolean::logicalOr);
+        }
+    }
+
+    private static String key(OptimizedCallTarget target) {
+        String key = target.compilationProfileKey;
+        if (key == null) {
+            key = computeKey(target.getRootNode(), target.compilationProfileShape);
+            target.compilationProfileKey = key;
+        }
+        return key;
+    }
+
+    private static boolean hasSource(RootNode rootNode) {
+        SourceSection section = rootNode.getSourceSection();
+        return section != null && section.isAvailable();
+    }
+
+    /**
+     * Computes a key that identifies the call target of {@code rootNode} across processes from the
+     * hash of its AST shape on the first call.
+     */
+    static String computeKey(RootNode rootNode, int shapeHash) {
+        SourceSection section = rootNode.getSourceSection();
+        Source source = section.getSource();
+        StringBuilder key = new StringBuilder();
+        key.append(source.getLanguage()).append(' ');
+        key.append(Integer.toHexString(source.hashCode())).append(' ');
+        key.append(Integer.toHexString(shapeHash)).append(' ');
+        key.append(section.getCharIndex()).append(' ').append(section.getCharLength()).append(' ');
+        key.append(source.getName()).append(' ').append(rootNode.getName());
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == '\n' || key.charAt(i) == '\r') {
+                key.setCharAt(i, ' ');
+            }
+        }
+        return key.toString();
+    }
+
+    /** Hashes the classes of all nodes of a tree in pre-order. */
+    private static final class ShapeHash implements NodeVisitor {
+        int hash = 1;
+
+        @Override
+        public boolean visit(Node node) {
+            hash = 31 * hash + node.getClass().getName().hashCode();
+            return true;
+        }
+    }
+}
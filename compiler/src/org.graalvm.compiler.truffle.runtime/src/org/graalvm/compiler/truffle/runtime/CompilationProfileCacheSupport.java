@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.truffle.runtime;
+
+import java.util.function.Function;
+
+import org.graalvm.compiler.truffle.common.TruffleCompilerListener.CompilationResultInfo;
+import org.graalvm.compiler.truffle.common.TruffleCompilerListener.GraphInfo;
+import org.graalvm.compiler.truffle.options.PolyglotCompilerOptions;
+import org.graalvm.options.OptionDescriptors;
+import org.graalvm.options.OptionValues;
+
+import com.oracle.truffle.api.TruffleLogger;
+
+/**
+ * Engine cache support that maintains a {@link CompilationProfileCache} for every engine that sets
+ * {@link PolyglotCompilerOptions#CompilationProfileCache}. It does not support storing or loading
+ * whole engines, so providers with a higher priority that do replace it.
+ */
+public final class CompilationProfileCacheSupport implements EngineCacheSupport {
+
+    private volatile boolean listenerRegistered;
+
+    @Override
+    public void onEngineCreated(EngineData e) {
+        String fileName = e.engineOptions.get(PolyglotCompilerOptions.CompilationProfileCache);
+        if (fileName.isEmpty()) {
+            e.compilationProfileCache = null;
+            return;
+        }
+        registerListener();
+        e.compilationProfileCache = CompilationProfileCache.load(e, fileName);
+    }
+
+    @Override
+    public void onEnginePatch(EngineData e) {
+        onEngineCreated(e);
+    }
+
+    @Override
+    public boolean onEngineClosing(EngineData e) {
+        return false;
+    }
+
+    @Override
+    public void onEngineClosed(EngineData e) {
+        CompilationProfileCache cache = e.compilationProfileCache;
+        if (cache != null) {
+            cache.store(e);
+            e.compilationProfileCache = null;
+        }
+    }
+
+    @Override
+    public boolean isStoreEnabled(OptionValues options) {
+        return false;
+    }
+
+    @Override
+    public Object tryLoadingCachedEngine(OptionValues options, Function<String, TruffleLogger> loggerFactory) {
+        return null;
+    }
+
+    private synchronized void registerListener() {
+        if (!listenerRegistered) {
+            GraalTruffleRuntime.getRuntime().addListener(new GraalTruffleRuntimeListener() {
+                @Override
+                public void onCompilationSuccess(OptimizedCallTarget target, TruffleInlining inliningDecision, GraphInfo graph, CompilationResultInfo result) {
+                    CompilationProfileCache cache = target.engine.compilationProfileCache;
+                    if (cache != null) {
+                        cache.onCompilationSuccess(target);
+                    }
+                }
+            });
+            listenerRegistered = true;
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        // above EngineCacheSupport.Disabled only
+        return Integer.MIN_VALUE + 1;
+    }
+
+    @Override
+    public OptionDescriptors getEngineOptions() {
+        return OptionDescriptors.EMPTY;
+    }
+}
@@ -40,7 +40,14 @@ import com.oracle.truffle.api.Truffle;
 
 public final class CompilationTask implements TruffleCompilationTask, Callable<Void>, Comparable<CompilationTask> {
 
+    /**
+     * A queued compilation is considered cold once its weight has decayed below this fraction of
+     * the weight it was queued with, i.e., after four half-lives without calls.
+     */
+    private static final int COLD_WEIGHT_FRACTION = 16;
+
     final WeakReference<OptimizedCallTarget> targetRef;
+    private final EngineData engineData;
     private final BackgroundCompileQueue.Priority priority;
     private final boolean multiTier;
     private final boolean priorityQueue;
@@ -49,6 +56,11 @@ public final class CompilationTask implements TruffleCompilationTask, Callable<V
     private volatile Future<?> future;
     private volatile boolean cancelled;
     private volatile boolean started;
+    // Guarded by the lock of the TraversingBlockingQueue that holds this task.
+    private final double initialWeight;
+    private double weight;
+    private int lastCount;
+    private long lastTime;
     private static final Consumer<CompilationTask> compilationAction = new Consumer<CompilationTask>() {
         @Override
         public void accept(CompilationTask task) {
@@ -79,6 +91,11 @@ public final class CompilationTask implements TruffleCompilationTask, Callable<V
         OptimizedCallTarget target = targetRef.get();
         priorityQueue = target != null && target.getOptionValue(PolyglotCompilerOptions.PriorityQueue);
         multiTier = target != null && target.getOptionValue(PolyglotCompilerOptions.MultiTier);
+        engineData = target != null ? target.engine : null;
+        initialWeight = priority.value;
+        weight = priority.value;
+        lastCount = target != null ? target.getCallAndLoopCount() : 0;
+        lastTime = System.nanoTime();
     }
 
     public void awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
@@ -125,6 +142,61 @@ public final class CompilationTask implements TruffleCompilationTask, Callable<V
         return cancelled;
     }
 
+    /**
+     * The engine of the target, or {@code null} if the target was already collected when the task
+     * was created.
+     */
+    EngineData getEngineData() {
+        return engineData;
+    }
+
+    /**
+     * Decays the weight of this task by the time passed since the last update and adds the calls
+     * and loop iterations of the target since then. Returns {@code false} if the target was
+     * collected.
+     */
+    boolean updateWeight(long currentTime, long halfLifeNanos) {
+        OptimizedCallTarget target = targetRef.get();
+        if (target == null) {
+            return false;
+        }
+        int count = target.getCallAndLoopCount();
+        long elapsed = currentTime - lastTime;
+        if (elapsed > 0) {
+            weight *= Math.pow(0.5, (double) elapsed / halfLifeNanos);
+            lastTime = currentTime;
+        }
+        weight += Math.max(0, count - lastCount);
+        lastCount = count;
+        return true;
+    }
+
+    /**
+     * Whether the target of this compilation stopped being called frequently while it was queued.
+     * Initializations are never cold.
+     */
+    boolean isCold() {
+        return priority.tier != BackgroundCompileQueue.Priority.Tier.INITIALIZATION && weight < initialWeight / COLD_WEIGHT_FRACTION;
+    }
+
+    /**
+     * Like {@link #compareTo}, but orders tasks of the same tier by their
+     * {@linkplain #updateWeight current weight} instead of their weight when queued.
+     */
+    boolean isHigherPriorityThan(CompilationTask that) {
+        int tierCompare = priority.tier.compareTo(that.priority.tier);
+        if (tierCompare != 0) {
+            return tierCompare < 0;
+        }
+        if (priorityQueueEnabled()) {
+            int weightCompare = Double.compare(weight, that.weight);
+            if (weightCompare != 0) {
+                return weightCompare > 0;
+            }
+        }
+        return id < that.id;
+    }
+
     @Override
     public boolean isLastTier() {
         return priority.tier == BackgroundCompileQueue.Priority.Tier.LAST;
@@ -187,7 +259,7 @@ public final class CompilationTask implements TruffleCompilationTask, Callable<V
      * {@link CompilationTask}) to be converted into a {@link FutureTask} we use this wrapper around
      * the {@link CompilationTask} just for compatibility with the executor.
      */
-    static class ExecutorServiceWrapper extends FutureTask<Void> implements Comparable<ExecutorServiceWrapper> {
+    static class ExecutorServiceWrapper extends FutureTask<Void> implements Comparable<ExecutorServiceWrapper>, TraversingBlockingQueue.Task {
         final CompilationTask compileTask;
 
         ExecutorServiceWrapper(CompilationTask compileTask) {
@@ -200,6 +272,34 @@ public final class CompilationTask implements TruffleCompilationTask, Callable<V
             return this.compileTask.compareTo(that.compileTask);
         }
 
+        @Override
+        public Object getEngine() {
+            return compileTask.getEngineData();
+        }
+
+        @Override
+        public boolean updateWeight(long currentTime, long halfLifeNanos) {
+            return !isCancelled() && !compileTask.isCancelled() && compileTask.updateWeight(currentTime, halfLifeNanos);
+        }
+
+        @Override
+        public boolean isCold() {
+            return compileTask.isCold();
+        }
+
+        @Override
+        public boolean isHigherPriorityThan(TraversingBlockingQueue.Task other) {
+            return compileTask.isHigherPriorityThan(((ExecutorServiceWrapper) other).compileTask);
+        }
+
+        @Override
+        public void cancelCold() {
+            OptimizedCallTarget target = compileTask.targetRef.get();
+            if (target != null) {
+                target.cancelCompilation("Target is no longer hot.");
+            }
+        }
+
         @Override
         public String toString() {
             return "ExecutorServiceWrapper(" + compileTask + ")";
@@ -93,6 +93,8 @@ public final class EngineData {
     public final long id;
     private Function<String, TruffleLogger> loggerFactory;
     @CompilationFinal OptionValues engineOptions;
+    /** Set by {@link CompilationProfileCacheSupport} if enabled for this engine. */
+    volatile CompilationProfileCache compilationProfileCache;
     final TruffleSplittingStrategy.SplitStatisticsData splittingStatistics;
     @CompilationFinal public StatisticsListener statisticsListener;
 
@@ -299,6 +299,18 @@ public abstract class OptimizedCallTarget implements CompilableTruffleAST, RootC
      */
     private volatile int cachedNonTrivialNodeCount = -1;
 
+    /**
+     * Hash of the AST shape of this call target on its first call if its engine has a
+     * {@link CompilationProfileCache}, otherwise 0.
+     */
+    volatile int compilationProfileShape;
+
+    /**
+     * Identifies this call target in the {@link CompilationProfileCache} of its engine. Computed
+     * from {@link #compilationProfileShape} when it is first needed.
+     */
+    volatile String compilationProfileKey;
+
     /**
      * Number of known direct call sites of this call target. Used in splitting and inlinig
      * heuristics.
@@ -391,6 +403,21 @@ public abstract class OptimizedCallTarget implements CompilableTruffleAST, RootC
         this.callAndLoopCount = 0;
     }
 
+    /**
+     * Raises the call counts to the compilation thresholds so that the next call compiles this
+     * target, and with {@code lastTier} also the first tier code compiles the last tier right away.
+     */
+    final void setCompilationProfile(boolean lastTier) {
+        int calls = engine.callThresholdInInterpreter;
+        int callsAndLoops = engine.callAndLoopThresholdInInterpreter;
+        if (lastTier && engine.multiTier) {
+            calls = Math.max(calls, engine.callThresholdInFirstTier);
+            callsAndLoops = Math.max(callsAndLoops, engine.callAndLoopThresholdInFirstTier);
+        }
+        this.callCount = Math.max(this.callCount, calls);
+        this.callAndLoopCount = Math.max(this.callAndLoopCount, callsAndLoops);
+    }
+
     @Override
     @TruffleBoundary
     public final Object call(Object... args) {
@@ -595,6 +622,10 @@ public abstract class OptimizedCallTarget implements CompilableTruffleAST, RootC
                 this.uninitializedRootNode = NodeUtil.cloneNode(rootNode);
             }
             GraalRuntimeAccessor.INSTRUMENT.onFirstExecution(getRootNode(), validate);
+            CompilationProfileCache profileCache = engine.compilationProfileCache;
+            if (profileCache != null) {
+                profileCache.onTargetInitialized(this);
+            }
             if (engine.callTargetStatistics) {
                 this.initializedTimestamp = System.nanoTime();
             } else {
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.truffle.runtime;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A compilation queue that selects the next task by traversing all queued tasks, which allows
+ * ordering them by information that changes while they are queued. A {@link java.util.concurrent.PriorityBlockingQueue}
+ * cannot do that because it orders its elements when they are inserted.
+ *
+ * When a compiler thread takes a task, this queue:
+ * <ul>
+ * <li>{@linkplain Task#updateWeight updates the weight} of all queued tasks, i.e., decays
+ * their call and loop counts and adds the counts since the last update, so that targets which are
+ * hot now are compiled before targets which were hot when they were queued. Updating all weights
+ * is much more expensive than selecting a task, so it is done at most
+ * {@value #WEIGHT_UPDATES_PER_HALF_LIFE} times per half-life; takes in between select by the
+ * weights of the last update;</li>
+ * <li>optionally cancels tasks whose targets have become {@linkplain Task#isCold cold},
+ * so that their targets are queued again once they become hot again. Cancelled tasks are handed
+ * out first because running them only completes their futures;</li>
+ * <li>prefers tasks of engines that have fewer compilations in progress than their fair share of
+ * the compiler threads, so that a busy engine cannot starve the other engines of the runtime.</li>
+ * </ul>
+ *
+ * The compiler threads must report the tasks they {@linkplain #beforeExecute start} and
+ * {@linkplain #afterExecute finish}, including tasks that a thread pool hands to a new worker
+ * directly instead of queueing them.
+ */
+public class TraversingBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /**
+     * A task held by a {@link TraversingBlockingQueue}. All methods except {@link #getEngine()}
+     * and {@link #cancelCold()} are called with the lock of the queue held.
+     */
+    public interface Task extends Runnable {
+
+        /**
+         * The engine whose tasks share the compiler threads fairly with other engines, or
+         * {@code null} if the task is not counted for fairness.
+         */
+        Object getEngine();
+
+        /**
+         * Decays the weight of this task by the time passed since the last update and adds the
+         * recent calls of its target. Returns {@code false} if this task does not need to be
+         * weighted anymore because it was cancelled or its target was collected; such tasks are
+         * handed out first because running them only completes their futures.
+         */
+        boolean updateWeight(long currentTime, long halfLifeNanos);
+
+        /**
+         * Whether the target of this task stopped being called frequently while it was queued.
+         */
+        boolean isCold();
+
+        boolean isHigherPriorityThan(Task other);
+
+        /**
+         * Cancels the compilation of this {@linkplain #isCold() cold} task, so that its target is
+         * queued again once it becomes hot again. Called without holding the lock of the queue
+         * because cancelling synchronizes on the target, which is also locked while submitting a
+         * task. The cancelled task stays queued until it is taken.
+         */
+        void cancelCold();
+    }
+
+    /**
+     * How often per half-life the weights of the queued tasks are updated. Between two updates, the
+     * weights decay by less than 5%, which rarely changes the order of the tasks.
+     */
+    static final int WEIGHT_UPDATES_PER_HALF_LIFE = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final List<Task> entries = new ArrayList<>();
+    /** Number of tasks in progress per engine. Tasks without an engine are not counted. */
+    private final Map<Object, Integer> inProgress = new HashMap<>();
+    private final int threads;
+    private final long halfLifeNanos;
+    private final boolean dropColdTargets;
+    private final long weightUpdateIntervalNanos;
+    /** The {@link System#nanoTime()} of the last weight update. Guarded by {@link #lock}. */
+    private long lastWeightUpdate;
+
+    public TraversingBlockingQueue(int threads, long halfLifeMillis, boolean dropColdTargets) {
+        this.threads = threads;
+        this.halfLifeNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(halfLifeMillis));
+        this.dropColdTargets = dropColdTargets;
+        this.weightUpdateIntervalNanos = halfLifeNanos / WEIGHT_UPDATES_PER_HALF_LIFE;
+        // the first take updates the weights
+        this.lastWeightUpdate = System.nanoTime() - weightUpdateIntervalNanos;
+    }
+
+    /**
+     * Called by a compiler thread before it runs a task, whether the task was taken from this
+     * queue or given to the thread directly.
+     */
+    public void beforeExecute(Runnable r) {
+        Object engine = ((Task) r).getEngine();
+        if (engine == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            inProgress.merge(engine, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Called by a compiler thread after it has run a task. */
+    public void afterExecute(Runnable r) {
+        Object engine = ((Task) r).getEngine();
+        if (engine == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            Integer count = inProgress.get(engine);
+            if (count == null) {
+                // the task started before it was reported
+                return;
+            }
+            if (count <= 1) {
+                inProgress.remove(engine);
+            } else {
+                inProgress.put(engine, count - 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of tasks of {@code engine} that are in progress. */
+    public int getInProgress(Object engine) {
+        lock.lock();
+        try {
+            return inProgress.getOrDefault(engine, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the task to run next and collects the tasks whose targets have become cold in
+     * {@code coldTasks}. Must be called with the lock held and entries present. The weights are
+     * only updated, and cold tasks only collected, if the last update is at least
+     * {@link #weightUpdateIntervalNanos} ago.
+     */
+    private Runnable takeNext(List<Task> coldTasks) {
+        assert lock.isHeldByCurrentThread() && !entries.isEmpty();
+        long now = System.nanoTime();
+        boolean updateWeights = now - lastWeightUpdate >= weightUpdateIntervalNanos;
+        if (updateWeights) {
+            // tasks behind an early return below catch up with the next update
+            lastWeightUpdate = now;
+        }
+        Set<Object> queuedEngines = new HashSet<>();
+        int best = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            Task task = entries.get(i);
+            if (updateWeights) {
+                if (!task.updateWeight(now, halfLifeNanos)) {
+                    return removeAt(i);
+                }
+                if (dropColdTargets && task.isCold()) {
+                    coldTasks.add(task);
+                }
+            }
+            queuedEngines.add(task.getEngine());
+            if (best < 0 || task.isHigherPriorityThan(entries.get(best))) {
+                best = i;
+            }
+        }
+        if (queuedEngines.size() > 1 || !inProgress.isEmpty()) {
+            int engines = queuedEngines.size();
+            for (Object engine : inProgress.keySet()) {
+                if (!queuedEngines.contains(engine)) {
+                    engines++;
+                }
+            }
+            int fairShare = Math.max(1, threads / engines);
+            int bestFair = -1;
+            for (int i = 0; i < entries.size(); i++) {
+                Task task = entries.get(i);
+                Integer running = inProgress.get(task.getEngine());
+                if ((running == null || running < fairShare) && (bestFair < 0 || task.isHigherPriorityThan(entries.get(bestFair)))) {
+                    bestFair = i;
+                }
+            }
+            if (bestFair >= 0) {
+                best = bestFair;
+            }
+        }
+        return removeAt(best);
+    }
+
+    private static void cancelCompilations(List<Task> coldTasks) {
+        for (Task task : coldTasks) {
+            task.cancelCold();
+        }
+    }
+
+    private Runnable removeAt(int index) {
+        Task task = entries.get(index);
+        Task last = entries.remove(entries.size() - 1);
+        if (last != task) {
+            entries.set(index, last);
+        }
+        return task;
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        Objects.requireNonNull(r);
+        lock.lock();
+        try {
+            entries.add((Task) r);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+        return offer(r);
+    }
+
+    @Override
+    public void put(Runnable r) {
+        offer(r);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        List<Task> coldTasks = new ArrayList<>();
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                notEmpty.await();
+            }
+            return takeNext(coldTasks);
+        } finally {
+            lock.unlock();
+            cancelCompilations(coldTasks);
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        List<Task> coldTasks = new ArrayList<>();
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return takeNext(coldTasks);
+        } finally {
+            lock.unlock();
+            cancelCompilations(coldTasks);
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        List<Task> coldTasks = new ArrayList<>();
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : takeNext(coldTasks);
+        } finally {
+            lock.unlock();
+            cancelCompilations(coldTasks);
+        }
+    }
+
+    /** Returns some queued task, not necessarily the one that is taken next. */
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : entries.get(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            return entries.remove(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /** Iterates over a snapshot of the queued tasks. */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(entries);
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> iterator = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                current = iterator.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                TraversingBlockingQueue.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = Math.min(entries.size(), maxElements);
+            for (int i = 0; i < n; i++) {
+                c.add(entries.remove(entries.size() - 1));
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
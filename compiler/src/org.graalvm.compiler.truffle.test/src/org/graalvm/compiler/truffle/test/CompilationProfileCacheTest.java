@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.truffle.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.graalvm.compiler.truffle.runtime.OptimizedCallTarget;
+import org.junit.Test;
+
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.RootNode;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
+import com.oracle.truffle.api.test.polyglot.ProxyLanguage;
+
+public class CompilationProfileCacheTest extends TestWithSynchronousCompiling {
+
+    private static final class ConstantRootNode extends RootNode {
+        private final SourceSection sourceSection;
+
+        ConstantRootNode(SourceSection sourceSection) {
+            super(null);
+            this.sourceSection = sourceSection;
+        }
+
+        @Override
+        public SourceSection getSourceSection() {
+            return sourceSection;
+        }
+
+        @Override
+        public String getName() {
+            return "constant";
+        }
+
+        @Override
+        public Object execute(VirtualFrame frame) {
+            return 42;
+        }
+    }
+
+    private static OptimizedCallTarget createTarget(String code) {
+        Source source = Source.newBuilder(ProxyLanguage.ID, code, "constant.test").build();
+        return (OptimizedCallTarget) Truffle.getRuntime().createCallTarget(new ConstantRootNode(source.createSection(0, source.getLength())));
+    }
+
+    @Test
+    public void testSecondEngineReusesDecisions() throws IOException {
+        Path file = Files.createTempFile("compilation-profiles", ".txt");
+        Files.delete(file);
+        try {
+            setupContext("engine.CompilationProfileCache", file.toString());
+            OptimizedCallTarget first = createTarget("return 42");
+            first.call();
+            assertNotCompiled(first);
+            for (int i = 0; i < 10; i++) {
+                first.call();
+            }
+            assertCompiled(first);
+
+            // closes the first engine, which stores its records
+            setupContext("engine.CompilationProfileCache", file.toString());
+            assertTrue(Files.exists(file));
+            OptimizedCallTarget second = createTarget("return 42");
+            assertNotCompiled(second);
+            second.call();
+            assertCompiled(second);
+
+            OptimizedCallTarget other = createTarget("return 43");
+            other.call();
+            assertNotCompiled(other);
+        } finally {
+            cleanup();
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.compiler.truffle.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.graalvm.compiler.truffle.runtime.TraversingBlockingQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraversingBlockingQueueTest {
+
+    private static final class TestTask implements TraversingBlockingQueue.Task {
+        final Object engine;
+        final int weight;
+        final boolean cold;
+        volatile boolean cancelled;
+        volatile boolean coldCancelled;
+        volatile int inProgressWhileRunning = -1;
+        int weightUpdates;
+        TraversingBlockingQueue queue;
+
+        TestTask(Object engine, int weight, boolean cold) {
+            this.engine = engine;
+            this.weight = weight;
+            this.cold = cold;
+        }
+
+        @Override
+        public void run() {
+            if (queue != null) {
+                inProgressWhileRunning = queue.getInProgress(engine);
+            }
+        }
+
+        @Override
+        public Object getEngine() {
+            return engine;
+        }
+
+        @Override
+        public boolean updateWeight(long currentTime, long halfLifeNanos) {
+            weightUpdates++;
+            return !cancelled;
+        }
+
+        @Override
+        public boolean isCold() {
+            return cold;
+        }
+
+        @Override
+        public boolean isHigherPriorityThan(TraversingBlockingQueue.Task other) {
+            return weight > ((TestTask) other).weight;
+        }
+
+        @Override
+        public void cancelCold() {
+            coldCancelled = true;
+        }
+    }
+
+    @Test
+    public void testHighestWeightFirst() {
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(2, 1000, false);
+        Object engine = new Object();
+        TestTask low = new TestTask(engine, 1, false);
+        TestTask high = new TestTask(engine, 10, false);
+        TestTask middle = new TestTask(engine, 5, false);
+        queue.add(low);
+        queue.add(high);
+        queue.add(middle);
+        Assert.assertSame(high, queue.poll());
+        Assert.assertSame(middle, queue.poll());
+        Assert.assertSame(low, queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testCancelledFirst() {
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(2, 1000, false);
+        Object engine = new Object();
+        TestTask high = new TestTask(engine, 10, false);
+        TestTask cancelled = new TestTask(engine, 1, false);
+        cancelled.cancelled = true;
+        queue.add(high);
+        queue.add(cancelled);
+        Assert.assertSame(cancelled, queue.poll());
+        Assert.assertSame(high, queue.poll());
+    }
+
+    @Test
+    public void testEngineFairness() {
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(2, 1000, false);
+        Object busy = new Object();
+        Object other = new Object();
+        TestTask running1 = new TestTask(busy, 100, false);
+        TestTask running2 = new TestTask(busy, 100, false);
+        queue.beforeExecute(running1);
+        queue.beforeExecute(running2);
+        Assert.assertEquals(2, queue.getInProgress(busy));
+
+        TestTask busyTask = new TestTask(busy, 100, false);
+        TestTask otherTask = new TestTask(other, 1, false);
+        queue.add(busyTask);
+        queue.add(otherTask);
+        // the busy engine already uses more than its share of one thread
+        Assert.assertSame(otherTask, queue.poll());
+        queue.add(otherTask);
+        queue.afterExecute(running1);
+        queue.afterExecute(running2);
+        Assert.assertEquals(0, queue.getInProgress(busy));
+        // without compilations in progress the weight decides again
+        Assert.assertSame(busyTask, queue.poll());
+    }
+
+    /**
+     * The weights are updated at most a fixed number of times per half-life, not on every take.
+     */
+    @Test
+    public void testBatchedWeightUpdates() throws InterruptedException {
+        // a half-life of an hour: only the first take updates the weights
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(1, TimeUnit.HOURS.toMillis(1), false);
+        Object engine = new Object();
+        List<TestTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            TestTask task = new TestTask(engine, i, false);
+            tasks.add(task);
+            queue.add(task);
+        }
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            Assert.assertSame(tasks.get(i), queue.poll());
+        }
+        for (TestTask task : tasks) {
+            Assert.assertEquals(1, task.weightUpdates);
+        }
+
+        // a half-life of 16 milliseconds: the weights are updated again after a millisecond
+        queue = new TraversingBlockingQueue(1, 16, false);
+        TestTask high = new TestTask(engine, 10, false);
+        TestTask low = new TestTask(engine, 1, false);
+        queue.add(high);
+        queue.add(low);
+        Assert.assertSame(high, queue.poll());
+        Assert.assertEquals(1, low.weightUpdates);
+        Thread.sleep(2);
+        Assert.assertSame(low, queue.poll());
+        Assert.assertEquals(2, low.weightUpdates);
+    }
+
+    @Test
+    public void testDropColdTargets() {
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(1, 1000, true);
+        Object engine = new Object();
+        TestTask hot = new TestTask(engine, 10, false);
+        TestTask cold = new TestTask(engine, 1, true);
+        queue.add(hot);
+        queue.add(cold);
+        Assert.assertSame(hot, queue.poll());
+        Assert.assertTrue(cold.coldCancelled);
+        Assert.assertFalse(hot.coldCancelled);
+    }
+
+    @Test
+    public void testKeepColdTargets() {
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(1, 1000, false);
+        TestTask cold = new TestTask(new Object(), 1, true);
+        queue.add(cold);
+        Assert.assertSame(cold, queue.poll());
+        Assert.assertFalse(cold.coldCancelled);
+    }
+
+    /**
+     * A thread pool gives the first task of a new worker to the worker directly, without the
+     * queue. Such tasks must be counted and must not break the accounting when they finish.
+     */
+    @Test
+    public void testFirstTaskOfNewWorker() throws InterruptedException {
+        TraversingBlockingQueue queue = new TraversingBlockingQueue(1, 1000, false);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread thread = new Thread(r);
+            thread.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+            return thread;
+        }) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                queue.beforeExecute(r);
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                queue.afterExecute(r);
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+        Object engine = new Object();
+        List<TestTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TestTask task = new TestTask(engine, 1, false);
+            task.queue = queue;
+            tasks.add(task);
+            executor.execute(task);
+            // let the worker time out, so that the next task starts a new worker
+            while (executor.getPoolSize() > 0 || executor.getActiveCount() > 0) {
+                Thread.sleep(1);
+            }
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.emptyList(), failures);
+        Assert.assertEquals(0, queue.getInProgress(engine));
+        Assert.assertEquals(3, executor.getCompletedTaskCount());
+        for (TestTask task : tasks) {
+            Assert.assertEquals(1, task.inProgressWhileRunning);
+        }
+    }
+}
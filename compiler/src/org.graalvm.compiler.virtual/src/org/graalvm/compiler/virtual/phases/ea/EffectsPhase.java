@@ -28,6 +28,7 @@ import static org.graalvm.compiler.phases.common.DeadCodeEliminationPhase.Option
 
 import org.graalvm.collections.EconomicSet;
 import org.graalvm.compiler.core.common.util.CompilationAlarm;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.debug.DebugContext;
 import org.graalvm.compiler.graph.Graph.NodeEventScope;
 import org.graalvm.compiler.graph.Node;
@@ -85,7 +86,8 @@ public abstract class EffectsPhase<CoreProvidersT extends CoreProviders> extends
         boolean changed = false;
         CompilationAlarm compilationAlarm = CompilationAlarm.current();
         DebugContext debug = graph.getDebug();
-        for (int iteration = 0; iteration < maxIterations && !compilationAlarm.hasExpired(); iteration++) {
+        int iterations = maxIterations > 1 && CompilationBudget.current().degradePhase(debug, getName()) ? 1 : maxIterations;
+        for (int iteration = 0; iteration < iterations && !compilationAlarm.hasExpired(); iteration++) {
             try (DebugContext.Scope s = debug.scope(debug.areScopesEnabled() ? "iteration " + iteration : null)) {
                 ScheduleResult schedule;
                 ControlFlowGraph cfg;
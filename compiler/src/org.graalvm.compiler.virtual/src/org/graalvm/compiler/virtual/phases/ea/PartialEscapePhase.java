@@ -28,6 +28,7 @@ import static org.graalvm.compiler.core.common.GraalOptions.EscapeAnalysisIterat
 import static org.graalvm.compiler.core.common.GraalOptions.EscapeAnalyzeOnly;
 
 import org.graalvm.collections.EconomicSet;
+import org.graalvm.compiler.core.common.util.CompilationBudget;
 import org.graalvm.compiler.graph.Node;
 import org.graalvm.compiler.nodes.StructuredGraph;
 import org.graalvm.compiler.nodes.StructuredGraph.ScheduleResult;
@@ -115,6 +116,9 @@ public class PartialEscapePhase extends EffectsPhase<CoreProviders> {
 
     @Override
     protected void run(StructuredGraph graph, CoreProviders context) {
+        if (CompilationBudget.current().skipPhase(graph.getDebug(), getName())) {
+            return;
+        }
         if (VirtualUtil.matches(graph, EscapeAnalyzeOnly.getValue(graph.getOptions()))) {
             if (readElimination || graph.hasVirtualizableAllocation()) {
                 runAnalysis(graph, context);
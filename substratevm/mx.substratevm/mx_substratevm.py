@@ -465,13 +465,189 @@ def native_unittests_task():
     # We need the -H:+EnableAllSecurityServices for com.oracle.svm.test.SecurityServiceTest
     native_unittest(['--build-args', _native_unittest_features, '-H:+EnableAllSecurityServices'])
 
+    # Thin locks are off by default. Test them in a separate image, and deoptimize frames with eliminated locks.
+    native_unittest(['com.oracle.svm.test.ThinLockTest', '--build-args', '-H:+ThinLocks', '--features=com.oracle.svm.graal.hosted.DeoptimizationFeature', '-H:+DeoptimizeAll'])
+
+    # Record a flight recording while the test runs, which reads it back.
+    jfr_dir = tempfile.mkdtemp()
+    try:
+        jfr_file = join(jfr_dir, 'recording.jfr')
+        native_unittest(['com.oracle.svm.test.FlightRecorderTest', '--run-args', '-XX:+FlightRecorder', '-XX:FlightRecorderFile=' + jfr_file, '-XX:FlightRecorderFlushPeriod=10',
+                         '-Dcom.oracle.svm.test.FlightRecorderTest.file=' + jfr_file, '--verbose'])
+        if not svm_java8():
+            # The recording is complete now, so the JFR parser of the JDK must be able to read it.
+            mx.run_java(['-cp', mx.classpath('com.oracle.svm.test.jdk11', jdk=mx_compiler.jdk), 'com.oracle.svm.test.jdk11.FlightRecordingChecker', jfr_file,
+                         'svm.GarbageCollection', 'svm.ThreadStart'], jdk=mx_compiler.jdk)
+    finally:
+        remove_tree(jfr_dir)
+
+    if not mx.is_windows():
+        # Sample the stacks of two busy threads, and check that the profile attributes the samples to the hot method.
+        profile_dir = tempfile.mkdtemp()
+        try:
+            profile = join(profile_dir, 'profile.collapsed')
+            native_unittest(['com.oracle.svm.test.SamplingProfilerTest', '--run-args', '-XX:+SamplingProfiler', '-XX:SamplingProfilerOutput=' + profile,
+                             '-Dcom.oracle.svm.test.SamplingProfilerTest.enabled=true', '--verbose'])
+            test_class = 'com.oracle.svm.test.SamplingProfilerTest.'
+            _check_collapsed_stacks(profile, test_class + 'spin', [test_class + 'spinInTwoThreads', test_class + 'spinInThread'])
+        finally:
+            remove_tree(profile_dir)
+
+    # Record a profile with an instrumented image, check it, and build an image with it.
+    pgo_dir = tempfile.mkdtemp()
+    try:
+        profile = join(pgo_dir, 'default.iprof')
+        native_unittest(['com.oracle.svm.test.PGOTest', '--build-args', '-H:+PGOInstrument', '--run-args', '-XX:PGOProfileFile=' + profile, '--verbose'])
+        _check_pgo_profile(profile)
+        native_unittest(['com.oracle.svm.test.PGOTest', '--build-args', '-H:PGO=' + profile])
+    finally:
+        remove_tree(pgo_dir)
+
+    # Batched type flow updates, interned type states and shared type sets must not change the analysis results.
+    analysis_dir = tempfile.mkdtemp()
+    try:
+        analysis_configs = {
+            'default': [],
+            'batched': ['-H:TypeFlowUpdateBatchSize=64'],
+            'interned': ['-H:TypeStateInternTableSize=65536', '-H:-ShareTypeStateTypeSets'],
+            'batched and interned': ['-H:TypeFlowUpdateBatchSize=64', '-H:TypeStateInternTableSize=65536', '-H:-ShareTypeStateTypeSets'],
+            'interned with shared type sets': ['-H:TypeStateInternTableSize=65536', '-H:+ShareTypeStateTypeSets'],
+            'batched and interned with shared type sets': ['-H:TypeFlowUpdateBatchSize=64', '-H:TypeStateInternTableSize=65536', '-H:+ShareTypeStateTypeSets'],
+        }
+        analysis_results = {}
+        for name, analysis_args in analysis_configs.items():
+            stats_file = join(analysis_dir, name.replace(' ', '-') + '.json')
+            native_unittest(['com.oracle.svm.test.PGOTest', '--build-args', '-H:+PrintAnalysisStatistics', '-H:AnalysisStatisticsFile=' + stats_file] + analysis_args)
+            analysis_results[name] = _analysis_results(stats_file)
+        for name, results in analysis_results.items():
+            if results != analysis_results['default']:
+                mx.abort('Analysis results with ' + name + ' type flows differ from the default: ' + str(results) + ' vs. ' + str(analysis_results['default']))
+    finally:
+        remove_tree(analysis_dir)
+
+    # Mark and sweep the old generation, and check that incremental collections promote objects into the gaps.
+    gc_summary = _gc_native_unittest(['-H:+MarkSweepOldGeneration'])
+    _check_gc_summary(gc_summary, 'MarkSweepCollections', 'FreeListReusedBytes')
+
+    # Mark the old generation concurrently while the tests relink old objects, which relies on the pre-write barrier.
+    gc_summary = _gc_native_unittest(['-H:+ConcurrentOldGenerationMarking'])
+    _check_gc_summary(gc_summary, 'ConcurrentMarkingCycles')
+
+    # Scan the grey objects of incremental collections with worker threads.
+    gc_summary = _gc_native_unittest([], ['-XX:ParallelGCThreads=4'])
+    _check_gc_summary(gc_summary, 'ParallelGCWorkers', 'ParallelScavenges')
+
+    # Size the young generation from the measured pauses, up to a larger maximum than in the other runs.
+    gc_summary = _gc_native_unittest([], ['-XX:MaxGCPauseMillis=5', '-Xmn16m'])
+    _check_gc_summary(gc_summary, 'AdaptiveYoungGenerationSamples', 'AdaptiveYoungGenerationResizes')
+
+    # Let the allocating threads cache unused aligned chunks.
+    gc_summary = _gc_native_unittest([], ['-XX:ThreadLocalAlignedChunkCacheSize=4'])
+    _check_gc_summary(gc_summary, 'CachedAlignedChunks')
+
+    # Build twice with a different build time constant, and check the methods that the second build reports as changed.
+    fingerprints_dir = tempfile.mkdtemp()
+    try:
+        fingerprints_build_args = ['--initialize-at-build-time=com.oracle.svm.test.CompiledMethodFingerprintsTest$Holder', '-H:CompiledMethodFingerprintsDir=' + fingerprints_dir]
+        native_unittest(['com.oracle.svm.test.CompiledMethodFingerprintsTest', '--build-args'] + fingerprints_build_args + ['-Dcom.oracle.svm.test.CompiledMethodFingerprintsTest.value=1'])
+        native_unittest(['com.oracle.svm.test.CompiledMethodFingerprintsTest', '--build-args'] + fingerprints_build_args + ['-Dcom.oracle.svm.test.CompiledMethodFingerprintsTest.value=2',
+                         '--run-args', '-Dcom.oracle.svm.test.CompiledMethodFingerprintsTest.changes=' + join(fingerprints_dir, 'changed-methods.tsv'), '--verbose'])
+    finally:
+        remove_tree(fingerprints_dir)
+
+
+def _analysis_results(stats_file):
+    """Returns the counters of an analysis statistics file, without the timers and the memory use."""
+    results = {}
+    with open(stats_file) as f:
+        for line in f:
+            match = re.match(r'\s*(\w+): (-?\d+),$', line)
+            if match and not match.group(1).endswith('_time_ms') and not match.group(1).endswith('_memory_bytes'):
+                results[match.group(1)] = int(match.group(2))
+    if not results:
+        mx.abort('No analysis results in ' + stats_file)
+    return results
+
+
+def _check_pgo_profile(profile):
+    """Checks the records of the methods of com.oracle.svm.test.PGOTest in a profile written by an instrumented image."""
+    calls = 10000
+    test_class = 'com.oracle.svm.test.PGOTest'
+    records = {}
+    with open(profile) as f:
+        for line in f:
+            if line.startswith('#') or not line.strip():
+                continue
+            fields = line.rstrip('\n').split('\t')
+            method = fields[1].split('(')[0]
+            if method.startswith(test_class + '.'):
+                records.setdefault((fields[0], method), []).append(fields[2:])
+
+    def check(kind, method, expected):
+        actual = records.get((kind, test_class + '.' + method))
+        if actual != expected:
+            mx.abort('Expected ' + str(expected) + ' for the ' + kind + ' records of ' + method + ' in ' + profile + ', got: ' + str(actual))
+
+    check('m', 'classify', [[str(calls)]])
+    branch = records.get(('b', test_class + '.classify'))
+    if branch is None or len(branch) != 1 or sorted(int(count) for count in branch[0][1:]) != [calls // 10, calls - calls // 10]:
+        mx.abort('Expected one branch of classify taken one in ten times in ' + profile + ', got: ' + str(branch))
+    receivers = records.get(('r', test_class + '.totalArea'))
+    if receivers is None or len(receivers) != 1:
+        mx.abort('Expected one receiver record of totalArea in ' + profile + ', got: ' + str(receivers))
+    types = dict(zip(receivers[0][2::2], receivers[0][3::2]))
+    if types != {test_class + '$Square': str(calls * 3 // 4), test_class + '$Rectangle': str(calls // 4)} or receivers[0][1] != '0':
+        mx.abort('Unexpected receiver types of totalArea in ' + profile + ': ' + str(receivers[0]))
+
+
+def _check_collapsed_stacks(profile, hot_frame, callers, minimum_samples=20):
+    """Checks that each of the callers calls the hot frame in at least minimum_samples samples of a collapsed stacks profile."""
+    samples = dict((caller, 0) for caller in callers)
+    with open(profile) as f:
+        for line in f:
+            stack, _, count = line.rstrip().rpartition(' ')
+            frames = stack.split(';')
+            if hot_frame not in frames:
+                continue
+            for caller in callers:
+                if caller in frames and frames.index(caller) < frames.index(hot_frame):
+                    samples[caller] += int(count)
+    for caller, count in samples.items():
+        if count < minimum_samples:
+            mx.abort('Expected at least ' + str(minimum_samples) + ' samples of ' + caller + ' calling ' + hot_frame + ' in ' + profile + ', got: ' + str(count))
+
+
+def _gc_native_unittest(build_args, run_args=None):
+    """
+    Runs com.oracle.svm.test.GarbageCollectionTest with -XX:+PrintGCSummary and a small young generation, and returns the
+    counters of the summary by name. The run_args come after the defaults, so they can override them.
+    """
+    output = []
+    def collect(line):
+        output.append(line)
+        mx.log(line.rstrip())
+    args = ['com.oracle.svm.test.GarbageCollectionTest', '--build-args'] + build_args + ['--run-args', '-Xmn2m', '-XX:+PrintGCSummary'] + (run_args or []) + ['--verbose']
+    native_image_context_run(lambda native_image, a: _native_unittest(native_image, a, run_out=collect), args, build_if_missing=True)
+    summary = {}
+    for line in ''.join(output).splitlines():
+        match = re.match(r'PrintGCSummary: (\w+): (-?\d+)$', line.strip())
+        if match:
+            summary[match.group(1)] = int(match.group(2))
+    return summary
+
+
+def _check_gc_summary(summary, *positive_counters):
+    for counter in positive_counters:
+        if summary.get(counter, 0) <= 0:
+            mx.abort('Expected a positive ' + counter + ' in the GC summary, got: ' + str(summary.get(counter)))
+
 
 def javac_image_command(javac_path):
     return [join(javac_path, 'javac'), "-proc:none", "-bootclasspath",
             join(mx_compiler.jdk.home, "jre", "lib", "rt.jar")]
 
 
-def _native_junit(native_image, unittest_args, build_args=None, run_args=None, blacklist=None, whitelist=None, preserve_image=False):
+def _native_junit(native_image, unittest_args, build_args=None, run_args=None, blacklist=None, whitelist=None, preserve_image=False, run_out=None):
     unittest_args = unittest_args
     build_args = build_args or []
 
@@ -508,7 +684,7 @@ def _native_junit(native_image, unittest_args, build_args=None, run_args=None, b
             move(unittest_image, unittest_image_dst)
             unittest_image = unittest_image_dst
         mx.log('Running: ' + ' '.join(map(pipes.quote, [unittest_image] + run_args)))
-        mx.run([unittest_image] + run_args)
+        mx.run([unittest_image] + run_args, out=run_out, err=run_out)
     finally:
         remove_tree(junit_tmp_dir)
 
@@ -526,7 +702,7 @@ def unmask(args):
     return [arg.replace(_mask_str, '-') for arg in args]
 
 
-def _native_unittest(native_image, cmdline_args):
+def _native_unittest(native_image, cmdline_args, run_out=None):
     parser = ArgumentParser(prog='mx native-unittest', description='Run unittests as native image.')
     all_args = ['--build-args', '--run-args', '--blacklist', '--whitelist', '-p', '--preserve-image']
     cmdline_args = [_mask(arg, all_args) for arg in cmdline_args]
@@ -555,7 +731,7 @@ def _native_unittest(native_image, cmdline_args):
             mx.log('warning: could not read blacklist: ' + blacklist)
 
     unittest_args = unmask(pargs.unittest_args) if unmask(pargs.unittest_args) else ['com.oracle.svm.test']
-    _native_junit(native_image, unittest_args, unmask(pargs.build_args), unmask(pargs.run_args), blacklist, whitelist, pargs.preserve_image)
+    _native_junit(native_image, unittest_args, unmask(pargs.build_args), unmask(pargs.run_args), blacklist, whitelist, pargs.preserve_image, run_out)
 
 
 def js_image_test(binary, bench_location, name, warmup_iterations, iterations, timeout=None, bin_args=None):
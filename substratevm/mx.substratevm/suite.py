@@ -705,11 +705,13 @@ suite = {
             "sourceDirs": ["src"],
             "dependencies": [
                 "com.oracle.svm.core",
+                "mx:JMH_1_21",
             ],
             "checkstyle": "com.oracle.svm.truffle",
             "javaCompliance": "8+",
             "annotationProcessors": [
                 "compiler:GRAAL_PROCESSOR",
+                "mx:JMH_1_21",
             ],
             "workingSets": "SVM",
         },
@@ -32,6 +32,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -117,6 +118,16 @@ public abstract class BigBang {
     private final CompletionExecutor executor;
     private final Runnable heartbeatCallback;
 
+    /** See {@link PointstoOptions#TypeFlowUpdateBatchSize}. */
+    private final int typeFlowUpdateBatchSize;
+    /** The batch collecting the flows posted by the type flow update task running in a thread. */
+    private final ThreadLocal<TypeFlowBatch> pendingTypeFlows = new ThreadLocal<>();
+
+    /** See {@link PointstoOptions#TypeStateInternTableSize}. */
+    private final int typeStateInternTableSize;
+    private final ConcurrentHashMap<TypeState, TypeState> internedTypeStates;
+    private final ConcurrentHashMap<BitSet, BitSet> internedTypeSets;
+
     private ConcurrentMap<AbstractUnsafeLoadTypeFlow, Boolean> unsafeLoads;
     private ConcurrentMap<AbstractUnsafeStoreTypeFlow, Boolean> unsafeStores;
 
@@ -156,6 +167,10 @@ public abstract class BigBang {
         unknownTypeFlow = new UnknownTypeFlow();
 
         trackTypeFlowInputs = PointstoOptions.TrackInputFlows.getValue(options);
+        typeFlowUpdateBatchSize = Math.max(1, PointstoOptions.TypeFlowUpdateBatchSize.getValue(options));
+        typeStateInternTableSize = PointstoOptions.TypeStateInternTableSize.getValue(options);
+        internedTypeStates = typeStateInternTableSize > 0 ? new ConcurrentHashMap<>() : null;
+        internedTypeSets = typeStateInternTableSize > 0 && PointstoOptions.ShareTypeStateTypeSets.getValue(options) ? new ConcurrentHashMap<>() : null;
         reportAnalysisStatistics = PointstoOptions.PrintPointsToStatistics.getValue(options);
         if (reportAnalysisStatistics) {
             PointsToStats.init(this);
@@ -531,16 +546,80 @@ public abstract class BigBang {
         TypeFlow<?> getTypeFlow();
     }
 
+    /**
+     * Returns the canonical instance of a type state that is about to be stored in a type flow.
+     * Type flows that converge to the same state then share one instance, which saves memory and
+     * lets the union operations detect equal inputs with an identity check. The table is only a
+     * cache: it is cleared when it exceeds {@link PointstoOptions#TypeStateInternTableSize} so
+     * that the intermediate states of the analysis do not accumulate.
+     */
+    public TypeState internTypeState(TypeState state) {
+        if (internedTypeStates == null || !state.isMultiTypeState()) {
+            return state;
+        }
+        TypeState interned = internedTypeStates.putIfAbsent(state, state);
+        PointsToStats.registerTypeStateIntern(this, state, interned != null);
+        if (interned != null) {
+            return interned;
+        }
+        if (internedTypeStates.size() > typeStateInternTableSize) {
+            internedTypeStates.clear();
+        }
+        return state;
+    }
+
+    /**
+     * Returns the canonical instance of the type bit set of a new type state. Many states with
+     * different objects or null-ness have the same types, and since the bit sets are never mutated
+     * once they belong to a state they can be shared. Without
+     * {@link PointstoOptions#ShareTypeStateTypeSets} each state keeps its own copy.
+     */
+    public BitSet internTypeSet(BitSet typesBitSet) {
+        if (internedTypeSets == null) {
+            return typesBitSet;
+        }
+        BitSet interned = internedTypeSets.putIfAbsent(typesBitSet, typesBitSet);
+        PointsToStats.registerTypeSetIntern(this, typesBitSet, interned != null);
+        if (interned != null) {
+            return interned;
+        }
+        if (internedTypeSets.size() > typeStateInternTableSize) {
+            internedTypeSets.clear();
+        }
+        return typesBitSet;
+    }
+
     public void postFlow(final TypeFlow<?> operation) {
         if (operation.inQueue) {
             return;
         }
         operation.inQueue = true;
 
+        if (typeFlowUpdateBatchSize > 1) {
+            TypeFlowBatch pending = pendingTypeFlows.get();
+            if (pending != null) {
+                /*
+                 * The flow is posted by a running update task: schedule it together with the other
+                 * flows posted by that task instead of in a task of its own.
+                 */
+                pending.add(operation);
+                if (pending.size() >= typeFlowUpdateBatchSize) {
+                    pendingTypeFlows.set(new TypeFlowBatch());
+                    executor.execute(pending);
+                }
+            } else {
+                TypeFlowBatch batch = new TypeFlowBatch();
+                batch.add(operation);
+                executor.execute(batch);
+            }
+            return;
+        }
+
         executor.execute(new TypeFlowRunnable() {
 
             @Override
             public void run(DebugContext ignored) {
+                PointsToStats.registerTypeFlowBatch(BigBang.this, 1);
                 PointsToStats.registerTypeFlowQueuedUpdate(BigBang.this, operation);
 
                 operation.inQueue = false;
@@ -565,6 +644,61 @@ public abstract class BigBang {
         });
     }
 
+    /**
+     * Updates a batch of type flows in one task. The flows posted during these updates are
+     * collected in a new batch that is scheduled when this one is done, or earlier when it is
+     * full, so the work is still distributed over all analysis threads.
+     */
+    private final class TypeFlowBatch implements TypeFlowRunnable {
+        private final ArrayList<TypeFlow<?>> flows = new ArrayList<>(typeFlowUpdateBatchSize);
+
+        void add(TypeFlow<?> flow) {
+            flows.add(flow);
+        }
+
+        int size() {
+            return flows.size();
+        }
+
+        @Override
+        public void run(DebugContext ignored) {
+            PointsToStats.registerTypeFlowBatch(BigBang.this, flows.size());
+
+            TypeFlowBatch outer = pendingTypeFlows.get();
+            pendingTypeFlows.set(new TypeFlowBatch());
+            try {
+                for (TypeFlow<?> operation : flows) {
+                    PointsToStats.registerTypeFlowQueuedUpdate(BigBang.this, operation);
+
+                    operation.inQueue = false;
+                    operation.update(BigBang.this);
+                }
+            } finally {
+                TypeFlowBatch successors = pendingTypeFlows.get();
+                pendingTypeFlows.set(outer);
+                if (successors.size() > 0) {
+                    executor.execute(successors);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Operations: " + flows.size() + " starting with " + flows.get(0).toString();
+        }
+
+        @Override
+        public TypeFlow<?> getTypeFlow() {
+            return flows.get(0);
+        }
+
+        @Override
+        public DebugContext getDebug(OptionValues opts, List<DebugHandlersFactory> factories) {
+            assert opts == getOptions();
+            return DebugContext.disabled(opts);
+        }
+    }
+
     public void postTask(final DebugContextRunnable task) {
         executor.execute(task);
     }
@@ -606,10 +740,12 @@ public abstract class BigBang {
     public boolean doTypeflow() throws InterruptedException {
         boolean didSomeWork;
         try (StopTimer ignored = typeFlowTimer.start()) {
+            long startTime = System.nanoTime();
             executor.start();
             executor.complete();
             didSomeWork = (executor.getPostedOperations() > 0);
             executor.shutdown();
+            PointsToStats.registerTypeFlowPhase(this, System.nanoTime() - startTime, executor.getPostedOperations());
         }
         /* Initialize for the next iteration. */
         executor.init(timing);
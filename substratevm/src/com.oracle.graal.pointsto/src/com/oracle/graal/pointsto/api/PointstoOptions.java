@@ -119,6 +119,15 @@ public class PointstoOptions {
     @Option(help = "Report analysis statistics.")//
     public static final OptionKey<Boolean> PrintPointsToStatistics = new OptionKey<>(false);
 
+    @Option(help = "The maximum number of type flows whose update is processed by one analysis task. Flows posted while a task runs are collected and scheduled together when the task finishes. A value of 1 schedules each flow in its own task.")//
+    public static final OptionKey<Integer> TypeFlowUpdateBatchSize = new OptionKey<>(1);
+
+    @Option(help = "The maximum number of type states kept in the table that canonicalizes the states stored in type flows. The table is cleared when it grows beyond this size. A value of 0 disables the canonicalization.")//
+    public static final OptionKey<Integer> TypeStateInternTableSize = new OptionKey<>(0);
+
+    @Option(help = "Share the type bit sets of type states with equal types instead of keeping a copy in each state. Uses the table size of TypeStateInternTableSize and has no effect if it is 0.")//
+    public static final OptionKey<Boolean> ShareTypeStateTypeSets = new OptionKey<>(true);
+
     @Option(help = "Path to the contents of the Inspect web server.")//
     public static final OptionKey<String> InspectServerContentPath = new OptionKey<>("inspect");
 
@@ -293,6 +293,16 @@ public abstract class TypeFlow<T> {
             }
         } while (!STATE_UPDATER.compareAndSet(this, before, after));
 
+        /*
+         * The new state is canonicalized only once it is installed, so that the states of failed
+         * attempts neither pollute the table nor count in the statistics. If the state changed
+         * again in the meantime, the canonical instance is dropped, which is harmless.
+         */
+        TypeState interned = bb.internTypeState(after);
+        if (interned != after && STATE_UPDATER.compareAndSet(this, after, interned)) {
+            after = interned;
+        }
+
         PointsToStats.registerTypeFlowSuccessfulUpdate(bb, this, add);
 
         assert !PointstoOptions.ExtendedAsserts.getValue(bb.getOptions()) || checkTypeState(bb, before, after);
@@ -55,6 +55,11 @@ public class MultiTypeState extends TypeState {
     protected final boolean canBeNull;
     /** Has this type state been merged with the all-instantiated type state? */
     protected boolean merged;
+    /**
+     * Lazily computed hash code. The state is immutable, so racing threads compute the same value.
+     * Cached because canonicalizing the states stored in type flows hashes them frequently.
+     */
+    private int hashCode;
 
     /** Creates a new type state using the provided types bit set and objects. */
     MultiTypeState(BigBang bb, boolean canBeNull, int properties, BitSet typesBitSet, AnalysisObject... objects) {
@@ -72,10 +77,13 @@ public class MultiTypeState extends TypeState {
          * typesBitSet. Since BitSet is not thread safe mutating it during cloning is problematic in
          * a multithreaded environment. If for example you iterate over the bits at the same time as
          * another thread calls clone() the words[] array can be in an inconsistent state.
+         *
+         * Being immutable, the typesBitSet can also be shared with other states that have the
+         * same types.
          */
         TypeStateUtils.trimBitSetToSize(typesBitSet);
-        this.typesBitSet = typesBitSet;
-        long cardinality = typesBitSet.cardinality();
+        this.typesBitSet = bb.internTypeSet(typesBitSet);
+        long cardinality = this.typesBitSet.cardinality();
         assert cardinality < Integer.MAX_VALUE : "We don't expect so much types.";
         this.typesCount = (int) cardinality;
         this.canBeNull = canBeNull;
@@ -342,9 +350,14 @@ public class MultiTypeState extends TypeState {
 
     @Override
     public int hashCode() {
-        int result = 1;
-        result = 31 * result + Arrays.hashCode(objects);
-        result = 31 * result + (canBeNull ? 1 : 0);
+        int result = hashCode;
+        if (result == 0) {
+            result = 1;
+            result = 31 * result + Arrays.hashCode(objects);
+            result = 31 * result + (canBeNull ? 1 : 0);
+            result = 31 * result + properties;
+            hashCode = result;
+        }
         return result;
     }
 
@@ -357,8 +370,13 @@ public class MultiTypeState extends TypeState {
             return false;
         }
 
+        /*
+         * The properties are part of the identity of a state because the type flows that keep an
+         * interned state see them. The merged flag is not: it only records that the objects were
+         * already merged, and merging equal objects again has no effect.
+         */
         MultiTypeState that = (MultiTypeState) o;
-        return this.canBeNull == that.canBeNull &&
+        return this.canBeNull == that.canBeNull && this.properties == that.properties &&
                         this.typesCount == that.typesCount && this.typesBitSet.equals(that.typesBitSet) &&
                         Arrays.equals(this.objects, that.objects);
     }
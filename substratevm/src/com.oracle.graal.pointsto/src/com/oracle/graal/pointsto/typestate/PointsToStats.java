@@ -33,12 +33,14 @@ import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -106,7 +108,7 @@ public class PointsToStats {
         reportStatistics = bb.reportAnalysisStatistics();
     }
 
-    public static void report(@SuppressWarnings("unused") BigBang bb, String reportNameRoot) {
+    public static void report(BigBang bb, String reportNameRoot) {
 
         try {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
@@ -117,6 +119,9 @@ public class PointsToStats {
             doReport(statsDirectory, reportNameRoot, "union operation stats", timeStamp, PointsToStats::reportUnionOpertationsStats);
             doReport(statsDirectory, reportNameRoot, "type flow stats", timeStamp, PointsToStats::reportTypeFlowStats);
             doReport(statsDirectory, reportNameRoot, "pruned type flow stats", timeStamp, PointsToStats::reportPrunedTypeFlows);
+            int threads = bb.getExecutor().isSequential() ? 1 : bb.getExecutor().getExecutorService().getParallelism();
+            doReport(statsDirectory, reportNameRoot, "propagation scaling stats", timeStamp, out -> reportPropagationStats(out, threads));
+            doReport(statsDirectory, reportNameRoot, "type state sharing stats", timeStamp, PointsToStats::reportTypeStateSharingStats);
 
         } catch (IOException e) {
             throw JVMCIError.shouldNotReachHere(e);
@@ -310,6 +315,122 @@ public class PointsToStats {
 
     static final Comparator<Long> longComparator = Comparator.naturalOrder();
 
+    // propagation scaling
+
+    static class ThreadStats {
+        final LongAdder tasks = new LongAdder();
+        final LongAdder flowUpdates = new LongAdder();
+    }
+
+    private static final ConcurrentHashMap<String, ThreadStats> threadStats = new ConcurrentHashMap<>();
+    private static final LongAdder typeFlowPhases = new LongAdder();
+    private static final LongAdder typeFlowPhaseNanos = new LongAdder();
+    private static final LongAdder typeFlowPhaseTasks = new LongAdder();
+    private static final LongAdder internHits = new LongAdder();
+    private static final LongAdder internMisses = new LongAdder();
+    private static final LongAdder internSavedBytes = new LongAdder();
+    private static final LongAdder typeSetInternHits = new LongAdder();
+    private static final LongAdder typeSetInternMisses = new LongAdder();
+    private static final LongAdder typeSetInternSavedBytes = new LongAdder();
+
+    /*
+     * Rough object sizes, assuming compressed references and 8 byte alignment. Only used to
+     * estimate the memory saved by sharing type states.
+     */
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int MULTI_TYPE_STATE_BYTES = 48;
+    private static final int BIT_SET_BYTES = 24;
+
+    public static void registerTypeFlowBatch(BigBang bb, int flowCount) {
+        if (!bb.reportAnalysisStatistics()) {
+            return;
+        }
+
+        ThreadStats stats = threadStats.computeIfAbsent(Thread.currentThread().getName(), (n) -> new ThreadStats());
+        stats.tasks.increment();
+        stats.flowUpdates.add(flowCount);
+    }
+
+    public static void registerTypeFlowPhase(BigBang bb, long nanos, long tasks) {
+        if (!bb.reportAnalysisStatistics()) {
+            return;
+        }
+
+        typeFlowPhases.increment();
+        typeFlowPhaseNanos.add(nanos);
+        typeFlowPhaseTasks.add(tasks);
+    }
+
+    public static void registerTypeStateIntern(BigBang bb, TypeState state, boolean hit) {
+        if (!bb.reportAnalysisStatistics()) {
+            return;
+        }
+
+        if (hit) {
+            internHits.increment();
+            /* The objects array of the duplicate is dropped; its type bit set may be shared. */
+            internSavedBytes.add(MULTI_TYPE_STATE_BYTES + align(ARRAY_HEADER_BYTES + 4L * state.objectsCount()));
+        } else {
+            internMisses.increment();
+        }
+    }
+
+    public static void registerTypeSetIntern(BigBang bb, BitSet typesBitSet, boolean hit) {
+        if (!bb.reportAnalysisStatistics()) {
+            return;
+        }
+
+        if (hit) {
+            typeSetInternHits.increment();
+            typeSetInternSavedBytes.add(BIT_SET_BYTES + align(ARRAY_HEADER_BYTES + 8L * TypeStateUtils.extractBitSetField(typesBitSet).length));
+        } else {
+            typeSetInternMisses.increment();
+        }
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static void reportPropagationStats(BufferedWriter out, int threads) {
+        long flowUpdates = threadStats.values().stream().mapToLong(t -> t.flowUpdates.sum()).sum();
+        long maxFlowUpdates = threadStats.values().stream().mapToLong(t -> t.flowUpdates.sum()).max().orElse(0);
+        double seconds = typeFlowPhaseNanos.sum() / 1_000_000_000d;
+
+        doWrite(out, String.format("%-35s\t%10d\n", "Threads", threads));
+        doWrite(out, String.format("%-35s\t%10d\n", "Threads doing updates", threadStats.size()));
+        doWrite(out, String.format("%-35s\t%10d\n", "Type flow phases", typeFlowPhases.sum()));
+        doWrite(out, String.format("%-35s\t%10.3f\n", "Type flow phases wall time (s)", seconds));
+        doWrite(out, String.format("%-35s\t%10d\n", "Tasks", typeFlowPhaseTasks.sum()));
+        doWrite(out, String.format("%-35s\t%10d\n", "Flow updates", flowUpdates));
+        doWrite(out, String.format("%-35s\t%10.0f\n", "Flow updates per second", seconds > 0 ? flowUpdates / seconds : 0));
+        doWrite(out, String.format("%-35s\t%10.0f\n", "Flow updates per second per thread", seconds > 0 ? flowUpdates / seconds / threads : 0));
+        /* The busiest thread compared to a perfectly balanced distribution. */
+        doWrite(out, String.format("%-35s\t%10.2f\n", "Load imbalance (max / mean)", flowUpdates > 0 ? (double) maxFlowUpdates * threadStats.size() / flowUpdates : 0));
+
+        doWrite(out, String.format("\n%-35s\t%10s\t%10s\t%10s\n", "Thread", "Tasks", "Updates", "Updates%"));
+        threadStats.entrySet().stream()
+                        .sorted(Entry.comparingByKey())
+                        .forEach(e -> {
+                            long updates = e.getValue().flowUpdates.sum();
+                            doWrite(out, String.format("%-35s\t%10d\t%10d\t%10.2f\n",
+                                            e.getKey(), e.getValue().tasks.sum(), updates, flowUpdates > 0 ? updates * 100d / flowUpdates : 0));
+                        });
+    }
+
+    private static void reportTypeStateSharingStats(BufferedWriter out) {
+        long interned = internHits.sum() + internMisses.sum();
+        long internedTypeSets = typeSetInternHits.sum() + typeSetInternMisses.sum();
+
+        doWrite(out, String.format("%-35s\t%10d\n", "Interned type states", interned));
+        doWrite(out, String.format("%-35s\t%10.2f\n", "Interned type state hit rate (%)", interned > 0 ? internHits.sum() * 100d / interned : 0));
+        doWrite(out, String.format("%-35s\t%10d\n", "Interned type states saved (KB)", internSavedBytes.sum() / 1024));
+        doWrite(out, String.format("%-35s\t%10d\n", "Shared type bit sets", internedTypeSets));
+        doWrite(out, String.format("%-35s\t%10.2f\n", "Shared type bit set hit rate (%)", internedTypeSets > 0 ? typeSetInternHits.sum() * 100d / internedTypeSets : 0));
+        doWrite(out, String.format("%-35s\t%10d\n", "Shared type bit sets saved (KB)", typeSetInternSavedBytes.sum() / 1024));
+        doWrite(out, String.format("%-35s\t%10d\n", "Total estimated saved (KB)", (internSavedBytes.sum() + typeSetInternSavedBytes.sum()) / 1024));
+    }
+
     private static void reportTypeFlowStats(BufferedWriter out) {
 
         doWrite(out, String.format("%-35s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%-10s\t%10s\n",
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@code monitorenter} and {@code monitorexit} from many threads on
+ * objects that have no monitor slot. Arrays never get a monitor slot in a native image, so their
+ * monitors are always kept in the secondary storage of
+ * {@code com.oracle.svm.core.monitor.MultiThreadedMonitorSupport}.
+ *
+ * Run with JMH, the benchmark measures the monitors of the VM that runs it. To measure the monitors
+ * of a native image, build an image with {@link #main} as its entry point. It runs the same
+ * operations for a fixed time and prints their throughput.
+ */
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(Threads.MAX)
+public class MonitorEnterBenchmark {
+
+    /** A separate object per thread, so the threads only contend on the monitor storage. */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final int[] lock = new int[1];
+    }
+
+    /** A single object shared by all threads, so the threads also contend on the monitor. */
+    @State(Scope.Benchmark)
+    public static class SharedState {
+        final int[] lock = new int[1];
+    }
+
+    /** A fresh object for every operation, which also measures the creation of the monitor. */
+    @State(Scope.Thread)
+    public static class FreshState {
+        /* Published so that escape analysis cannot remove the synchronization. */
+        int[] lastLock = new int[1];
+    }
+
+    @Benchmark
+    public int threadLocalObject(ThreadState state) {
+        int[] lock = state.lock;
+        synchronized (lock) {
+            return ++lock[0];
+        }
+    }
+
+    @Benchmark
+    public int sharedObject(SharedState state) {
+        int[] lock = state.lock;
+        synchronized (lock) {
+            return ++lock[0];
+        }
+    }
+
+    @Benchmark
+    public int freshObject(FreshState state) {
+        int[] lock = new int[]{state.lastLock[0]};
+        state.lastLock = lock;
+        synchronized (lock) {
+            return ++lock[0];
+        }
+    }
+
+    /**
+     * Runs each benchmark without JMH. The optional arguments are the number of threads, which
+     * defaults to the number of processors, and the number of seconds per benchmark, which
+     * defaults to 5. A native image is compiled ahead of time, so there is no warmup.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = TimeUnit.SECONDS.toMillis(args.length > 1 ? Long.parseLong(args[1]) : 5);
+        MonitorEnterBenchmark benchmark = new MonitorEnterBenchmark();
+        SharedState shared = new SharedState();
+        run("threadLocalObject", threadCount, millis, () -> {
+            ThreadState state = new ThreadState();
+            return () -> benchmark.threadLocalObject(state);
+        });
+        run("sharedObject", threadCount, millis, () -> () -> benchmark.sharedObject(shared));
+        run("freshObject", threadCount, millis, () -> {
+            FreshState state = new FreshState();
+            return () -> benchmark.freshObject(state);
+        });
+    }
+
+    private static void run(String name, int threadCount, long millis, Supplier<IntSupplier> operations) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        long[] counts = new long[threadCount];
+        int[] results = new int[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            int index = i;
+            IntSupplier operation = operations.get();
+            threads[i] = new Thread(() -> {
+                long count = 0;
+                int result = 0;
+                while (!stop.get()) {
+                    result += operation.getAsInt();
+                    count++;
+                }
+                counts[index] = count;
+                results[index] = result;
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(millis);
+        stop.set(true);
+        long total = 0;
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+            total += counts[i];
+        }
+        System.out.printf("%s: %d threads, %.0f ops/s%n", name, threadCount, total * 1000.0 / millis);
+    }
+}
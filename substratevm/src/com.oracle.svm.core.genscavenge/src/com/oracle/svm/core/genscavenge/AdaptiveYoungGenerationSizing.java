@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge;
+
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.util.TimeUtils;
+import com.oracle.svm.core.util.UnsignedUtils;
+
+/**
+ * Sizes the young generation from measured pause times, allocation rate and promotion rate, similar
+ * to the ergonomics of HotSpot's parallel collector. Only active with a positive
+ * {@link HeapPolicyOptions#MaxGCPauseMillis pause time goal}.
+ *
+ * After each incremental collection, the young generation is:
+ * <ul>
+ * <li>shrunk proportionally if the average pause exceeds the goal, because the pause time of a
+ * scavenge grows with the amount of surviving objects and thus with the young generation size;</li>
+ * <li>grown towards the size at which the allocation rate yields the mutator interval requested by
+ * {@link HeapPolicyOptions#GCTimeRatio}, as far as the pause time goal permits;</li>
+ * <li>otherwise slowly shrunk to reduce the footprint, unless many objects are being promoted,
+ * which indicates that the young generation is too small for medium-lived objects.</li>
+ * </ul>
+ * The size always stays between a few aligned chunks and
+ * {@link HeapPolicy#getMaximumYoungGenerationSize()}.
+ *
+ * This data is only updated during a GC.
+ */
+final class AdaptiveYoungGenerationSizing {
+    /** Weight of a new sample in the decaying averages, in percent. */
+    private static final int SAMPLE_WEIGHT_PERCENT = 25;
+    /** Maximum growth per collection, in percent of the current size. */
+    private static final int GROW_PERCENT = 20;
+    /** Maximum shrinking for footprint per collection, in percent of the current size. */
+    private static final int FOOTPRINT_SHRINK_PERCENT = 5;
+    /** Promotion (in percent of the young generation) above which shrinking for footprint stops. */
+    private static final int HIGH_PROMOTION_PERCENT = 25;
+    /** The young generation never shrinks below this number of aligned chunks. */
+    private static final int MINIMUM_ALIGNED_CHUNKS = 4;
+
+    private long averagePauseNanos;
+    private long averageMutatorNanos;
+    private long averageAllocatedBytes;
+    private long averagePromotedBytes;
+    private long samples;
+    private long resizes;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    AdaptiveYoungGenerationSizing() {
+    }
+
+    static boolean isEnabled() {
+        return HeapPolicyOptions.MaxGCPauseMillis.getValue() > 0;
+    }
+
+    void afterCollection(boolean completeCollection, long pauseNanos, long mutatorNanos, GCAccounting accounting) {
+        if (!isEnabled() || completeCollection) {
+            /* Pauses of complete collections do not depend on the young generation size. */
+            return;
+        }
+        Log trace = Log.noopLog().string("[AdaptiveYoungGenerationSizing.afterCollection:");
+
+        averagePauseNanos = decay(averagePauseNanos, pauseNanos);
+        averageMutatorNanos = decay(averageMutatorNanos, mutatorNanos);
+        averageAllocatedBytes = decay(averageAllocatedBytes, accounting.getYoungChunkBytesBefore().rawValue());
+        averagePromotedBytes = decay(averagePromotedBytes, accounting.getLastCollectionPromotedChunkBytes().rawValue());
+        samples++;
+
+        UnsignedWord currentSize = HeapPolicy.getYoungGenerationSize();
+        UnsignedWord newSize = computeNewSize(currentSize);
+        HeapPolicy.setYoungGenerationSize(newSize);
+        if (newSize.notEqual(currentSize)) {
+            resizes++;
+        }
+
+        trace.string("  averagePauseNanos: ").signed(averagePauseNanos)
+                        .string("  averageMutatorNanos: ").signed(averageMutatorNanos)
+                        .string("  averageAllocatedBytes: ").signed(averageAllocatedBytes)
+                        .string("  averagePromotedBytes: ").signed(averagePromotedBytes)
+                        .string("  currentSize: ").unsigned(currentSize)
+                        .string("  newSize: ").unsigned(newSize)
+                        .string("]").newline();
+    }
+
+    /** The number of incremental collections that were measured so far. */
+    long getSamples() {
+        return samples;
+    }
+
+    /** The number of incremental collections after which the young generation size changed. */
+    long getResizes() {
+        return resizes;
+    }
+
+    private UnsignedWord computeNewSize(UnsignedWord currentSize) {
+        long current = currentSize.rawValue();
+        long goalNanos = TimeUtils.millisToNanos(HeapPolicyOptions.MaxGCPauseMillis.getValue());
+        long result;
+        if (averagePauseNanos > goalNanos) {
+            /* Shrink proportionally to the excess of the pause time, but at most by half. */
+            result = Math.max(scale(current, goalNanos, averagePauseNanos), current / 2);
+        } else {
+            /* Grow as far as the pause time goal is predicted to permit. */
+            long pauseLimitedSize = (averagePauseNanos > 0) ? scale(current, goalNanos, averagePauseNanos) : Long.MAX_VALUE;
+            long growthLimitedSize = current + current / 100 * GROW_PERCENT;
+            long throughputSize = getThroughputSize();
+            if (throughputSize > current) {
+                result = Math.min(throughputSize, Math.min(growthLimitedSize, pauseLimitedSize));
+            } else if (averagePromotedBytes > current / 100 * HIGH_PROMOTION_PERCENT) {
+                result = current;
+            } else {
+                result = Math.max(throughputSize, current - current / 100 * FOOTPRINT_SHRINK_PERCENT);
+            }
+        }
+        UnsignedWord minimum = HeapPolicy.getAlignedHeapChunkSize().multiply(MINIMUM_ALIGNED_CHUNKS);
+        UnsignedWord maximum = HeapPolicy.getMaximumYoungGenerationSize();
+        UnsignedWord size = UnsignedUtils.roundDown(WordFactory.unsigned(Math.max(result, 0L)), HeapPolicy.getAlignedHeapChunkSize());
+        return UnsignedUtils.max(minimum, UnsignedUtils.min(size, maximum));
+    }
+
+    /**
+     * The young generation size at which, with the average allocation rate, the mutator runs
+     * {@link HeapPolicyOptions#GCTimeRatio} times as long as an average collection pauses.
+     */
+    private long getThroughputSize() {
+        if (averageMutatorNanos <= 0) {
+            return Long.MAX_VALUE;
+        }
+        double allocationRate = (double) averageAllocatedBytes / averageMutatorNanos;
+        double desiredMutatorNanos = (double) averagePauseNanos * HeapPolicyOptions.GCTimeRatio.getValue();
+        double size = allocationRate * desiredMutatorNanos;
+        return (size >= Long.MAX_VALUE) ? Long.MAX_VALUE : (long) size;
+    }
+
+    private long decay(long average, long sample) {
+        if (samples == 0) {
+            return sample;
+        }
+        return average + (sample - average) * SAMPLE_WEIGHT_PERCENT / 100;
+    }
+
+    private static long scale(long value, long numerator, long denominator) {
+        return (long) ((double) value * numerator / denominator);
+    }
+}
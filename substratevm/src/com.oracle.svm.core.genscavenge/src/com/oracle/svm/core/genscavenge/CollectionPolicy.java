@@ -195,7 +195,7 @@ public abstract class CollectionPolicy {
          */
         private static boolean collectCompletelyBasedOnSpace(Log trace) {
             UnsignedWord heapSize = HeapPolicy.getMaximumHeapSize();
-            UnsignedWord youngSize = HeapPolicy.getMaximumYoungGenerationSize();
+            UnsignedWord youngSize = HeapPolicy.getYoungGenerationSize();
             UnsignedWord oldInUse = getAccounting().getOldGenerationAfterChunkBytes();
             UnsignedWord withFullPromotion = youngSize.add(oldInUse).add(youngSize);
             trace.string("  withFullPromotion: ").unsigned(withFullPromotion).newline();
@@ -236,7 +236,7 @@ public abstract class CollectionPolicy {
 
         /** If the heap is too full, request a complete collection. */
         private static boolean voteOnMaximumSpace(Log trace) {
-            UnsignedWord youngSize = HeapPolicy.getMaximumYoungGenerationSize();
+            UnsignedWord youngSize = HeapPolicy.getYoungGenerationSize();
             UnsignedWord oldInUse = getAccounting().getOldGenerationAfterChunkBytes();
             UnsignedWord lastPromotion = getAccounting().getLastCollectionPromotedChunkBytes();
             UnsignedWord expectedSize = youngSize.add(oldInUse).add(lastPromotion);
@@ -254,7 +254,7 @@ public abstract class CollectionPolicy {
 
         /** If the heap is not yet full enough, then veto a complete collection. */
         private static boolean vetoOnMinimumSpace(Log trace) {
-            UnsignedWord youngSize = HeapPolicy.getMaximumYoungGenerationSize();
+            UnsignedWord youngSize = HeapPolicy.getYoungGenerationSize();
             UnsignedWord oldInUse = getAccounting().getOldGenerationAfterChunkBytes();
             UnsignedWord heapInUse = youngSize.add(oldInUse);
             UnsignedWord minHeapSize = HeapPolicy.getMinimumHeapSize();
@@ -0,0 +1,960 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge;
+
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.SLOW_PATH_PROBABILITY;
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.probability;
+
+import java.lang.ref.Reference;
+
+import org.graalvm.compiler.api.replacements.Fold;
+import org.graalvm.compiler.word.Word;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.c.struct.RawField;
+import org.graalvm.nativeimage.c.struct.RawStructure;
+import org.graalvm.nativeimage.c.struct.SizeOf;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.PointerBase;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.MemoryWalker;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.AlwaysInline;
+import com.oracle.svm.core.annotate.NeverInline;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.code.CodeInfo;
+import com.oracle.svm.core.code.RuntimeCodeCache.CodeInfoVisitor;
+import com.oracle.svm.core.code.RuntimeCodeInfoAccess;
+import com.oracle.svm.core.code.RuntimeCodeInfoMemory;
+import com.oracle.svm.core.config.ConfigurationValues;
+import com.oracle.svm.core.deopt.DeoptimizationSupport;
+import com.oracle.svm.core.genscavenge.AlignedHeapChunk.AlignedHeader;
+import com.oracle.svm.core.genscavenge.GCImpl.ChunkReleaser;
+import com.oracle.svm.core.genscavenge.UnalignedHeapChunk.UnalignedHeader;
+import com.oracle.svm.core.heap.ObjectReferenceVisitor;
+import com.oracle.svm.core.heap.ObjectVisitor;
+import com.oracle.svm.core.heap.ReferenceAccess;
+import com.oracle.svm.core.heap.ReferenceInternals;
+import com.oracle.svm.core.hub.InteriorObjRefWalker;
+import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.locks.VMCondition;
+import com.oracle.svm.core.locks.VMMutex;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.nodes.CFunctionEpilogueNode;
+import com.oracle.svm.core.nodes.CFunctionPrologueNode;
+import com.oracle.svm.core.snippets.KnownIntrinsics;
+import com.oracle.svm.core.snippets.SubstrateForeignCallTarget;
+import com.oracle.svm.core.thread.Safepoint;
+import com.oracle.svm.core.thread.VMOperation;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.thread.VMThreads.StatusSupport;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalInt;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
+import com.oracle.svm.core.util.UnsignedUtils;
+import com.oracle.svm.core.util.VMError;
+
+/**
+ * Marks the old generation concurrently to the application, so that it can be reclaimed by a short
+ * sweep instead of copying it in a complete collection. Only active with
+ * {@link HeapOptions#ConcurrentOldGenerationMarking}.
+ * <p>
+ * A marking cycle is requested when the collection policy asks for a complete collection. It
+ * starts at the end of the next incremental collection, which takes a snapshot of the old
+ * generation: every old chunk remembers its top as the top at mark start and gets a side bitmap
+ * with one mark bit per possible object start (there are no spare bits in the object header).
+ * Objects above the top at mark start, which includes all chunks that are added to the old
+ * generation later, are implicitly live. The roots on the stacks, in thread locals, in the runtime
+ * code cache and in the young generation are marked in the same pause.
+ * <p>
+ * Afterwards, a marker thread traces the snapshot from the writable image heap and the marked
+ * objects while the application runs. To keep the snapshot consistent, {@link SATBBuffer
+ * snapshot-at-the-beginning} pre-write barriers record every reference that is overwritten while
+ * marking is in progress. The marker thread works in batches that exclude safepoints, so neither
+ * objects nor chunks change under it, and it never holds object references in between.
+ * <p>
+ * When the marker thread has nothing left to trace, the next incremental collection finishes the
+ * cycle: it traces what the barriers recorded since, turns runs of unmarked objects in aligned
+ * chunks into gaps of the {@link FreeList}, and releases chunks without any marked object. Objects
+ * are never moved by this process. Complete collections that are not requested by the policy, such
+ * as those after running out of memory, abort a cycle that is in progress.
+ * <p>
+ * Referents of {@link Reference} objects are treated as strong references while marking
+ * concurrently, so objects that are only weakly reachable survive the cycle and are reclaimed by a
+ * later one.
+ * <p>
+ * With {@link HeapOptions#MarkSweepOldGeneration}, complete collections also use this marker, but
+ * mark and sweep the old generation {@linkplain #markAndSweep at the safepoint} instead of copying
+ * it. In that case, referents are weak and references are enqueued as usual.
+ */
+public final class ConcurrentMarker {
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_MARKING = 1;
+    private static final int STATE_MARKED = 2;
+
+    /** Number of objects that the marker thread scans before it lets a pending safepoint proceed. */
+    private static final int BATCH_SIZE = 1024;
+    /** Number of references that fit into one {@link SATBBuffer}. */
+    private static final int SATB_BUFFER_CAPACITY = 256;
+    private static final int INITIAL_MARK_STACK_CAPACITY = 4096;
+
+    /** Coordinates the batches of the marker thread with safepoints. */
+    private static final VMMutex MUTEX = new VMMutex();
+    private static final VMCondition CONDITION = new VMCondition(MUTEX);
+
+    /** Non-zero while the pre-write barrier of a thread must record overwritten references. */
+    private static final FastThreadLocalInt barrierActiveTL = FastThreadLocalFactory.createInt();
+    private static final FastThreadLocalWord<SATBBuffer> satbBufferTL = FastThreadLocalFactory.createWord();
+    /** Full buffers of all threads, linked via {@link SATBBuffer#getNext()}. */
+    private static final UninterruptibleUtils.AtomicPointer<SATBBuffer> fullBuffers = new UninterruptibleUtils.AtomicPointer<>();
+
+    /**
+     * A thread-local buffer of references that were overwritten while marking is in progress,
+     * allocated in unmanaged memory. The references follow the header.
+     */
+    @RawStructure
+    interface SATBBuffer extends PointerBase {
+        @RawField
+        SATBBuffer getNext();
+
+        @RawField
+        void setNext(SATBBuffer next);
+
+        @RawField
+        int getCount();
+
+        @RawField
+        void setCount(int count);
+    }
+
+    private final MarkingObjRefVisitor objRefVisitor = new MarkingObjRefVisitor(this);
+    private final MarkingObjectVisitor objectVisitor = new MarkingObjectVisitor(this, objRefVisitor);
+    private final ImageHeapRootsVisitor imageHeapRootsVisitor = new ImageHeapRootsVisitor(objectVisitor);
+    private final CodeCacheRootsVisitor codeCacheRootsVisitor = new CodeCacheRootsVisitor(objRefVisitor);
+
+    /**
+     * Changed at safepoints, except that the marker thread changes it from {@link #STATE_MARKING}
+     * to {@link #STATE_MARKED} at the end of a batch. Batches and safepoints exclude each other,
+     * and {@link #MUTEX} is taken after each batch, so safepoints always see the current state.
+     */
+    private int state = STATE_IDLE;
+    private boolean cycleRequested;
+    /**
+     * Progress of the scan of the writable image heap, which is spread over several batches: the
+     * index of the partition that is scanned (see {@link #scanImageHeapBatch}), and the next object
+     * to scan in it. Image heap objects never move, so the address stays valid between batches.
+     */
+    private int imageHeapPartition;
+    private Pointer imageHeapCursor = WordFactory.nullPointer();
+    /** Whether referents are weak references in the current cycle, which must be at a safepoint. */
+    private boolean referentsAreWeak;
+    /** References with a referent that was not marked yet, linked via their discovered field. */
+    private Reference<?> discoveredReferences;
+
+    /** Guarded by {@link #MUTEX}. */
+    private boolean safepointPending;
+    private boolean batchActive;
+    private boolean shutdown;
+
+    /** Marked objects that have not been scanned yet. */
+    private Pointer markStack = WordFactory.nullPointer();
+    private int markStackCount;
+    private int markStackCapacity;
+
+    private long completedCycles;
+    private long abortedCycles;
+    private long stopTheWorldCycles;
+    private UnsignedWord releasedChunkBytes = WordFactory.zero();
+    private UnsignedWord filledBytes = WordFactory.zero();
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    ConcurrentMarker() {
+    }
+
+    /** Whether the image is built with concurrent marking of the old generation. */
+    @Fold
+    public static boolean isSupported() {
+        return HeapOptions.ConcurrentOldGenerationMarking.getValue() && SubstrateOptions.MultiThreaded.getValue();
+    }
+
+    /** Whether complete collections mark and sweep the old generation in place. */
+    @Fold
+    static boolean isMarkSweepEnabled() {
+        return HeapOptions.MarkSweepOldGeneration.getValue();
+    }
+
+    /** Read by the pre-write barrier snippets. */
+    @AlwaysInline("Write barrier fast path")
+    public static boolean isBarrierActive() {
+        return barrierActiveTL.get() != 0;
+    }
+
+    /** Isolate initialization hook that starts the marker thread. */
+    void startMarkerThread() {
+        Thread thread = new Thread(ConcurrentMarker::runMarker, "Concurrent Marker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Isolate tear-down hook that lets the marker thread exit and frees the marking data. */
+    void tearDown() {
+        requestShutdown();
+        if (state != STATE_IDLE) {
+            releaseMarkingData();
+        }
+        if (markStack.isNonNull()) {
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(markStack);
+            markStack = WordFactory.nullPointer();
+            markStackCapacity = 0;
+        }
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void requestShutdown() {
+        MUTEX.lockNoTransition();
+        try {
+            shutdown = true;
+            CONDITION.broadcast();
+            while (batchActive) {
+                CONDITION.blockNoTransition();
+            }
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    private static void runMarker() {
+        transitionToNativeThenRunMarker();
+    }
+
+    @NeverInline("Must not be inlined in a caller that has an exception handler: We only support InvokeNode and not InvokeWithExceptionNode between a CFunctionPrologueNode and CFunctionEpilogueNode")
+    private static void transitionToNativeThenRunMarker() {
+        CFunctionPrologueNode.cFunctionPrologue(StatusSupport.STATUS_IN_NATIVE);
+        runMarkerInNative();
+        CFunctionEpilogueNode.cFunctionEpilogue(StatusSupport.STATUS_IN_NATIVE);
+    }
+
+    /**
+     * The marker thread stays in native state, so it never holds up a safepoint and must not hold
+     * object references in this frame. It only executes Java code in a batch, and no safepoint
+     * can start before the batch has ended.
+     */
+    @Uninterruptible(reason = "In native.", calleeMustBe = false)
+    @NeverInline("Provide a return address for the Java frame anchor.")
+    private static void runMarkerInNative() {
+        while (GCImpl.getGCImpl().getConcurrentMarker().beginBatch()) {
+            /* Safepoint checks in the marking code must not enter the slow path in native state. */
+            Safepoint.resetSafepointRequestedInNative();
+            GCImpl.getGCImpl().getConcurrentMarker().markBatch();
+            GCImpl.getGCImpl().getConcurrentMarker().endBatch();
+        }
+    }
+
+    /** @return true if a batch may start, false if the marker thread should exit. */
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private boolean beginBatch() {
+        MUTEX.lockNoTransition();
+        try {
+            while (!shutdown && (safepointPending || state != STATE_MARKING)) {
+                CONDITION.blockNoTransition();
+            }
+            if (shutdown) {
+                return false;
+            }
+            batchActive = true;
+            return true;
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void endBatch() {
+        MUTEX.lockNoTransition();
+        try {
+            batchActive = false;
+            CONDITION.broadcast();
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    /** Called before each safepoint: waits until the current batch has ended. */
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    void prepareForSafepoint() {
+        MUTEX.lockNoTransition();
+        try {
+            safepointPending = true;
+            while (batchActive) {
+                CONDITION.blockNoTransition();
+            }
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    /** Called after each safepoint: lets the marker thread continue. */
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    void endSafepoint() {
+        MUTEX.lockNoTransition();
+        try {
+            safepointPending = false;
+            CONDITION.broadcast();
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    /** Called with the thread mutex held, so the state cannot change concurrently. */
+    @Uninterruptible(reason = "Called during startup.")
+    void attachThread(IsolateThread thread) {
+        barrierActiveTL.set(thread, (state != STATE_IDLE) ? 1 : 0);
+        satbBufferTL.set(thread, WordFactory.nullPointer());
+    }
+
+    /** Hands the recorded references of an exiting thread to the marker. */
+    static void detachThread(IsolateThread thread) {
+        SATBBuffer buffer = satbBufferTL.get(thread);
+        if (buffer.isNonNull()) {
+            satbBufferTL.set(thread, WordFactory.nullPointer());
+            pushFullBuffer(buffer);
+        }
+    }
+
+    /**
+     * Slow path of the pre-write barrier: records the overwritten reference. The reference is
+     * filtered only later, when it is certain that no young object has moved in between.
+     */
+    @SubstrateForeignCallTarget(stubCallingConvention = false)
+    @Uninterruptible(reason = "Must not stop at a safepoint before the overwritten reference is recorded.")
+    private static void enqueue(Object previous) {
+        SATBBuffer buffer = satbBufferTL.get();
+        if (buffer.isNull() || buffer.getCount() == SATB_BUFFER_CAPACITY) {
+            if (buffer.isNonNull()) {
+                pushFullBuffer(buffer);
+            }
+            buffer = ImageSingletons.lookup(UnmanagedMemorySupport.class).malloc(getSATBBufferSize());
+            if (buffer.isNull()) {
+                throw VMError.shouldNotReachHere("Could not allocate memory for the concurrent marker.");
+            }
+            buffer.setNext(WordFactory.nullPointer());
+            buffer.setCount(0);
+            satbBufferTL.set(buffer);
+        }
+        int count = buffer.getCount();
+        getSATBBufferEntries(buffer).writeWord(WordFactory.unsigned(count).multiply(ConfigurationValues.getTarget().wordSize), Word.objectToUntrackedPointer(previous));
+        buffer.setCount(count + 1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static void pushFullBuffer(SATBBuffer buffer) {
+        SATBBuffer head;
+        do {
+            head = fullBuffers.get();
+            buffer.setNext(head);
+        } while (!fullBuffers.compareAndSet(head, buffer));
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static SATBBuffer takeFullBuffers() {
+        SATBBuffer head;
+        do {
+            head = fullBuffers.get();
+        } while (head.isNonNull() && !fullBuffers.compareAndSet(head, WordFactory.nullPointer()));
+        return head;
+    }
+
+    @Fold
+    static UnsignedWord getSATBBufferSize() {
+        return SizeOf.unsigned(SATBBuffer.class).add(SATB_BUFFER_CAPACITY * ConfigurationValues.getTarget().wordSize);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static Pointer getSATBBufferEntries(SATBBuffer buffer) {
+        return ((Pointer) buffer).add(SizeOf.unsigned(SATBBuffer.class));
+    }
+
+    /** Marks the recorded references of a list of buffers and frees the buffers. */
+    private void drainSATBBuffers(SATBBuffer first) {
+        SATBBuffer buffer = first;
+        while (buffer.isNonNull()) {
+            Pointer entries = getSATBBufferEntries(buffer);
+            for (int i = 0; i < buffer.getCount(); i++) {
+                markObject(entries.readWord(WordFactory.unsigned(i).multiply(ConfigurationValues.getTarget().wordSize)));
+            }
+            SATBBuffer next = buffer.getNext();
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+            buffer = next;
+        }
+    }
+
+    /** Marks the recorded references of all threads. Must be called at a safepoint. */
+    private void drainAllSATBBuffers() {
+        for (IsolateThread thread = VMThreads.firstThread(); thread.isNonNull(); thread = VMThreads.nextThread(thread)) {
+            SATBBuffer buffer = satbBufferTL.get(thread);
+            if (buffer.isNonNull()) {
+                satbBufferTL.set(thread, WordFactory.nullPointer());
+                buffer.setNext(WordFactory.nullPointer());
+                drainSATBBuffers(buffer);
+            }
+        }
+        drainSATBBuffers(takeFullBuffers());
+    }
+
+    private static void setBarrierActiveForAllThreads(boolean active) {
+        for (IsolateThread thread = VMThreads.firstThread(); thread.isNonNull(); thread = VMThreads.nextThread(thread)) {
+            barrierActiveTL.set(thread, active ? 1 : 0);
+        }
+    }
+
+    @RestrictHeapAccess(access = RestrictHeapAccess.Access.NO_ALLOCATION, reason = "Must not allocate in the implementation of garbage collection.")
+    @NeverInline("Split the GC into reasonable compilation units")
+    private void markBatch() {
+        if (imageHeapPartition < getImageHeapPartitionCount()) {
+            scanImageHeapBatch();
+            return;
+        }
+        drainSATBBuffers(takeFullBuffers());
+        for (int i = 0; i < BATCH_SIZE && markStackCount > 0; i++) {
+            scanObject(popMarkStack());
+        }
+        if (markStackCount == 0 && fullBuffers.get().isNull()) {
+            /* The rest is traced when the next incremental collection finishes the cycle. */
+            state = STATE_MARKED;
+        }
+    }
+
+    /**
+     * Scans at most {@link #BATCH_SIZE} objects of the writable image heap partitions that contain
+     * references: the regular and huge partitions of the image heap, followed by those of the
+     * auxiliary image heap if there is one.
+     */
+    private void scanImageHeapBatch() {
+        ImageHeapInfo info = (imageHeapPartition < 2) ? HeapImpl.getImageHeapInfo() : AuxiliaryImageHeap.singleton().getImageHeapInfo();
+        if (imageHeapPartition % 2 == 0) {
+            imageHeapCursor = ImageHeapWalker.walkPartitionPartially(info.firstWritableReferenceObject, info.lastWritableReferenceObject, imageHeapCursor, BATCH_SIZE, objectVisitor, true);
+        } else {
+            imageHeapCursor = ImageHeapWalker.walkPartitionPartially(info.firstWritableHugeObject, info.lastWritableHugeObject, imageHeapCursor, BATCH_SIZE, objectVisitor, false);
+        }
+        if (imageHeapCursor.isNull()) {
+            imageHeapPartition++;
+        }
+    }
+
+    @Fold
+    static int getImageHeapPartitionCount() {
+        return AuxiliaryImageHeap.isPresent() ? 4 : 2;
+    }
+
+    /** Called when the collection policy asks for a complete collection. */
+    void requestCycle() {
+        assert VMOperation.isGCInProgress();
+        cycleRequested = true;
+    }
+
+    /**
+     * Called at the beginning of an incremental collection: marks the references that the
+     * barriers recorded, which could refer to young objects that move in this collection, and
+     * disables the barriers for the duration of the collection.
+     */
+    void beforeIncrementalCollection() {
+        assert VMOperation.isGCInProgress();
+        if (state == STATE_IDLE) {
+            return;
+        }
+        setBarrierActiveForAllThreads(false);
+        drainAllSATBBuffers();
+    }
+
+    /** Keeps references alive that an incremental collection is about to enqueue. */
+    void markPendingReferences(Reference<?> list) {
+        if (state == STATE_IDLE) {
+            return;
+        }
+        for (Reference<?> current = list; current != null; current = ReferenceInternals.getNextDiscovered(current)) {
+            markObject(Word.objectToUntrackedPointer(current));
+        }
+    }
+
+    /**
+     * Called at the end of an incremental collection, when all old objects are in the from-space
+     * of the old generation: starts or finishes a marking cycle as necessary.
+     */
+    void afterIncrementalCollection(ChunkReleaser chunkReleaser) {
+        assert VMOperation.isGCInProgress();
+        if (state == STATE_MARKING) {
+            setBarrierActiveForAllThreads(true);
+        } else if (state == STATE_MARKED) {
+            finishCycle(chunkReleaser);
+        } else if (cycleRequested) {
+            startCycle();
+        }
+    }
+
+    /** Called before a complete collection, which copies all objects anyway. */
+    void abort() {
+        assert VMOperation.isGCInProgress();
+        cycleRequested = false;
+        HeapImpl.getHeapImpl().getOldGeneration().getFreeList().clear();
+        if (state == STATE_IDLE) {
+            return;
+        }
+        setBarrierActiveForAllThreads(false);
+        releaseMarkingData();
+        abortedCycles++;
+    }
+
+    private void releaseMarkingData() {
+        for (IsolateThread thread = VMThreads.firstThread(); thread.isNonNull(); thread = VMThreads.nextThread(thread)) {
+            SATBBuffer buffer = satbBufferTL.get(thread);
+            if (buffer.isNonNull()) {
+                satbBufferTL.set(thread, WordFactory.nullPointer());
+                ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+            }
+        }
+        SATBBuffer buffer = takeFullBuffers();
+        while (buffer.isNonNull()) {
+            SATBBuffer next = buffer.getNext();
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+            buffer = next;
+        }
+        markStackCount = 0;
+
+        Space oldSpace = HeapImpl.getHeapImpl().getOldGeneration().getFromSpace();
+        for (AlignedHeader chunk = oldSpace.getFirstAlignedHeapChunk(); chunk.isNonNull(); chunk = HeapChunk.getNext(chunk)) {
+            clearSnapshot(chunk);
+        }
+        for (UnalignedHeader chunk = oldSpace.getFirstUnalignedHeapChunk(); chunk.isNonNull(); chunk = HeapChunk.getNext(chunk)) {
+            clearSnapshot(chunk);
+        }
+        state = STATE_IDLE;
+    }
+
+    private void startCycle() {
+        Log trace = Log.noopLog().string("[ConcurrentMarker.startCycle:");
+        cycleRequested = false;
+        takeSnapshotAndMarkRoots();
+        /* The image heap is scanned concurrently because its objects do not move. */
+        imageHeapPartition = 0;
+        imageHeapCursor = WordFactory.nullPointer();
+        setBarrierActiveForAllThreads(true);
+        state = STATE_MARKING;
+        trace.string("  marked roots: ").signed(markStackCount).string("]").newline();
+    }
+
+    /**
+     * Marks and sweeps the old generation at a safepoint, right after an incremental collection
+     * has emptied eden. Aborts a concurrent cycle that is in progress.
+     */
+    void markAndSweep(ChunkReleaser chunkReleaser) {
+        assert VMOperation.isGCInProgress();
+        Log trace = Log.noopLog().string("[ConcurrentMarker.markAndSweep:");
+        if (state != STATE_IDLE) {
+            setBarrierActiveForAllThreads(false);
+            releaseMarkingData();
+            abortedCycles++;
+        }
+        cycleRequested = false;
+
+        referentsAreWeak = true;
+        takeSnapshotAndMarkRoots();
+        HeapImpl.getHeapImpl().walkNativeImageHeapRegions(imageHeapRootsVisitor);
+        while (markStackCount > 0) {
+            scanObject(popMarkStack());
+        }
+        processDiscoveredReferences();
+        referentsAreWeak = false;
+
+        sweep(chunkReleaser);
+        stopTheWorldCycles++;
+        trace.string("  releasedChunkBytes: ").unsigned(releasedChunkBytes).string("  filledBytes: ").unsigned(filledBytes).string("]").newline();
+    }
+
+    private void takeSnapshotAndMarkRoots() {
+        /* Gaps are swept again, and they must not be filled while they are part of the snapshot. */
+        HeapImpl.getHeapImpl().getOldGeneration().getFreeList().clear();
+        Space oldSpace = HeapImpl.getHeapImpl().getOldGeneration().getFromSpace();
+        for (AlignedHeader chunk = oldSpace.getFirstAlignedHeapChunk(); chunk.isNonNull(); chunk = HeapChunk.getNext(chunk)) {
+            UnsignedWord objectBytes = HeapChunk.getTopOffset(chunk);
+            takeSnapshot(chunk, objectBytes.unsignedDivide(ConfigurationValues.getObjectLayout().getAlignment()));
+        }
+        for (UnalignedHeader chunk = oldSpace.getFirstUnalignedHeapChunk(); chunk.isNonNull(); chunk = HeapChunk.getNext(chunk)) {
+            takeSnapshot(chunk, WordFactory.unsigned(1));
+        }
+
+        GCImpl.getGCImpl().walkStackRoots(objRefVisitor);
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            ThreadLocalMTWalker.walk(objRefVisitor);
+        }
+        if (DeoptimizationSupport.enabled()) {
+            RuntimeCodeInfoMemory.singleton().walkRuntimeMethodsDuringGC(codeCacheRootsVisitor);
+        }
+        HeapImpl.getHeapImpl().getYoungGeneration().walkObjects(objectVisitor);
+    }
+
+    private static void takeSnapshot(HeapChunk.Header<?> chunk, UnsignedWord bitCount) {
+        UnsignedWord bitmapSize = UnsignedUtils.roundUp(bitCount, WordFactory.unsigned(Long.SIZE)).unsignedDivide(Byte.SIZE);
+        Pointer bitmap = ImageSingletons.lookup(UnmanagedMemorySupport.class).calloc(UnsignedUtils.max(bitmapSize, WordFactory.unsigned(Long.BYTES)));
+        if (bitmap.isNull()) {
+            throw VMError.shouldNotReachHere("Could not allocate memory for the concurrent marker.");
+        }
+        HeapChunk.setMarkBitmap(chunk, bitmap);
+        HeapChunk.setTopAtMarkStartOffset(chunk, HeapChunk.getTopOffset(chunk));
+    }
+
+    private static void clearSnapshot(HeapChunk.Header<?> chunk) {
+        Pointer bitmap = HeapChunk.getMarkBitmap(chunk);
+        if (bitmap.isNonNull()) {
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(bitmap);
+            HeapChunk.setMarkBitmap(chunk, WordFactory.nullPointer());
+        }
+        HeapChunk.setTopAtMarkStartOffset(chunk, WordFactory.zero());
+    }
+
+    private void finishCycle(ChunkReleaser chunkReleaser) {
+        Log trace = Log.noopLog().string("[ConcurrentMarker.finishCycle:");
+        /* The barriers were already disabled and their buffers drained. */
+        while (markStackCount > 0) {
+            scanObject(popMarkStack());
+        }
+        sweep(chunkReleaser);
+        completedCycles++;
+        trace.string("  releasedChunkBytes: ").unsigned(releasedChunkBytes).string("  filledBytes: ").unsigned(filledBytes).string("]").newline();
+    }
+
+    private void sweep(ChunkReleaser chunkReleaser) {
+        Space oldSpace = HeapImpl.getHeapImpl().getOldGeneration().getFromSpace();
+        AlignedHeader aligned = oldSpace.getFirstAlignedHeapChunk();
+        while (aligned.isNonNull()) {
+            AlignedHeader next = HeapChunk.getNext(aligned);
+            if (HeapChunk.getTopAtMarkStartOffset(aligned).notEqual(0)) {
+                sweepAlignedChunk(oldSpace, aligned, chunkReleaser);
+            }
+            aligned = next;
+        }
+        UnalignedHeader unaligned = oldSpace.getFirstUnalignedHeapChunk();
+        while (unaligned.isNonNull()) {
+            UnalignedHeader next = HeapChunk.getNext(unaligned);
+            if (HeapChunk.getTopAtMarkStartOffset(unaligned).notEqual(0)) {
+                boolean live = isMarked(unaligned, UnalignedHeapChunk.getObjectStart(unaligned), false);
+                clearSnapshot(unaligned);
+                if (!live) {
+                    releasedChunkBytes = releasedChunkBytes.add(HeapChunk.getEndOffset(unaligned));
+                    oldSpace.extractUnalignedHeapChunk(unaligned);
+                    chunkReleaser.add(unaligned);
+                }
+            }
+            unaligned = next;
+        }
+        chunkReleaser.release();
+        state = STATE_IDLE;
+    }
+
+    /**
+     * Turns each run of unmarked objects below the top at mark start into a single gap, or releases
+     * the chunk if it does not contain any live object.
+     */
+    private void sweepAlignedChunk(Space oldSpace, AlignedHeader chunk, ChunkReleaser chunkReleaser) {
+        Pointer tams = HeapChunk.asPointer(chunk).add(HeapChunk.getTopAtMarkStartOffset(chunk));
+        Pointer gapStart = WordFactory.nullPointer();
+        boolean anyLive = false;
+        Pointer p = AlignedHeapChunk.getObjectsStart(chunk);
+        while (p.belowThan(tams)) {
+            UnsignedWord size = LayoutEncoding.getSizeFromObject(p.toObject());
+            if (isMarked(chunk, p, true)) {
+                if (gapStart.isNonNull()) {
+                    fillGap(chunk, gapStart, p);
+                    gapStart = WordFactory.nullPointer();
+                }
+                anyLive = true;
+            } else if (gapStart.isNull()) {
+                gapStart = p;
+            }
+            p = p.add(size);
+        }
+        boolean releasable = !anyLive && HeapChunk.getTopPointer(chunk).equal(tams);
+        if (gapStart.isNonNull() && !releasable) {
+            fillGap(chunk, gapStart, tams);
+        }
+        clearSnapshot(chunk);
+        if (releasable) {
+            releasedChunkBytes = releasedChunkBytes.add(HeapChunk.getEndOffset(chunk));
+            oldSpace.extractAlignedHeapChunk(chunk);
+            chunkReleaser.add(chunk);
+        }
+    }
+
+    private void fillGap(AlignedHeader chunk, Pointer start, Pointer end) {
+        UnsignedWord size = end.subtract(start);
+        HeapImpl.getHeapImpl().getOldGeneration().getFreeList().addGap(chunk, start, size);
+        filledBytes = filledBytes.add(size);
+    }
+
+    /**
+     * Remembers a reference instead of marking its referent if the referent is not known to be
+     * live yet and referents are weak in this cycle.
+     *
+     * @return true if the referent must not be marked.
+     */
+    private boolean discoverReference(Reference<?> ref) {
+        if (!referentsAreWeak || ReferenceInternals.getNextDiscovered(ref) != null) {
+            return false;
+        }
+        if (!isUnmarkedInSnapshot(ReferenceInternals.getReferentPointer(ref)) || ReferenceObjectProcessing.isSoftReferentKeptAlive(ref)) {
+            return false;
+        }
+        // null link means undiscovered, avoid for the last node with a cyclic reference
+        Reference<?> next = (discoveredReferences != null) ? discoveredReferences : ref;
+        ReferenceInternals.setNextDiscovered(ref, next);
+        discoveredReferences = ref;
+        return true;
+    }
+
+    /** Clears the discovered references with unreachable referents and enqueues them. */
+    private void processDiscoveredReferences() {
+        Reference<?> pendingHead = null;
+        Reference<?> current = discoveredReferences;
+        discoveredReferences = null;
+        while (current != null) {
+            Reference<?> next = ReferenceInternals.getNextDiscovered(current);
+            next = (next != current) ? next : null; // cyclic link for last node
+            ReferenceInternals.setNextDiscovered(current, null);
+            if (isUnmarkedInSnapshot(ReferenceInternals.getReferentPointer(current))) {
+                ReferenceInternals.clear(current);
+                if (ReferenceInternals.hasQueue(current)) {
+                    ReferenceInternals.setNextDiscovered(current, pendingHead);
+                    HeapImpl.getHeapImpl().dirtyCardIfNecessary(current, pendingHead);
+                    pendingHead = current;
+                }
+            }
+            current = next;
+        }
+        HeapImpl.getHeapImpl().addToReferencePendingList(pendingHead);
+    }
+
+    private static boolean isUnmarkedInSnapshot(Pointer p) {
+        if (p.isNull() || HeapImpl.getHeapImpl().isInImageHeap(p)) {
+            return false;
+        }
+        UnsignedWord header = ObjectHeaderImpl.readHeaderFromPointer(p);
+        HeapChunk.Header<?> chunk = HeapChunk.getEnclosingHeapChunk(p, header);
+        UnsignedWord tams = HeapChunk.getTopAtMarkStartOffset(chunk);
+        if (tams.equal(0) || p.aboveOrEqual(HeapChunk.asPointer(chunk).add(tams))) {
+            return false;
+        }
+        return !isMarked(chunk, p, ObjectHeaderImpl.isAlignedHeader(p, header));
+    }
+
+    /** Marks an object of the snapshot and pushes it for scanning, unless it is already marked. */
+    @AlwaysInline("GC performance")
+    void markObject(Pointer p) {
+        if (p.isNull() || HeapImpl.getHeapImpl().isInImageHeap(p)) {
+            return;
+        }
+        UnsignedWord header = ObjectHeaderImpl.readHeaderFromPointer(p);
+        boolean aligned = ObjectHeaderImpl.isAlignedHeader(p, header);
+        HeapChunk.Header<?> chunk = HeapChunk.getEnclosingHeapChunk(p, header);
+        UnsignedWord tams = HeapChunk.getTopAtMarkStartOffset(chunk);
+        if (tams.equal(0) || p.aboveOrEqual(HeapChunk.asPointer(chunk).add(tams))) {
+            /* A young object, or an old object that was not part of the snapshot: implicitly live. */
+            return;
+        }
+        UnsignedWord index = getMarkBitIndex(chunk, p, aligned);
+        Pointer word = getMarkBitmapWord(chunk, index);
+        long mask = getMarkBitMask(index);
+        long bits = word.readLong(0);
+        if ((bits & mask) != 0) {
+            return;
+        }
+        word.writeLong(0, bits | mask);
+        pushMarkStack(p);
+    }
+
+    private static boolean isMarked(HeapChunk.Header<?> chunk, Pointer p, boolean aligned) {
+        UnsignedWord index = getMarkBitIndex(chunk, p, aligned);
+        return (getMarkBitmapWord(chunk, index).readLong(0) & getMarkBitMask(index)) != 0;
+    }
+
+    private static UnsignedWord getMarkBitIndex(HeapChunk.Header<?> chunk, Pointer p, boolean aligned) {
+        if (!aligned) {
+            return WordFactory.zero();
+        }
+        return p.subtract(HeapChunk.asPointer(chunk)).unsignedDivide(ConfigurationValues.getObjectLayout().getAlignment());
+    }
+
+    private static Pointer getMarkBitmapWord(HeapChunk.Header<?> chunk, UnsignedWord index) {
+        return HeapChunk.getMarkBitmap(chunk).add(index.unsignedDivide(Long.SIZE).multiply(Long.BYTES));
+    }
+
+    private static long getMarkBitMask(UnsignedWord index) {
+        return 1L << index.unsignedRemainder(Long.SIZE).rawValue();
+    }
+
+    private void scanObject(Pointer p) {
+        objectVisitor.visitObjectInline(p.toObject());
+    }
+
+    private void pushMarkStack(Pointer p) {
+        if (markStackCount == markStackCapacity) {
+            growMarkStack();
+        }
+        markStack.writeWord(WordFactory.unsigned(markStackCount).multiply(ConfigurationValues.getTarget().wordSize), p);
+        markStackCount++;
+    }
+
+    private Pointer popMarkStack() {
+        markStackCount--;
+        return markStack.readWord(WordFactory.unsigned(markStackCount).multiply(ConfigurationValues.getTarget().wordSize));
+    }
+
+    private void growMarkStack() {
+        int newCapacity = (markStackCapacity == 0) ? INITIAL_MARK_STACK_CAPACITY : (2 * markStackCapacity);
+        UnsignedWord newSize = WordFactory.unsigned(newCapacity).multiply(ConfigurationValues.getTarget().wordSize);
+        Pointer newStack = ImageSingletons.lookup(UnmanagedMemorySupport.class).realloc(markStack, newSize);
+        if (newStack.isNull()) {
+            throw VMError.shouldNotReachHere("Could not allocate memory for the concurrent marker.");
+        }
+        markStack = newStack;
+        markStackCapacity = newCapacity;
+    }
+
+    long getCompletedCycles() {
+        return completedCycles;
+    }
+
+    long getAbortedCycles() {
+        return abortedCycles;
+    }
+
+    long getStopTheWorldCycles() {
+        return stopTheWorldCycles;
+    }
+
+    UnsignedWord getReleasedChunkBytes() {
+        return releasedChunkBytes;
+    }
+
+    UnsignedWord getFilledBytes() {
+        return filledBytes;
+    }
+
+    /** Marks the objects that references point to. */
+    private static final class MarkingObjRefVisitor implements ObjectReferenceVisitor {
+        private final ConcurrentMarker marker;
+
+        @Platforms(Platform.HOSTED_ONLY.class)
+        MarkingObjRefVisitor(ConcurrentMarker marker) {
+            this.marker = marker;
+        }
+
+        @Override
+        public boolean visitObjectReference(Pointer objRef, boolean compressed) {
+            return visitObjectReferenceInline(objRef, 0, compressed);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed) {
+            Pointer offsetP = ReferenceAccess.singleton().readObjectAsUntrackedPointer(objRef, compressed);
+            if (offsetP.isNonNull()) {
+                marker.markObject(offsetP.subtract(innerOffset));
+            }
+            return true;
+        }
+    }
+
+    /** Marks the objects that an object refers to, including the referent of a reference. */
+    private static final class MarkingObjectVisitor implements ObjectVisitor {
+        private final ConcurrentMarker marker;
+        private final MarkingObjRefVisitor refVisitor;
+
+        @Platforms(Platform.HOSTED_ONLY.class)
+        MarkingObjectVisitor(ConcurrentMarker marker, MarkingObjRefVisitor refVisitor) {
+            this.marker = marker;
+            this.refVisitor = refVisitor;
+        }
+
+        @Override
+        public boolean visitObject(Object o) {
+            return visitObjectInline(o);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectInline(Object o) {
+            InteriorObjRefWalker.walkObjectInline(o, refVisitor);
+            if (probability(SLOW_PATH_PROBABILITY, KnownIntrinsics.readHub(o).isReferenceInstanceClass())) {
+                Reference<?> ref = KnownIntrinsics.convertUnknownValue(o, Reference.class);
+                if (!marker.discoverReference(ref)) {
+                    refVisitor.visitObjectReference(ReferenceInternals.getReferentFieldAddress(ref), true);
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ImageHeapRootsVisitor implements MemoryWalker.ImageHeapRegionVisitor {
+        private final MarkingObjectVisitor objectVisitor;
+
+        @Platforms(Platform.HOSTED_ONLY.class)
+        ImageHeapRootsVisitor(MarkingObjectVisitor objectVisitor) {
+            this.objectVisitor = objectVisitor;
+        }
+
+        @Override
+        public <T> boolean visitNativeImageHeapRegion(T region, MemoryWalker.NativeImageHeapRegionAccess<T> access) {
+            if (access.containsReferences(region) && access.isWritable(region)) {
+                access.visitObjects(region, objectVisitor);
+            }
+            return true;
+        }
+    }
+
+    /** Treats all references from runtime-compiled code as strong while marking. */
+    private static final class CodeCacheRootsVisitor implements CodeInfoVisitor {
+        private final MarkingObjRefVisitor refVisitor;
+
+        @Platforms(Platform.HOSTED_ONLY.class)
+        CodeCacheRootsVisitor(MarkingObjRefVisitor refVisitor) {
+            this.refVisitor = refVisitor;
+        }
+
+        @Override
+        public <T extends CodeInfo> boolean visitCode(T codeInfo) {
+            if (!RuntimeCodeInfoAccess.areAllObjectsOnImageHeap(codeInfo)) {
+                RuntimeCodeInfoAccess.walkObjectFields(codeInfo, refVisitor);
+                RuntimeCodeInfoAccess.walkWeakReferences(codeInfo, refVisitor);
+            }
+            return true;
+        }
+    }
+}
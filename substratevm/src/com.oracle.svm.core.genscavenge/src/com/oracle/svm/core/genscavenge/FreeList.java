@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.config.ConfigurationValues;
+import com.oracle.svm.core.genscavenge.AlignedHeapChunk.AlignedHeader;
+import com.oracle.svm.core.genscavenge.graal.nodes.FormatArrayNode;
+import com.oracle.svm.core.genscavenge.graal.nodes.FormatObjectNode;
+import com.oracle.svm.core.heap.FillerObject;
+import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.thread.VMOperation;
+import com.oracle.svm.core.util.UnsignedUtils;
+import com.oracle.svm.core.util.VMError;
+
+/**
+ * The gaps between live objects in the aligned chunks of the old generation that a sweep of
+ * {@link ConcurrentMarker} left behind. Incremental collections promote objects into these gaps
+ * before they request new chunks, so that the memory of the old generation is reused in place.
+ * <p>
+ * Each gap is an {@code int[]} filler object, which keeps the chunk parsable and holds the address
+ * of the next gap in its elements. Gaps are allocated first-fit from the front of the list, and the
+ * rest of a gap stays a (smaller) gap.
+ * <p>
+ * Objects that are promoted into a gap are not visited by the {@link GreyObjectsWalker} of the old
+ * generation because they are below the top of their chunk, so they are recorded here until they
+ * have been scanned.
+ * <p>
+ * This data is only accessed during a GC, by the thread that executes the collection.
+ */
+final class FreeList {
+    /** Gaps smaller than this are left as filler objects and are not reused. */
+    private static final int MINIMUM_GAP_SIZE = 64;
+    /** Number of gaps that are examined before an allocation gives up on the list. */
+    private static final int MAXIMUM_PROBES = 8;
+    private static final int INITIAL_GREY_OBJECTS_CAPACITY = 256;
+
+    private Pointer head = WordFactory.nullPointer();
+    private UnsignedWord freeBytes = WordFactory.zero();
+    private UnsignedWord reusedBytes = WordFactory.zero();
+
+    /** Objects that were promoted into gaps and have not been scanned yet. */
+    private Pointer greyObjects = WordFactory.nullPointer();
+    private int greyObjectsCount;
+    private int greyObjectsCapacity;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    FreeList() {
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    void tearDown() {
+        if (greyObjects.isNonNull()) {
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(greyObjects);
+            greyObjects = WordFactory.nullPointer();
+        }
+    }
+
+    /** Forgets all gaps, for example because they are about to be swept or evacuated. */
+    void clear() {
+        assert greyObjectsCount == 0;
+        head = WordFactory.nullPointer();
+        freeBytes = WordFactory.zero();
+    }
+
+    UnsignedWord getFreeBytes() {
+        return freeBytes;
+    }
+
+    UnsignedWord getReusedBytes() {
+        return reusedBytes;
+    }
+
+    /** Turns the memory between two objects of an old chunk into a gap. */
+    void addGap(AlignedHeader chunk, Pointer start, UnsignedWord size) {
+        fill(chunk, start, size);
+        if (size.aboveOrEqual(MINIMUM_GAP_SIZE)) {
+            setNext(start, head);
+            head = start;
+            freeBytes = freeBytes.add(size);
+        }
+    }
+
+    /**
+     * Takes memory for a promoted object from a gap.
+     *
+     * @return the memory, or null if none of the examined gaps fits.
+     */
+    Pointer allocate(UnsignedWord size) {
+        assert VMOperation.isGCInProgress();
+        Pointer previous = WordFactory.nullPointer();
+        Pointer gap = head;
+        for (int probes = 0; gap.isNonNull() && probes < MAXIMUM_PROBES; probes++) {
+            UnsignedWord gapSize = LayoutEncoding.getSizeFromObject(gap.toObject());
+            if (gapSize.aboveOrEqual(size)) {
+                UnsignedWord restSize = gapSize.subtract(size);
+                if (restSize.equal(0) || restSize.aboveOrEqual(getMinimumFillerSize())) {
+                    takeGap(previous, gap, size, restSize);
+                    reusedBytes = reusedBytes.add(size);
+                    return gap;
+                }
+            }
+            previous = gap;
+            gap = getNext(gap);
+        }
+        return WordFactory.nullPointer();
+    }
+
+    private void takeGap(Pointer previous, Pointer gap, UnsignedWord size, UnsignedWord restSize) {
+        Pointer next = getNext(gap);
+        Pointer replacement = next;
+        freeBytes = freeBytes.subtract(size);
+        if (restSize.aboveThan(0)) {
+            Pointer rest = gap.add(size);
+            fill(AlignedHeapChunk.getEnclosingChunkFromObjectPointer(gap), rest, restSize);
+            if (restSize.aboveOrEqual(MINIMUM_GAP_SIZE)) {
+                setNext(rest, next);
+                replacement = rest;
+            } else {
+                freeBytes = freeBytes.subtract(restSize);
+            }
+        }
+        if (previous.isNull()) {
+            head = replacement;
+        } else {
+            setNext(previous, replacement);
+        }
+    }
+
+    /** Records an object that was promoted into a gap, so that it is scanned later. */
+    void recordGreyObject(Pointer obj) {
+        if (greyObjectsCount == greyObjectsCapacity) {
+            growGreyObjects();
+        }
+        greyObjects.writeWord(WordFactory.unsigned(greyObjectsCount).multiply(ConfigurationValues.getTarget().wordSize), obj);
+        greyObjectsCount++;
+    }
+
+    /**
+     * Blackens the objects that were promoted into gaps, including those that are promoted into
+     * gaps while doing so.
+     *
+     * @return true if there were any grey objects.
+     */
+    boolean scanGreyObjects() {
+        if (greyObjectsCount == 0) {
+            return false;
+        }
+        GreyToBlackObjectVisitor visitor = GCImpl.getGCImpl().getGreyToBlackObjectVisitor();
+        while (greyObjectsCount > 0) {
+            greyObjectsCount--;
+            Pointer obj = greyObjects.readWord(WordFactory.unsigned(greyObjectsCount).multiply(ConfigurationValues.getTarget().wordSize));
+            visitor.visitObjectInline(obj.toObject());
+        }
+        return true;
+    }
+
+    /** Hands the objects that were promoted into gaps to the workers of a parallel scavenge. */
+    void offerGreyObjects(ParallelScavenger scavenger) {
+        for (int i = 0; i < greyObjectsCount; i++) {
+            Pointer obj = greyObjects.readWord(WordFactory.unsigned(i).multiply(ConfigurationValues.getTarget().wordSize));
+            scavenger.offerGreyObjects(obj, obj.add(LayoutEncoding.getSizeFromObject(obj.toObject())));
+        }
+        greyObjectsCount = 0;
+    }
+
+    private void growGreyObjects() {
+        int newCapacity = (greyObjectsCapacity == 0) ? INITIAL_GREY_OBJECTS_CAPACITY : (2 * greyObjectsCapacity);
+        UnsignedWord newSize = WordFactory.unsigned(newCapacity).multiply(ConfigurationValues.getTarget().wordSize);
+        Pointer newGreyObjects = ImageSingletons.lookup(UnmanagedMemorySupport.class).realloc(greyObjects, newSize);
+        if (newGreyObjects.isNull()) {
+            throw VMError.shouldNotReachHere("Could not allocate memory for the free list of the old generation.");
+        }
+        greyObjects = newGreyObjects;
+        greyObjectsCapacity = newCapacity;
+    }
+
+    /**
+     * Formats the memory between two objects of an old chunk as a single filler object: an
+     * {@code int[]} if it is large enough, and a {@link FillerObject} otherwise.
+     */
+    static void fill(AlignedHeader chunk, Pointer start, UnsignedWord size) {
+        int arrayEncoding = getFillerArrayEncoding();
+        UnsignedWord minimumArraySize = LayoutEncoding.getArraySize(arrayEncoding, 0);
+        Object filler;
+        if (size.aboveOrEqual(minimumArraySize)) {
+            int length = UnsignedUtils.safeToInt(size.subtract(minimumArraySize).unsignedDivide(LayoutEncoding.getArrayIndexScale(arrayEncoding)));
+            filler = FormatArrayNode.formatArray(start, int[].class, length, true, false, false, false);
+        } else {
+            filler = FormatObjectNode.formatObject(start, FillerObject.class, true, false, false);
+        }
+        assert LayoutEncoding.getObjectEnd(filler).equal(start.add(size)) : "Filler object must span the entire gap";
+        AlignedHeapChunk.setUpRememberedSetForObject(chunk, filler);
+    }
+
+    private static int getFillerArrayEncoding() {
+        return DynamicHub.fromClass(int[].class).getLayoutEncoding();
+    }
+
+    private static UnsignedWord getMinimumFillerSize() {
+        return LayoutEncoding.getInstanceSize(DynamicHub.fromClass(FillerObject.class).getLayoutEncoding());
+    }
+
+    /** The link to the next gap is stored in the first word-aligned elements of the filler. */
+    private static UnsignedWord getNextOffset() {
+        UnsignedWord wordSize = WordFactory.unsigned(ConfigurationValues.getTarget().wordSize);
+        return UnsignedUtils.roundUp(LayoutEncoding.getArrayBaseOffset(getFillerArrayEncoding()), wordSize);
+    }
+
+    private static Pointer getNext(Pointer gap) {
+        return gap.readWord(getNextOffset());
+    }
+
+    private static void setNext(Pointer gap, Pointer next) {
+        gap.writeWord(getNextOffset(), next);
+    }
+}
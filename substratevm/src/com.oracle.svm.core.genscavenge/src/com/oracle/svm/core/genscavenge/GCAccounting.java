@@ -64,6 +64,15 @@ public final class GCAccounting {
     private UnsignedWord oldObjectBytesBefore = WordFactory.zero();
     private UnsignedWord allocatedObjectBytes = WordFactory.zero();
 
+    /*
+     * Aligned chunk slow path counters. They are gathered from the threads when their chunk caches
+     * are flushed, which happens at safepoints and when a thread detaches (with the thread mutex
+     * held).
+     */
+    private long cachedAlignedChunkCount = 0;
+    private long unusedListPopCount = 0;
+    private long committedAlignedChunkCount = 0;
+
     @Platforms(Platform.HOSTED_ONLY.class)
     GCAccounting() {
     }
@@ -104,6 +113,10 @@ public final class GCAccounting {
         return oldChunkBytesAfter;
     }
 
+    UnsignedWord getYoungChunkBytesBefore() {
+        return youngChunkBytesBefore;
+    }
+
     UnsignedWord getYoungChunkBytesAfter() {
         return youngChunkBytesAfter;
     }
@@ -116,6 +129,27 @@ public final class GCAccounting {
         return lastCollectionPromotedChunkBytes;
     }
 
+    /** The number of aligned chunks that were taken from a thread-local chunk cache. */
+    public long getCachedAlignedChunkCount() {
+        return cachedAlignedChunkCount;
+    }
+
+    /** The number of (possibly batched) pops from the shared list of unused aligned chunks. */
+    public long getUnusedListPopCount() {
+        return unusedListPopCount;
+    }
+
+    /** The number of aligned chunks that had to be allocated from the operating system. */
+    public long getCommittedAlignedChunkCount() {
+        return committedAlignedChunkCount;
+    }
+
+    void addAlignedChunkCounts(long cachedChunks, long unusedListPops, long committedChunks) {
+        cachedAlignedChunkCount += cachedChunks;
+        unusedListPopCount += unusedListPops;
+        committedAlignedChunkCount += committedChunks;
+    }
+
     void beforeCollection() {
         Log trace = Log.noopLog().string("[GCImpl.Accounting.beforeCollection:").newline();
         /* Gather some space statistics. */
@@ -71,10 +71,12 @@ import com.oracle.svm.core.heap.CodeReferenceMapDecoder;
 import com.oracle.svm.core.heap.GC;
 import com.oracle.svm.core.heap.GCCause;
 import com.oracle.svm.core.heap.NoAllocationVerifier;
+import com.oracle.svm.core.heap.ObjectReferenceVisitor;
 import com.oracle.svm.core.heap.ObjectVisitor;
 import com.oracle.svm.core.heap.ReferenceHandler;
 import com.oracle.svm.core.heap.RuntimeCodeCacheCleaner;
 import com.oracle.svm.core.jdk.RuntimeSupport;
+import com.oracle.svm.core.jfr.FlightRecorder;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.os.CommittedMemoryProvider;
 import com.oracle.svm.core.snippets.ImplicitExceptions;
@@ -104,12 +106,15 @@ public final class GCImpl implements GC {
     private final RuntimeCodeCacheCleaner runtimeCodeCacheCleaner = new RuntimeCodeCacheCleaner();
 
     private final GCAccounting accounting = new GCAccounting();
+    private final AdaptiveYoungGenerationSizing youngGenerationSizing = new AdaptiveYoungGenerationSizing();
     private final Timers timers = new Timers();
 
     private final CollectionVMOperation collectOperation = new CollectionVMOperation();
     private final OutOfMemoryError oldGenerationSizeExceeded = new OutOfMemoryError("Garbage-collected heap size exceeded.");
     private final NoAllocationVerifier noAllocationVerifier = NoAllocationVerifier.factory("GCImpl.GCImpl()", false);
     private final ChunkReleaser chunkReleaser = new ChunkReleaser();
+    private final ParallelScavenger parallelScavenger = new ParallelScavenger();
+    private final ConcurrentMarker concurrentMarker = new ConcurrentMarker();
 
     private CollectionPolicy policy;
     private boolean completeCollection = false;
@@ -121,6 +126,12 @@ public final class GCImpl implements GC {
     GCImpl(FeatureAccess access) {
         this.policy = CollectionPolicy.getInitialPolicy(access);
         RuntimeSupport.getRuntimeSupport().addShutdownHook(this::printGCSummary);
+        RuntimeSupport.getRuntimeSupport().addInitializationHook(parallelScavenger::startWorkerThreads);
+        RuntimeSupport.getRuntimeSupport().addTearDownHook(parallelScavenger::tearDown);
+        if (ConcurrentMarker.isSupported()) {
+            RuntimeSupport.getRuntimeSupport().addInitializationHook(concurrentMarker::startMarkerThread);
+            RuntimeSupport.getRuntimeSupport().addTearDownHook(concurrentMarker::tearDown);
+        }
     }
 
     @Override
@@ -166,6 +177,7 @@ public final class GCImpl implements GC {
         printGCBefore(cause.getName());
         boolean outOfMemory = collectImpl(cause.getName());
         HeapPolicy.setEdenAndYoungGenBytes(WordFactory.unsigned(0), accounting.getYoungChunkBytesAfter());
+        youngGenerationSizing.afterCollection(completeCollection, timers.collection.getMeasuredNanos(), timers.mutator.getLastIntervalNanos(), accounting);
         printGCAfter(cause.getName());
 
         finishCollection();
@@ -217,17 +229,42 @@ public final class GCImpl implements GC {
         accounting.beforeCollection();
 
         try (Timer ct = timers.collection.open()) {
-            if (appliedPolicy.collectIncrementally()) {
+            boolean startConcurrentCycle = ConcurrentMarker.isSupported() && appliedPolicy.collectCompletely() && appliedPolicy.collectIncrementally() &&
+                            appliedPolicy != collectOnlyCompletelyPolicy;
+            boolean markSweep = ConcurrentMarker.isMarkSweepEnabled() && appliedPolicy.collectCompletely() && !startConcurrentCycle;
+            if (appliedPolicy.collectIncrementally() || markSweep) {
+                if (ConcurrentMarker.isSupported()) {
+                    concurrentMarker.beforeIncrementalCollection();
+                }
+                completeCollection = false;
                 scavenge(true);
             }
+            if (markSweep) {
+                /* Reclaim the old generation in place instead of copying it. */
+                concurrentMarker.markAndSweep(chunkReleaser);
+            }
             completeCollection = appliedPolicy.collectCompletely();
+            if (startConcurrentCycle) {
+                /* Reclaim the old generation with a concurrent marking cycle instead of copying it. */
+                completeCollection = false;
+                concurrentMarker.requestCycle();
+            }
             if (completeCollection) {
-                scavenge(false);
+                if (!markSweep) {
+                    if (ConcurrentMarker.isSupported()) {
+                        concurrentMarker.abort();
+                    }
+                    scavenge(false);
+                }
+            } else if (ConcurrentMarker.isSupported()) {
+                concurrentMarker.afterIncrementalCollection(chunkReleaser);
             }
         }
         CommittedMemoryProvider.get().afterGarbageCollection(completeCollection);
 
         accounting.afterCollection(completeCollection, timers.collection);
+        long collectionEnd = timers.collection.getFinish();
+        FlightRecorder.emitGarbageCollection(getCollectionEpoch().rawValue(), completeCollection, collectionEnd - timers.collection.getLastIntervalNanos(), collectionEnd);
         UnsignedWord maxBytes = HeapPolicy.getMaximumHeapSize();
         UnsignedWord usedBytes = getChunkBytes();
         boolean outOfMemory = usedBytes.aboveThan(maxBytes);
@@ -451,6 +488,9 @@ public final class GCImpl implements GC {
             trace.string("  Discovered references: ");
             try (Timer drt = timers.referenceObjects.open()) {
                 Reference<?> newlyPendingList = ReferenceObjectProcessing.processRememberedReferences();
+                if (ConcurrentMarker.isSupported()) {
+                    concurrentMarker.markPendingReferences(newlyPendingList);
+                }
                 HeapImpl.getHeapImpl().addToReferencePendingList(newlyPendingList);
             }
             trace.string("  Release spaces: ");
@@ -625,45 +665,48 @@ public final class GCImpl implements GC {
         trace.string("]").newline();
     }
 
+    @SuppressWarnings("try")
+    private void blackenStackRoots() {
+        try (Timer bsr = timers.blackenStackRoots.open()) {
+            walkStackRoots(greyToBlackObjRefVisitor);
+        }
+    }
+
     @NeverInline("Starting a stack walk in the caller frame. " +
                     "Note that we could start the stack frame also further down the stack, because GC stack frames must not access any objects that are processed by the GC. " +
                     "But we don't store stack frame information for the first frame we would need to process.")
     @Uninterruptible(reason = "Required by called JavaStackWalker methods. We are at a safepoint during GC, so it does not change anything for this method.", calleeMustBe = false)
-    @SuppressWarnings("try")
-    private void blackenStackRoots() {
-        Log trace = Log.noopLog().string("[GCImpl.blackenStackRoots:").newline();
-        try (Timer bsr = timers.blackenStackRoots.open()) {
-            Pointer sp = readCallerStackPointer();
-            trace.string("[blackenStackRoots:").string("  sp: ").hex(sp);
-            CodePointer ip = readReturnAddress();
-            trace.string("  ip: ").hex(ip).newline();
+    void walkStackRoots(ObjectReferenceVisitor visitor) {
+        Log trace = Log.noopLog().string("[GCImpl.walkStackRoots:").newline();
+        Pointer sp = readCallerStackPointer();
+        trace.string("  sp: ").hex(sp);
+        CodePointer ip = readReturnAddress();
+        trace.string("  ip: ").hex(ip).newline();
 
-            JavaStackWalk walk = StackValue.get(JavaStackWalk.class);
-            JavaStackWalker.initWalk(walk, sp, ip);
-            walkStack(walk);
+        JavaStackWalk walk = StackValue.get(JavaStackWalk.class);
+        JavaStackWalker.initWalk(walk, sp, ip);
+        walkStack(walk, visitor);
 
-            if (SubstrateOptions.MultiThreaded.getValue()) {
-                /*
-                 * Scan the stacks of all the threads. Other threads will be blocked at a safepoint
-                 * (or in native code) so they will each have a JavaFrameAnchor in their VMThread.
-                 */
-                for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
-                    if (vmThread == CurrentIsolate.getCurrentThread()) {
-                        /*
-                         * The current thread is already scanned by code above, so we do not have to
-                         * do anything for it here. It might have a JavaFrameAnchor from earlier
-                         * Java-to-C transitions, but certainly not at the top of the stack since it
-                         * is running this code, so just this scan would be incomplete.
-                         */
-                        continue;
-                    }
-                    if (JavaStackWalker.initWalk(walk, vmThread)) {
-                        walkStack(walk);
-                    }
-                    trace.newline();
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            /*
+             * Scan the stacks of all the threads. Other threads will be blocked at a safepoint
+             * (or in native code) so they will each have a JavaFrameAnchor in their VMThread.
+             */
+            for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+                if (vmThread == CurrentIsolate.getCurrentThread()) {
+                    /*
+                     * The current thread is already scanned by code above, so we do not have to
+                     * do anything for it here. It might have a JavaFrameAnchor from earlier
+                     * Java-to-C transitions, but certainly not at the top of the stack since it
+                     * is running this code, so just this scan would be incomplete.
+                     */
+                    continue;
+                }
+                if (JavaStackWalker.initWalk(walk, vmThread)) {
+                    walkStack(walk, visitor);
                 }
+                trace.newline();
             }
-            trace.string("]").newline();
         }
         trace.string("]").newline();
     }
@@ -675,7 +718,7 @@ public final class GCImpl implements GC {
      * calls to a stack frame visitor.
      */
     @Uninterruptible(reason = "Required by called JavaStackWalker methods. We are at a safepoint during GC, so it does not change anything for this method.", calleeMustBe = false)
-    private void walkStack(JavaStackWalk walk) {
+    private void walkStack(JavaStackWalk walk, ObjectReferenceVisitor visitor) {
         assert VMOperation.isGCInProgress() : "This methods accesses a CodeInfo without a tether";
 
         while (true) {
@@ -699,7 +742,7 @@ public final class GCImpl implements GC {
                 if (referenceMapIndex == CodeInfoQueryResult.NO_REFERENCE_MAP) {
                     throw CodeInfoTable.reportNoReferenceMap(sp, ip, codeInfo);
                 }
-                CodeReferenceMapDecoder.walkOffsetsFromPointer(sp, referenceMapEncoding, referenceMapIndex, greyToBlackObjRefVisitor);
+                CodeReferenceMapDecoder.walkOffsetsFromPointer(sp, referenceMapEncoding, referenceMapIndex, visitor);
             } else {
                 /*
                  * This is a deoptimized frame. The DeoptimizedFrame object is stored in the frame,
@@ -715,8 +758,8 @@ public final class GCImpl implements GC {
                  * decide to invalidate too much code, depending on the order in which the CodeInfo
                  * objects are visited.
                  */
-                RuntimeCodeInfoAccess.walkStrongReferences(codeInfo, greyToBlackObjRefVisitor);
-                RuntimeCodeInfoAccess.walkWeakReferences(codeInfo, greyToBlackObjRefVisitor);
+                RuntimeCodeInfoAccess.walkStrongReferences(codeInfo, visitor);
+                RuntimeCodeInfoAccess.walkWeakReferences(codeInfo, visitor);
             }
 
             if (!JavaStackWalker.continueWalk(walk, queryResult, deoptFrame)) {
@@ -838,6 +881,9 @@ public final class GCImpl implements GC {
         OldGeneration oldGen = heap.getOldGeneration();
         try (Timer sgot = timers.scanGreyObjects.open()) {
             if (isIncremental) {
+                if (parallelScavenger.isEnabled()) {
+                    parallelScavenger.scanGreyObjects(oldGen);
+                }
                 scanGreyObjectsLoop();
             } else {
                 oldGen.scanGreyObjects();
@@ -946,7 +992,7 @@ public final class GCImpl implements GC {
             return;
         }
 
-        Timer refsTimer = new Timer("Enqueuing pending references and invoking internal cleaners");
+        Timer refsTimer = new Timer("Enqueuing pending references and invoking internal cleaners", false);
         try (Timer timer = refsTimer.open()) {
             ReferenceHandler.maybeProcessCurrentlyPending();
         }
@@ -972,6 +1018,15 @@ public final class GCImpl implements GC {
         policy = newPolicy;
     }
 
+    ParallelScavenger getParallelScavenger() {
+        return parallelScavenger;
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    ConcurrentMarker getConcurrentMarker() {
+        return concurrentMarker;
+    }
+
     GreyToBlackObjectVisitor getGreyToBlackObjectVisitor() {
         return greyToBlackObjectVisitor;
     }
@@ -1158,6 +1213,11 @@ public final class GCImpl implements GC {
         final String prefix = "PrintGCSummary: ";
 
         log.string(prefix).string("YoungGenerationSize: ").unsigned(HeapPolicy.getMaximumYoungGenerationSize()).newline();
+        if (AdaptiveYoungGenerationSizing.isEnabled()) {
+            log.string(prefix).string("AdaptiveYoungGenerationSize: ").unsigned(HeapPolicy.getYoungGenerationSize()).newline();
+            log.string(prefix).string("AdaptiveYoungGenerationSamples: ").signed(youngGenerationSizing.getSamples()).newline();
+            log.string(prefix).string("AdaptiveYoungGenerationResizes: ").signed(youngGenerationSizing.getResizes()).newline();
+        }
         log.string(prefix).string("MinimumHeapSize: ").unsigned(HeapPolicy.getMinimumHeapSize()).newline();
         log.string(prefix).string("MaximumHeapSize: ").unsigned(HeapPolicy.getMaximumHeapSize()).newline();
         log.string(prefix).string("AlignedChunkSize: ").unsigned(HeapPolicy.getAlignedHeapChunkSize()).newline();
@@ -1175,6 +1235,9 @@ public final class GCImpl implements GC {
         log.string(prefix).string("CollectedTotalObjectBytes: ").signed(accounting.getCollectedTotalObjectBytes()).newline();
         log.string(prefix).string("AllocatedNormalChunkBytes: ").signed(allocatedChunkBytes).newline();
         log.string(prefix).string("AllocatedNormalObjectBytes: ").signed(allocatedObjectBytes).newline();
+        log.string(prefix).string("CachedAlignedChunks: ").signed(accounting.getCachedAlignedChunkCount()).newline();
+        log.string(prefix).string("UnusedAlignedChunkListPops: ").signed(accounting.getUnusedListPopCount()).newline();
+        log.string(prefix).string("CommittedAlignedChunks: ").signed(accounting.getCommittedAlignedChunkCount()).newline();
 
         long incrementalNanos = accounting.getIncrementalCollectionTotalNanos();
         log.string(prefix).string("IncrementalGCCount: ").signed(accounting.getIncrementalCollectionCount()).newline();
@@ -1182,6 +1245,20 @@ public final class GCImpl implements GC {
         long completeNanos = accounting.getCompleteCollectionTotalNanos();
         log.string(prefix).string("CompleteGCCount: ").signed(accounting.getCompleteCollectionCount()).newline();
         log.string(prefix).string("CompleteGCNanos: ").signed(completeNanos).newline();
+        if (parallelScavenger.isEnabled()) {
+            log.string(prefix).string("ParallelGCWorkers: ").signed(parallelScavenger.getRegisteredWorkers()).newline();
+            log.string(prefix).string("ParallelScavenges: ").signed(parallelScavenger.getSessions()).newline();
+        }
+        if (ConcurrentMarker.isSupported()) {
+            log.string(prefix).string("ConcurrentMarkingCycles: ").signed(concurrentMarker.getCompletedCycles()).newline();
+            log.string(prefix).string("AbortedConcurrentMarkingCycles: ").signed(concurrentMarker.getAbortedCycles()).newline();
+        }
+        if (ConcurrentMarker.isSupported() || ConcurrentMarker.isMarkSweepEnabled()) {
+            log.string(prefix).string("MarkSweepCollections: ").signed(concurrentMarker.getStopTheWorldCycles()).newline();
+            log.string(prefix).string("SweptReleasedChunkBytes: ").unsigned(concurrentMarker.getReleasedChunkBytes()).newline();
+            log.string(prefix).string("SweptFilledBytes: ").unsigned(concurrentMarker.getFilledBytes()).newline();
+            log.string(prefix).string("FreeListReusedBytes: ").unsigned(heap.getOldGeneration().getFreeList().getReusedBytes()).newline();
+        }
 
         long gcNanos = incrementalNanos + completeNanos;
         long mutatorNanos = timers.mutator.getMeasuredNanos();
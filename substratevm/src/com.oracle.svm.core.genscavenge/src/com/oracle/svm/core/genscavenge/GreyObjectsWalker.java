@@ -84,6 +84,41 @@ final class GreyObjectsWalker {
         }
     }
 
+    /**
+     * Hand the grey Objects since the snapshot to a {@link ParallelScavenger} as ranges of
+     * contiguous Objects, and move the scan point past them.
+     */
+    void offerGreyObjects(ParallelScavenger scavenger) {
+        AlignedHeapChunk.AlignedHeader aChunk;
+        Pointer start;
+        if (alignedHeapChunk.isNull() && alignedTop.isNull()) {
+            aChunk = space.getFirstAlignedHeapChunk();
+            start = (aChunk.isNonNull() ? AlignedHeapChunk.getObjectsStart(aChunk) : WordFactory.nullPointer());
+        } else {
+            aChunk = alignedHeapChunk;
+            start = alignedTop;
+        }
+        while (aChunk.isNonNull()) {
+            scavenger.offerGreyObjects(start, HeapChunk.getTopPointer(aChunk));
+            aChunk = HeapChunk.getNext(aChunk);
+            if (aChunk.isNonNull()) {
+                start = AlignedHeapChunk.getObjectsStart(aChunk);
+            }
+        }
+
+        UnalignedHeapChunk.UnalignedHeader uChunk;
+        if (unalignedHeapChunk.isNull()) {
+            uChunk = space.getFirstUnalignedHeapChunk();
+        } else {
+            uChunk = HeapChunk.getNext(unalignedHeapChunk);
+        }
+        while (uChunk.isNonNull()) {
+            scavenger.offerGreyObjects(UnalignedHeapChunk.getObjectStart(uChunk), HeapChunk.getTopPointer(uChunk));
+            uChunk = HeapChunk.getNext(uChunk);
+        }
+        setScanStart(space);
+    }
+
     @AlwaysInline("GC performance")
     private void walkAlignedGreyObjects() {
         AlignedHeapChunk.AlignedHeader aChunk;
@@ -168,6 +168,30 @@ final class HeapChunk {
         @RawField
         @UniqueLocationIdentity
         void setOffsetToNextChunk(SignedWord newNext);
+
+        /**
+         * Offset of top when the current concurrent marking cycle started, or zero if the chunk is
+         * not part of a marking snapshot. Objects at or above this offset are implicitly live.
+         */
+        @RawField
+        @UniqueLocationIdentity
+        UnsignedWord getTopAtMarkStartOffset();
+
+        @RawField
+        @UniqueLocationIdentity
+        void setTopAtMarkStartOffset(UnsignedWord newTopAtMarkStart);
+
+        /**
+         * The side bitmap with one bit per possible object start below the top at mark start, in
+         * unmanaged memory, or {@code NULL} if the chunk is not part of a marking snapshot.
+         */
+        @RawField
+        @UniqueLocationIdentity
+        Pointer getMarkBitmap();
+
+        @RawField
+        @UniqueLocationIdentity
+        void setMarkBitmap(Pointer newMarkBitmap);
     }
 
     @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
@@ -240,6 +264,26 @@ final class HeapChunk {
         that.setOffsetToNextChunk(offsetFromPointer(that, newNext));
     }
 
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static UnsignedWord getTopAtMarkStartOffset(Header<?> that) {
+        return that.getTopAtMarkStartOffset();
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static void setTopAtMarkStartOffset(Header<?> that, UnsignedWord newTopAtMarkStart) {
+        that.setTopAtMarkStartOffset(newTopAtMarkStart);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static Pointer getMarkBitmap(Header<?> that) {
+        return that.getMarkBitmap();
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static void setMarkBitmap(Header<?> that, Pointer newMarkBitmap) {
+        that.setMarkBitmap(newMarkBitmap);
+    }
+
     /**
      * Converts from an offset to a pointer, where a zero offset translates to {@code NULL}. This is
      * necessary for treating image heap chunks, where addresses at runtime are not yet known.
@@ -24,6 +24,7 @@
  */
 package com.oracle.svm.core.genscavenge;
 
+import org.graalvm.nativeimage.IsolateThread;
 import org.graalvm.nativeimage.Platform;
 import org.graalvm.nativeimage.Platforms;
 import org.graalvm.word.Pointer;
@@ -43,7 +44,11 @@ import com.oracle.svm.core.jdk.UninterruptibleUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils.AtomicUnsigned;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.os.CommittedMemoryProvider;
+import com.oracle.svm.core.thread.VMOperation;
 import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalLong;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
 
 /**
  * Allocates and frees the memory for aligned and unaligned heap chunks. The methods are
@@ -52,8 +57,28 @@ import com.oracle.svm.core.thread.VMThreads;
  * Memory for aligned chunks is not immediately released to the OS. Up to
  * {@link HeapPolicy#getMinimumHeapSize()} chunks are saved in an unused chunk list. Memory for
  * unaligned chunks is released immediately.
+ *
+ * To keep threads that allocate heavily from competing for the head of the unused chunk list,
+ * each thread can detach a small batch of unused chunks into a thread-local cache (see
+ * {@link HeapOptions#ThreadLocalAlignedChunkCacheSize}). The caches are returned to the unused
+ * chunk list at every safepoint that flushes the thread-local allocation buffers, so the list is
+ * complete whenever a collection computes how many chunks to keep.
  */
 final class HeapChunkProvider {
+    /**
+     * The thread-local cache of unused aligned chunks, chained using {@link HeapChunk#getNext}.
+     * Only accessed in uninterruptible code by its owner, or during a safepoint.
+     */
+    private static final FastThreadLocalWord<AlignedHeader> cachedAlignedChunksTL = FastThreadLocalFactory.createWord();
+
+    /*
+     * Per-thread counters for the aligned chunk slow path. They are folded into GCAccounting when
+     * the thread-local cache is flushed, so the fast path never touches shared cache lines.
+     */
+    private static final FastThreadLocalLong cachedChunkHitsTL = FastThreadLocalFactory.createLong();
+    private static final FastThreadLocalLong unusedListPopsTL = FastThreadLocalFactory.createLong();
+    private static final FastThreadLocalLong committedChunksTL = FastThreadLocalFactory.createLong();
+
     /**
      * The head of the linked list of unused aligned chunks. Chunks are chained using
      * {@link HeapChunk#getNext}.
@@ -95,12 +120,22 @@ final class HeapChunkProvider {
 
     private static final OutOfMemoryError UNALIGNED_OUT_OF_MEMORY_ERROR = new OutOfMemoryError("Could not allocate an unaligned heap chunk");
 
-    /** Acquire a new AlignedHeapChunk, either from the free list or from the operating system. */
+    /**
+     * Acquire a new AlignedHeapChunk, either from the thread-local cache, from the free list or from
+     * the operating system.
+     */
     AlignedHeader produceAlignedChunk() {
         UnsignedWord chunkSize = HeapPolicy.getAlignedHeapChunkSize();
         log().string("[HeapChunkProvider.produceAlignedChunk  chunk size: ").unsigned(chunkSize).newline();
 
-        AlignedHeader result = popUnusedAlignedChunk();
+        AlignedHeader result;
+        int cacheSize = HeapOptions.ThreadLocalAlignedChunkCacheSize.getValue();
+        if (cacheSize > 0 && !VMOperation.isGCInProgress()) {
+            /* Chunks for promoted objects are not cached, so caches are empty after a collection. */
+            result = popCachedAlignedChunk(cacheSize);
+        } else {
+            result = popUnusedAlignedChunk();
+        }
         log().string("  unused chunk: ").hex(result).newline();
 
         if (result.isNull()) {
@@ -111,6 +146,7 @@ final class HeapChunkProvider {
                 throw ALIGNED_OUT_OF_MEMORY_ERROR;
             }
             log().string("  new chunk: ").hex(result).newline();
+            committedChunksTL.set(committedChunksTL.get() + 1);
 
             initializeChunk(result, chunkSize);
             resetAlignedHeapChunk(result);
@@ -201,6 +237,7 @@ final class HeapChunkProvider {
             return WordFactory.nullPointer();
         } else {
             bytesInUnusedAlignedChunks.subtractAndGet(HeapPolicy.getAlignedHeapChunkSize());
+            unusedListPopsTL.set(unusedListPopsTL.get() + 1);
             log().string("  new list top: ").hex(unusedAlignedChunks.get()).string("  list bytes ").signed(bytesInUnusedAlignedChunks.get()).newline();
             return result;
         }
@@ -222,6 +259,102 @@ final class HeapChunkProvider {
         }
     }
 
+    /**
+     * Pop a chunk from the thread-local cache of the current thread. If the cache is empty, it is
+     * refilled with up to {@code cacheSize} chunks from the global list of unused chunks using a
+     * single compareAndSet. Returns {@code null} if both are empty.
+     * <p>
+     * The cache is flushed by safepoints, so this method must not be interrupted by one.
+     */
+    @Uninterruptible(reason = "Must not be interrupted by competing pushes or a flush of the cache.")
+    private AlignedHeader popCachedAlignedChunk(int cacheSize) {
+        AlignedHeader result = cachedAlignedChunksTL.get();
+        if (result.isNonNull()) {
+            cachedChunkHitsTL.set(cachedChunkHitsTL.get() + 1);
+        } else {
+            result = popUnusedAlignedChunksUninterruptibly(cacheSize);
+            if (result.isNull()) {
+                return WordFactory.nullPointer();
+            }
+            unusedListPopsTL.set(unusedListPopsTL.get() + 1);
+        }
+        cachedAlignedChunksTL.set(HeapChunk.getNext(result));
+        HeapChunk.setNext(result, WordFactory.nullPointer());
+        return result;
+    }
+
+    /**
+     * Detach up to {@code maxCount} chunks from the head of the global list of unused chunks and
+     * return them as a list. The same reasoning as in {@link #popUnusedAlignedChunk()} applies
+     * with respect to the ABA problem: a competing pop changes the list head, so stale
+     * {@linkplain HeapChunk#getNext next} values that are read while walking the batch make the
+     * compareAndSet fail.
+     */
+    @Uninterruptible(reason = "Must not be interrupted by competing pushes.")
+    private AlignedHeader popUnusedAlignedChunksUninterruptibly(int maxCount) {
+        while (true) {
+            AlignedHeader first = unusedAlignedChunks.get();
+            if (first.isNull()) {
+                return WordFactory.nullPointer();
+            }
+            AlignedHeader last = first;
+            int count = 1;
+            AlignedHeader next = HeapChunk.getNext(last);
+            while (count < maxCount && next.isNonNull()) {
+                last = next;
+                count++;
+                next = HeapChunk.getNext(last);
+            }
+            if (unusedAlignedChunks.compareAndSet(first, next)) {
+                HeapChunk.setNext(last, WordFactory.nullPointer());
+                bytesInUnusedAlignedChunks.subtractAndGet(HeapPolicy.getAlignedHeapChunkSize().multiply(count));
+                return first;
+            }
+        }
+    }
+
+    /**
+     * Return the chunks that are cached by the given thread to the global list of unused chunks and
+     * fold the thread's counters into {@link GCAccounting}. Must be called during a safepoint,
+     * because pushing chunks must not compete with pops.
+     */
+    void flushThreadLocalCache(IsolateThread thread) {
+        VMOperation.guaranteeInProgress("Thread-local chunk caches may only be flushed during a safepoint.");
+        AlignedHeader chunk = cachedAlignedChunksTL.get(thread);
+        cachedAlignedChunksTL.set(thread, WordFactory.nullPointer());
+        while (chunk.isNonNull()) {
+            AlignedHeader next = HeapChunk.getNext(chunk);
+            pushUnusedAlignedChunk(chunk);
+            chunk = next;
+        }
+        collectThreadLocalCounters(thread);
+    }
+
+    /**
+     * Release the chunks that are cached by a detaching thread. Outside of a safepoint, they cannot
+     * be pushed to the global list without risking an ABA problem for competing pops, so they are
+     * returned to the operating system instead.
+     */
+    void releaseThreadLocalCache(IsolateThread thread) {
+        freeThreadLocalCache(thread);
+        collectThreadLocalCounters(thread);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static void freeThreadLocalCache(IsolateThread thread) {
+        AlignedHeader chunks = cachedAlignedChunksTL.get(thread);
+        cachedAlignedChunksTL.set(thread, WordFactory.nullPointer());
+        /* Cached chunks are no longer counted in bytesInUnusedAlignedChunks. */
+        freeAlignedChunkList(chunks);
+    }
+
+    private static void collectThreadLocalCounters(IsolateThread thread) {
+        GCImpl.getGCImpl().getAccounting().addAlignedChunkCounts(cachedChunkHitsTL.get(thread), unusedListPopsTL.get(thread), committedChunksTL.get(thread));
+        cachedChunkHitsTL.set(thread, 0);
+        unusedListPopsTL.set(thread, 0);
+        committedChunksTL.set(thread, 0);
+    }
+
     /** Acquire an UnalignedHeapChunk from the operating system. */
     UnalignedHeader produceUnalignedChunk(UnsignedWord objectSize) {
         UnsignedWord chunkSize = UnalignedHeapChunk.getChunkSizeForObject(objectSize);
@@ -266,6 +399,8 @@ final class HeapChunkProvider {
         HeapChunk.setSpace(chunk, null);
         HeapChunk.setNext(chunk, WordFactory.nullPointer());
         HeapChunk.setPrevious(chunk, WordFactory.nullPointer());
+        HeapChunk.setTopAtMarkStartOffset(chunk, WordFactory.zero());
+        HeapChunk.setMarkBitmap(chunk, WordFactory.nullPointer());
     }
 
     private static void resetAlignedHeapChunk(AlignedHeader chunk) {
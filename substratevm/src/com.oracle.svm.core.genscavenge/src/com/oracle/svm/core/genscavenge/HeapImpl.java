@@ -32,7 +32,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.graalvm.compiler.api.replacements.Fold;
-import org.graalvm.compiler.nodes.gc.CardTableBarrierSet;
+import org.graalvm.compiler.nodes.gc.BarrierSet;
 import org.graalvm.compiler.word.Word;
 import org.graalvm.nativeimage.IsolateThread;
 import org.graalvm.nativeimage.Platform;
@@ -53,6 +53,7 @@ import com.oracle.svm.core.annotate.TargetClass;
 import com.oracle.svm.core.annotate.Uninterruptible;
 import com.oracle.svm.core.config.ConfigurationValues;
 import com.oracle.svm.core.genscavenge.graal.SubstrateCardTableBarrierSet;
+import com.oracle.svm.core.genscavenge.graal.SubstrateSATBBarrierSet;
 import com.oracle.svm.core.heap.GC;
 import com.oracle.svm.core.heap.GCCause;
 import com.oracle.svm.core.heap.Heap;
@@ -494,23 +495,33 @@ public final class HeapImpl extends Heap {
 
     @Override
     public void prepareForSafepoint() {
-        // nothing to do
+        if (ConcurrentMarker.isSupported()) {
+            GCImpl.getGCImpl().getConcurrentMarker().prepareForSafepoint();
+        }
     }
 
     @Override
     public void endSafepoint() {
-        // nothing to do
+        if (ConcurrentMarker.isSupported()) {
+            GCImpl.getGCImpl().getConcurrentMarker().endSafepoint();
+        }
     }
 
     @Uninterruptible(reason = "Called during startup.")
     @Override
     public void attachThread(IsolateThread isolateThread) {
-        // nothing to do
+        if (ConcurrentMarker.isSupported()) {
+            GCImpl.getGCImpl().getConcurrentMarker().attachThread(isolateThread);
+        }
     }
 
     @Override
     public void detachThread(IsolateThread isolateThread) {
+        if (ConcurrentMarker.isSupported()) {
+            ConcurrentMarker.detachThread(isolateThread);
+        }
         ThreadLocalAllocation.disableAndFlushForThread(isolateThread);
+        getChunkProvider().releaseThreadLocalCache(isolateThread);
     }
 
     @Fold
@@ -573,8 +584,11 @@ public final class HeapImpl extends Heap {
     }
 
     @Override
-    public CardTableBarrierSet createBarrierSet(MetaAccessProvider metaAccess) {
+    public BarrierSet createBarrierSet(MetaAccessProvider metaAccess) {
         ResolvedJavaType objectArrayType = metaAccess.lookupJavaType(Object[].class);
+        if (ConcurrentMarker.isSupported()) {
+            return new SubstrateSATBBarrierSet(objectArrayType);
+        }
         return new SubstrateCardTableBarrierSet(objectArrayType);
     }
 
@@ -43,6 +43,18 @@ public final class HeapOptions {
     @Option(help = "Print the time for each of the phases of each collection, if +VerboseGC.")//
     public static final RuntimeOptionKey<Boolean> PrintGCTimes = new RuntimeOptionKey<>(false);
 
+    @Option(help = "Number of worker threads that help to scan and promote objects during incremental collections. 0 scavenges serially.")//
+    public static final RuntimeOptionKey<Integer> ParallelGCThreads = new RuntimeOptionKey<>(0);
+
+    @Option(help = "Maximum number of unused aligned chunks that a thread takes from the shared free list at once and caches for its own allocations. 0 disables the cache.")//
+    public static final RuntimeOptionKey<Integer> ThreadLocalAlignedChunkCacheSize = new RuntimeOptionKey<>(0);
+
+    @Option(help = "Mark the old generation concurrently to the application and sweep it in a short pause instead of copying it in complete collections. Requires a multi-threaded image.")//
+    public static final HostedOptionKey<Boolean> ConcurrentOldGenerationMarking = new HostedOptionKey<>(false);
+
+    @Option(help = "Mark and sweep the old generation in place in complete collections instead of copying it, so that they do not temporarily need up to twice its size. Swept space is reused for promoted objects.")//
+    public static final HostedOptionKey<Boolean> MarkSweepOldGeneration = new HostedOptionKey<>(false);
+
     @Option(help = "Trace each object promotion (generates significant amounts of output).")//
     public static final HostedOptionKey<Boolean> TraceObjectPromotion = new HostedOptionKey<>(false);
 
@@ -129,6 +129,7 @@ public final class HeapPolicy {
      */
 
     private static UnsignedWord maximumYoungGenerationSize;
+    private static UnsignedWord youngGenerationSize;
     private static UnsignedWord minimumHeapSize;
     private static UnsignedWord maximumHeapSize;
 
@@ -177,6 +178,26 @@ public final class HeapPolicy {
         return result;
     }
 
+    /**
+     * The size of the young generation at which allocation causes a collection. This is the
+     * maximum young generation size unless {@link AdaptiveYoungGenerationSizing} has chosen a
+     * smaller size.
+     */
+    public static UnsignedWord getYoungGenerationSize() {
+        UnsignedWord maximumSize = getMaximumYoungGenerationSize();
+        if (youngGenerationSize.aboveThan(WordFactory.zero()) && youngGenerationSize.belowThan(maximumSize)) {
+            return youngGenerationSize;
+        }
+        return maximumSize;
+    }
+
+    /** Set the adaptively chosen young generation size, returning the previous value. */
+    static UnsignedWord setYoungGenerationSize(UnsignedWord value) {
+        UnsignedWord result = youngGenerationSize;
+        youngGenerationSize = value;
+        return result;
+    }
+
     public static UnsignedWord getMaximumHeapSize() {
         if (maximumHeapSize.aboveThan(WordFactory.zero())) {
             return maximumHeapSize;
@@ -381,7 +402,7 @@ public final class HeapPolicy {
     static final class SometimesCollectOnAllocation implements CollectOnAllocationPolicy {
         @Override
         public void maybeCauseCollection() {
-            if (youngUsedBytes.get().aboveOrEqual(getMaximumYoungGenerationSize())) {
+            if (youngUsedBytes.get().aboveOrEqual(getYoungGenerationSize())) {
                 GCImpl.getGCImpl().collectWithoutAllocating(GenScavengeGCCause.OnAllocationSometimes);
             }
         }
@@ -408,7 +429,7 @@ public final class HeapPolicy {
         }
 
         public static UnsignedWord collectScepticallyThreshold() {
-            return getMaximumYoungGenerationSize().subtract(WordFactory.unsigned(HeapPolicyOptions.UserRequestedGCThreshold.getValue()));
+            return getYoungGenerationSize().subtract(WordFactory.unsigned(HeapPolicyOptions.UserRequestedGCThreshold.getValue()));
         }
     }
 
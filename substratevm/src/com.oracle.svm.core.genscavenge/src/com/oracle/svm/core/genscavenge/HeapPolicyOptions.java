@@ -40,6 +40,12 @@ public final class HeapPolicyOptions {
     @Option(help = "The maximum size of the young generation as a percentage of the maximum heap size") //
     public static final RuntimeOptionKey<Integer> MaximumYoungGenerationSizePercent = new RuntimeOptionKey<>(10);
 
+    @Option(help = "Pause time goal for incremental collections in milliseconds. If positive, the young generation is sized adaptively to meet this goal and GCTimeRatio, up to the maximum young generation size.") //
+    public static final RuntimeOptionKey<Long> MaxGCPauseMillis = new RuntimeOptionKey<>(0L);
+
+    @Option(help = "With adaptive young generation sizing, the desired ratio of mutator time to incremental collection time.") //
+    public static final RuntimeOptionKey<Integer> GCTimeRatio = new RuntimeOptionKey<>(19);
+
     @Option(help = "Bytes that can be allocated before (re-)querying the physical memory size") //
     public static final HostedOptionKey<Long> AllocationBeforePhysicalMemorySize = new HostedOptionKey<>(1L * 1024L * 1024L);
 
@@ -94,14 +94,7 @@ public final class ImageHeapWalker {
         Pointer current = firstPointer;
         HeapChunk.Header<?> currentChunk = WordFactory.nullPointer();
         if (HeapImpl.usesImageHeapChunks()) {
-            Pointer base = WordFactory.zero();
-            if (!CommittedMemoryProvider.get().guaranteesHeapPreferredAddressSpaceAlignment()) {
-                base = (Pointer) Isolates.getHeapBase(CurrentIsolate.getIsolate());
-            }
-            Pointer offset = current.subtract(base);
-            UnsignedWord chunkOffset = alignedChunks ? UnsignedUtils.roundDown(offset, HeapPolicy.getAlignedHeapChunkAlignment())
-                            : offset.subtract(UnalignedHeapChunk.getObjectStartOffset());
-            currentChunk = (HeapChunk.Header<?>) chunkOffset.add(base);
+            currentChunk = getChunk(current, alignedChunks);
 
             // Assumption: the order of chunks in their linked list is the same order as in memory,
             // and objects are laid out as a continuous sequence without any gaps.
@@ -135,6 +128,54 @@ public final class ImageHeapWalker {
         return true;
     }
 
+    /**
+     * Visits at most {@code maxObjects} objects of a partition, starting with the object at
+     * {@code start}, or with the first object of the partition if {@code start} is null. Image heap
+     * objects never move, so a walk can be resumed later with the returned address.
+     *
+     * @return the address of the next object to visit, or null if all objects have been visited.
+     */
+    static Pointer walkPartitionPartially(Object firstObject, Object lastObject, Pointer start, int maxObjects, ObjectVisitor visitor, boolean alignedChunks) {
+        if (firstObject == null || lastObject == null) {
+            assert firstObject == null && lastObject == null;
+            return WordFactory.nullPointer();
+        }
+        Pointer lastPointer = Word.objectToUntrackedPointer(lastObject);
+        Pointer current = start.isNull() ? Word.objectToUntrackedPointer(firstObject) : start;
+        HeapChunk.Header<?> currentChunk = WordFactory.nullPointer();
+        if (HeapImpl.usesImageHeapChunks()) {
+            currentChunk = getChunk(current, alignedChunks);
+        }
+        int visited = 0;
+        while (current.belowOrEqual(lastPointer)) {
+            if (visited == maxObjects) {
+                return current;
+            }
+            Object currentObject = KnownIntrinsics.convertUnknownValue(current.toObject(), Object.class);
+            visitor.visitObject(currentObject);
+            visited++;
+            current = LayoutEncoding.getObjectEnd(currentObject);
+            if (HeapImpl.usesImageHeapChunks() && current.belowOrEqual(lastPointer) && current.aboveOrEqual(HeapChunk.getTopPointer(currentChunk))) {
+                currentChunk = HeapChunk.getNext(currentChunk);
+                current = alignedChunks ? AlignedHeapChunk.getObjectsStart((AlignedHeapChunk.AlignedHeader) currentChunk)
+                                : UnalignedHeapChunk.getObjectStart((UnalignedHeapChunk.UnalignedHeader) currentChunk);
+            }
+        }
+        return WordFactory.nullPointer();
+    }
+
+    @AlwaysInline("GC performance")
+    private static HeapChunk.Header<?> getChunk(Pointer objectStart, boolean alignedChunks) {
+        Pointer base = WordFactory.zero();
+        if (!CommittedMemoryProvider.get().guaranteesHeapPreferredAddressSpaceAlignment()) {
+            base = (Pointer) Isolates.getHeapBase(CurrentIsolate.getIsolate());
+        }
+        Pointer offset = objectStart.subtract(base);
+        UnsignedWord chunkOffset = alignedChunks ? UnsignedUtils.roundDown(offset, HeapPolicy.getAlignedHeapChunkAlignment())
+                        : offset.subtract(UnalignedHeapChunk.getObjectStartOffset());
+        return (HeapChunk.Header<?>) chunkOffset.add(base);
+    }
+
     static void logPartitionBoundaries(Log log, ImageHeapInfo imageHeapInfo) {
         log.string("ReadOnly Primitives: ").hex(Word.objectToUntrackedPointer(imageHeapInfo.firstReadOnlyPrimitiveObject)).string(" .. ").hex(
                         Word.objectToUntrackedPointer(imageHeapInfo.lastReadOnlyPrimitiveObject)).newline();
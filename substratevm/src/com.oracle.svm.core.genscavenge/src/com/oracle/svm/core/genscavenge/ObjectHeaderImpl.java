@@ -382,6 +382,38 @@ public final class ObjectHeaderImpl extends ObjectHeader {
         assert isPointerToForwardedObject(Word.objectToUntrackedPointer(original));
     }
 
+    /** Whether {@link #tryInstallForwardingPointer} can be used in this image. */
+    @Fold
+    static boolean canInstallForwardingPointerAtomically() {
+        return !ReferenceAccess.singleton().haveCompressedReferences() || !ReferenceAccess.singleton().getCompressEncoding().hasShift();
+    }
+
+    /**
+     * Like {@link #installForwardingPointer}, but atomically replaces the header of the original
+     * object only if it is still the expected header, for GC worker threads which might race to
+     * promote the same object.
+     *
+     * @return true if the forwarding pointer to the copy was installed, false if another thread
+     *         installed a forwarding pointer first.
+     */
+    static boolean tryInstallForwardingPointer(Object original, UnsignedWord expectedHeader, Object copy) {
+        assert canInstallForwardingPointerAtomically() : "Forwarding pointer must fit in the header";
+        UnsignedWord forwardHeader;
+        if (ReferenceAccess.singleton().haveCompressedReferences()) {
+            forwardHeader = ReferenceAccess.singleton().getCompressedRepresentation(copy);
+        } else {
+            forwardHeader = Word.objectToUntrackedPointer(copy);
+        }
+        assert ObjectHeaderImpl.getHeaderBitsFromHeader(forwardHeader).equal(0);
+        UnsignedWord newHeader = forwardHeader.or(FORWARDED_BIT);
+        Pointer originalPointer = Word.objectToUntrackedPointer(original);
+        if (getReferenceSize() == Integer.BYTES) {
+            return originalPointer.logicCompareAndSwapInt(getHubOffset(), (int) expectedHeader.rawValue(), (int) newHeader.rawValue(), LocationIdentity.ANY_LOCATION);
+        } else {
+            return originalPointer.logicCompareAndSwapWord(getHubOffset(), expectedHeader, newHeader, LocationIdentity.ANY_LOCATION);
+        }
+    }
+
     @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
     private static UnsignedWord getHeaderBitsFromHeader(UnsignedWord header) {
         assert !isProducedHeapChunkZapped(header) : "Produced chunk zap value";
@@ -46,6 +46,7 @@ final class OldGeneration extends Generation {
     private final Space toSpace;
 
     private final GreyObjectsWalker toGreyObjectsWalker = new GreyObjectsWalker();
+    private final FreeList freeList = new FreeList();
 
     @Platforms(Platform.HOSTED_ONLY.class)
     OldGeneration(String name) {
@@ -59,6 +60,7 @@ final class OldGeneration extends Generation {
     void tearDown() {
         fromSpace.tearDown();
         toSpace.tearDown();
+        freeList.tearDown();
     }
 
     @Override
@@ -117,13 +119,23 @@ final class OldGeneration extends Generation {
     }
 
     boolean scanGreyObjects() {
+        boolean hasGrey = freeList.scanGreyObjects();
         if (!toGreyObjectsWalker.haveGreyObjects()) {
-            return false;
+            return hasGrey;
         }
         toGreyObjectsWalker.walkGreyObjects();
         return true;
     }
 
+    void offerGreyObjects(ParallelScavenger scavenger) {
+        freeList.offerGreyObjects(scavenger);
+        toGreyObjectsWalker.offerGreyObjects(scavenger);
+    }
+
+    FreeList getFreeList() {
+        return freeList;
+    }
+
     @Override
     public Log report(Log log, boolean traceHeapChunks) {
         log.string("[Old generation: ").indent(true);
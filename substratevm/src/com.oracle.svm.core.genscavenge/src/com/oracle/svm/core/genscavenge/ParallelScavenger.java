@@ -0,0 +1,667 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge;
+
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.FREQUENT_PROBABILITY;
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.SLOW_PATH_PROBABILITY;
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.probability;
+
+import org.graalvm.compiler.nodes.java.ArrayLengthNode;
+import org.graalvm.compiler.word.Word;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.StackValue;
+import org.graalvm.nativeimage.c.struct.RawField;
+import org.graalvm.nativeimage.c.struct.RawStructure;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.PointerBase;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.AlwaysInline;
+import com.oracle.svm.core.annotate.NeverInline;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.config.ConfigurationValues;
+import com.oracle.svm.core.genscavenge.AlignedHeapChunk.AlignedHeader;
+import com.oracle.svm.core.genscavenge.UnalignedHeapChunk.UnalignedHeader;
+import com.oracle.svm.core.heap.ObjectReferenceVisitor;
+import com.oracle.svm.core.heap.ReferenceAccess;
+import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.hub.InteriorObjRefWalker;
+import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.locks.VMCondition;
+import com.oracle.svm.core.locks.VMMutex;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.nodes.CFunctionEpilogueNode;
+import com.oracle.svm.core.nodes.CFunctionPrologueNode;
+import com.oracle.svm.core.snippets.KnownIntrinsics;
+import com.oracle.svm.core.thread.Safepoint;
+import com.oracle.svm.core.thread.VMOperation;
+import com.oracle.svm.core.thread.VMThreads.StatusSupport;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
+import com.oracle.svm.core.util.VMError;
+
+/**
+ * Blackens the grey objects of an incremental collection with the help of worker threads.
+ *
+ * The worker threads are started when the isolate is initialized and spend their whole life in
+ * native state, so they never hold up a safepoint and their stacks are walked like those of other
+ * threads in native code. When the collector reaches {@link GCImpl#scanGreyObjects}, it hands the
+ * grey objects in the old generation to this class as ranges of contiguous objects and then works
+ * on them together with the worker threads until all objects are black.
+ *
+ * Each participant promotes objects into an aligned chunk of its own and scans the objects that
+ * it promoted there. When it needs a new chunk, the unscanned part of its current chunk is
+ * published to a shared stack of ranges, from which idle participants take their work. Promotion
+ * races are resolved by atomically installing the forwarding pointer: the loser retracts its copy
+ * and uses the winner's copy instead.
+ *
+ * Only the transitive closure of incremental collections is parallel; the roots, pinned objects,
+ * reference processing and complete collections remain serial. This requires that there are no
+ * survivor spaces and that the forwarding pointer fits into the object header.
+ */
+final class ParallelScavenger {
+    /** Protects chunk lists, the shared stack of ranges and the state of the current session. */
+    private static final VMMutex MUTEX = new VMMutex();
+    private static final VMCondition WORK_CONDITION = new VMCondition(MUTEX);
+    private static final VMCondition SESSION_END_CONDITION = new VMCondition(MUTEX);
+    /** Serializes the discovery of {@link java.lang.ref.Reference} objects. */
+    private static final VMMutex DISCOVERY_MUTEX = new VMMutex();
+
+    private static final FastThreadLocalWord<WorkerData> workerDataTL = FastThreadLocalFactory.createWord();
+
+    /** The state of a participant, which is allocated on its stack. */
+    @RawStructure
+    interface WorkerData extends PointerBase {
+        /** The chunk into which this participant promotes objects. */
+        @RawField
+        AlignedHeader getAllocationChunk();
+
+        @RawField
+        void setAllocationChunk(AlignedHeader chunk);
+
+        /** The first object in the allocation chunk that has not been scanned yet. */
+        @RawField
+        Pointer getScanPointer();
+
+        @RawField
+        void setScanPointer(Pointer pointer);
+
+        /** The bounds of the range that was most recently taken from the shared stack. */
+        @RawField
+        Pointer getRangeStart();
+
+        @RawField
+        void setRangeStart(Pointer start);
+
+        @RawField
+        Pointer getRangeEnd();
+
+        @RawField
+        void setRangeEnd(Pointer end);
+
+        /** The last session in which this participant took part. */
+        @RawField
+        long getSessionEpoch();
+
+        @RawField
+        void setSessionEpoch(long epoch);
+    }
+
+    private final ParallelGreyToBlackObjRefVisitor objRefVisitor;
+
+    private boolean enabled;
+    private boolean shutdown;
+    private int registeredWorkers;
+
+    private long sessionEpoch;
+    private int participants;
+    private int idleParticipants;
+    private int finishedWorkers;
+    private boolean sessionDone;
+
+    /** A stack of [start, end) pairs of grey object ranges. */
+    private Pointer ranges = WordFactory.nullPointer();
+    private int rangeCount;
+    private int rangeCapacity;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    ParallelScavenger() {
+        this.objRefVisitor = new ParallelGreyToBlackObjRefVisitor(this);
+    }
+
+    /** Whether the image configuration permits parallel scavenging. */
+    static boolean isSupported() {
+        return SubstrateOptions.MultiThreaded.getValue() && HeapPolicy.getMaxSurvivorSpaces() == 0 && ObjectHeaderImpl.canInstallForwardingPointerAtomically();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /** The number of worker threads that are currently registered. */
+    int getRegisteredWorkers() {
+        return registeredWorkers;
+    }
+
+    /** The number of incremental collections that were scanned in parallel so far. */
+    long getSessions() {
+        return sessionEpoch;
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static boolean isLockOwner() {
+        return MUTEX.isOwner();
+    }
+
+    /** Isolate initialization hook that starts the worker threads. */
+    void startWorkerThreads() {
+        int count = HeapOptions.ParallelGCThreads.getValue();
+        if (count <= 0) {
+            return;
+        }
+        if (!isSupported()) {
+            Log.log().string("[Warning: ParallelGCThreads is ignored because parallel scavenging requires a multi-threaded image without survivor spaces ")
+                            .string("and with a forwarding pointer that fits into the object header.]").newline();
+            return;
+        }
+        enabled = true;
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(ParallelScavenger::runWorker, "GC Worker " + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /** Isolate tear-down hook that lets the worker threads exit. */
+    void tearDown() {
+        if (!enabled) {
+            return;
+        }
+        requestShutdown();
+        if (ranges.isNonNull()) {
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(ranges);
+            ranges = WordFactory.nullPointer();
+            rangeCapacity = 0;
+        }
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void requestShutdown() {
+        MUTEX.lockNoTransition();
+        try {
+            shutdown = true;
+            WORK_CONDITION.broadcast();
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    private static void runWorker() {
+        transitionToNativeThenRunWorker();
+    }
+
+    @NeverInline("Must not be inlined in a caller that has an exception handler: We only support InvokeNode and not InvokeWithExceptionNode between a CFunctionPrologueNode and CFunctionEpilogueNode")
+    private static void transitionToNativeThenRunWorker() {
+        CFunctionPrologueNode.cFunctionPrologue(StatusSupport.STATUS_IN_NATIVE);
+        runWorkerInNative();
+        CFunctionEpilogueNode.cFunctionEpilogue(StatusSupport.STATUS_IN_NATIVE);
+    }
+
+    /**
+     * The worker stays in native state, so it must not hold object references in this frame. It
+     * only executes Java code while the collector is waiting for it in {@link #scanGreyObjects},
+     * at which point all other threads are stopped at the safepoint.
+     */
+    @Uninterruptible(reason = "In native.", calleeMustBe = false)
+    @NeverInline("Provide a return address for the Java frame anchor.")
+    private static void runWorkerInNative() {
+        WorkerData data = StackValue.get(WorkerData.class);
+        GCImpl.getGCImpl().getParallelScavenger().registerWorker(data);
+        while (GCImpl.getGCImpl().getParallelScavenger().awaitSession(data)) {
+            /* Safepoint checks in the collector code must not enter the slow path in native state. */
+            Safepoint.resetSafepointRequestedInNative();
+            GCImpl.getGCImpl().getParallelScavenger().work(data);
+            GCImpl.getGCImpl().getParallelScavenger().finishSession();
+        }
+        GCImpl.getGCImpl().getParallelScavenger().unregisterWorker();
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void registerWorker(WorkerData data) {
+        MUTEX.lockNoTransition();
+        try {
+            registeredWorkers++;
+            /* Do not join a session that is already in progress. */
+            data.setSessionEpoch(sessionEpoch);
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void unregisterWorker() {
+        MUTEX.lockNoTransition();
+        try {
+            registeredWorkers--;
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    /** @return true if a new session started, false if the worker should exit. */
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private boolean awaitSession(WorkerData data) {
+        MUTEX.lockNoTransition();
+        try {
+            while (!shutdown && data.getSessionEpoch() == sessionEpoch) {
+                WORK_CONDITION.blockNoTransition();
+            }
+            if (shutdown) {
+                return false;
+            }
+            data.setSessionEpoch(sessionEpoch);
+            return true;
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void finishSession() {
+        MUTEX.lockNoTransition();
+        try {
+            finishedWorkers++;
+            SESSION_END_CONDITION.signal();
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    /**
+     * Blacken all grey objects in the old generation together with the worker threads. Called by
+     * the collector during an incremental collection.
+     */
+    void scanGreyObjects(OldGeneration oldGen) {
+        assert VMOperation.isGCInProgress() && enabled;
+        oldGen.offerGreyObjects(this);
+        WorkerData data = StackValue.get(WorkerData.class);
+        startSession(data);
+        work(data);
+        awaitSessionEnd();
+        /* All objects in the old generation are black now, including those in the new chunks. */
+        oldGen.prepareForPromotion();
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void startSession(WorkerData data) {
+        MUTEX.lockNoTransition();
+        try {
+            sessionEpoch++;
+            data.setSessionEpoch(sessionEpoch);
+            participants = registeredWorkers + 1;
+            idleParticipants = 0;
+            finishedWorkers = 0;
+            sessionDone = false;
+            WORK_CONDITION.broadcast();
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private void awaitSessionEnd() {
+        MUTEX.lockNoTransition();
+        try {
+            while (finishedWorkers < participants - 1) {
+                SESSION_END_CONDITION.blockNoTransition();
+            }
+            assert rangeCount == 0 : "All ranges must have been scanned";
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    @RestrictHeapAccess(access = RestrictHeapAccess.Access.NO_ALLOCATION, reason = "Must not allocate in the implementation of garbage collection.")
+    @NeverInline("Split the GC into reasonable compilation units")
+    private void work(WorkerData data) {
+        workerDataTL.set(data);
+        data.setAllocationChunk(WordFactory.nullPointer());
+        data.setScanPointer(WordFactory.nullPointer());
+        while (true) {
+            if (scanOwnGreyObjects(data)) {
+                continue;
+            }
+            if (takeGreyObjects(data)) {
+                scanGreyObjects(data.getRangeStart(), data.getRangeEnd());
+                continue;
+            }
+            if (!awaitWorkOrTermination()) {
+                break;
+            }
+        }
+        /* The rest of the chunk can still be used by the serial collector. */
+        data.setAllocationChunk(WordFactory.nullPointer());
+        workerDataTL.set(WordFactory.nullPointer());
+    }
+
+    /** Scan the objects that this participant promoted into its own chunk since the last scan. */
+    private boolean scanOwnGreyObjects(WorkerData data) {
+        AlignedHeader chunk = data.getAllocationChunk();
+        if (chunk.isNull()) {
+            return false;
+        }
+        Pointer start = data.getScanPointer();
+        Pointer end = HeapChunk.getTopPointer(chunk);
+        if (start.aboveOrEqual(end)) {
+            return false;
+        }
+        data.setScanPointer(end);
+        if (idleParticipants > 0) {
+            /* Racy read, but worst case we give work away unnecessarily or too late. */
+            offerGreyObjects(start, end);
+        } else {
+            scanGreyObjects(start, end);
+        }
+        return true;
+    }
+
+    @AlwaysInline("GC performance")
+    private void scanGreyObjects(Pointer start, Pointer end) {
+        Pointer offset = start;
+        while (probability(FREQUENT_PROBABILITY, offset.belowThan(end))) {
+            Object obj = offset.toObject();
+            if (probability(SLOW_PATH_PROBABILITY, KnownIntrinsics.readHub(obj).isReferenceInstanceClass())) {
+                discoverReference(obj);
+            }
+            InteriorObjRefWalker.walkObjectInline(obj, objRefVisitor);
+            offset = offset.add(LayoutEncoding.getSizeFromObject(obj));
+        }
+    }
+
+    private void discoverReference(Object obj) {
+        lockDiscovery();
+        try {
+            ReferenceObjectProcessing.discoverIfReference(obj, objRefVisitor);
+        } finally {
+            unlockDiscovery();
+        }
+    }
+
+    /** Make a range of grey objects available to all participants. */
+    void offerGreyObjects(Pointer start, Pointer end) {
+        if (start.aboveOrEqual(end)) {
+            return;
+        }
+        lock();
+        try {
+            if (rangeCount == rangeCapacity) {
+                growRanges();
+            }
+            Pointer entry = ranges.add(WordFactory.unsigned(rangeCount).multiply(2 * ConfigurationValues.getTarget().wordSize));
+            entry.writeWord(0, start);
+            entry.writeWord(ConfigurationValues.getTarget().wordSize, end);
+            rangeCount++;
+            if (idleParticipants > 0) {
+                WORK_CONDITION.broadcast();
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private void growRanges() {
+        int newCapacity = (rangeCapacity == 0) ? 1024 : (2 * rangeCapacity);
+        UnsignedWord newSize = WordFactory.unsigned(newCapacity).multiply(2 * ConfigurationValues.getTarget().wordSize);
+        Pointer newRanges = ImageSingletons.lookup(UnmanagedMemorySupport.class).realloc(ranges, newSize);
+        if (newRanges.isNull()) {
+            throw VMError.shouldNotReachHere("Could not allocate memory for parallel scavenging.");
+        }
+        ranges = newRanges;
+        rangeCapacity = newCapacity;
+    }
+
+    private boolean takeGreyObjects(WorkerData data) {
+        lock();
+        try {
+            if (rangeCount == 0) {
+                return false;
+            }
+            rangeCount--;
+            Pointer entry = ranges.add(WordFactory.unsigned(rangeCount).multiply(2 * ConfigurationValues.getTarget().wordSize));
+            data.setRangeStart(entry.readWord(0));
+            data.setRangeEnd(entry.readWord(ConfigurationValues.getTarget().wordSize));
+            return true;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Wait until there is work on the shared stack, or until all participants are idle.
+     *
+     * @return true if there might be work, false if the session is done.
+     */
+    @Uninterruptible(reason = "Must not stop at a safepoint while holding the lock.")
+    private boolean awaitWorkOrTermination() {
+        MUTEX.lockNoTransition();
+        try {
+            if (rangeCount > 0) {
+                return true;
+            }
+            idleParticipants++;
+            while (rangeCount == 0 && !sessionDone) {
+                if (idleParticipants == participants) {
+                    /* Nobody has any grey objects left, and nobody can produce new ones. */
+                    sessionDone = true;
+                    WORK_CONDITION.broadcast();
+                    break;
+                }
+                WORK_CONDITION.blockNoTransition();
+            }
+            if (sessionDone) {
+                return false;
+            }
+            idleParticipants--;
+            return true;
+        } finally {
+            MUTEX.unlock();
+        }
+    }
+
+    /** Promote an object that is referenced by a grey object, unless it was already promoted. */
+    @AlwaysInline("GC performance")
+    Object promoteObject(Object original, UnsignedWord header) {
+        if (ObjectHeaderImpl.isAlignedHeader(original, header)) {
+            AlignedHeader chunk = AlignedHeapChunk.getEnclosingChunk(original);
+            if (HeapChunk.getSpace(chunk).isFromSpace()) {
+                return promoteAlignedObject(original, header);
+            }
+        } else {
+            UnalignedHeader chunk = UnalignedHeapChunk.getEnclosingChunk(original);
+            if (HeapChunk.getSpace(chunk).isFromSpace()) {
+                promoteUnalignedChunk(chunk);
+            }
+        }
+        return original;
+    }
+
+    @AlwaysInline("GC performance")
+    private Object promoteAlignedObject(Object original, UnsignedWord header) {
+        WorkerData data = workerDataTL.get();
+        /* The header of the original object can change any time, so decode the size from ours. */
+        DynamicHub hub = ObjectHeaderImpl.getObjectHeaderImpl().dynamicHubFromObjectHeader(header);
+        int encoding = hub.getLayoutEncoding();
+        UnsignedWord size = LayoutEncoding.isArray(encoding) ? LayoutEncoding.getArraySize(encoding, ArrayLengthNode.arrayLength(original)) : LayoutEncoding.getInstanceSize(encoding);
+
+        Pointer copyMemory = allocateMemory(data, size);
+        Pointer originalMemory = Word.objectToUntrackedPointer(original);
+        UnsignedWord offset = WordFactory.zero();
+        while (probability(FREQUENT_PROBABILITY, offset.belowThan(size))) {
+            copyMemory.writeWord(offset, originalMemory.readWord(offset));
+            offset = offset.add(ConfigurationValues.getTarget().wordSize);
+        }
+        Object copy = copyMemory.toObject();
+        if (probability(SLOW_PATH_PROBABILITY, !ObjectHeaderImpl.tryInstallForwardingPointer(original, header, copy))) {
+            /* Another participant was faster. Our copy is the last allocation in our chunk. */
+            HeapChunk.setTopPointer(data.getAllocationChunk(), copyMemory);
+            return ObjectHeaderImpl.getForwardedObject(originalMemory);
+        }
+        AlignedHeapChunk.setUpRememberedSetForObject(data.getAllocationChunk(), copy);
+        return copy;
+    }
+
+    private Pointer allocateMemory(WorkerData data, UnsignedWord size) {
+        AlignedHeader chunk = data.getAllocationChunk();
+        if (chunk.isNonNull()) {
+            Pointer result = AlignedHeapChunk.allocateMemory(chunk, size);
+            if (result.isNonNull()) {
+                return result;
+            }
+            /* Others can scan what we did not get to yet. */
+            offerGreyObjects(data.getScanPointer(), HeapChunk.getTopPointer(chunk));
+        }
+        chunk = requestAlignedChunk();
+        data.setAllocationChunk(chunk);
+        data.setScanPointer(AlignedHeapChunk.getObjectsStart(chunk));
+        Pointer result = AlignedHeapChunk.allocateMemory(chunk, size);
+        assert result.isNonNull() : "Aligned objects must fit into an empty chunk";
+        return result;
+    }
+
+    private static AlignedHeader requestAlignedChunk() {
+        lock();
+        try {
+            AlignedHeader chunk = HeapImpl.getChunkProvider().produceAlignedChunk();
+            HeapImpl.getHeapImpl().getOldGeneration().getToSpace().appendAlignedHeapChunk(chunk);
+            return chunk;
+        } finally {
+            unlock();
+        }
+    }
+
+    private void promoteUnalignedChunk(UnalignedHeader chunk) {
+        boolean promoted = false;
+        lock();
+        try {
+            /* Check again, another participant might have promoted the chunk in the meantime. */
+            Space originalSpace = HeapChunk.getSpace(chunk);
+            if (originalSpace.isFromSpace()) {
+                HeapImpl.getHeapImpl().getOldGeneration().promoteUnalignedChunk(chunk, originalSpace);
+                promoted = true;
+            }
+        } finally {
+            unlock();
+        }
+        if (promoted) {
+            offerGreyObjects(UnalignedHeapChunk.getObjectStart(chunk), HeapChunk.getTopPointer(chunk));
+        }
+    }
+
+    @Uninterruptible(reason = "Called from the collector, which does not stop at safepoints.")
+    private static void lock() {
+        MUTEX.lockNoTransition();
+    }
+
+    @Uninterruptible(reason = "Called from the collector, which does not stop at safepoints.")
+    private static void unlock() {
+        MUTEX.unlock();
+    }
+
+    @Uninterruptible(reason = "Called from the collector, which does not stop at safepoints.")
+    private static void lockDiscovery() {
+        DISCOVERY_MUTEX.lockNoTransition();
+    }
+
+    @Uninterruptible(reason = "Called from the collector, which does not stop at safepoints.")
+    private static void unlockDiscovery() {
+        DISCOVERY_MUTEX.unlock();
+    }
+
+    /**
+     * The counterpart of {@link GreyToBlackObjRefVisitor} for parallel scavenging. Cards never need
+     * to be dirtied because there are no survivor spaces, so all promoted objects end up in the old
+     * generation.
+     */
+    static final class ParallelGreyToBlackObjRefVisitor implements ObjectReferenceVisitor {
+        private final ParallelScavenger scavenger;
+
+        @Platforms(Platform.HOSTED_ONLY.class)
+        ParallelGreyToBlackObjRefVisitor(ParallelScavenger scavenger) {
+            this.scavenger = scavenger;
+        }
+
+        @Override
+        public boolean visitObjectReference(Pointer objRef, boolean compressed) {
+            return visitObjectReferenceInline(objRef, 0, compressed, null);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, boolean compressed, Object holderObject) {
+            return visitObjectReferenceInline(objRef, 0, compressed, holderObject);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed) {
+            return visitObjectReferenceInline(objRef, innerOffset, compressed, null);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed, Object holderObject) {
+            assert innerOffset >= 0;
+            Pointer offsetP = ReferenceAccess.singleton().readObjectAsUntrackedPointer(objRef, compressed);
+            Pointer p = offsetP.subtract(innerOffset);
+            if (p.isNull() || HeapImpl.getHeapImpl().isInImageHeap(p)) {
+                return true;
+            }
+
+            UnsignedWord header = ObjectHeaderImpl.readHeaderFromPointer(p);
+            if (ObjectHeaderImpl.hasRememberedSet(header)) {
+                // Already in the old generation.
+                return true;
+            }
+            Object obj = p.toObject();
+            Object copy;
+            if (ObjectHeaderImpl.isForwardedHeader(header)) {
+                copy = ObjectHeaderImpl.getForwardedObject(p);
+            } else {
+                copy = scavenger.promoteObject(obj, header);
+            }
+            if (copy != obj) {
+                Object offsetCopy = (innerOffset == 0) ? copy : Word.objectToUntrackedPointer(copy).add(innerOffset).toObject();
+                ReferenceAccess.singleton().writeObjectAt(objRef, offsetCopy, compressed);
+            }
+            return true;
+        }
+    }
+}
@@ -119,17 +119,9 @@ final class ReferenceObjectProcessing {
             trace.string(" referent is in a to-space]").newline();
             return;
         }
-        if (!softReferencesAreWeak && dr instanceof SoftReference) {
-            long clock = ReferenceInternals.getSoftReferenceClock();
-            long timestamp = ReferenceInternals.getSoftReferenceTimestamp((SoftReference<?>) dr);
-            if (timestamp == 0) { // created or last accessed before the clock was initialized
-                timestamp = initialSoftRefClock;
-            }
-            UnsignedWord elapsed = WordFactory.unsigned(clock - timestamp);
-            if (elapsed.belowThan(maxSoftRefAccessIntervalMs)) {
-                refVisitor.visitObjectReference(ReferenceInternals.getReferentFieldAddress(dr), true);
-                return; // referent will survive and referent field has been updated
-            }
+        if (isSoftReferentKeptAlive(dr)) {
+            refVisitor.visitObjectReference(ReferenceInternals.getReferentFieldAddress(dr), true);
+            return; // referent will survive and referent field has been updated
         }
         trace.string(" remembered to revisit later]").newline();
         // null link means undiscovered, avoid for the last node with a cyclic reference
@@ -138,6 +130,20 @@ final class ReferenceObjectProcessing {
         rememberedRefsList = dr;
     }
 
+    /** Whether the referent of a {@link SoftReference} should be kept alive in this collection. */
+    static boolean isSoftReferentKeptAlive(Reference<?> dr) {
+        if (softReferencesAreWeak || !(dr instanceof SoftReference)) {
+            return false;
+        }
+        long clock = ReferenceInternals.getSoftReferenceClock();
+        long timestamp = ReferenceInternals.getSoftReferenceTimestamp((SoftReference<?>) dr);
+        if (timestamp == 0) { // created or last accessed before the clock was initialized
+            timestamp = initialSoftRefClock;
+        }
+        UnsignedWord elapsed = WordFactory.unsigned(clock - timestamp);
+        return elapsed.belowThan(maxSoftRefAccessIntervalMs);
+    }
+
     /**
      * Updates remembered references according to the liveness of the referent, dirtying cards, and
      * clears the discovered status of non-pending references.
@@ -294,8 +294,9 @@ final class Space {
         /*
          * This method is used from {@link PosixJavaThreads#detachThread(VMThread)}, so it can not
          * guarantee that it is inside a VMOperation, only that there is some mutual exclusion.
+         * Parallel GC worker threads synchronize via the lock of the {@link ParallelScavenger}.
          */
-        if (SubstrateOptions.MultiThreaded.getValue()) {
+        if (SubstrateOptions.MultiThreaded.getValue() && !ParallelScavenger.isLockOwner()) {
             VMThreads.guaranteeOwnsThreadMutex("Trying to append an aligned heap chunk but no mutual exclusion.");
         }
         Log trace = Log.noopLog().string("[Space.appendAlignedHeapChunk:").newline();
@@ -358,8 +359,9 @@ final class Space {
         /*
          * This method is used from {@link PosixJavaThreads#detachThread(VMThread)}, so it can not
          * guarantee that it is inside a VMOperation, only that there is some mutual exclusion.
+         * Parallel GC worker threads synchronize via the lock of the {@link ParallelScavenger}.
          */
-        if (SubstrateOptions.MultiThreaded.getValue()) {
+        if (SubstrateOptions.MultiThreaded.getValue() && !ParallelScavenger.isLockOwner()) {
             VMThreads.guaranteeOwnsThreadMutex("Trying to append an unaligned chunk but no mutual exclusion.");
         }
         appendUnalignedHeapChunkUninterruptibly(uChunk);
@@ -467,7 +469,17 @@ final class Space {
         assert ObjectHeaderImpl.isAlignedObject(originalObj);
 
         UnsignedWord size = LayoutEncoding.getSizeFromObject(originalObj);
-        Pointer copyMemory = allocateMemory(size);
+        Pointer copyMemory = WordFactory.nullPointer();
+        FreeList freeList = null;
+        if (isOldSpace()) {
+            /* Reuse the gaps left behind by sweeping before growing the old generation. */
+            freeList = HeapImpl.getHeapImpl().getOldGeneration().getFreeList();
+            copyMemory = freeList.allocate(size);
+        }
+        boolean fromFreeList = copyMemory.isNonNull();
+        if (!fromFreeList) {
+            copyMemory = allocateMemory(size);
+        }
         if (probability(LUDICROUSLY_SLOW_PATH_PROBABILITY, copyMemory.isNull())) {
             Log failureLog = Log.log().string("[! Space.copyAlignedObject:").indent(true);
             failureLog.string("  failure to allocate ").unsigned(size).string(" bytes").newline();
@@ -499,6 +511,10 @@ final class Space {
         if (HeapChunk.getSpace(copyChunk).isOldSpace()) {
             AlignedHeapChunk.setUpRememberedSetForObject(copyChunk, copy);
         }
+        if (fromFreeList) {
+            /* The grey objects walker only sees objects above the snapshot top of a chunk. */
+            freeList.recordGreyObject(copyMemory);
+        }
         return copy;
     }
 
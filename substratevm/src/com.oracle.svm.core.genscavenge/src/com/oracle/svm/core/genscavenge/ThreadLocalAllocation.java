@@ -54,6 +54,7 @@ import com.oracle.svm.core.graal.snippets.DeoptTester;
 import com.oracle.svm.core.graal.snippets.SubstrateAllocationSnippets;
 import com.oracle.svm.core.hub.DynamicHub;
 import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.jfr.FlightRecorder;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.snippets.KnownIntrinsics;
 import com.oracle.svm.core.snippets.SubstrateForeignCallTarget;
@@ -134,13 +135,16 @@ public final class ThreadLocalAllocation {
         Object result = slowPathNewInstanceWithoutAllocating(hub);
         /* If a collection happened, do follow-up tasks now that allocation, etc., is allowed. */
         HeapImpl.getHeapImpl().getGCImpl().possibleCollectionEpilogue(gcEpoch);
-        runSlowPathHooks();
+        runSlowPathHooks(hub, result);
         return result;
     }
 
     /** Use the end of slow-path allocation as a place to run periodic hook code. */
-    private static void runSlowPathHooks() {
+    private static void runSlowPathHooks(DynamicHub hub, Object result) {
         HeapPolicy.samplePhysicalMemorySize();
+        if (FlightRecorder.isRecording()) {
+            FlightRecorder.emitAllocationSample(hub.getTypeID(), LayoutEncoding.getSizeFromObject(result).rawValue());
+        }
     }
 
     @RestrictHeapAccess(access = RestrictHeapAccess.Access.NO_ALLOCATION, reason = "Must not allocate in the implementation of allocation.")
@@ -194,7 +198,7 @@ public final class ThreadLocalAllocation {
         Object result = slowPathNewArrayWithoutAllocating(hub, length);
         /* If a collection happened, do follow-up tasks now that allocation, etc., is allowed. */
         HeapImpl.getHeapImpl().getGCImpl().possibleCollectionEpilogue(gcEpoch);
-        runSlowPathHooks();
+        runSlowPathHooks(hub, result);
         return result;
     }
 
@@ -289,12 +293,15 @@ public final class ThreadLocalAllocation {
     static void disableAndFlushForAllThreads() {
         VMOperation.guaranteeInProgress("ThreadLocalAllocation.disableAndFlushForAllThreads");
 
+        HeapChunkProvider chunkProvider = HeapImpl.getChunkProvider();
         if (SubstrateOptions.MultiThreaded.getValue()) {
             for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
                 disableAndFlushForThread(vmThread);
+                chunkProvider.flushThreadLocalCache(vmThread);
             }
         } else {
             disableAndFlushForThread(WordFactory.nullPointer());
+            chunkProvider.flushThreadLocalCache(WordFactory.nullPointer());
         }
     }
 
@@ -311,6 +318,7 @@ public final class ThreadLocalAllocation {
             VMError.guarantee(VMThreads.nextThread(thread).isNull(), "Other isolate threads are still active");
         }
         freeHeapChunks(regularTLAB.getAddress(thread));
+        HeapChunkProvider.freeThreadLocalCache(thread);
     }
 
     @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
@@ -24,6 +24,9 @@
  */
 package com.oracle.svm.core.genscavenge;
 
+import java.nio.charset.StandardCharsets;
+
+import com.oracle.svm.core.jfr.FlightRecorder;
 import com.oracle.svm.core.log.Log;
 
 /**
@@ -32,12 +35,19 @@ import com.oracle.svm.core.log.Log;
  */
 final class Timer implements AutoCloseable {
     private final String name;
+    /** The name for {@link FlightRecorder} events, or null if this timer does not time a GC phase. */
+    private final byte[] phaseName;
     private long openNanos;
     private long closeNanos;
     private long collectedNanos;
 
     Timer(String name) {
+        this(name, true);
+    }
+
+    Timer(String name, boolean gcPhase) {
         this.name = name;
+        this.phaseName = gcPhase ? name.getBytes(StandardCharsets.UTF_8) : null;
     }
 
     public String getName() {
@@ -58,6 +68,9 @@ final class Timer implements AutoCloseable {
         }
         closeNanos = System.nanoTime();
         collectedNanos += closeNanos - openNanos;
+        if (phaseName != null) {
+            FlightRecorder.emitGCPhase(phaseName, openNanos, closeNanos);
+        }
     }
 
     public void reset() {
@@ -95,7 +108,7 @@ final class Timers {
     final Timer blackenStackRoots = new Timer("blackenStackRoots");
     final Timer cheneyScanFromRoots = new Timer("cheneyScanFromRoots");
     final Timer cheneyScanFromDirtyRoots = new Timer("cheneyScanFromDirtyRoots");
-    final Timer collection = new Timer("collection");
+    final Timer collection = new Timer("collection", false);
     final Timer cleanCodeCache = new Timer("cleanCodeCache");
     final Timer referenceObjects = new Timer("referenceObjects");
     final Timer promotePinnedObjects = new Timer("promotePinnedObjects");
@@ -107,7 +120,7 @@ final class Timers {
     final Timer walkThreadLocals = new Timer("walkThreadLocals");
     final Timer walkRuntimeCodeCache = new Timer("walkRuntimeCodeCache");
     final Timer cleanRuntimeCodeCache = new Timer("cleanRuntimeCodeCache");
-    final Timer mutator = new Timer("mutator");
+    final Timer mutator = new Timer("mutator", false);
 
     Timers() {
     }
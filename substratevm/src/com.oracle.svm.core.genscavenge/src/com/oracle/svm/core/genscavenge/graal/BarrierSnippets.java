@@ -32,13 +32,23 @@ import org.graalvm.compiler.api.replacements.Fold;
 import org.graalvm.compiler.api.replacements.Snippet;
 import org.graalvm.compiler.api.replacements.Snippet.ConstantParameter;
 import org.graalvm.compiler.api.replacements.SnippetReflectionProvider;
+import org.graalvm.compiler.core.common.spi.ForeignCallDescriptor;
 import org.graalvm.compiler.debug.DebugHandlersFactory;
+import org.graalvm.compiler.debug.GraalError;
 import org.graalvm.compiler.graph.Node;
+import org.graalvm.compiler.graph.Node.ConstantNodeParameter;
+import org.graalvm.compiler.graph.Node.NodeIntrinsic;
 import org.graalvm.compiler.nodes.extended.BranchProbabilityNode;
 import org.graalvm.compiler.nodes.extended.FixedValueAnchorNode;
+import org.graalvm.compiler.nodes.extended.ForeignCallNode;
+import org.graalvm.compiler.nodes.gc.G1ArrayRangePostWriteBarrier;
+import org.graalvm.compiler.nodes.gc.G1ArrayRangePreWriteBarrier;
+import org.graalvm.compiler.nodes.gc.G1PostWriteBarrier;
+import org.graalvm.compiler.nodes.gc.G1PreWriteBarrier;
 import org.graalvm.compiler.nodes.gc.SerialArrayRangeWriteBarrier;
 import org.graalvm.compiler.nodes.gc.SerialWriteBarrier;
 import org.graalvm.compiler.nodes.gc.WriteBarrier;
+import org.graalvm.compiler.nodes.memory.address.AddressNode.Address;
 import org.graalvm.compiler.nodes.memory.address.OffsetAddressNode;
 import org.graalvm.compiler.nodes.spi.LoweringTool;
 import org.graalvm.compiler.options.Option;
@@ -48,6 +58,7 @@ import org.graalvm.compiler.replacements.SnippetTemplate;
 import org.graalvm.compiler.replacements.SnippetTemplate.Arguments;
 import org.graalvm.compiler.replacements.SnippetTemplate.SnippetInfo;
 import org.graalvm.compiler.replacements.Snippets;
+import org.graalvm.compiler.word.Word;
 import org.graalvm.nativeimage.ImageSingletons;
 import org.graalvm.nativeimage.hosted.Feature;
 import org.graalvm.word.UnsignedWord;
@@ -56,11 +67,16 @@ import com.oracle.svm.core.SubstrateOptions;
 import com.oracle.svm.core.annotate.AutomaticFeature;
 import com.oracle.svm.core.genscavenge.AlignedHeapChunk;
 import com.oracle.svm.core.genscavenge.CardTable;
+import com.oracle.svm.core.genscavenge.ConcurrentMarker;
 import com.oracle.svm.core.genscavenge.ObjectHeaderImpl;
 import com.oracle.svm.core.genscavenge.UnalignedHeapChunk;
+import com.oracle.svm.core.graal.meta.SubstrateForeignCallsProvider;
 import com.oracle.svm.core.graal.snippets.NodeLoweringProvider;
 import com.oracle.svm.core.graal.snippets.SubstrateTemplates;
+import com.oracle.svm.core.heap.ReferenceAccess;
 import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.snippets.SnippetRuntime;
+import com.oracle.svm.core.snippets.SnippetRuntime.SubstrateForeignCallDescriptor;
 import com.oracle.svm.core.util.Counter;
 import com.oracle.svm.core.util.CounterFeature;
 
@@ -70,6 +86,14 @@ public class BarrierSnippets extends SubstrateTemplates implements Snippets {
         public static final HostedOptionKey<Boolean> CountWriteBarriers = new HostedOptionKey<>(false);
     }
 
+    private static final SubstrateForeignCallDescriptor SATB_ENQUEUE = SnippetRuntime.findForeignCall(ConcurrentMarker.class, "enqueue", true);
+
+    public static void registerForeignCalls(Providers providers, SubstrateForeignCallsProvider foreignCalls) {
+        if (ConcurrentMarker.isSupported()) {
+            foreignCalls.register(providers, SATB_ENQUEUE);
+        }
+    }
+
     @Fold
     static BarrierSnippetCounters counters() {
         return ImageSingletons.lookup(BarrierSnippetCounters.class);
@@ -84,8 +108,53 @@ public class BarrierSnippets extends SubstrateTemplates implements Snippets {
         lowerings.put(SerialWriteBarrier.class, lowering);
         // write barriers are currently always imprecise
         lowerings.put(SerialArrayRangeWriteBarrier.class, lowering);
+        if (ConcurrentMarker.isSupported()) {
+            lowerings.put(G1PostWriteBarrier.class, lowering);
+            lowerings.put(G1ArrayRangePostWriteBarrier.class, lowering);
+            lowerings.put(G1PreWriteBarrier.class, new PreWriteBarrierLowering());
+            lowerings.put(G1ArrayRangePreWriteBarrier.class, new ArrayRangePreWriteBarrierLowering());
+        }
+    }
+
+    /**
+     * Snapshot-at-the-beginning barrier for {@link ConcurrentMarker}: records the reference that is
+     * about to be overwritten while the old generation is being marked.
+     */
+    @Snippet
+    public static void preWriteBarrierSnippet(Address address) {
+        counters().preWriteBarrier.inc();
+        if (BranchProbabilityNode.probability(BranchProbabilityNode.FREQUENT_PROBABILITY, !ConcurrentMarker.isBarrierActive())) {
+            return;
+        }
+        Object previous = ReferenceAccess.singleton().readObjectAt(Word.fromAddress(address), true);
+        if (BranchProbabilityNode.probability(BranchProbabilityNode.LIKELY_PROBABILITY, previous != null)) {
+            counters().preWriteBarrierEnqueued.inc();
+            callEnqueue(SATB_ENQUEUE, previous);
+        }
+    }
+
+    @Snippet
+    public static void arrayRangePreWriteBarrierSnippet(Address address, int length, @ConstantParameter int elementStride) {
+        if (BranchProbabilityNode.probability(BranchProbabilityNode.FREQUENT_PROBABILITY, !ConcurrentMarker.isBarrierActive() || length == 0)) {
+            return;
+        }
+        Word start = Word.fromAddress(address);
+        if (elementStride < 0) {
+            /* The address points to the place after the last array element. */
+            start = start.add(elementStride * length);
+        }
+        int scale = Math.abs(elementStride);
+        for (int i = 0; i < length; i++) {
+            Object previous = ReferenceAccess.singleton().readObjectAt(start.add(i * scale), true);
+            if (previous != null) {
+                callEnqueue(SATB_ENQUEUE, previous);
+            }
+        }
     }
 
+    @NodeIntrinsic(value = ForeignCallNode.class)
+    private static native void callEnqueue(@ConstantNodeParameter ForeignCallDescriptor descriptor, Object previous);
+
     @Snippet
     public static void postWriteBarrierSnippet(Object object, @ConstantParameter boolean verifyOnly) {
         counters().postWriteBarrier.inc();
@@ -127,6 +196,34 @@ public class BarrierSnippets extends SubstrateTemplates implements Snippets {
         }
     }
 
+    private class PreWriteBarrierLowering implements NodeLoweringProvider<G1PreWriteBarrier> {
+        private final SnippetInfo preWriteBarrierSnippet = snippet(BarrierSnippets.class, "preWriteBarrierSnippet");
+
+        @Override
+        public void lower(G1PreWriteBarrier barrier, LoweringTool tool) {
+            /* Implicit null checks are only introduced after the barriers are lowered. */
+            GraalError.guarantee(!barrier.getNullCheck(), "pre-write barrier must not perform a null check: %s", barrier);
+            Arguments args = new Arguments(preWriteBarrierSnippet, barrier.graph().getGuardsStage(), tool.getLoweringStage());
+            args.add("address", barrier.getAddress());
+
+            template(barrier, args).instantiate(providers.getMetaAccess(), barrier, SnippetTemplate.DEFAULT_REPLACER, args);
+        }
+    }
+
+    private class ArrayRangePreWriteBarrierLowering implements NodeLoweringProvider<G1ArrayRangePreWriteBarrier> {
+        private final SnippetInfo arrayRangePreWriteBarrierSnippet = snippet(BarrierSnippets.class, "arrayRangePreWriteBarrierSnippet");
+
+        @Override
+        public void lower(G1ArrayRangePreWriteBarrier barrier, LoweringTool tool) {
+            Arguments args = new Arguments(arrayRangePreWriteBarrierSnippet, barrier.graph().getGuardsStage(), tool.getLoweringStage());
+            args.add("address", barrier.getAddress());
+            args.add("length", barrier.getLength());
+            args.addConst("elementStride", barrier.getElementStride());
+
+            template(barrier, args).instantiate(providers.getMetaAccess(), barrier, SnippetTemplate.DEFAULT_REPLACER, args);
+        }
+    }
+
     public static final class TestingBackDoor {
         private TestingBackDoor() {
         }
@@ -150,6 +247,8 @@ class BarrierSnippetCounters {
     final Counter postWriteBarrier = new Counter(counters, "postWriteBarrier", "post-write barriers");
     final Counter postWriteBarrierAligned = new Counter(counters, "postWriteBarrierAligned", "aligned object path of post-write barriers");
     final Counter postWriteBarrierUnaligned = new Counter(counters, "postWriteBarrierUnaligned", "unaligned object path of post-write barriers");
+    final Counter preWriteBarrier = new Counter(counters, "preWriteBarrier", "pre-write barriers");
+    final Counter preWriteBarrierEnqueued = new Counter(counters, "preWriteBarrierEnqueued", "pre-write barriers that recorded the previous value for concurrent marking");
 }
 
 @AutomaticFeature
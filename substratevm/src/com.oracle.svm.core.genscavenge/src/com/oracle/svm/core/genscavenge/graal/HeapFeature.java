@@ -116,5 +116,6 @@ class HeapFeature implements GraalFeature {
     @Override
     public void registerForeignCalls(RuntimeConfiguration runtimeConfig, Providers providers, SnippetReflectionProvider snippetReflection, SubstrateForeignCallsProvider foreignCalls, boolean hosted) {
         GenScavengeAllocationSnippets.registerForeignCalls(providers, foreignCalls);
+        BarrierSnippets.registerForeignCalls(providers, foreignCalls);
     }
 }
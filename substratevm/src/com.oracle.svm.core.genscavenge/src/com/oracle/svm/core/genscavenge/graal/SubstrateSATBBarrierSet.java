@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge.graal;
+
+import org.graalvm.compiler.nodes.extended.RawLoadNode;
+import org.graalvm.compiler.nodes.gc.G1BarrierSet;
+import org.graalvm.compiler.nodes.memory.OnHeapMemoryAccess.BarrierType;
+
+import com.oracle.svm.core.genscavenge.ConcurrentMarker;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.ResolvedJavaField;
+import jdk.vm.ci.meta.ResolvedJavaType;
+
+/**
+ * Emits snapshot-at-the-beginning pre-write barriers for the {@link ConcurrentMarker} in addition
+ * to the post-write barriers of the card remembered set, reusing the barrier nodes of G1.
+ * <p>
+ * As in {@link SubstrateCardTableBarrierSet}, static Object fields need array write barriers. No
+ * read barriers are emitted for {@link java.lang.ref.Reference#get} because the concurrent marker
+ * treats referents as strong references.
+ */
+public class SubstrateSATBBarrierSet extends G1BarrierSet {
+    public SubstrateSATBBarrierSet(ResolvedJavaType objectArrayType) {
+        super(objectArrayType, null);
+    }
+
+    @Override
+    public BarrierType readBarrierType(RawLoadNode load) {
+        return BarrierType.NONE;
+    }
+
+    @Override
+    public BarrierType fieldLoadBarrierType(ResolvedJavaField field, JavaKind storageKind) {
+        return BarrierType.NONE;
+    }
+
+    @Override
+    public BarrierType fieldStoreBarrierType(ResolvedJavaField field, JavaKind storageKind) {
+        if (field.isStatic() && storageKind == JavaKind.Object) {
+            return arrayStoreBarrierType(storageKind);
+        }
+        return super.fieldStoreBarrierType(field, storageKind);
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.posix;
+
+import static com.oracle.svm.core.annotate.RestrictHeapAccess.Access.NO_ALLOCATION;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graalvm.compiler.nodes.extended.MembarNode;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionType;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.StackValue;
+import org.graalvm.nativeimage.c.function.CEntryPoint;
+import org.graalvm.nativeimage.c.function.CEntryPointLiteral;
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.nativeimage.c.struct.RawField;
+import org.graalvm.nativeimage.c.struct.RawStructure;
+import org.graalvm.nativeimage.c.struct.SizeOf;
+import org.graalvm.nativeimage.c.type.WordPointer;
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.LocationIdentity;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.PointerBase;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.FrameAccess;
+import com.oracle.svm.core.RegisterDumper;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.c.CGlobalData;
+import com.oracle.svm.core.c.CGlobalDataFactory;
+import com.oracle.svm.core.c.function.CEntryPointOptions;
+import com.oracle.svm.core.c.function.CEntryPointOptions.NoEpilogue;
+import com.oracle.svm.core.c.function.CEntryPointOptions.NoPrologue;
+import com.oracle.svm.core.c.function.CEntryPointOptions.Publish;
+import com.oracle.svm.core.code.CodeInfo;
+import com.oracle.svm.core.code.CodeInfoAccess;
+import com.oracle.svm.core.code.CodeInfoQueryResult;
+import com.oracle.svm.core.code.CodeInfoTable;
+import com.oracle.svm.core.code.FrameInfoQueryResult;
+import com.oracle.svm.core.code.SimpleCodeInfoQueryResult;
+import com.oracle.svm.core.deopt.DeoptimizationSupport;
+import com.oracle.svm.core.deopt.Deoptimizer;
+import com.oracle.svm.core.graal.nodes.WriteCurrentVMThreadNode;
+import com.oracle.svm.core.graal.nodes.WriteHeapBaseNode;
+import com.oracle.svm.core.jdk.RuntimeSupport;
+import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+import com.oracle.svm.core.posix.headers.LibC;
+import com.oracle.svm.core.posix.headers.Pthread;
+import com.oracle.svm.core.posix.headers.Signal;
+import com.oracle.svm.core.posix.headers.Signal.AdvancedSignalDispatcher;
+import com.oracle.svm.core.posix.headers.Signal.sigaction;
+import com.oracle.svm.core.posix.headers.Signal.siginfo_t;
+import com.oracle.svm.core.posix.headers.Signal.ucontext_t;
+import com.oracle.svm.core.posix.headers.Time;
+import com.oracle.svm.core.stack.JavaFrameAnchor;
+import com.oracle.svm.core.stack.JavaFrameAnchors;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
+
+import jdk.vm.ci.code.MemoryBarriers;
+
+@AutomaticFeature
+class SamplingProfilerFeature implements Feature {
+    @Override
+    public void beforeAnalysis(BeforeAnalysisAccess access) {
+        RuntimeSupport.getRuntimeSupport().addStartupHook(() -> {
+            if (SamplingProfiler.Options.SamplingProfiler.getValue()) {
+                SamplingProfiler.start();
+            }
+        });
+        RuntimeSupport.getRuntimeSupport().addShutdownHook(SamplingProfiler::stop);
+    }
+}
+
+/**
+ * A CPU profiler that samples the Java stacks of the threads that consume CPU time, without
+ * bringing them to a safepoint. An interval timer of the process delivers {@code SIGPROF} to a
+ * running thread, and the signal handler walks the interrupted stack of that thread with the code
+ * metadata of the image.
+ * <p>
+ * The signal handler is async-signal-safe: it finds the {@link IsolateThread} of the interrupted
+ * thread via a pthread key instead of trusting the thread register, it neither allocates nor takes
+ * locks, and it only records the raw instruction pointers of the frames into a
+ * {@link SampleBuffer} that was preallocated for the thread. When the thread was interrupted outside
+ * of image code, for example in native code, the walk starts at its last Java frame. A drainer
+ * thread periodically moves the samples from the buffers into a table of stacks, and the
+ * instruction pointers are only resolved to methods when the profile is
+ * {@linkplain #writeProfile written}: at exit, or on demand.
+ * <p>
+ * The profile is written in the collapsed-stack format of flame graph tools: one line per distinct
+ * stack, with the frames from the root to the leaf separated by semicolons, followed by the number
+ * of samples. Inlined methods appear as frames of their own. Only threads that are started after
+ * the profiler, and the thread that starts it, are sampled. Runtime-compiled code is not walked.
+ */
+public final class SamplingProfiler {
+    public static class Options {
+        @Option(help = "Sample the stacks of threads that consume CPU time and write the profile at exit.", type = OptionType.Expert)//
+        public static final RuntimeOptionKey<Boolean> SamplingProfiler = new RuntimeOptionKey<>(false);
+
+        @Option(help = "Milliseconds of CPU time between two samples of the sampling profiler.", type = OptionType.Expert)//
+        public static final RuntimeOptionKey<Integer> SamplingProfilerInterval = new RuntimeOptionKey<>(10);
+
+        @Option(help = "The file to which the sampling profiler writes collapsed stacks.", type = OptionType.Expert)//
+        public static final RuntimeOptionKey<String> SamplingProfilerOutput = new RuntimeOptionKey<>("profile.collapsed");
+
+        @Option(help = "Maximum number of physical frames that the sampling profiler records per sample.", type = OptionType.Expert)//
+        public static final RuntimeOptionKey<Integer> SamplingProfilerMaxDepth = new RuntimeOptionKey<>(128);
+
+        @Option(help = "Size in bytes of the per-thread sample buffers of the sampling profiler.", type = OptionType.Expert)//
+        public static final RuntimeOptionKey<Integer> SamplingProfilerThreadBufferSize = new RuntimeOptionKey<>(64 * 1024);
+    }
+
+    private static final int DRAIN_PERIOD_MILLIS = 100;
+
+    /** The profiler of a process can only be used by one isolate, which sets this word. */
+    private static final CGlobalData<Pointer> activeInProcess = CGlobalDataFactory.createWord();
+    /** The {@code pthread_key_t} that maps a pthread to its {@link IsolateThread}. */
+    private static final CGlobalData<Pointer> threadKey = CGlobalDataFactory.createWord();
+
+    private static volatile boolean sampling;
+    /** Cached option values, so that the signal handler does not need to query options. */
+    private static int maxDepth;
+    private static long bufferCapacity;
+    private static Thread drainer;
+
+    private static final FastThreadLocalWord<SampleBuffer> bufferTL = FastThreadLocalFactory.createWord();
+    /** The buffers of all sampled threads, linked via {@link SampleBuffer#getNext()}. */
+    private static final UninterruptibleUtils.AtomicPointer<SampleBuffer> buffers = new UninterruptibleUtils.AtomicPointer<>();
+
+    /** Number of samples per distinct stack, guarded by the class. */
+    private static final Map<Stack, long[]> stacks = new HashMap<>();
+    /** Samples lost by the threads whose buffers were freed, guarded by the class. */
+    private static long retiredLostSamples;
+
+    /**
+     * A single-producer single-consumer ring of words in unmanaged memory, which follow the header.
+     * The signal handler of the owning thread appends samples and advances {@link #getHead()}; the
+     * drainer consumes them and advances {@link #getTail()}. A sample is its number of frames,
+     * followed by the instruction pointers from the leaf to the root.
+     */
+    @RawStructure
+    interface SampleBuffer extends PointerBase {
+        @RawField
+        SampleBuffer getNext();
+
+        @RawField
+        void setNext(SampleBuffer next);
+
+        @RawField
+        long getCapacity();
+
+        @RawField
+        void setCapacity(long capacity);
+
+        @RawField
+        long getHead();
+
+        @RawField
+        void setHead(long head);
+
+        @RawField
+        long getTail();
+
+        @RawField
+        void setTail(long tail);
+
+        /**
+         * Samples dropped because the ring was full. Only the signal handler of the owning thread
+         * increments it, and the drainer only reads it, so no increment can be lost.
+         */
+        @RawField
+        long getLost();
+
+        @RawField
+        void setLost(long lost);
+
+        /** Non-zero when the owning thread no longer takes samples. */
+        @RawField
+        int getRetired();
+
+        @RawField
+        void setRetired(int retired);
+    }
+
+    /** A sampled stack of raw instruction pointers, from the leaf to the root. */
+    private static final class Stack {
+        final long[] ips;
+        final int hash;
+
+        Stack(long[] ips) {
+            this.ips = ips;
+            this.hash = Arrays.hashCode(ips);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Stack && Arrays.equals(ips, ((Stack) obj).ips);
+        }
+    }
+
+    private SamplingProfiler() {
+    }
+
+    static void start() {
+        UnsignedWord previous = activeInProcess.get().compareAndSwapWord(0, WordFactory.zero(), WordFactory.unsigned(1), LocationIdentity.ANY_LOCATION);
+        if (previous.notEqual(0)) {
+            Log.log().string("The sampling profiler is already active in another isolate of this process.").newline();
+            return;
+        }
+        maxDepth = Math.max(Options.SamplingProfilerMaxDepth.getValue(), 1);
+        bufferCapacity = Math.max(Options.SamplingProfilerThreadBufferSize.getValue() / FrameAccess.wordSize(), maxDepth + 1L);
+
+        WordPointer key = StackValue.get(WordPointer.class);
+        key.write(WordFactory.zero());
+        if (Pthread.pthread_key_create(key, WordFactory.nullPointer()) != 0) {
+            Log.log().string("The sampling profiler could not create a thread key.").newline();
+            return;
+        }
+        threadKey.get().writeWord(0, key.read());
+
+        sampling = true;
+        registerCurrentThread();
+        installSignalHandler();
+        setTimer(Options.SamplingProfilerInterval.getValue());
+
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            drainer = new Thread(SamplingProfiler::runDrainer, "Sampling Profiler Drainer");
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+    }
+
+    static void stop() {
+        if (!sampling) {
+            return;
+        }
+        setTimer(0);
+        sampling = false;
+        if (drainer != null) {
+            drainer.interrupt();
+        }
+        try {
+            writeProfile(Options.SamplingProfilerOutput.getValue());
+        } catch (IOException e) {
+            Log.log().string("The sampling profiler could not write its profile: ").string(e.getMessage()).newline();
+        }
+    }
+
+    public static boolean isSampling() {
+        return sampling;
+    }
+
+    private static void setTimer(int intervalMillis) {
+        Time.itimerval timer = StackValue.get(Time.itimerval.class);
+        long micros = intervalMillis * 1000L;
+        timer.it_interval().set_tv_sec(micros / 1_000_000L);
+        timer.it_interval().set_tv_usec(micros % 1_000_000L);
+        timer.it_value().set_tv_sec(micros / 1_000_000L);
+        timer.it_value().set_tv_usec(micros % 1_000_000L);
+        Time.setitimer(Time.ITIMER_PROF(), timer, WordFactory.nullPointer());
+    }
+
+    /** The address of the signal handler, below. */
+    private static final CEntryPointLiteral<AdvancedSignalDispatcher> signalHandler = CEntryPointLiteral.create(SamplingProfiler.class,
+                    "dispatch", int.class, siginfo_t.class, ucontext_t.class);
+
+    private static void installSignalHandler() {
+        int structSigActionSize = SizeOf.get(sigaction.class);
+        sigaction structSigAction = StackValue.get(structSigActionSize);
+        LibC.memset(structSigAction, WordFactory.signed(0), WordFactory.unsigned(structSigActionSize));
+        /* Restart interrupted system calls, so that sampling is transparent to the application. */
+        structSigAction.sa_flags(Signal.SA_SIGINFO() | Signal.SA_RESTART());
+        structSigAction.sa_sigaction(signalHandler.getFunctionPointer());
+        Signal.sigaction(Signal.SignalEnum.SIGPROF, structSigAction, WordFactory.nullPointer());
+    }
+
+    /** Allocates the sample buffer of the current thread and makes the thread visible to sampling. */
+    public static void registerCurrentThread() {
+        if (!sampling || bufferTL.get().isNonNull()) {
+            return;
+        }
+        UnsignedWord size = SizeOf.unsigned(SampleBuffer.class).add(WordFactory.unsigned(bufferCapacity).multiply(FrameAccess.wordSize()));
+        SampleBuffer buffer = ImageSingletons.lookup(UnmanagedMemorySupport.class).malloc(size);
+        if (buffer.isNull()) {
+            return;
+        }
+        buffer.setCapacity(bufferCapacity);
+        buffer.setHead(0);
+        buffer.setTail(0);
+        buffer.setLost(0);
+        buffer.setRetired(0);
+        SampleBuffer head;
+        do {
+            head = buffers.get();
+            buffer.setNext(head);
+        } while (!buffers.compareAndSet(head, buffer));
+        bufferTL.set(buffer);
+        /* Only now can the signal handler find this thread. */
+        Pthread.pthread_setspecific(threadKey.get().readWord(0), CurrentIsolate.getCurrentThread());
+    }
+
+    /** Hides the current thread from sampling before it detaches; the drainer frees its buffer. */
+    public static void unregisterCurrentThread() {
+        SampleBuffer buffer = bufferTL.get();
+        if (buffer.isNull()) {
+            return;
+        }
+        Pthread.pthread_setspecific(threadKey.get().readWord(0), WordFactory.nullPointer());
+        bufferTL.set(WordFactory.nullPointer());
+        MembarNode.memoryBarrier(MemoryBarriers.STORE_STORE);
+        buffer.setRetired(1);
+    }
+
+    @CEntryPoint
+    @CEntryPointOptions(prologue = NoPrologue.class, epilogue = NoEpilogue.class, publishAs = Publish.NotPublished, include = CEntryPointOptions.NotIncludedAutomatically.class)
+    @RestrictHeapAccess(access = NO_ALLOCATION, reason = "Must not allocate in a signal handler.")
+    @Uninterruptible(reason = "The interrupted thread can be in any state, so there must be no safepoint checks.")
+    private static void dispatch(@SuppressWarnings("unused") int signalNumber, @SuppressWarnings("unused") siginfo_t sigInfo, ucontext_t uContext) {
+        /*
+         * The registers of the interrupted thread are restored when the handler returns, so the
+         * thread and heap base registers can be overwritten here.
+         */
+        IsolateThread thread = (IsolateThread) Pthread.pthread_getspecific(threadKey.get().readWord(0));
+        if (thread.isNull()) {
+            /* Not a thread that is sampled, or one that is attaching or detaching. */
+            return;
+        }
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            WriteCurrentVMThreadNode.writeCurrentVMThread(thread);
+        }
+        if (SubstrateOptions.SpawnIsolates.getValue()) {
+            WriteHeapBaseNode.writeCurrentVMHeapBase(VMThreads.IsolateTL.get(thread));
+        }
+        if (sampling) {
+            takeSample((CodePointer) RegisterDumper.singleton().getIP(uContext), (Pointer) RegisterDumper.singleton().getSP(uContext));
+        }
+    }
+
+    @Uninterruptible(reason = "Called from the signal handler.")
+    private static void takeSample(CodePointer interruptedIP, Pointer interruptedSP) {
+        SampleBuffer buffer = bufferTL.get();
+        if (buffer.isNull()) {
+            return;
+        }
+        CodeInfo info = CodeInfoTable.getImageCodeInfo();
+        CodePointer ip = interruptedIP;
+        Pointer sp = interruptedSP;
+        if (!CodeInfoAccess.contains(info, ip)) {
+            /* Interrupted in native or runtime-compiled code: start at the last Java frame. */
+            JavaFrameAnchor anchor = JavaFrameAnchors.getFrameAnchor();
+            if (anchor.isNull()) {
+                return;
+            }
+            ip = anchor.getLastJavaIP();
+            sp = anchor.getLastJavaSP();
+            if (!CodeInfoAccess.contains(info, ip)) {
+                return;
+            }
+        }
+
+        long head = buffer.getHead();
+        long tail = buffer.getTail();
+        MembarNode.memoryBarrier(MemoryBarriers.LOAD_STORE);
+        long capacity = buffer.getCapacity();
+        long limit = Math.min(maxDepth, capacity - (head - tail) - 1);
+        if (limit <= 0) {
+            buffer.setLost(buffer.getLost() + 1);
+            return;
+        }
+
+        Pointer data = getData(buffer);
+        SimpleCodeInfoQueryResult queryResult = StackValue.get(SimpleCodeInfoQueryResult.class);
+        long depth = 0;
+        while (depth < limit) {
+            data.writeWord(slot(head + 1 + depth, capacity), ip);
+            depth++;
+
+            lookupCodeInfo(info, ip, queryResult);
+            long encodedFrameSize = queryResult.getEncodedFrameSize();
+            if (CodeInfoQueryResult.isEntryPoint(encodedFrameSize)) {
+                /* The callers are C frames. */
+                break;
+            }
+            sp = sp.add(WordFactory.unsigned(CodeInfoQueryResult.getTotalFrameSize(encodedFrameSize)));
+            if (DeoptimizationSupport.enabled() && Deoptimizer.checkDeoptimized(sp) != null) {
+                break;
+            }
+            ip = FrameAccess.singleton().readReturnAddress(sp);
+            if (!CodeInfoAccess.contains(info, ip)) {
+                break;
+            }
+        }
+        data.writeWord(slot(head, capacity), WordFactory.unsigned(depth));
+        MembarNode.memoryBarrier(MemoryBarriers.STORE_STORE);
+        buffer.setHead(head + 1 + depth);
+    }
+
+    /**
+     * Only reads the encoded metadata of the image code, which is async-signal-safe although the
+     * decoder is not annotated as uninterruptible.
+     */
+    @Uninterruptible(reason = "Called from the signal handler.", calleeMustBe = false)
+    @RestrictHeapAccess(access = NO_ALLOCATION, reason = "Must not allocate in a signal handler.")
+    private static void lookupCodeInfo(CodeInfo info, CodePointer ip, SimpleCodeInfoQueryResult queryResult) {
+        CodeInfoAccess.lookupCodeInfo(info, CodeInfoAccess.relativeIP(info, ip), queryResult);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static Pointer getData(SampleBuffer buffer) {
+        return ((Pointer) buffer).add(SizeOf.unsigned(SampleBuffer.class));
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static int slot(long index, long capacity) {
+        return (int) (index % capacity) * FrameAccess.wordSize();
+    }
+
+    private static void runDrainer() {
+        try {
+            while (sampling) {
+                Thread.sleep(DRAIN_PERIOD_MILLIS);
+                drain();
+            }
+        } catch (InterruptedException e) {
+            /* Sampling was stopped. */
+        }
+    }
+
+    /** Moves the samples of all buffers into the table of stacks and frees retired buffers. */
+    private static synchronized void drain() {
+        SampleBuffer previous = WordFactory.nullPointer();
+        SampleBuffer buffer = buffers.get();
+        while (buffer.isNonNull()) {
+            SampleBuffer next = buffer.getNext();
+            boolean retired = buffer.getRetired() != 0;
+            MembarNode.memoryBarrier(MemoryBarriers.LOAD_LOAD);
+            long head = buffer.getHead();
+            MembarNode.memoryBarrier(MemoryBarriers.LOAD_LOAD);
+            long capacity = buffer.getCapacity();
+            Pointer data = getData(buffer);
+            long tail = buffer.getTail();
+            while (tail < head) {
+                int depth = (int) data.readWord(slot(tail, capacity)).rawValue();
+                long[] ips = new long[depth];
+                for (int i = 0; i < depth; i++) {
+                    ips[i] = data.readWord(slot(tail + 1 + i, capacity)).rawValue();
+                }
+                stacks.computeIfAbsent(new Stack(ips), k -> new long[1])[0]++;
+                tail += 1 + depth;
+            }
+            MembarNode.memoryBarrier(MemoryBarriers.LOAD_STORE);
+            buffer.setTail(tail);
+
+            /* Only the drainer unlinks buffers; a head that lost a race stays for the next drain. */
+            boolean unlinked = false;
+            if (retired) {
+                if (previous.isNull()) {
+                    unlinked = buffers.compareAndSet(buffer, next);
+                } else {
+                    previous.setNext(next);
+                    unlinked = true;
+                }
+            }
+            if (unlinked) {
+                /* The thread retired, so its signal handler no longer updates the counter. */
+                retiredLostSamples += buffer.getLost();
+                ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+            } else {
+                previous = buffer;
+            }
+            buffer = next;
+        }
+    }
+
+    /**
+     * Writes the samples taken so far as collapsed stacks. Can be called at any time while
+     * sampling, for example by the application.
+     */
+    public static synchronized void writeProfile(String path) throws IOException {
+        drain();
+        Map<Long, List<String>> methods = new HashMap<>();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
+            for (Map.Entry<Stack, long[]> entry : stacks.entrySet()) {
+                long[] ips = entry.getKey().ips;
+                StringBuilder line = new StringBuilder();
+                for (int i = ips.length - 1; i >= 0; i--) {
+                    /* Only the leaf can be at an instruction without frame information. */
+                    List<String> frames = methods.computeIfAbsent(ips[i], SamplingProfiler::resolve);
+                    for (String frame : frames) {
+                        if (line.length() > 0) {
+                            line.append(';');
+                        }
+                        line.append(frame);
+                    }
+                }
+                out.print(line);
+                out.print(' ');
+                out.println(entry.getValue()[0]);
+            }
+        }
+        long lostSamples = retiredLostSamples;
+        for (SampleBuffer buffer = buffers.get(); buffer.isNonNull(); buffer = buffer.getNext()) {
+            lostSamples += buffer.getLost();
+        }
+        if (lostSamples > 0) {
+            Log.log().string("The sampling profiler dropped ").signed(lostSamples).string(" samples because a thread buffer was full.").newline();
+        }
+    }
+
+    /** The methods executing at an instruction pointer, from the outermost to the inlined ones. */
+    private static List<String> resolve(long ip) {
+        CodeInfo info = CodeInfoTable.getImageCodeInfo();
+        CodePointer codePointer = WordFactory.pointer(ip);
+        List<String> frames = new ArrayList<>();
+        CodeInfoQueryResult result = CodeInfoTable.lookupCodeInfoQueryResult(info, codePointer);
+        for (FrameInfoQueryResult frame = result.getFrameInfo(); frame != null; frame = frame.getCaller()) {
+            Class<?> sourceClass = frame.getSourceClass();
+            frames.add(0, (sourceClass != null ? sourceClass.getName() : "?") + "." + frame.getSourceMethodName());
+        }
+        if (frames.isEmpty()) {
+            frames.add("[image code+0x" + Long.toHexString(CodeInfoAccess.relativeIP(info, codePointer)) + "]");
+        }
+        return frames;
+    }
+}
@@ -113,12 +113,14 @@ class AArch64UContextRegisterDumper implements UContextRegisterDumper {
     }
 
     @Override
+    @Uninterruptible(reason = "Called from uninterruptible code", mayBeInlined = true)
     public PointerBase getSP(ucontext_t uContext) {
         mcontext_t sigcontext = uContext.uc_mcontext();
         return WordFactory.pointer(sigcontext.sp());
     }
 
     @Override
+    @Uninterruptible(reason = "Called from uninterruptible code", mayBeInlined = true)
     public PointerBase getIP(ucontext_t uContext) {
         mcontext_t sigcontext = uContext.uc_mcontext();
         return WordFactory.pointer(sigcontext.pc());
@@ -31,6 +31,7 @@ import org.graalvm.nativeimage.c.function.CFunction.Transition;
 import org.graalvm.nativeimage.c.function.CLibrary;
 import org.graalvm.nativeimage.c.struct.CPointerTo;
 import org.graalvm.nativeimage.c.struct.CStruct;
+import org.graalvm.nativeimage.c.type.VoidPointer;
 import org.graalvm.nativeimage.c.type.WordPointer;
 import org.graalvm.word.PointerBase;
 import org.graalvm.word.UnsignedWord;
@@ -158,4 +159,18 @@ public class Pthread {
 
     @CFunction
     public static native int pthread_kill(pthread_t thread, Signal.SignalEnum sig);
+
+    /**
+     * The key is written as a {@code pthread_key_t}, which is narrower than a word on some
+     * platforms, so the word must be zeroed beforehand.
+     */
+    @CFunction(transition = Transition.NO_TRANSITION)
+    public static native int pthread_key_create(WordPointer key, WordBase destructor);
+
+    @CFunction(transition = Transition.NO_TRANSITION)
+    public static native int pthread_setspecific(UnsignedWord key, WordBase value);
+
+    @CFunction(transition = Transition.NO_TRANSITION)
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    public static native VoidPointer pthread_getspecific(UnsignedWord key);
 }
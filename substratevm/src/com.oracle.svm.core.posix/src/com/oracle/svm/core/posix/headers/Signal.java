@@ -233,6 +233,9 @@ public class Signal {
     @CConstant
     public static native int SA_SIGINFO();
 
+    @CConstant
+    public static native int SA_RESTART();
+
     @CStruct(addStructKeyword = true)
     public interface sigaction extends PointerBase {
         @CField
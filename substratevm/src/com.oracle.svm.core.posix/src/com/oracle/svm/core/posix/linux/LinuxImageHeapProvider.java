@@ -67,7 +67,9 @@ import com.oracle.svm.core.os.VirtualMemoryProvider;
 import com.oracle.svm.core.os.VirtualMemoryProvider.Access;
 import com.oracle.svm.core.posix.PosixUtils;
 import com.oracle.svm.core.posix.headers.Fcntl;
+import com.oracle.svm.core.posix.headers.Mman;
 import com.oracle.svm.core.posix.headers.Unistd;
+import com.oracle.svm.core.posix.headers.linux.LinuxMman;
 import com.oracle.svm.core.util.PointerUtils;
 
 import jdk.vm.ci.code.MemoryBarriers;
@@ -95,6 +97,11 @@ class LinuxImageHeapProviderFeature implements Feature {
  *
  * The implementation avoids dirtying the pages of the original, and only referencing what is
  * strictly required.
+ *
+ * When the dynamic linker relocated the addresses in the image heap, the pages with relocatable
+ * addresses cannot be mapped from the file. Their relocated contents are copied once into a shared
+ * anonymous mapping, which is then aliased into the image heap of every further isolate so that
+ * these pages are shared as well.
  */
 public class LinuxImageHeapProvider implements ImageHeapProvider {
     /** Magic value to verify that a located image file matches our loaded image. */
@@ -108,6 +115,7 @@ public class LinuxImageHeapProvider implements ImageHeapProvider {
     private static final SignedWord CANNOT_OPEN_FD = signed(CANNOT_OPEN_FD_VALUE);
     private static final CGlobalData<WordPointer> CACHED_IMAGE_FD = CGlobalDataFactory.createWord(FIRST_ISOLATE_FD);
     private static final CGlobalData<WordPointer> CACHED_IMAGE_HEAP_OFFSET = CGlobalDataFactory.createWord();
+    private static final CGlobalData<WordPointer> CACHED_RELOCATED_PARTITION = CGlobalDataFactory.createWord();
 
     private static final int MAX_PATHLEN = 4096;
 
@@ -212,8 +220,8 @@ public class LinuxImageHeapProvider implements ImageHeapProvider {
         ComparableWord mappedValue = heap.readWord(relocPointer.subtract(imageHeapBegin));
         if (relocatedValue.notEqual(mappedValue)) {
             /*
-             * Addresses were relocated by dynamic linker, so copy them, but first remap the pages
-             * to avoid swapping them in from disk.
+             * Addresses were relocated by dynamic linker, so map the shared relocated copy, or
+             * copy them, but first remap the pages to avoid swapping them in from disk.
              */
             Pointer relocsBegin = heap.add(IMAGE_HEAP_RELOCATABLE_BEGIN.get().subtract(imageHeapBegin));
             UnsignedWord relocsSize = IMAGE_HEAP_RELOCATABLE_END.get().subtract(IMAGE_HEAP_RELOCATABLE_BEGIN.get());
@@ -221,14 +229,16 @@ public class LinuxImageHeapProvider implements ImageHeapProvider {
                 freeImageHeap(allocatedMemory);
                 return CEntryPointErrors.PROTECT_HEAP_FAILED;
             }
-            if (VirtualMemoryProvider.get().commit(relocsBegin, relocsSize, Access.READ | Access.WRITE).isNull()) {
-                freeImageHeap(allocatedMemory);
-                return CEntryPointErrors.PROTECT_HEAP_FAILED;
-            }
-            memcpy(relocsBegin, IMAGE_HEAP_RELOCATABLE_BEGIN.get(), relocsSize);
-            if (VirtualMemoryProvider.get().protect(relocsBegin, relocsSize, Access.READ) != 0) {
-                freeImageHeap(allocatedMemory);
-                return CEntryPointErrors.PROTECT_HEAP_FAILED;
+            if (!mapRelocatedPartition(relocsBegin, relocsSize)) {
+                if (VirtualMemoryProvider.get().commit(relocsBegin, relocsSize, Access.READ | Access.WRITE).isNull()) {
+                    freeImageHeap(allocatedMemory);
+                    return CEntryPointErrors.PROTECT_HEAP_FAILED;
+                }
+                memcpy(relocsBegin, IMAGE_HEAP_RELOCATABLE_BEGIN.get(), relocsSize);
+                if (VirtualMemoryProvider.get().protect(relocsBegin, relocsSize, Access.READ) != 0) {
+                    freeImageHeap(allocatedMemory);
+                    return CEntryPointErrors.PROTECT_HEAP_FAILED;
+                }
             }
         }
 
@@ -247,6 +257,41 @@ public class LinuxImageHeapProvider implements ImageHeapProvider {
         return CEntryPointErrors.NO_ERROR;
     }
 
+    /**
+     * Maps the relocated partition of the loaded image heap read-only at {@code relocsBegin}. The
+     * first call copies the partition into a shared anonymous mapping, and every call creates an
+     * alias of that mapping with {@code mremap} and an old size of zero, so that all isolates use
+     * the same physical pages. Like for the image file descriptor, racing isolates may each create
+     * a copy; all but one are discarded.
+     *
+     * @return false if the partition could not be mapped, in which case the caller must copy it.
+     */
+    @Uninterruptible(reason = "Called during isolate initialization.")
+    private static boolean mapRelocatedPartition(Pointer relocsBegin, UnsignedWord relocsSize) {
+        Pointer shared = CACHED_RELOCATED_PARTITION.get().read();
+        if (shared.isNull()) {
+            Pointer created = Mman.NoTransitions.mmap(WordFactory.nullPointer(), relocsSize, Mman.PROT_READ() | Mman.PROT_WRITE(), Mman.MAP_SHARED() | Mman.MAP_ANON(), -1, 0);
+            if (created.equal(Mman.MAP_FAILED())) {
+                return false;
+            }
+            memcpy(created, IMAGE_HEAP_RELOCATABLE_BEGIN.get(), relocsSize);
+            if (Mman.NoTransitions.mprotect(created, relocsSize, Mman.PROT_READ()) != 0) {
+                Mman.NoTransitions.munmap(created, relocsSize);
+                return false;
+            }
+            MembarNode.memoryBarrier(MemoryBarriers.STORE_STORE);
+            Pointer previous = ((Pointer) CACHED_RELOCATED_PARTITION.get()).compareAndSwapWord(0, WordFactory.nullPointer(), created, LocationIdentity.ANY_LOCATION);
+            if (previous.isNull()) {
+                shared = created;
+            } else {
+                Mman.NoTransitions.munmap(created, relocsSize);
+                shared = previous;
+            }
+        }
+        Pointer mapped = LinuxMman.NoTransitions.mremap(shared, WordFactory.zero(), relocsSize, LinuxMman.MREMAP_MAYMOVE() | LinuxMman.MREMAP_FIXED(), relocsBegin);
+        return mapped.equal(relocsBegin);
+    }
+
     /**
      * Locate our image file, containing the image heap. Unfortunately we must open it by its path.
      *
@@ -57,6 +57,7 @@ import com.oracle.svm.core.c.function.CEntryPointSetup.LeaveDetachThreadEpilogue
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.os.IsDefined;
 import com.oracle.svm.core.posix.PosixUtils;
+import com.oracle.svm.core.posix.SamplingProfiler;
 import com.oracle.svm.core.posix.headers.Errno;
 import com.oracle.svm.core.posix.headers.Pthread;
 import com.oracle.svm.core.posix.headers.Pthread.pthread_attr_t;
@@ -190,6 +191,7 @@ public final class PosixJavaThreads extends JavaThreads {
         UnmanagedMemory.free(data);
 
         threadStartRoutine(threadHandle);
+        SamplingProfiler.unregisterCurrentThread();
 
         return WordFactory.nullPointer();
     }
@@ -199,6 +201,7 @@ public final class PosixJavaThreads extends JavaThreads {
         /* Complete the initialization of the thread, now that it is (nearly) running. */
         setPthreadIdentifier(thread, Pthread.pthread_self());
         setNativeName(thread, thread.getName());
+        SamplingProfiler.registerCurrentThread();
     }
 }
 
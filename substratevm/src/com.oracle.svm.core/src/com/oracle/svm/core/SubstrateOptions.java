@@ -182,6 +182,9 @@ public class SubstrateOptions {
     @Option(help = "Enable support for threads and and thread-local variables (disable for single-threaded implementation)")//
     public static final HostedOptionKey<Boolean> MultiThreaded = new HostedOptionKey<>(true);
 
+    @Option(help = "Lock objects that have a monitor slot with a thin lock, which is only inflated to a full monitor on contention, deep recursion, or wait and notify.")//
+    public static final HostedOptionKey<Boolean> ThinLocks = new HostedOptionKey<>(false);
+
     @Option(help = "Use only a writable native image heap (requires ld.gold linker)")//
     public static final HostedOptionKey<Boolean> ForceNoROSectionRelocations = new HostedOptionKey<>(false);
 
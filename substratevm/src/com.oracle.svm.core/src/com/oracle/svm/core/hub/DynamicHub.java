@@ -592,6 +592,7 @@ public final class DynamicHub implements JavaKind.FormatWithToString, AnnotatedE
         return typeCheckRange;
     }
 
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
     public int getMonitorOffset() {
         return monitorOffset;
     }
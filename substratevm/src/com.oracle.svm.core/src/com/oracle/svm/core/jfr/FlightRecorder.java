@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import java.io.IOException;
+
+import org.graalvm.compiler.nodes.extended.MembarNode;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.c.struct.RawField;
+import org.graalvm.nativeimage.c.struct.RawStructure;
+import org.graalvm.nativeimage.c.struct.SizeOf;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.PointerBase;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
+
+import jdk.vm.ci.code.MemoryBarriers;
+
+/**
+ * Records VM events into a file in the format of the JDK Flight Recorder, so that they can be
+ * inspected with the usual JFR tools. Enabled with {@link FlightRecorderOptions#FlightRecorder}.
+ * <p>
+ * Each thread writes its events into a {@link FlightRecorderBuffer buffer} in unmanaged memory
+ * without any locking, so events can be emitted from uninterruptible code and during a GC. The
+ * buffers of all threads are linked into a global list, to which threads only ever prepend. A
+ * flusher thread periodically copies the events that were committed since the last flush to the
+ * file and frees the buffers that were retired by their threads. When the VM shuts down, the last
+ * events, the metadata that describes the event types and the final chunk header are written.
+ * <p>
+ * Every event starts with the fields {@code startTime}, {@code duration} and
+ * {@code isolateThread}, followed by the fields of its type as declared in
+ * {@link FlightRecorderMetadata}. Events do not refer to constant pools and have no stack traces.
+ */
+public final class FlightRecorder {
+    static final long GARBAGE_COLLECTION_ID = 100;
+    static final long GC_PHASE_ID = 101;
+    static final long SAFEPOINT_ID = 102;
+    static final long THREAD_START_ID = 103;
+    static final long THREAD_PARK_ID = 104;
+    static final long ALLOCATION_SAMPLE_ID = 105;
+
+    /** Upper bound for the size of an event without variable-length fields. */
+    private static final int MAX_FIXED_EVENT_SIZE = 96;
+    /** The size of an event is written as a padded varint so that it can be patched at the end. */
+    static final int EVENT_SIZE_BYTES = 4;
+    private static final int MIN_BUFFER_SIZE = 4 * 1024;
+
+    /** The encoding of a string as UTF-8 bytes, preceded by its length. */
+    static final byte STRING_ENCODING_UTF8_BYTE_ARRAY = 3;
+
+    private static volatile boolean recording;
+    /** Cached option value, so that uninterruptible code does not need to query the option. */
+    private static int bufferSize;
+    private static FlightRecorderWriter writer;
+    private static Thread flusher;
+
+    private static final FastThreadLocalWord<FlightRecorderBuffer> bufferTL = FastThreadLocalFactory.createWord();
+    /** The buffers of all threads, linked via {@link FlightRecorderBuffer#getNext()}. */
+    private static final UninterruptibleUtils.AtomicPointer<FlightRecorderBuffer> buffers = new UninterruptibleUtils.AtomicPointer<>();
+    private static final UninterruptibleUtils.AtomicLong lostEvents = new UninterruptibleUtils.AtomicLong(0);
+
+    /**
+     * A thread-local buffer of events, allocated in unmanaged memory. The event data follows the
+     * header. Only the owning thread writes events and advances {@link #getCommitted()}, and only
+     * the flusher thread advances {@link #getFlushed()}.
+     */
+    @RawStructure
+    interface FlightRecorderBuffer extends PointerBase {
+        @RawField
+        FlightRecorderBuffer getNext();
+
+        @RawField
+        void setNext(FlightRecorderBuffer next);
+
+        @RawField
+        int getSize();
+
+        @RawField
+        void setSize(int size);
+
+        @RawField
+        int getCommitted();
+
+        @RawField
+        void setCommitted(int committed);
+
+        @RawField
+        int getFlushed();
+
+        @RawField
+        void setFlushed(int flushed);
+
+        /** Non-zero when the owning thread no longer writes into this buffer. */
+        @RawField
+        int getRetired();
+
+        @RawField
+        void setRetired(int retired);
+    }
+
+    private FlightRecorder() {
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /** Opens the file and starts recording. */
+    static void start() {
+        bufferSize = Math.max(FlightRecorderOptions.FlightRecorderThreadBufferSize.getValue(), MIN_BUFFER_SIZE);
+        try {
+            writer = new FlightRecorderWriter(FlightRecorderOptions.FlightRecorderFile.getValue());
+        } catch (IOException e) {
+            Log.log().string("Flight recorder could not open its file: ").string(e.getMessage()).newline();
+            return;
+        }
+        recording = true;
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            flusher = new Thread(FlightRecorder::runFlusher, "Flight Recorder Flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /** Stops recording and completes the file. */
+    static void stop() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        try {
+            writer.finish();
+        } catch (IOException e) {
+            Log.log().string("Flight recorder could not complete its file: ").string(e.getMessage()).newline();
+        }
+        long lost = lostEvents.get();
+        if (lost > 0) {
+            Log.log().string("Flight recorder lost ").signed(lost).string(" events because no memory was available for buffers.").newline();
+        }
+    }
+
+    private static void runFlusher() {
+        long periodMillis = Math.max(FlightRecorderOptions.FlightRecorderFlushPeriod.getValue(), 1);
+        try {
+            while (recording) {
+                Thread.sleep(periodMillis);
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            /* Recording was stopped. */
+        } catch (IOException e) {
+            Log.log().string("Flight recorder could not write its file: ").string(e.getMessage()).newline();
+            recording = false;
+        }
+    }
+
+    static FlightRecorderBuffer firstBuffer() {
+        return buffers.get();
+    }
+
+    static Pointer getData(FlightRecorderBuffer buffer) {
+        return ((Pointer) buffer).add(SizeOf.unsigned(FlightRecorderBuffer.class));
+    }
+
+    /**
+     * Removes a retired buffer from the list, which only the flusher does. A buffer at the head of
+     * the list stays if another thread prepends a buffer at the same time.
+     */
+    static boolean unlink(FlightRecorderBuffer previous, FlightRecorderBuffer buffer) {
+        if (previous.isNull()) {
+            return buffers.compareAndSet(buffer, buffer.getNext());
+        }
+        previous.setNext(buffer.getNext());
+        return true;
+    }
+
+    static void free(FlightRecorderBuffer buffer) {
+        ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+    }
+
+    /** Retires the buffer of a thread that is detaching, so that the flusher can free it. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static void detachThread(IsolateThread thread) {
+        FlightRecorderBuffer buffer = bufferTL.get(thread);
+        if (buffer.isNonNull()) {
+            bufferTL.set(thread, WordFactory.nullPointer());
+            retire(buffer);
+        }
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static void retire(FlightRecorderBuffer buffer) {
+        MembarNode.memoryBarrier(MemoryBarriers.STORE_STORE);
+        buffer.setRetired(1);
+    }
+
+    /**
+     * Returns the buffer of the current thread with at least {@code size} bytes of free space, or
+     * null if no memory is available for a new buffer.
+     */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    private static FlightRecorderBuffer acquireBuffer(int size) {
+        FlightRecorderBuffer buffer = bufferTL.get();
+        if (buffer.isNonNull() && buffer.getSize() - buffer.getCommitted() >= size) {
+            return buffer;
+        }
+        if (buffer.isNonNull()) {
+            retire(buffer);
+        }
+        int newSize = Math.max(bufferSize, size);
+        buffer = ImageSingletons.lookup(UnmanagedMemorySupport.class).malloc(SizeOf.unsigned(FlightRecorderBuffer.class).add(newSize));
+        bufferTL.set(buffer);
+        if (buffer.isNull()) {
+            lostEvents.incrementAndGet();
+            return buffer;
+        }
+        buffer.setSize(newSize);
+        buffer.setCommitted(0);
+        buffer.setFlushed(0);
+        buffer.setRetired(0);
+        FlightRecorderBuffer head;
+        do {
+            head = buffers.get();
+            buffer.setNext(head);
+        } while (!buffers.compareAndSet(head, buffer));
+        return buffer;
+    }
+
+    /** Writes the common fields of an event, leaving space for its size. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static Pointer beginEvent(FlightRecorderBuffer buffer, long typeId, long startTicks, long endTicks) {
+        Pointer pos = getData(buffer).add(buffer.getCommitted()).add(EVENT_SIZE_BYTES);
+        pos = putLong(pos, typeId);
+        pos = putLong(pos, startTicks);
+        pos = putLong(pos, endTicks - startTicks);
+        return putLong(pos, CurrentIsolate.getCurrentThread().rawValue());
+    }
+
+    /** Patches the size of the event and publishes it to the flusher. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static void commitEvent(FlightRecorderBuffer buffer, Pointer end) {
+        Pointer start = getData(buffer).add(buffer.getCommitted());
+        int size = (int) end.subtract(start).rawValue();
+        putPaddedInt(start, size);
+        MembarNode.memoryBarrier(MemoryBarriers.STORE_STORE);
+        buffer.setCommitted(buffer.getCommitted() + size);
+    }
+
+    /** Emits the JFR variable-length encoding, which uses the full last byte of a long. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static Pointer putLong(Pointer pos, long value) {
+        Pointer p = pos;
+        long v = value;
+        for (int i = 0; i < 8; i++) {
+            if ((v & ~0x7FL) == 0) {
+                p.writeByte(0, (byte) v);
+                return p.add(1);
+            }
+            p.writeByte(0, (byte) (v | 0x80));
+            p = p.add(1);
+            v >>>= 7;
+        }
+        p.writeByte(0, (byte) v);
+        return p.add(1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static Pointer putInt(Pointer pos, int value) {
+        return putLong(pos, value & 0xFFFFFFFFL);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static Pointer putBoolean(Pointer pos, boolean value) {
+        pos.writeByte(0, (byte) (value ? 1 : 0));
+        return pos.add(1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static Pointer putString(Pointer pos, byte[] utf8) {
+        pos.writeByte(0, STRING_ENCODING_UTF8_BYTE_ARRAY);
+        Pointer p = putInt(pos.add(1), utf8.length);
+        for (int i = 0; i < utf8.length; i++) {
+            p.writeByte(i, utf8[i]);
+        }
+        return p.add(utf8.length);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static void putPaddedInt(Pointer pos, int value) {
+        pos.writeByte(0, (byte) ((value & 0x7F) | 0x80));
+        pos.writeByte(1, (byte) (((value >>> 7) & 0x7F) | 0x80));
+        pos.writeByte(2, (byte) (((value >>> 14) & 0x7F) | 0x80));
+        pos.writeByte(3, (byte) ((value >>> 21) & 0x7F));
+    }
+
+    /** A garbage collection from {@code startTicks} to {@code endTicks}. */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    public static void emitGarbageCollection(long gcId, boolean complete, long startTicks, long endTicks) {
+        if (!recording) {
+            return;
+        }
+        FlightRecorderBuffer buffer = acquireBuffer(MAX_FIXED_EVENT_SIZE);
+        if (buffer.isNull()) {
+            return;
+        }
+        Pointer pos = beginEvent(buffer, GARBAGE_COLLECTION_ID, startTicks, endTicks);
+        pos = putLong(pos, gcId);
+        pos = putBoolean(pos, complete);
+        commitEvent(buffer, pos);
+    }
+
+    /** A phase of a garbage collection, with its name encoded as UTF-8. */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    public static void emitGCPhase(byte[] name, long startTicks, long endTicks) {
+        if (!recording) {
+            return;
+        }
+        FlightRecorderBuffer buffer = acquireBuffer(MAX_FIXED_EVENT_SIZE + name.length);
+        if (buffer.isNull()) {
+            return;
+        }
+        Pointer pos = beginEvent(buffer, GC_PHASE_ID, startTicks, endTicks);
+        pos = putString(pos, name);
+        commitEvent(buffer, pos);
+    }
+
+    /** A safepoint that took until {@code synchronizedTicks} to bring all threads to a halt. */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    public static void emitSafepoint(long safepointId, long startTicks, long synchronizedTicks, long endTicks) {
+        if (!recording) {
+            return;
+        }
+        FlightRecorderBuffer buffer = acquireBuffer(MAX_FIXED_EVENT_SIZE);
+        if (buffer.isNull()) {
+            return;
+        }
+        Pointer pos = beginEvent(buffer, SAFEPOINT_ID, startTicks, endTicks);
+        pos = putLong(pos, safepointId);
+        pos = putLong(pos, synchronizedTicks - startTicks);
+        commitEvent(buffer, pos);
+    }
+
+    /** The current thread started running. */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    public static void emitThreadStart(long javaThreadId) {
+        if (!recording) {
+            return;
+        }
+        FlightRecorderBuffer buffer = acquireBuffer(MAX_FIXED_EVENT_SIZE);
+        if (buffer.isNull()) {
+            return;
+        }
+        long ticks = System.nanoTime();
+        Pointer pos = beginEvent(buffer, THREAD_START_ID, ticks, ticks);
+        pos = putLong(pos, javaThreadId);
+        commitEvent(buffer, pos);
+    }
+
+    /** The current thread was parked, with a timeout in nanoseconds or 0 for none. */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    public static void emitThreadPark(long timeoutNanos, long startTicks) {
+        if (!recording) {
+            return;
+        }
+        FlightRecorderBuffer buffer = acquireBuffer(MAX_FIXED_EVENT_SIZE);
+        if (buffer.isNull()) {
+            return;
+        }
+        Pointer pos = beginEvent(buffer, THREAD_PARK_ID, startTicks, System.nanoTime());
+        pos = putLong(pos, timeoutNanos);
+        commitEvent(buffer, pos);
+    }
+
+    /**
+     * An allocation on the slow path, which is taken once per refill of the thread-local
+     * allocation buffer and for large arrays, and therefore samples allocations by size.
+     */
+    @Uninterruptible(reason = "Accesses the thread-local buffer.")
+    public static void emitAllocationSample(int typeId, long objectSize) {
+        if (!recording) {
+            return;
+        }
+        FlightRecorderBuffer buffer = acquireBuffer(MAX_FIXED_EVENT_SIZE);
+        if (buffer.isNull()) {
+            return;
+        }
+        long ticks = System.nanoTime();
+        Pointer pos = beginEvent(buffer, ALLOCATION_SAMPLE_ID, ticks, ticks);
+        pos = putInt(pos, typeId);
+        pos = putLong(pos, objectSize);
+        commitEvent(buffer, pos);
+    }
+}
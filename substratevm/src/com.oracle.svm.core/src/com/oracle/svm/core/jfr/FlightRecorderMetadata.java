@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the metadata event of a {@link FlightRecorder} chunk, which describes the types of all
+ * events and fields. The metadata is a tree of elements with string attributes, where all strings
+ * are stored once in a pool that precedes the tree.
+ */
+final class FlightRecorderMetadata {
+    private static final long METADATA_EVENT_ID = 0;
+
+    private static final long LONG_ID = 1;
+    private static final long INT_ID = 2;
+    private static final long BOOLEAN_ID = 3;
+    private static final long STRING_ID = 4;
+    private static final long TIMESTAMP_ID = 10;
+    private static final long TIMESPAN_ID = 11;
+    private static final long LABEL_ID = 12;
+
+    private static final String TICKS = "TICKS";
+
+    private FlightRecorderMetadata() {
+    }
+
+    private static final class Element {
+        final String name;
+        final List<String> attributes = new ArrayList<>();
+        final List<Element> children = new ArrayList<>();
+
+        Element(String name) {
+            this.name = name;
+        }
+
+        Element attribute(String key, Object value) {
+            attributes.add(key);
+            attributes.add(String.valueOf(value));
+            return this;
+        }
+
+        Element add(Element child) {
+            children.add(child);
+            return child;
+        }
+
+        void collectStrings(Map<String, Integer> pool) {
+            pool.putIfAbsent(name, pool.size());
+            for (String attribute : attributes) {
+                pool.putIfAbsent(attribute, pool.size());
+            }
+            for (Element child : children) {
+                child.collectStrings(pool);
+            }
+        }
+
+        void write(ByteArrayOutputStream out, Map<String, Integer> pool) {
+            putLong(out, pool.get(name));
+            putLong(out, attributes.size() / 2);
+            for (String attribute : attributes) {
+                putLong(out, pool.get(attribute));
+            }
+            putLong(out, children.size());
+            for (Element child : children) {
+                child.write(out, pool);
+            }
+        }
+    }
+
+    static byte[] build(long ticks) {
+        Element root = new Element("root");
+        Element metadata = root.add(new Element("metadata"));
+        metadata.add(type(LONG_ID, "long", null));
+        metadata.add(type(INT_ID, "int", null));
+        metadata.add(type(BOOLEAN_ID, "boolean", null));
+        metadata.add(type(STRING_ID, "java.lang.String", null));
+        metadata.add(annotationType(TIMESTAMP_ID, "jdk.jfr.Timestamp"));
+        metadata.add(annotationType(TIMESPAN_ID, "jdk.jfr.Timespan"));
+        metadata.add(annotationType(LABEL_ID, "jdk.jfr.Label"));
+
+        Element gc = metadata.add(eventType(FlightRecorder.GARBAGE_COLLECTION_ID, "svm.GarbageCollection", "Garbage Collection"));
+        gc.add(field("gcId", LONG_ID, "GC Identifier"));
+        gc.add(field("complete", BOOLEAN_ID, "Complete Collection"));
+
+        Element gcPhase = metadata.add(eventType(FlightRecorder.GC_PHASE_ID, "svm.GCPhase", "GC Phase"));
+        gcPhase.add(field("name", STRING_ID, "Name"));
+
+        Element safepoint = metadata.add(eventType(FlightRecorder.SAFEPOINT_ID, "svm.Safepoint", "Safepoint"));
+        safepoint.add(field("safepointId", LONG_ID, "Safepoint Identifier"));
+        safepoint.add(field("synchronizationTime", LONG_ID, "Synchronization Time")).add(annotation(TIMESPAN_ID, TICKS));
+
+        Element threadStart = metadata.add(eventType(FlightRecorder.THREAD_START_ID, "svm.ThreadStart", "Thread Start"));
+        threadStart.add(field("javaThreadId", LONG_ID, "Java Thread Id"));
+
+        Element threadPark = metadata.add(eventType(FlightRecorder.THREAD_PARK_ID, "svm.ThreadPark", "Thread Park"));
+        threadPark.add(field("timeout", LONG_ID, "Timeout")).add(annotation(TIMESPAN_ID, "NANOSECONDS"));
+
+        Element allocation = metadata.add(eventType(FlightRecorder.ALLOCATION_SAMPLE_ID, "svm.AllocationSample", "Allocation Sample"));
+        allocation.add(field("typeId", INT_ID, "Type Identifier"));
+        allocation.add(field("allocationSize", LONG_ID, "Allocation Size"));
+
+        root.add(new Element("region")).attribute("locale", "en_US").attribute("gmtOffset", 0);
+
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        root.collectStrings(pool);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        putLong(body, METADATA_EVENT_ID);
+        putLong(body, ticks);
+        putLong(body, 0);
+        /* The identifier of this metadata, which is the only one of the chunk. */
+        putLong(body, 0);
+        putLong(body, pool.size());
+        for (String string : pool.keySet()) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            body.write(FlightRecorder.STRING_ENCODING_UTF8_BYTE_ARRAY);
+            putLong(body, utf8.length);
+            body.write(utf8, 0, utf8.length);
+        }
+        root.write(body, pool);
+
+        int size = FlightRecorder.EVENT_SIZE_BYTES + body.size();
+        ByteArrayOutputStream event = new ByteArrayOutputStream(size);
+        event.write((size & 0x7F) | 0x80);
+        event.write(((size >>> 7) & 0x7F) | 0x80);
+        event.write(((size >>> 14) & 0x7F) | 0x80);
+        event.write((size >>> 21) & 0x7F);
+        byte[] bytes = body.toByteArray();
+        event.write(bytes, 0, bytes.length);
+        return event.toByteArray();
+    }
+
+    private static Element type(long id, String name, String superType) {
+        Element type = new Element("class").attribute("name", name).attribute("id", id);
+        if (superType != null) {
+            type.attribute("superType", superType);
+        }
+        return type;
+    }
+
+    private static Element annotationType(long id, String name) {
+        Element type = type(id, name, "java.lang.annotation.Annotation");
+        type.add(new Element("field").attribute("name", "value").attribute("class", STRING_ID));
+        return type;
+    }
+
+    /** An event type with the fields that every event of the {@link FlightRecorder} starts with. */
+    private static Element eventType(long id, String name, String label) {
+        Element type = type(id, name, "jdk.jfr.Event");
+        type.add(annotation(LABEL_ID, label));
+        type.add(field("startTime", LONG_ID, "Start Time")).add(annotation(TIMESTAMP_ID, TICKS));
+        type.add(field("duration", LONG_ID, "Duration")).add(annotation(TIMESPAN_ID, TICKS));
+        type.add(field("isolateThread", LONG_ID, "Isolate Thread"));
+        return type;
+    }
+
+    private static Element field(String name, long typeId, String label) {
+        Element field = new Element("field").attribute("name", name).attribute("class", typeId);
+        field.add(annotation(LABEL_ID, label));
+        return field;
+    }
+
+    private static Element annotation(long typeId, String value) {
+        return new Element("annotation").attribute("class", typeId).attribute("value", value);
+    }
+
+    private static void putLong(ByteArrayOutputStream out, long value) {
+        long v = value;
+        for (int i = 0; i < 8; i++) {
+            if ((v & ~0x7FL) == 0) {
+                out.write((int) v);
+                return;
+            }
+            out.write((int) ((v | 0x80) & 0xFF));
+            v >>>= 7;
+        }
+        out.write((int) (v & 0xFF));
+    }
+}
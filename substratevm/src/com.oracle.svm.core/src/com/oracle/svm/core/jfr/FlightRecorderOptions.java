@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionType;
+
+import com.oracle.svm.core.option.RuntimeOptionKey;
+
+/** Options of the {@link FlightRecorder}. */
+public class FlightRecorderOptions {
+    @Option(help = "Record VM events into a file in the JDK Flight Recorder format.", type = OptionType.Expert)//
+    public static final RuntimeOptionKey<Boolean> FlightRecorder = new RuntimeOptionKey<>(false);
+
+    @Option(help = "The file to which the flight recorder writes its events.", type = OptionType.Expert)//
+    public static final RuntimeOptionKey<String> FlightRecorderFile = new RuntimeOptionKey<>("recording.jfr");
+
+    @Option(help = "Milliseconds between two flushes of the thread-local event buffers to the file.", type = OptionType.Expert)//
+    public static final RuntimeOptionKey<Integer> FlightRecorderFlushPeriod = new RuntimeOptionKey<>(1000);
+
+    @Option(help = "Size in bytes of the thread-local event buffers of the flight recorder.", type = OptionType.Expert)//
+    public static final RuntimeOptionKey<Integer> FlightRecorderThreadBufferSize = new RuntimeOptionKey<>(64 * 1024);
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.graalvm.compiler.nodes.extended.MembarNode;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.jfr.FlightRecorder.FlightRecorderBuffer;
+
+import jdk.vm.ci.code.MemoryBarriers;
+
+/**
+ * Writes the events of the {@link FlightRecorder} into a file that consists of a single JFR chunk.
+ * The chunk header is written with placeholders when the file is opened and completed by
+ * {@link #finish}, after the metadata event has been appended.
+ */
+final class FlightRecorderWriter {
+    private static final byte[] MAGIC = {'F', 'L', 'R', 0};
+    private static final short MAJOR_VERSION = 2;
+    private static final short MINOR_VERSION = 0;
+    /** Ticks are {@link System#nanoTime()} values. */
+    private static final long TICKS_PER_SECOND = 1_000_000_000L;
+    /**
+     * Integers are written in the variable-length encoding. As the high byte of this big-endian
+     * value is zero, it also marks the chunk as complete.
+     */
+    private static final int FEATURE_COMPRESSED_INTEGERS = 1;
+
+    private final RandomAccessFile file;
+    private final long startNanos;
+    private final long startTicks;
+    private final byte[] copyBuffer = new byte[8 * 1024];
+    private boolean finished;
+
+    FlightRecorderWriter(String path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        startNanos = System.currentTimeMillis() * 1_000_000L;
+        startTicks = System.nanoTime();
+        writeHeader(0, 0, 0);
+    }
+
+    /** Appends the events committed since the last flush and frees fully written retired buffers. */
+    synchronized void flush() throws IOException {
+        if (finished) {
+            return;
+        }
+        FlightRecorderBuffer previous = WordFactory.nullPointer();
+        FlightRecorderBuffer buffer = FlightRecorder.firstBuffer();
+        while (buffer.isNonNull()) {
+            FlightRecorderBuffer next = buffer.getNext();
+            /* A retired buffer was retired after its last commit. */
+            boolean retired = buffer.getRetired() != 0;
+            MembarNode.memoryBarrier(MemoryBarriers.LOAD_LOAD);
+            int committed = buffer.getCommitted();
+            MembarNode.memoryBarrier(MemoryBarriers.LOAD_LOAD);
+            write(FlightRecorder.getData(buffer), buffer.getFlushed(), committed);
+            buffer.setFlushed(committed);
+            if (retired && FlightRecorder.unlink(previous, buffer)) {
+                FlightRecorder.free(buffer);
+            } else {
+                previous = buffer;
+            }
+            buffer = next;
+        }
+    }
+
+    private void write(Pointer data, int from, int to) throws IOException {
+        int offset = from;
+        while (offset < to) {
+            int length = Math.min(to - offset, copyBuffer.length);
+            for (int i = 0; i < length; i++) {
+                copyBuffer[i] = data.readByte(offset + i);
+            }
+            file.write(copyBuffer, 0, length);
+            offset += length;
+        }
+    }
+
+    /** Writes the remaining events, the metadata and the final chunk header, and closes the file. */
+    synchronized void finish() throws IOException {
+        flush();
+        finished = true;
+        long endTicks = System.nanoTime();
+        long metadataPosition = file.getFilePointer();
+        file.write(FlightRecorderMetadata.build(endTicks));
+        long chunkSize = file.getFilePointer();
+        writeHeader(chunkSize, metadataPosition, endTicks - startTicks);
+        file.close();
+    }
+
+    private void writeHeader(long chunkSize, long metadataPosition, long durationNanos) throws IOException {
+        file.seek(0);
+        file.write(MAGIC);
+        file.writeShort(MAJOR_VERSION);
+        file.writeShort(MINOR_VERSION);
+        file.writeLong(chunkSize);
+        /* There are no constant pools. */
+        file.writeLong(0);
+        file.writeLong(metadataPosition);
+        file.writeLong(startNanos);
+        file.writeLong(durationNanos);
+        file.writeLong(startTicks);
+        file.writeLong(TICKS_PER_SECOND);
+        file.writeInt(FEATURE_COMPRESSED_INTEGERS);
+    }
+}
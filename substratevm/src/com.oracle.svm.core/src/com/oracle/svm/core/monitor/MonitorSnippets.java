@@ -68,8 +68,11 @@ import jdk.vm.ci.meta.SpeculationLog;
 
 /**
  * Snippets for lowering of monitor nodes (the nodes representing the Java "synchronized" keyword).
- * There is currently no fast path, because the {@link java.util.concurrent.locks.ReentrantLock}
- * used for monitor operations cannot be inlined in a snippet without changes or code duplication.
+ * There is currently no inlined fast path, because the
+ * {@link java.util.concurrent.locks.ReentrantLock} used for monitor operations cannot be inlined in
+ * a snippet without changes or code duplication, and because the snippets are lowered after write
+ * barriers are added. The thin locks of {@link MultiThreadedMonitorSupport} are therefore acquired
+ * at the beginning of the foreign call, before any further slow path work.
  *
  * For AOT compiled code, the null check for the object is already inserted by the bytecode parser,
  * i.e., the object is already guaranteed to be non-null. For JIT compiled code though the null
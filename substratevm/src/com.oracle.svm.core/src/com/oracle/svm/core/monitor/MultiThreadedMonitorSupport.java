@@ -39,6 +39,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.graalvm.compiler.api.replacements.Fold;
 import org.graalvm.compiler.core.common.SuppressFBWarnings;
 import org.graalvm.compiler.serviceprovider.GraalUnsafeAccess;
 import org.graalvm.compiler.word.BarrieredAccess;
@@ -46,6 +47,7 @@ import org.graalvm.nativeimage.IsolateThread;
 import org.graalvm.nativeimage.Platform;
 import org.graalvm.nativeimage.Platforms;
 
+import com.oracle.svm.core.SubstrateOptions;
 import com.oracle.svm.core.SubstrateUtil;
 import com.oracle.svm.core.WeakIdentityHashMap;
 import com.oracle.svm.core.annotate.Alias;
@@ -62,6 +64,8 @@ import com.oracle.svm.core.stack.StackOverflowCheck;
 import com.oracle.svm.core.thread.JavaThreads;
 import com.oracle.svm.core.thread.ThreadStatus;
 import com.oracle.svm.core.thread.VMOperationControl;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalObject;
 import com.oracle.svm.core.util.VMError;
 
 import sun.misc.Unsafe;
@@ -85,6 +89,14 @@ import sun.misc.Unsafe;
  * Synchronization on {@link String}, arrays, and other types not detected by the static analysis
  * (like synchronization via JNI) fall back to a monitor stored in {@link #additionalMonitors}.
  * <p>
+ * With {@link SubstrateOptions#ThinLocks}, an object with a monitor slot is first locked with a
+ * {@link ThinLock}: the slot is set atomically to a token of the locking thread that also encodes
+ * the recursion depth, so that uncontended locking allocates nothing. The thin lock is inflated to a
+ * {@link ReentrantLock} on contention, when the recursion depth exceeds the number of tokens, or
+ * when the monitor is needed for {@link #wait()} and {@link #notify()}. A token fully describes the
+ * state of a thin lock and is never modified, so any thread can inflate a thin lock with a single
+ * compare-and-swap, without a safepoint. Once inflated, the monitor of an object stays inflated.
+ * <p>
  * {@link Condition} objects are used to implement {@link #wait()} and {@link #notify()}. When an
  * object monitor needs a condition object, it is atomically swapped into its
  * {@link Target_java_util_concurrent_locks_ReentrantLock_NonfairSync#objectMonitorCondition} field.
@@ -162,12 +174,58 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     private static long SYNC_MONITOR_CONDITION_FIELD_OFFSET = -1;
     private static long SYNC_STATE_FIELD_OFFSET = -1;
 
+    /** Number of {@link #additionalMonitors} stripes, must be a power of two. */
+    private static final int ADDITIONAL_MONITORS_STRIPES = 32;
+
+    /**
+     * Secondary storage for monitor slots, striped by identity hash code so that threads
+     * synchronizing on different objects without a monitor slot rarely contend. Each stripe is
+     * locked to prevent concurrent access and modification of its map.
+     */
+    private final AdditionalMonitors[] additionalMonitors;
+
+    /**
+     * One stripe of the secondary storage for monitor slots. The entries of the map are expunged
+     * when it is accessed after the GC cleared their keys.
+     */
+    private static final class AdditionalMonitors {
+        final Map<Object, ReentrantLock> monitors = new WeakIdentityHashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+    }
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public MultiThreadedMonitorSupport() {
+        additionalMonitors = new AdditionalMonitors[ADDITIONAL_MONITORS_STRIPES];
+        for (int i = 0; i < additionalMonitors.length; i++) {
+            additionalMonitors[i] = new AdditionalMonitors();
+        }
+    }
+
+    /** Number of thin lock tokens of a thread, i.e., the maximum recursion depth of a thin lock. */
+    private static final int THIN_LOCK_TOKENS = 8;
+
+    /** The thin lock tokens of the current thread, indexed by recursion depth. */
+    private static final FastThreadLocalObject<ThinLock[]> thinLockTokens = FastThreadLocalFactory.createObject(ThinLock[].class);
+
     /**
-     * Secondary storage for monitor slots. Synchronized to prevent concurrent access and
-     * modification.
+     * A token stored in the monitor slot of an object that is thin locked. The token identifies the
+     * owner thread and the recursion depth, and is never modified.
      */
-    private final Map<Object, ReentrantLock> additionalMonitors = new WeakIdentityHashMap<>();
-    private final ReentrantLock additionalMonitorsLock = new ReentrantLock();
+    static final class ThinLock {
+        final Thread owner;
+        /** The number of times the owner has locked the object, minus one. */
+        final int depth;
+
+        ThinLock(Thread owner, int depth) {
+            this.owner = owner;
+            this.depth = depth;
+        }
+    }
+
+    @Fold
+    static boolean useThinLocks() {
+        return SubstrateOptions.ThinLocks.getValue();
+    }
 
     @Override
     public int maybeAdjustNewParkStatus(int status) {
@@ -187,6 +245,9 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     @SubstrateForeignCallTarget(stubCallingConvention = false)
     @Uninterruptible(reason = "Avoid stack overflow error before yellow zone has been activated", calleeMustBe = false)
     private static void slowPathMonitorEnter(Object obj) {
+        if (useThinLocks() && tryThinLock(obj)) {
+            return;
+        }
         /*
          * A stack overflow error in the locking code would be reported as a fatal error, since
          * there must not be any exceptions flowing out of the monitor code. Enabling the yellow
@@ -228,13 +289,109 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     @RestrictHeapAccess(reason = NO_LONGER_UNINTERRUPTIBLE, overridesCallers = true, access = Access.UNRESTRICTED)
     @Override
     public void monitorEnter(Object obj) {
+        if (useThinLocks()) {
+            ensureThinLockTokens();
+            if (tryThinLock(obj)) {
+                return;
+            }
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, true);
         lockObject.lock();
     }
 
+    private static void ensureThinLockTokens() {
+        if (thinLockTokens.get() == null) {
+            Thread currentThread = Thread.currentThread();
+            ThinLock[] tokens = new ThinLock[THIN_LOCK_TOKENS];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = new ThinLock(currentThread, i);
+            }
+            thinLockTokens.set(tokens);
+        }
+    }
+
+    /**
+     * Locks the object with a thin lock if it is unlocked and was never inflated, or increments the
+     * recursion depth if the current thread already holds the thin lock. Returns false if the
+     * object needs a {@link ReentrantLock} monitor.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code before the yellow zone is made available.")
+    private static boolean tryThinLock(Object obj) {
+        ThinLock[] tokens = thinLockTokens.get();
+        int monitorOffset = KnownIntrinsics.readHub(obj).getMonitorOffset();
+        if (tokens == null || monitorOffset == 0) {
+            return false;
+        }
+        Object current = BarrieredAccess.readObject(obj, monitorOffset);
+        if (current == null) {
+            return UNSAFE.compareAndSwapObject(obj, monitorOffset, null, tokens[0]);
+        } else if (current instanceof ThinLock) {
+            ThinLock thinLock = (ThinLock) current;
+            int depth = thinLock.depth;
+            if (tokens[depth] == thinLock && depth + 1 < tokens.length) {
+                return UNSAFE.compareAndSwapObject(obj, monitorOffset, thinLock, tokens[depth + 1]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decrements the recursion depth of the thin lock of the current thread, or unlocks the object.
+     * Returns false if the object is not thin locked by the current thread.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code before the yellow zone is made available.")
+    private static boolean tryThinUnlock(Object obj) {
+        ThinLock[] tokens = thinLockTokens.get();
+        int monitorOffset = KnownIntrinsics.readHub(obj).getMonitorOffset();
+        if (tokens == null || monitorOffset == 0) {
+            return false;
+        }
+        Object current = BarrieredAccess.readObject(obj, monitorOffset);
+        if (current instanceof ThinLock) {
+            ThinLock thinLock = (ThinLock) current;
+            int depth = thinLock.depth;
+            if (tokens[depth] == thinLock) {
+                /* The compare-and-swap also releases the memory effects of the critical section. */
+                return UNSAFE.compareAndSwapObject(obj, monitorOffset, thinLock, depth == 0 ? null : tokens[depth - 1]);
+            }
+        }
+        return false;
+    }
+
+    private static ThinLock getThinLock(Object obj) {
+        int monitorOffset = getMonitorOffset(obj);
+        if (!useThinLocks() || monitorOffset == 0) {
+            return null;
+        }
+        Object current = BarrieredAccess.readObject(obj, monitorOffset);
+        return current instanceof ThinLock ? (ThinLock) current : null;
+    }
+
+    /**
+     * Replaces the thin lock of the object with a {@link ReentrantLock} that has the same owner and
+     * recursion depth. This needs no safepoint: if the compare-and-swap of the token succeeds, the
+     * owner held the lock with exactly that depth, and its later thin lock operations fail and fall
+     * back to the inflated monitor. If the owner changed the depth or released the lock first, the
+     * compare-and-swap fails and the monitor slot is examined again.
+     */
+    private ReentrantLock inflateThinLock(Object obj, int monitorOffset, ThinLock thinLock) {
+        ReentrantLock newMonitor = newMonitorLock();
+        Target_java_util_concurrent_locks_ReentrantLock lock = SubstrateUtil.cast(newMonitor, Target_java_util_concurrent_locks_ReentrantLock.class);
+        SubstrateUtil.cast(lock.sync, Target_java_util_concurrent_locks_AbstractQueuedSynchronizer.class).state = thinLock.depth + 1;
+        SubstrateUtil.cast(lock.sync, Target_java_util_concurrent_locks_AbstractOwnableSynchronizer.class).exclusiveOwnerThread = thinLock.owner;
+        /* The compare-and-swap also publishes the state of the new monitor. */
+        if (UNSAFE.compareAndSwapObject(obj, monitorOffset, thinLock, newMonitor)) {
+            return newMonitor;
+        }
+        return getOrCreateMonitorFromObject(obj, true, monitorOffset);
+    }
+
     @SubstrateForeignCallTarget(stubCallingConvention = false)
     @Uninterruptible(reason = "Avoid stack overflow error before yellow zone has been activated", calleeMustBe = false)
     private static void slowPathMonitorExit(Object obj) {
+        if (useThinLocks() && tryThinUnlock(obj)) {
+            return;
+        }
         StackOverflowCheck.singleton().makeYellowZoneAvailable();
         try {
             singleton().monitorExit(obj);
@@ -265,6 +422,9 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     @RestrictHeapAccess(reason = NO_LONGER_UNINTERRUPTIBLE, overridesCallers = true, access = Access.UNRESTRICTED)
     @Override
     public void monitorExit(Object obj) {
+        if (useThinLocks() && tryThinUnlock(obj)) {
+            return;
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, true);
         lockObject.unlock();
     }
@@ -327,12 +487,19 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
 
     @Override
     public boolean isLockedByCurrentThread(Object obj) {
+        ThinLock thinLock = getThinLock(obj);
+        if (thinLock != null) {
+            return thinLock.owner == Thread.currentThread();
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, false);
         return lockObject != null && lockObject.isHeldByCurrentThread();
     }
 
     @Override
     public boolean isLockedByAnyThread(Object obj) {
+        if (getThinLock(obj) != null) {
+            return true;
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, false);
         return lockObject != null && lockObject.isLocked();
     }
@@ -395,7 +562,12 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     }
 
     protected ReentrantLock getOrCreateMonitorFromObject(Object obj, boolean createIfNotExisting, int monitorOffset) {
-        ReentrantLock existingMonitor = KnownIntrinsics.convertUnknownValue(BarrieredAccess.readObject(obj, monitorOffset), ReentrantLock.class);
+        Object existing = BarrieredAccess.readObject(obj, monitorOffset);
+        if (existing instanceof ThinLock) {
+            /* A thin lock is only inflated when a monitor is actually needed. */
+            return createIfNotExisting ? inflateThinLock(obj, monitorOffset, (ThinLock) existing) : null;
+        }
+        ReentrantLock existingMonitor = KnownIntrinsics.convertUnknownValue(existing, ReentrantLock.class);
         if (existingMonitor != null || !createIfNotExisting) {
             assert existingMonitor == null || isMonitorLock(existingMonitor);
             return existingMonitor;
@@ -405,35 +577,40 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
         if (UNSAFE.compareAndSwapObject(obj, monitorOffset, null, newMonitor)) {
             return newMonitor;
         }
-        /* We lost the race, use the lock some other thread installed. */
-        return KnownIntrinsics.convertUnknownValue(BarrieredAccess.readObject(obj, monitorOffset), ReentrantLock.class);
+        /* We lost the race, use the lock some other thread installed or inflate its thin lock. */
+        return getOrCreateMonitorFromObject(obj, createIfNotExisting, monitorOffset);
     }
 
     protected ReentrantLock getOrCreateMonitorFromMap(Object obj, boolean createIfNotExisting) {
         assert obj.getClass() != Target_java_lang_ref_ReferenceQueue_Lock.class : "ReferenceQueue.Lock must have a monitor field or we can deadlock accessing WeakIdentityHashMap below";
-        VMError.guarantee(!additionalMonitorsLock.isHeldByCurrentThread(),
+        AdditionalMonitors stripe = additionalMonitorsStripe(obj);
+        VMError.guarantee(!stripe.lock.isHeldByCurrentThread(),
                         "Recursive manipulation of the additionalMonitors map can lead to table corruptions and double insertion of a monitor for the same object");
 
-        /*
-         * Lock the monitor map and maybe add a monitor for this object. This serialization might be
-         * a scalability problem.
-         */
-        additionalMonitorsLock.lock();
+        /* Lock the stripe of the monitor map and maybe add a monitor for this object. */
+        stripe.lock.lock();
         try {
-            ReentrantLock existingMonitor = additionalMonitors.get(obj);
+            ReentrantLock existingMonitor = stripe.monitors.get(obj);
             if (existingMonitor != null || !createIfNotExisting) {
                 assert existingMonitor == null || isMonitorLock(existingMonitor);
                 return existingMonitor;
             }
             ReentrantLock newMonitor = newMonitorLock();
-            ReentrantLock previousEntry = additionalMonitors.put(obj, newMonitor);
+            ReentrantLock previousEntry = stripe.monitors.put(obj, newMonitor);
             VMError.guarantee(previousEntry == null, "Replaced monitor in secondary storage map");
             return newMonitor;
         } finally {
-            additionalMonitorsLock.unlock();
+            stripe.lock.unlock();
         }
     }
 
+    private AdditionalMonitors additionalMonitorsStripe(Object obj) {
+        int hash = System.identityHashCode(obj);
+        /* Spread the higher bits, the identity hash code need not be uniform in the lower bits. */
+        hash ^= hash >>> 16;
+        return additionalMonitors[hash & (ADDITIONAL_MONITORS_STRIPES - 1)];
+    }
+
     protected static ReentrantLock newMonitorLock() {
         ReentrantLock newMonitor = new ReentrantLock();
         Target_java_util_concurrent_locks_ReentrantLock lock = SubstrateUtil.cast(newMonitor, Target_java_util_concurrent_locks_ReentrantLock.class);
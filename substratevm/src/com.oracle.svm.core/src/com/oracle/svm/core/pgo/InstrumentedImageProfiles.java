@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.pgo;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+
+import com.oracle.svm.core.ImageProfiles;
+import com.oracle.svm.core.log.Log;
+
+/**
+ * The {@link ImageProfiles} of an instrumented image. The profile is written to
+ * {@link MethodProfile.Options#PGOProfileFile} when the image exits, and is the input of a
+ * subsequent image build with {@link MethodProfile.Options#PGO}.
+ */
+public final class InstrumentedImageProfiles extends ImageProfiles {
+
+    private static final String HEADER = "# Profile of an instrumented native image, see the PGO option\n";
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public InstrumentedImageProfiles() {
+    }
+
+    @Override
+    protected String computeProfiles() {
+        return HEADER + MethodProfile.format();
+    }
+
+    /** Shutdown hook that writes the profile file. */
+    public static void writeProfile() {
+        String fileName = MethodProfile.Options.PGOProfileFile.getValue();
+        try (OutputStream out = new FileOutputStream(fileName)) {
+            out.write(ImageProfiles.dumpProfiles().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.log().string("Failed to write the profile to ").string(fileName).string(": ").string(e.getMessage()).newline();
+        }
+    }
+}
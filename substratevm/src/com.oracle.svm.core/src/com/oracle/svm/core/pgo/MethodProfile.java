@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.pgo;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.graalvm.compiler.nodes.NamedLocationIdentity;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.word.LocationIdentity;
+
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+import com.oracle.svm.core.snippets.SnippetRuntime;
+import com.oracle.svm.core.snippets.SnippetRuntime.SubstrateForeignCallDescriptor;
+import com.oracle.svm.core.snippets.SubstrateForeignCallTarget;
+
+import jdk.vm.ci.meta.JavaKind;
+
+/**
+ * The profile counters of one method of an instrumented image (see
+ * {@link Options#PGOInstrument}). The compiler increments the counters in {@link #getCounts()}
+ * directly from the instrumented code; receiver types are recorded by the foreign call
+ * {@link #PROFILE_RECEIVER}. Like the counters of the allocation profiler, the profiles are
+ * created during compilation and updated without synchronization, so counts can be slightly off
+ * when threads race.
+ *
+ * The layout of the counts array is: the method entry count, then a taken and a not-taken count
+ * for each conditional branch, then {@link #RECEIVER_ROWS} + 1 counts for each profiled virtual
+ * call site. The last count of a call site is incremented for receivers whose type did not fit
+ * into the rows.
+ */
+public final class MethodProfile {
+
+    public static class Options {
+        @Option(help = "Build an instrumented image that records branch probabilities, receiver types at virtual call sites and method entry counts.")//
+        public static final HostedOptionKey<Boolean> PGOInstrument = new HostedOptionKey<>(false);
+
+        @Option(help = "File to which an instrumented image writes its profile when it exits.")//
+        public static final RuntimeOptionKey<String> PGOProfileFile = new RuntimeOptionKey<>("default.iprof");
+
+        @Option(help = "Use the profile written by an instrumented image for optimizing the image.")//
+        public static final HostedOptionKey<String> PGO = new HostedOptionKey<>("");
+    }
+
+    /** Number of receiver types that are recorded per virtual call site. */
+    public static final int RECEIVER_ROWS = 4;
+
+    /** The memory written by instrumented code and by {@link #PROFILE_RECEIVER}. */
+    public static final LocationIdentity COUNTS_LOCATION = NamedLocationIdentity.getArrayLocation(JavaKind.Long);
+    private static final LocationIdentity RECEIVER_TYPES_LOCATION = NamedLocationIdentity.getArrayLocation(JavaKind.Object);
+
+    public static final SubstrateForeignCallDescriptor PROFILE_RECEIVER = SnippetRuntime.findForeignCall(MethodProfile.class, "profileReceiver", false, false,
+                    COUNTS_LOCATION, RECEIVER_TYPES_LOCATION);
+
+    /**
+     * All profiles, keyed by method name. The map is filled during compilation, when everything is
+     * concurrent.
+     */
+    private static final Map<String, MethodProfile> profiles = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int[] branchBcis;
+    private final int[] receiverBcis;
+    private final long[] counts;
+    private final Class<?>[] receiverTypes;
+
+    /**
+     * Profiles only exist after the static analysis, so the image builder analyzes this constructor
+     * as a root instead.
+     */
+    private MethodProfile(String name, int[] branchBcis, int[] receiverBcis) {
+        this.name = name;
+        this.branchBcis = branchBcis;
+        this.receiverBcis = receiverBcis;
+        this.counts = new long[1 + 2 * branchBcis.length + (RECEIVER_ROWS + 1) * receiverBcis.length];
+        this.receiverTypes = new Class<?>[RECEIVER_ROWS * receiverBcis.length];
+    }
+
+    /**
+     * Returns the profile for the method with the given name, creating it if necessary. The bcis
+     * must be sorted.
+     */
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public static MethodProfile lookup(String name, int[] branchBcis, int[] receiverBcis) {
+        return profiles.computeIfAbsent(name, key -> new MethodProfile(key, branchBcis, receiverBcis));
+    }
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /** The index of the method entry count. */
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public static int getEntryCountIndex() {
+        return 0;
+    }
+
+    /**
+     * The index of the taken or not-taken count of the conditional branch at the given bci, or -1
+     * if the branch is not profiled.
+     */
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public int getBranchCountIndex(int bci, boolean taken) {
+        int branch = Arrays.binarySearch(branchBcis, bci);
+        if (branch < 0) {
+            return -1;
+        }
+        return 1 + 2 * branch + (taken ? 0 : 1);
+    }
+
+    /** The receiver site index for the virtual call at the given bci, or -1 if not profiled. */
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public int getReceiverSite(int bci) {
+        int site = Arrays.binarySearch(receiverBcis, bci);
+        return site < 0 ? -1 : site;
+    }
+
+    /** Foreign call: {@link #PROFILE_RECEIVER}. */
+    @SubstrateForeignCallTarget(stubCallingConvention = false, fullyUninterruptible = true)
+    @Uninterruptible(reason = "Called without debug information, so it must not have a safepoint.")
+    private static void profileReceiver(Object receiver, MethodProfile profile, int site) {
+        if (receiver == null) {
+            return;
+        }
+        Class<?> type = receiver.getClass();
+        int firstCount = 1 + 2 * profile.branchBcis.length + (RECEIVER_ROWS + 1) * site;
+        int firstType = RECEIVER_ROWS * site;
+        for (int row = 0; row < RECEIVER_ROWS; row++) {
+            Class<?> recorded = profile.receiverTypes[firstType + row];
+            if (recorded == null) {
+                profile.receiverTypes[firstType + row] = type;
+                recorded = type;
+            }
+            if (recorded == type) {
+                profile.counts[firstCount + row]++;
+                return;
+            }
+        }
+        profile.counts[firstCount + RECEIVER_ROWS]++;
+    }
+
+    /**
+     * Formats all profiles with non-zero counts. Each line is a tab-separated record:
+     * <ul>
+     * <li>{@code m name entryCount}</li>
+     * <li>{@code b name bci takenCount notTakenCount}</li>
+     * <li>{@code r name bci otherCount (typeName count)*}</li>
+     * </ul>
+     */
+    static String format() {
+        StringBuilder result = new StringBuilder();
+        for (MethodProfile profile : profiles.values()) {
+            profile.format(result);
+        }
+        return result.toString();
+    }
+
+    private void format(StringBuilder result) {
+        long[] c = counts;
+        if (c[0] != 0) {
+            result.append("m\t").append(name).append('\t').append(c[0]).append('\n');
+        }
+        for (int i = 0; i < branchBcis.length; i++) {
+            long taken = c[1 + 2 * i];
+            long notTaken = c[2 + 2 * i];
+            if (taken != 0 || notTaken != 0) {
+                result.append("b\t").append(name).append('\t').append(branchBcis[i]).append('\t').append(taken).append('\t').append(notTaken).append('\n');
+            }
+        }
+        for (int site = 0; site < receiverBcis.length; site++) {
+            int firstCount = 1 + 2 * branchBcis.length + (RECEIVER_ROWS + 1) * site;
+            if (receiverTypes[RECEIVER_ROWS * site] == null) {
+                continue;
+            }
+            result.append("r\t").append(name).append('\t').append(receiverBcis[site]).append('\t').append(c[firstCount + RECEIVER_ROWS]);
+            for (int row = 0; row < RECEIVER_ROWS; row++) {
+                Class<?> type = receiverTypes[RECEIVER_ROWS * site + row];
+                if (type != null) {
+                    result.append('\t').append(type.getName()).append('\t').append(c[firstCount + row]);
+                }
+            }
+            result.append('\n');
+        }
+    }
+}
@@ -63,6 +63,7 @@ import com.oracle.svm.core.jdk.StackTraceUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils.AtomicReference;
 import com.oracle.svm.core.jdk.management.ManagementSupport;
+import com.oracle.svm.core.jfr.FlightRecorder;
 import com.oracle.svm.core.locks.VMMutex;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.monitor.MonitorSupport;
@@ -506,6 +507,7 @@ public abstract class JavaThreads {
 
         singleton().beforeThreadRun(thread);
         ManagementSupport.getSingleton().noteThreadStart(thread);
+        FlightRecorder.emitThreadStart(thread.getId());
 
         try {
             if (VMThreads.isTearingDown()) {
@@ -684,10 +686,16 @@ public abstract class JavaThreads {
         final int oldStatus = JavaThreads.getThreadStatus(thread);
         int newStatus = MonitorSupport.singleton().maybeAdjustNewParkStatus(ThreadStatus.PARKED);
         JavaThreads.setThreadStatus(thread, newStatus);
+        /* Only read the clock when the park is recorded. */
+        boolean recorded = FlightRecorder.isRecording();
+        long startTicks = recorded ? System.nanoTime() : 0L;
         try {
             parkEvent.condWait();
         } finally {
             JavaThreads.setThreadStatus(thread, oldStatus);
+            if (recorded) {
+                FlightRecorder.emitThreadPark(0L, startTicks);
+            }
         }
     }
 
@@ -706,10 +714,16 @@ public abstract class JavaThreads {
         final int oldStatus = JavaThreads.getThreadStatus(thread);
         int newStatus = MonitorSupport.singleton().maybeAdjustNewParkStatus(ThreadStatus.PARKED_TIMED);
         JavaThreads.setThreadStatus(thread, newStatus);
+        /* Only read the clock when the park is recorded. */
+        boolean recorded = FlightRecorder.isRecording();
+        long startTicks = recorded ? System.nanoTime() : 0L;
         try {
             parkEvent.condTimedWait(delayNanos);
         } finally {
             JavaThreads.setThreadStatus(thread, oldStatus);
+            if (recorded) {
+                FlightRecorder.emitThreadPark(delayNanos, startTicks);
+            }
         }
     }
 
@@ -54,6 +54,7 @@ import com.oracle.svm.core.annotate.Uninterruptible;
 import com.oracle.svm.core.graal.nodes.KillMemoryNode;
 import com.oracle.svm.core.heap.Heap;
 import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.jfr.FlightRecorder;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.nodes.CFunctionEpilogueNode;
 import com.oracle.svm.core.nodes.CFunctionPrologueNode;
@@ -354,6 +355,17 @@ public final class Safepoint {
         safepointRequested.setVolatile(value);
     }
 
+    /**
+     * Resets the safepoint counter of the current thread. This is for threads that execute Java
+     * code in native state on behalf of a VM operation that is in progress (e.g., parallel GC
+     * worker threads), which must not enter the safepoint slow path.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static void resetSafepointRequestedInNative() {
+        assert StatusSupport.isStatusNativeOrSafepoint();
+        setSafepointRequested(THREAD_REQUEST_RESET);
+    }
+
     @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
     static int getSafepointRequested(IsolateThread vmThread) {
         return safepointRequested.getVolatile(vmThread);
@@ -540,6 +552,10 @@ public final class Safepoint {
         /** The thread requesting a safepoint. */
         private volatile IsolateThread requestingThread;
 
+        /** When the current safepoint was requested and when all threads were frozen. */
+        private long startNanos;
+        private long frozenNanos;
+
         @Platforms(Platform.HOSTED_ONLY.class)
         private Master() {
             this.safepointState = NOT_AT_SAFEPOINT;
@@ -564,6 +580,7 @@ public final class Safepoint {
             }
 
             requestingThread = CurrentIsolate.getCurrentThread();
+            startNanos = System.nanoTime();
             Statistics.reset();
             Statistics.setStartNanos();
             ImageSingletons.lookup(Heap.class).prepareForSafepoint();
@@ -571,6 +588,7 @@ public final class Safepoint {
             requestSafepoints(reason);
             waitForSafepoints(reason);
             Statistics.setFrozenNanos();
+            frozenNanos = System.nanoTime();
             safepointState = AT_SAFEPOINT;
             safepointId = safepointId.add(1);
             return lock;
@@ -586,6 +604,7 @@ public final class Safepoint {
             releaseSafepoints(reason);
             ImageSingletons.lookup(Heap.class).endSafepoint();
             Statistics.setThawedNanos();
+            FlightRecorder.emitSafepoint(safepointId.rawValue(), startNanos, frozenNanos, System.nanoTime());
             requestingThread = WordFactory.nullPointer();
 
             if (unlock) {
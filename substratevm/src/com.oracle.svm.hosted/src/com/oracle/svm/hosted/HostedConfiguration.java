@@ -46,6 +46,7 @@ import com.oracle.svm.core.SubstrateTargetDescription;
 import com.oracle.svm.core.config.ConfigurationValues;
 import com.oracle.svm.core.config.ObjectLayout;
 import com.oracle.svm.core.monitor.MultiThreadedMonitorSupport;
+import com.oracle.svm.core.pgo.MethodProfile;
 import com.oracle.svm.hosted.code.CompileQueue;
 import com.oracle.svm.hosted.code.SharedRuntimeConfigurationBuilder;
 import com.oracle.svm.hosted.config.HybridLayout;
@@ -54,6 +55,7 @@ import com.oracle.svm.hosted.meta.HostedField;
 import com.oracle.svm.hosted.meta.HostedInstanceClass;
 import com.oracle.svm.hosted.meta.HostedMetaAccess;
 import com.oracle.svm.hosted.meta.HostedUniverse;
+import com.oracle.svm.hosted.pgo.PGOStaticAnalysisResultsBuilder;
 
 import jdk.vm.ci.meta.JavaKind;
 
@@ -149,6 +151,10 @@ public class HostedConfiguration {
     }
 
     public StaticAnalysisResultsBuilder createStaticAnalysisResultsBuilder(BigBang bigbang, HostedUniverse universe) {
+        String profileFile = MethodProfile.Options.PGO.getValue();
+        if (!profileFile.isEmpty()) {
+            return new PGOStaticAnalysisResultsBuilder(bigbang, universe, profileFile);
+        }
         return new StaticAnalysisResultsBuilder(bigbang, universe);
     }
 
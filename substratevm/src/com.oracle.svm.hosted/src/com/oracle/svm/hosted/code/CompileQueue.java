@@ -139,6 +139,7 @@ import com.oracle.svm.hosted.NativeImageGenerator;
 import com.oracle.svm.hosted.NativeImageOptions;
 import com.oracle.svm.hosted.meta.HostedMethod;
 import com.oracle.svm.hosted.meta.HostedUniverse;
+import com.oracle.svm.hosted.pgo.PGOStaticAnalysisResults;
 import com.oracle.svm.hosted.phases.DevirtualizeCallsPhase;
 import com.oracle.svm.hosted.phases.HostedGraphBuilderPhase;
 import com.oracle.svm.hosted.phases.StrengthenStampsPhase;
@@ -178,6 +179,8 @@ public class CompileQueue {
 
     private volatile boolean inliningProgress;
 
+    private static final int HOT_METHOD_TRIVIAL_SIZE_FACTOR = 4;
+
     public abstract static class CompileReason {
         /**
          * For debugging only: chaining of the compile reason, so that you can track the compilation
@@ -523,12 +526,20 @@ public class CompileQueue {
     }
 
     private void checkTrivial(HostedMethod method) {
-        if (!method.compilationInfo.isTrivialMethod() && method.canBeInlined() && InliningUtilities.isTrivialMethod(method.compilationInfo.getGraph())) {
+        if (!method.compilationInfo.isTrivialMethod() && method.canBeInlined() && InliningUtilities.isTrivialMethod(method.compilationInfo.getGraph(), trivialSizeFactor(method))) {
             method.compilationInfo.setTrivialMethod(true);
             inliningProgress = true;
         }
     }
 
+    /**
+     * Methods that are hot according to the profile of a profile-guided build are treated as
+     * trivial up to a larger size.
+     */
+    private static int trivialSizeFactor(HostedMethod method) {
+        return PGOStaticAnalysisResults.isHot(method.getProfilingInfo()) ? HOT_METHOD_TRIVIAL_SIZE_FACTOR : 1;
+    }
+
     @SuppressWarnings("try")
     private void inlineTrivialMethods(DebugContext debug) throws InterruptedException {
         for (HostedMethod method : universe.getMethods()) {
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.code;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.graalvm.collections.UnmodifiableMapCursor;
+import org.graalvm.compiler.code.CompilationResult;
+import org.graalvm.compiler.code.DataSection;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionKey;
+import org.graalvm.compiler.options.OptionValues;
+import org.graalvm.nativeimage.hosted.Feature;
+
+import com.oracle.graal.pointsto.reports.ReportUtils;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.meta.DirectSubstrateObjectConstant;
+import com.oracle.svm.core.meta.SubstrateObjectConstant;
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.option.HostedOptionValues;
+import com.oracle.svm.core.option.RuntimeOptionValues;
+import com.oracle.svm.core.util.UserError;
+import com.oracle.svm.core.util.VMError;
+import com.oracle.svm.hosted.FeatureImpl.AfterCompilationAccessImpl;
+import com.oracle.svm.hosted.meta.HostedField;
+import com.oracle.svm.hosted.meta.HostedMetaAccess;
+import com.oracle.svm.hosted.meta.HostedType;
+
+import jdk.vm.ci.code.site.ConstantReference;
+import jdk.vm.ci.code.site.DataPatch;
+import jdk.vm.ci.meta.Constant;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Diagnostic feature that records a fingerprint of every compiled method in
+ * {@link Options#CompiledMethodFingerprintsDir} and compares it with the fingerprints of the
+ * previous build, so that the methods whose code is affected by a change can be determined. Nothing
+ * is reused between builds: the feature only reports, and it makes a build slower because it hashes
+ * the code of all compiled methods.
+ *
+ * The fingerprint of a method covers the bytecode of the method and of all methods inlined into it,
+ * the compiled code and data of the method before it is patched with the addresses of the image,
+ * and the contents of the constants that the code and data refer to. The compiled code reflects the
+ * constants folded into the method and the effect of substitutions and intrinsics, which the
+ * bytecode alone does not show. The patched constants cover image heap objects whose contents
+ * change while the code that refers to them does not. In addition, the build records a fingerprint
+ * of the image as a whole, which covers the instantiated types, the classes initialized at image
+ * build time and the values of the hosted and runtime options. A change in any of these can change
+ * the code of any method, so all methods are considered affected when it differs.
+ */
+@AutomaticFeature
+public final class CompiledMethodFingerprintFeature implements Feature {
+
+    public static class Options {
+        @Option(help = "Directory in which the fingerprints of the compiled methods are kept between builds, to report the methods whose code changed. " +
+                        "Diagnostic only: nothing is reused between builds.")//
+        public static final HostedOptionKey<String> CompiledMethodFingerprintsDir = new HostedOptionKey<>("");
+    }
+
+    /**
+     * Options that only determine where the image and the reports are written, and therefore do
+     * not affect the code of any method.
+     */
+    private static final Set<OptionKey<?>> OUTPUT_OPTIONS = new HashSet<>(Arrays.asList(Options.CompiledMethodFingerprintsDir, SubstrateOptions.Path, SubstrateOptions.Name));
+
+    private static final String METHODS_FILE = "compiled-methods.tsv";
+    private static final String CHANGED_METHODS_FILE = "changed-methods.tsv";
+    private static final String IMAGE_KEY = "image";
+
+    /**
+     * Reasons for which a method is listed in {@link #CHANGED_METHODS_FILE}.
+     */
+    private static final String NEW = "new";
+    private static final String CHANGED = "changed";
+    private static final String IMAGE_CHANGED = "image-changed";
+
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return !Options.CompiledMethodFingerprintsDir.getValue().isEmpty();
+    }
+
+    @Override
+    public void afterCompilation(AfterCompilationAccess a) {
+        AfterCompilationAccessImpl access = (AfterCompilationAccessImpl) a;
+        Path fingerprintsDir = Paths.get(Options.CompiledMethodFingerprintsDir.getValue()).toAbsolutePath();
+        try {
+            Files.createDirectories(fingerprintsDir);
+        } catch (IOException e) {
+            throw UserError.abort("Could not create compiled method fingerprints directory %s: %s", fingerprintsDir, e.getMessage());
+        }
+
+        String imageFingerprint = imageFingerprint(access);
+        Map<String, String> fingerprints = new TreeMap<>();
+        Map<String, Integer> codeSizes = new HashMap<>();
+        for (CompileQueue.CompileTask task : access.getCompilationTasks()) {
+            String name = task.method.format("%H.%n(%P)%R");
+            fingerprints.put(name, methodFingerprint(access.getMetaAccess(), task));
+            codeSizes.put(name, task.result.getTargetCodeSize());
+        }
+
+        Path methodsFile = fingerprintsDir.resolve(METHODS_FILE);
+        Map<String, String> previous = load(methodsFile);
+        if (previous != null) {
+            boolean imageChanged = !imageFingerprint.equals(previous.remove(IMAGE_KEY));
+            int unchanged = 0;
+            int changed = 0;
+            int added = 0;
+            List<String> affected = new ArrayList<>();
+            for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+                String previousFingerprint = previous.remove(entry.getKey());
+                if (previousFingerprint == null) {
+                    added++;
+                    affected.add(NEW + "\t" + entry.getKey());
+                } else if (!previousFingerprint.equals(entry.getValue())) {
+                    changed++;
+                    affected.add(CHANGED + "\t" + entry.getKey());
+                } else {
+                    unchanged++;
+                    if (imageChanged) {
+                        affected.add(IMAGE_CHANGED + "\t" + entry.getKey());
+                    }
+                }
+            }
+            String description = String.format("%d changed and %d new compiled methods (%d of %d with an unchanged fingerprint, %d removed%s)",
+                            changed, added, unchanged, fingerprints.size(), previous.size(), imageChanged ? ", all affected because types, class initialization or options changed" : "");
+            write(description, fingerprintsDir.resolve(CHANGED_METHODS_FILE), affected);
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add(IMAGE_KEY + "\t" + imageFingerprint);
+        fingerprints.forEach((name, fingerprint) -> lines.add(name + "\t" + fingerprint + "\t" + codeSizes.get(name)));
+        write("fingerprints of " + fingerprints.size() + " compiled methods", methodsFile, lines);
+    }
+
+    private static String imageFingerprint(AfterCompilationAccessImpl access) {
+        List<String> types = new ArrayList<>();
+        for (HostedType type : access.getUniverse().getTypes()) {
+            types.add(type.toJavaName(true) + (type.isInstantiated() ? " instantiated" : "") + (type.isInitialized() ? " initialized" : ""));
+        }
+        types.sort(null);
+        MessageDigest digest = newDigest();
+        for (String type : types) {
+            update(digest, type);
+        }
+        update(digest, HostedOptionValues.singleton());
+        update(digest, RuntimeOptionValues.singleton());
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, OptionValues options) {
+        List<String> values = new ArrayList<>();
+        UnmodifiableMapCursor<OptionKey<?>, Object> cursor = options.getMap().getEntries();
+        while (cursor.advance()) {
+            if (!OUTPUT_OPTIONS.contains(cursor.getKey())) {
+                Object value = cursor.getValue();
+                values.add(cursor.getKey().getName() + "=" + (value instanceof Object[] ? Arrays.toString((Object[]) value) : value));
+            }
+        }
+        values.sort(null);
+        for (String value : values) {
+            update(digest, value);
+        }
+    }
+
+    /**
+     * Adds {@code value} followed by a delimiter, so that the concatenation of several values
+     * cannot be confused with a different sequence of values.
+     */
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    private static String methodFingerprint(HostedMetaAccess metaAccess, CompileQueue.CompileTask task) {
+        MessageDigest digest = newDigest();
+        update(digest, task.method);
+        ResolvedJavaMethod[] methods = task.result.getMethods();
+        if (methods != null) {
+            /* The first entry is the root method, the others are the inlined methods. */
+            List<ResolvedJavaMethod> inlined = new ArrayList<>();
+            for (int i = 1; i < methods.length; i++) {
+                inlined.add(methods[i]);
+            }
+            inlined.sort((m1, m2) -> m1.format("%H.%n(%P)").compareTo(m2.format("%H.%n(%P)")));
+            for (ResolvedJavaMethod method : inlined) {
+                update(digest, method);
+            }
+        }
+        update(digest, metaAccess, task.result);
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, ResolvedJavaMethod method) {
+        update(digest, method.format("%H.%n(%P)%R"));
+        byte[] code = method.getCode();
+        if (code != null) {
+            digest.update(code);
+        }
+    }
+
+    /**
+     * Adds the code and data of a compilation, followed by the constants they refer to. Neither the
+     * code nor the data is patched yet, so references to other methods and to image heap objects do
+     * not depend on the layout of the image, but a change in the contents of a referenced object
+     * does not show in them either.
+     */
+    private static void update(MessageDigest digest, HostedMetaAccess metaAccess, CompilationResult result) {
+        List<Constant> constants = new ArrayList<>();
+        digest.update(result.getTargetCode(), 0, result.getTargetCodeSize());
+        for (DataSection.Data data : result.getDataSection()) {
+            ByteBuffer buffer = ByteBuffer.allocate(data.getSize());
+            DataSection.emit(buffer, data, (position, constant) -> constants.add(constant));
+            digest.update(buffer.array());
+        }
+        for (DataPatch patch : result.getDataPatches()) {
+            if (patch.reference instanceof ConstantReference) {
+                constants.add(((ConstantReference) patch.reference).getConstant());
+            }
+        }
+        for (Constant constant : constants) {
+            update(digest, describe(metaAccess, constant));
+        }
+    }
+
+    /**
+     * Describes a constant by its value. An object is described by its class and, one level deep,
+     * by its elements or field values. Referenced objects are only described by their class, so
+     * the description does not depend on identity hash codes or the layout of the image heap.
+     */
+    private static String describe(HostedMetaAccess metaAccess, Constant constant) {
+        if (!(constant instanceof DirectSubstrateObjectConstant)) {
+            return constant.toValueString();
+        }
+        JavaConstant javaConstant = (JavaConstant) constant;
+        Object object = SubstrateObjectConstant.asObject(javaConstant);
+        StringBuilder sb = new StringBuilder(object.getClass().getName());
+        if (object instanceof String || object instanceof Number || object instanceof Character || object instanceof Boolean) {
+            sb.append(' ').append(object);
+        } else if (object instanceof Class) {
+            sb.append(' ').append(((Class<?>) object).getName());
+        } else if (object instanceof DynamicHub) {
+            sb.append(' ').append(((DynamicHub) object).getName());
+        } else if (object instanceof Enum) {
+            sb.append(' ').append(((Enum<?>) object).name());
+        } else if (object.getClass().isArray()) {
+            int length = Array.getLength(object);
+            sb.append('[').append(length).append(']');
+            boolean primitive = object.getClass().getComponentType().isPrimitive();
+            for (int i = 0; i < length; i++) {
+                Object element = Array.get(object, i);
+                sb.append(' ').append(primitive || element == null ? element : element.getClass().getName());
+            }
+        } else {
+            for (HostedField field : metaAccess.lookupJavaType(object.getClass()).getInstanceFields(true)) {
+                JavaConstant value = field.readValue(javaConstant);
+                sb.append(' ').append(field.getName()).append('=');
+                if (value.getJavaKind().isPrimitive() || value.isNull()) {
+                    sb.append(value.toValueString());
+                } else {
+                    sb.append(SubstrateObjectConstant.asObject(value).getClass().getName());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw VMError.shouldNotReachHere(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, String> load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Map<String, String> result = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t");
+                if (parts.length >= 2) {
+                    result.put(parts[0], parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            throw UserError.abort("Could not read compiled method fingerprints file %s: %s", file, e.getMessage());
+        }
+        return result;
+    }
+
+    private static void write(String description, Path file, List<String> lines) {
+        ReportUtils.report(description, file, writer -> {
+            for (String line : lines) {
+                writer.println(line);
+            }
+        });
+    }
+}
@@ -60,6 +60,14 @@ public class InliningUtilities {
     }
 
     public static boolean isTrivialMethod(StructuredGraph graph) {
+        return isTrivialMethod(graph, 1);
+    }
+
+    /**
+     * Like {@link #isTrivialMethod(StructuredGraph)}, but with the size limits multiplied by the
+     * given factor.
+     */
+    public static boolean isTrivialMethod(StructuredGraph graph, int sizeFactor) {
         if (graph.method().getAnnotation(JDK_FORCE_INLINE_ANNOTATION) != null) {
             /*
              * The method is annotated by the JDK as force inline, hopefully for a good reason.
@@ -80,7 +88,7 @@ public class InliningUtilities {
                 numOthers++;
             }
 
-            if (!shouldBeTrivial(numInvokes, numOthers, graph)) {
+            if (!shouldBeTrivial(numInvokes, numOthers, graph, sizeFactor)) {
                 return false;
             }
         }
@@ -88,12 +96,12 @@ public class InliningUtilities {
         return true;
     }
 
-    private static boolean shouldBeTrivial(int numInvokes, int numOthers, StructuredGraph graph) {
+    private static boolean shouldBeTrivial(int numInvokes, int numOthers, StructuredGraph graph, int sizeFactor) {
         if (numInvokes == 0) {
             // This is a leaf method => we can be generous.
-            return numOthers <= SubstrateOptions.MaxNodesInTrivialLeafMethod.getValue(graph.getOptions());
+            return numOthers <= SubstrateOptions.MaxNodesInTrivialLeafMethod.getValue(graph.getOptions()) * sizeFactor;
         } else if (numInvokes <= SubstrateOptions.MaxInvokesInTrivialMethod.getValue(graph.getOptions())) {
-            return numOthers <= SubstrateOptions.MaxNodesInTrivialMethod.getValue(graph.getOptions());
+            return numOthers <= SubstrateOptions.MaxNodesInTrivialMethod.getValue(graph.getOptions()) * sizeFactor;
         } else {
             return false;
         }
@@ -29,7 +29,9 @@ import static com.oracle.svm.core.util.VMError.shouldNotReachHere;
 import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.graalvm.compiler.core.common.CompressEncoding;
 import org.graalvm.compiler.core.common.NumUtil;
@@ -66,16 +68,22 @@ import jdk.vm.ci.meta.ResolvedJavaMethod;
 
 /**
  * Writes the native image heap into one or multiple {@link RelocatableBuffer}s.
+ *
+ * Every object occupies its own range of the buffer, so the objects are written in parallel.
  */
 public final class NativeImageHeapWriter {
     private final NativeImageHeap heap;
     private final ImageHeapLayoutInfo heapLayout;
-    private long sectionOffsetOfARelocatablePointer;
+    /**
+     * The lowest offset of a relocatable pointer, so that the result does not depend on the order
+     * in which the objects are written.
+     */
+    private final AtomicLong sectionOffsetOfARelocatablePointer;
 
     public NativeImageHeapWriter(NativeImageHeap heap, ImageHeapLayoutInfo heapLayout) {
         this.heap = heap;
         this.heapLayout = heapLayout;
-        this.sectionOffsetOfARelocatablePointer = -1;
+        this.sectionOffsetOfARelocatablePointer = new AtomicLong(Long.MAX_VALUE);
     }
 
     /**
@@ -85,10 +93,11 @@ public final class NativeImageHeapWriter {
     @SuppressWarnings("try")
     public long writeHeap(DebugContext debug, RelocatableBuffer buffer) {
         try (Indent perHeapIndent = debug.logAndIndent("BootImageHeap.writeHeap:")) {
-            for (ObjectInfo info : heap.getObjects()) {
+            /* Runs in the pool of the image builder when called from one of its threads. */
+            new ArrayList<>(heap.getObjects()).parallelStream().forEach(info -> {
                 assert !heap.isBlacklisted(info.getObject());
                 writeObject(info, buffer);
-            }
+            });
 
             // Only static fields that are writable get written to the native image heap,
             // the read-only static fields have been inlined into the code.
@@ -96,7 +105,8 @@ public final class NativeImageHeapWriter {
 
             heap.getLayouter().writeMetadata(buffer.getByteBuffer(), 0);
         }
-        return sectionOffsetOfARelocatablePointer;
+        long offset = sectionOffsetOfARelocatablePointer.get();
+        return offset == Long.MAX_VALUE ? -1 : offset;
     }
 
     private void writeStaticFields(RelocatableBuffer buffer) {
@@ -217,17 +227,13 @@ public final class NativeImageHeapWriter {
         assert size == 4 || size == 8;
         assert !NativeImageHeap.spawnIsolates() || heapLayout.isReadOnlyRelocatable(index);
         buffer.addRelocationWithoutAddend(index, size == 8 ? ObjectFile.RelocationKind.DIRECT_8 : ObjectFile.RelocationKind.DIRECT_4, target);
-        if (sectionOffsetOfARelocatablePointer == -1) {
-            sectionOffsetOfARelocatablePointer = index;
-        }
+        sectionOffsetOfARelocatablePointer.accumulateAndGet(index, Math::min);
     }
 
     private void addDirectRelocationWithAddend(RelocatableBuffer buffer, int index, DynamicHub target, long objectHeaderBits) {
         assert !NativeImageHeap.spawnIsolates() || heapLayout.isReadOnlyRelocatable(index);
         buffer.addRelocationWithAddend(index, referenceSize() == 8 ? ObjectFile.RelocationKind.DIRECT_8 : ObjectFile.RelocationKind.DIRECT_4, objectHeaderBits, target);
-        if (sectionOffsetOfARelocatablePointer == -1) {
-            sectionOffsetOfARelocatablePointer = index;
-        }
+        sectionOffsetOfARelocatablePointer.accumulateAndGet(index, Math::min);
     }
 
     /**
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.graalvm.compiler.api.replacements.SnippetReflectionProvider;
+import org.graalvm.compiler.bytecode.BytecodeStream;
+import org.graalvm.compiler.bytecode.Bytecodes;
+import org.graalvm.compiler.nodes.ConstantNode;
+import org.graalvm.compiler.nodes.FrameState;
+import org.graalvm.compiler.nodes.LogicNode;
+import org.graalvm.compiler.nodes.NodeView;
+import org.graalvm.compiler.nodes.ValueNode;
+import org.graalvm.compiler.nodes.calc.AddNode;
+import org.graalvm.compiler.nodes.calc.ConditionalNode;
+import org.graalvm.compiler.nodes.extended.ForeignCallNode;
+import org.graalvm.compiler.nodes.extended.RawLoadNode;
+import org.graalvm.compiler.nodes.extended.RawStoreNode;
+import org.graalvm.compiler.nodes.graphbuilderconf.GraphBuilderConfiguration.Plugins;
+import org.graalvm.compiler.nodes.graphbuilderconf.GraphBuilderContext;
+import org.graalvm.compiler.nodes.graphbuilderconf.NodePlugin;
+import org.graalvm.compiler.nodes.graphbuilderconf.ProfilingPlugin;
+import org.graalvm.compiler.phases.util.Providers;
+import org.graalvm.nativeimage.ImageSingletons;
+
+import com.oracle.graal.pointsto.meta.AnalysisMethod;
+import com.oracle.svm.core.ImageProfiles;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.config.ConfigurationValues;
+import com.oracle.svm.core.graal.GraalFeature;
+import com.oracle.svm.core.graal.meta.RuntimeConfiguration;
+import com.oracle.svm.core.graal.meta.SubstrateForeignCallsProvider;
+import com.oracle.svm.core.heap.RestrictHeapAccessCallees;
+import com.oracle.svm.core.jdk.RuntimeSupport;
+import com.oracle.svm.core.meta.SubstrateObjectConstant;
+import com.oracle.svm.core.pgo.InstrumentedImageProfiles;
+import com.oracle.svm.core.pgo.MethodProfile;
+import com.oracle.svm.hosted.FeatureImpl.BeforeAnalysisAccessImpl;
+import com.oracle.svm.hosted.meta.HostedMethod;
+import com.oracle.svm.util.ReflectionUtil;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.JavaTypeProfile;
+import jdk.vm.ci.meta.MetaAccessProvider;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * Instruments the ahead-of-time compiled code of an image built with
+ * {@link MethodProfile.Options#PGOInstrument}. Every method entry and every conditional branch
+ * increments a counter of the {@link MethodProfile} of its method. Virtual calls for which the
+ * static analysis did not find a single receiver type also record the receiver type.
+ *
+ * Uninterruptible methods are not instrumented because they can run before the heap base is set up.
+ * Methods that must not allocate do not record receiver types because they include the garbage
+ * collector, which sees objects whose header is overwritten with a forwarding pointer.
+ */
+final class PGOInstrumentationPlugin implements ProfilingPlugin, NodePlugin {
+
+    private final MetaAccessProvider metaAccess;
+    private final Map<ResolvedJavaMethod, MethodProfile> profiles = new ConcurrentHashMap<>();
+
+    PGOInstrumentationPlugin(MetaAccessProvider metaAccess) {
+        this.metaAccess = metaAccess;
+    }
+
+    @Override
+    public boolean shouldProfile(GraphBuilderContext b, ResolvedJavaMethod method) {
+        return !b.parsingIntrinsic() && !((HostedMethod) method).isDeoptTarget() && method.getAnnotation(Uninterruptible.class) == null;
+    }
+
+    @Override
+    public void profileInvoke(GraphBuilderContext b, ResolvedJavaMethod method, FrameState frameState) {
+        increment(b, lookupProfile(method), offsetOf(b, MethodProfile.getEntryCountIndex()), frameState);
+    }
+
+    @Override
+    public void profileGoto(GraphBuilderContext b, ResolvedJavaMethod method, int bci, int targetBci, FrameState frameState) {
+        /* Unconditional jumps do not contribute to the profile. */
+    }
+
+    @Override
+    public void profileIf(GraphBuilderContext b, ResolvedJavaMethod method, int bci, LogicNode condition, int trueBranchBci, int falseBranchBci, FrameState frameState) {
+        MethodProfile profile = lookupProfile(method);
+        /* The branch is taken when the bytecode jumps instead of falling through. */
+        boolean trueIsTaken = falseBranchBci == bci + Bytecodes.lengthOf(Bytecodes.IFEQ);
+        int trueIndex = profile.getBranchCountIndex(bci, trueIsTaken);
+        if (trueIndex < 0) {
+            return;
+        }
+        int falseIndex = profile.getBranchCountIndex(bci, !trueIsTaken);
+        ValueNode offset = b.add(new ConditionalNode(condition, offsetOf(b, trueIndex), offsetOf(b, falseIndex)));
+        increment(b, profile, offset, frameState);
+    }
+
+    @Override
+    public boolean handleInvoke(GraphBuilderContext b, ResolvedJavaMethod method, ValueNode[] args) {
+        if (b.getInvokeKind().isIndirect() && shouldProfile(b, b.getMethod())) {
+            MethodProfile profile = lookupProfile(b.getMethod());
+            int site = profile.getReceiverSite(b.bci());
+            if (site >= 0) {
+                ValueNode profileNode = ConstantNode.forConstant(SubstrateObjectConstant.forObject(profile), metaAccess, b.getGraph());
+                b.add(new ForeignCallNode(MethodProfile.PROFILE_RECEIVER, args[0], profileNode, ConstantNode.forInt(site, b.getGraph())));
+            }
+        }
+        /* The invoke itself is still emitted by the bytecode parser. */
+        return false;
+    }
+
+    private void increment(GraphBuilderContext b, MethodProfile profile, ValueNode offset, FrameState frameState) {
+        ValueNode counts = ConstantNode.forConstant(SubstrateObjectConstant.forObject(profile.getCounts()), metaAccess, b.getGraph());
+        ValueNode count = b.add(new RawLoadNode(counts, offset, JavaKind.Long, MethodProfile.COUNTS_LOCATION));
+        ValueNode incremented = b.add(AddNode.create(count, ConstantNode.forLong(1, b.getGraph()), NodeView.DEFAULT));
+        b.add(new RawStoreNode(counts, offset, incremented, JavaKind.Long, MethodProfile.COUNTS_LOCATION, false, frameState, false));
+    }
+
+    private static ValueNode offsetOf(GraphBuilderContext b, int index) {
+        return ConstantNode.forLong(ConfigurationValues.getObjectLayout().getArrayElementOffset(JavaKind.Long, index), b.getGraph());
+    }
+
+    private MethodProfile lookupProfile(ResolvedJavaMethod method) {
+        return profiles.computeIfAbsent(method, m -> createProfile((HostedMethod) m));
+    }
+
+    private static MethodProfile createProfile(HostedMethod method) {
+        boolean profileReceivers = !ImageSingletons.lookup(RestrictHeapAccessCallees.class).mustNotAllocate(method);
+        List<Integer> branchBcis = new ArrayList<>();
+        List<Integer> receiverBcis = new ArrayList<>();
+        BytecodeStream stream = new BytecodeStream(method.getCode());
+        for (int bc = stream.currentBC(); bc != Bytecodes.END; stream.next(), bc = stream.currentBC()) {
+            int bci = stream.currentBCI();
+            if (Bytecodes.isIfBytecode(bc)) {
+                branchBcis.add(bci);
+            } else if ((bc == Bytecodes.INVOKEVIRTUAL || bc == Bytecodes.INVOKEINTERFACE) && profileReceivers) {
+                /* A single type known from the static analysis does not need a profile. */
+                JavaTypeProfile typeProfile = method.getProfilingInfo().getTypeProfile(bci);
+                if (typeProfile == null || typeProfile.getTypes().length > 1) {
+                    receiverBcis.add(bci);
+                }
+            }
+        }
+        return MethodProfile.lookup(PGOProfile.methodName(method), toArray(branchBcis), toArray(receiverBcis));
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
+
+@AutomaticFeature
+final class PGOFeature implements GraalFeature {
+
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return MethodProfile.Options.PGOInstrument.getValue();
+    }
+
+    @Override
+    public void afterRegistration(AfterRegistrationAccess access) {
+        ImageSingletons.add(ImageProfiles.class, new InstrumentedImageProfiles());
+        RuntimeSupport.getRuntimeSupport().addShutdownHook(InstrumentedImageProfiles::writeProfile);
+    }
+
+    @Override
+    public void beforeAnalysis(BeforeAnalysisAccess a) {
+        BeforeAnalysisAccessImpl access = (BeforeAnalysisAccessImpl) a;
+        /* The calls are only emitted during compilation, i.e., after the analysis. */
+        access.getBigBang().addRootMethod((AnalysisMethod) MethodProfile.PROFILE_RECEIVER.findMethod(access.getMetaAccess()));
+        /*
+         * The profiles are also only created during compilation, so the analysis never sees one in
+         * the image heap. Analyzing their constructor makes the analysis see the types of the
+         * profiles and of their fields.
+         */
+        access.registerAsInHeap(MethodProfile.class);
+        access.registerAsInHeap(int[].class);
+        access.getBigBang().addRootMethod(ReflectionUtil.lookupConstructor(MethodProfile.class, String.class, int[].class, int[].class));
+    }
+
+    @Override
+    public void registerForeignCalls(RuntimeConfiguration runtimeConfig, Providers providers, SnippetReflectionProvider snippetReflection, SubstrateForeignCallsProvider foreignCalls, boolean hosted) {
+        foreignCalls.register(providers, MethodProfile.PROFILE_RECEIVER);
+    }
+
+    @Override
+    public void registerGraphBuilderPlugins(Providers providers, Plugins plugins, boolean analysis, boolean hosted) {
+        if (hosted && !analysis) {
+            PGOInstrumentationPlugin plugin = new PGOInstrumentationPlugin(providers.getMetaAccess());
+            plugins.setProfilingPlugin(plugin);
+            plugins.appendNodePlugin(plugin);
+        }
+    }
+}
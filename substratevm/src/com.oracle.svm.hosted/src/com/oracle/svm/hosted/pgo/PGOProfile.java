@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oracle.svm.core.pgo.InstrumentedImageProfiles;
+import com.oracle.svm.core.util.UserError;
+
+import jdk.vm.ci.meta.JavaTypeProfile;
+import jdk.vm.ci.meta.JavaTypeProfile.ProfiledType;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * A profile written by an {@link InstrumentedImageProfiles instrumented image}, indexed by method.
+ */
+final class PGOProfile {
+
+    /**
+     * Methods that are entered at least this fraction of the entries of the most frequently entered
+     * method are hot.
+     */
+    private static final long HOT_METHOD_RATIO = 100;
+
+    static final class MethodData {
+        long entryCount;
+        final TreeMap<Integer, long[]> branches = new TreeMap<>();
+        final Map<Integer, Map<String, Long>> receivers = new HashMap<>();
+    }
+
+    private final Map<String, MethodData> methods = new HashMap<>();
+    private long maxEntryCount;
+
+    static String methodName(ResolvedJavaMethod method) {
+        return method.format("%H.%n(%P)%R");
+    }
+
+    static PGOProfile load(String fileName) {
+        PGOProfile profile = new PGOProfile();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName))) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    profile.parse(line.split("\t"));
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    throw UserError.abort("Malformed line %d in profile %s: %s", lineNumber, fileName, line);
+                }
+            }
+        } catch (IOException e) {
+            throw UserError.abort(e, "Cannot read profile %s", fileName);
+        }
+        for (MethodData data : profile.methods.values()) {
+            profile.maxEntryCount = Math.max(profile.maxEntryCount, data.entryCount);
+        }
+        return profile;
+    }
+
+    private void parse(String[] fields) {
+        MethodData data = methods.computeIfAbsent(fields[1], key -> new MethodData());
+        switch (fields[0]) {
+            case "m":
+                data.entryCount = Long.parseLong(fields[2]);
+                break;
+            case "b":
+                data.branches.put(Integer.parseInt(fields[2]), new long[]{Long.parseLong(fields[3]), Long.parseLong(fields[4])});
+                break;
+            case "r":
+                Map<String, Long> types = new HashMap<>();
+                for (int i = 4; i < fields.length; i += 2) {
+                    types.put(fields[i], Long.parseLong(fields[i + 1]));
+                }
+                data.receivers.put(Integer.parseInt(fields[2]), types);
+                break;
+            default:
+                throw new IllegalArgumentException(fields[0]);
+        }
+    }
+
+    MethodData get(ResolvedJavaMethod method) {
+        return methods.get(methodName(method));
+    }
+
+    boolean isHot(MethodData data) {
+        return data.entryCount > 0 && data.entryCount >= maxEntryCount / HOT_METHOD_RATIO;
+    }
+
+    /**
+     * Reweights a type profile of the static analysis by the recorded receiver counts. The types
+     * stay the ones of the static analysis, which are known to be complete, so types that were not
+     * recorded keep a small probability.
+     */
+    static JavaTypeProfile weight(JavaTypeProfile staticProfile, Map<String, Long> recorded) {
+        ProfiledType[] staticTypes = staticProfile.getTypes();
+        if (recorded == null || staticTypes.length < 2) {
+            return staticProfile;
+        }
+        double[] weights = new double[staticTypes.length];
+        double total = 0;
+        for (int i = 0; i < staticTypes.length; i++) {
+            /* Add one so that no type gets a probability of zero. */
+            weights[i] = recorded.getOrDefault(staticTypes[i].getType().toClassName(), 0L) + 1;
+            total += weights[i];
+        }
+        double recordedProbability = 1 - staticProfile.getNotRecordedProbability();
+        ProfiledType[] types = new ProfiledType[staticTypes.length];
+        for (int i = 0; i < staticTypes.length; i++) {
+            types[i] = new ProfiledType(staticTypes[i].getType(), weights[i] / total * recordedProbability);
+        }
+        Arrays.sort(types);
+        return new JavaTypeProfile(staticProfile.getNullSeen(), staticProfile.getNotRecordedProbability(), types);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import java.util.Arrays;
+
+import org.graalvm.compiler.nodes.extended.BranchProbabilityNode;
+
+import com.oracle.graal.pointsto.results.StaticAnalysisResults;
+
+import jdk.vm.ci.meta.JavaTypeProfile;
+import jdk.vm.ci.meta.ProfilingInfo;
+
+/**
+ * Static analysis results of a method that was executed by an instrumented image.
+ */
+public final class PGOStaticAnalysisResults extends StaticAnalysisResults {
+
+    /** Sorted bcis of the conditional branches that were executed. */
+    private final int[] branchBcis;
+    private final long[] takenCounts;
+    private final long[] notTakenCounts;
+    private final boolean hot;
+
+    PGOStaticAnalysisResults(int codeSize, JavaTypeProfile[] parameterTypeProfiles, JavaTypeProfile resultTypeProfile, BytecodeEntry first, int[] branchBcis, long[] takenCounts,
+                    long[] notTakenCounts, boolean hot) {
+        super(codeSize, parameterTypeProfiles, resultTypeProfile, first);
+        this.branchBcis = branchBcis;
+        this.takenCounts = takenCounts;
+        this.notTakenCounts = notTakenCounts;
+        this.hot = hot;
+    }
+
+    /** Returns true if the profile marks the method as frequently executed. */
+    public static boolean isHot(ProfilingInfo profilingInfo) {
+        return profilingInfo instanceof PGOStaticAnalysisResults && ((PGOStaticAnalysisResults) profilingInfo).hot;
+    }
+
+    @Override
+    public double getBranchTakenProbability(int bci) {
+        int branch = Arrays.binarySearch(branchBcis, bci);
+        if (branch < 0) {
+            return super.getBranchTakenProbability(bci);
+        }
+        long total = takenCounts[branch] + notTakenCounts[branch];
+        if (total == 0) {
+            return super.getBranchTakenProbability(bci);
+        }
+        double probability = (double) takenCounts[branch] / total;
+        /*
+         * A probability of exactly 0 or 1 would make the bytecode parser replace the branch by a
+         * deoptimization, which ahead-of-time compiled code does not support.
+         */
+        return Math.min(Math.max(probability, BranchProbabilityNode.LUDICROUSLY_SLOW_PATH_PROBABILITY), BranchProbabilityNode.LUDICROUSLY_FAST_PATH_PROBABILITY);
+    }
+
+    @Override
+    public int getExecutionCount(int bci) {
+        int branch = Arrays.binarySearch(branchBcis, bci);
+        if (branch < 0) {
+            return super.getExecutionCount(bci);
+        }
+        return (int) Math.min(takenCounts[branch] + notTakenCounts[branch], Integer.MAX_VALUE);
+    }
+}
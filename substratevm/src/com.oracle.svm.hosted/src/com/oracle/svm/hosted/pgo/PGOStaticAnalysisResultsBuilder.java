@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import java.util.Map;
+
+import com.oracle.graal.pointsto.BigBang;
+import com.oracle.graal.pointsto.infrastructure.Universe;
+import com.oracle.graal.pointsto.meta.AnalysisMethod;
+import com.oracle.graal.pointsto.results.StaticAnalysisResults;
+import com.oracle.graal.pointsto.results.StaticAnalysisResults.BytecodeEntry;
+import com.oracle.graal.pointsto.results.StaticAnalysisResultsBuilder;
+import com.oracle.svm.core.pgo.MethodProfile;
+
+import jdk.vm.ci.meta.JavaMethodProfile;
+import jdk.vm.ci.meta.JavaTypeProfile;
+
+/**
+ * Combines the static analysis results with the profile of an instrumented image (see
+ * {@link MethodProfile.Options#PGO}): branch probabilities and method hotness are taken from the
+ * profile, and the type profiles of virtual calls are weighted by the recorded receiver types.
+ */
+public final class PGOStaticAnalysisResultsBuilder extends StaticAnalysisResultsBuilder {
+
+    private final PGOProfile profile;
+
+    public PGOStaticAnalysisResultsBuilder(BigBang bb, Universe converter, String profileFile) {
+        super(bb, converter);
+        this.profile = PGOProfile.load(profileFile);
+    }
+
+    @Override
+    protected BytecodeEntry createBytecodeEntry(AnalysisMethod method, int bci, JavaTypeProfile typeProfile, JavaMethodProfile methodProfile, JavaTypeProfile invokeResultTypeProfile) {
+        PGOProfile.MethodData data = profile.get(method);
+        JavaTypeProfile weightedTypeProfile = typeProfile;
+        if (data != null && typeProfile != null) {
+            weightedTypeProfile = PGOProfile.weight(typeProfile, data.receivers.get(bci));
+        }
+        return super.createBytecodeEntry(method, bci, weightedTypeProfile, methodProfile, invokeResultTypeProfile);
+    }
+
+    @Override
+    protected StaticAnalysisResults createStaticAnalysisResults(AnalysisMethod method, JavaTypeProfile[] parameterTypeProfiles, JavaTypeProfile resultTypeProfile, BytecodeEntry first) {
+        PGOProfile.MethodData data = profile.get(method);
+        if (data == null) {
+            return super.createStaticAnalysisResults(method, parameterTypeProfiles, resultTypeProfile, first);
+        }
+        int[] branchBcis = new int[data.branches.size()];
+        long[] takenCounts = new long[branchBcis.length];
+        long[] notTakenCounts = new long[branchBcis.length];
+        int i = 0;
+        for (Map.Entry<Integer, long[]> entry : data.branches.entrySet()) {
+            branchBcis[i] = entry.getKey();
+            takenCounts[i] = entry.getValue()[0];
+            notTakenCounts[i] = entry.getValue()[1];
+            i++;
+        }
+        return new PGOStaticAnalysisResults(method.getCodeSize(), parameterTypeProfiles, resultTypeProfile, first, branchBcis, takenCounts, notTakenCounts, profile.isHot(data));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test.jdk11;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Reads a recording that the flight recorder of a native image wrote at exit with the JFR parser
+ * of the JDK, which proves that the chunk format and the metadata are valid. Every event must have
+ * readable fields and a non-negative duration, and each event type given after the file name must
+ * occur at least once. The native unittest gate runs this on the JVM after
+ * {@code com.oracle.svm.test.FlightRecorderTest}.
+ */
+public class FlightRecordingChecker {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: FlightRecordingChecker <file> <event type>...");
+        }
+        Path file = Paths.get(args[0]);
+        Map<String, Integer> counts = new TreeMap<>();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                for (ValueDescriptor field : event.getFields()) {
+                    event.getValue(field.getName());
+                }
+                if (event.getDuration().compareTo(Duration.ZERO) < 0) {
+                    throw new AssertionError("Negative duration of " + event);
+                }
+                counts.merge(name, 1, Integer::sum);
+            }
+        }
+        for (int i = 1; i < args.length; i++) {
+            if (!counts.containsKey(args[i])) {
+                throw new AssertionError("No " + args[i] + " event in " + file + ", only: " + counts);
+            }
+        }
+        System.out.println("Events in " + file + ": " + counts);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks the report of the methods whose compiled code changed between two builds. The native
+ * unittest gate builds this test twice into the same fingerprints directory, with a different
+ * {@value #VALUE_PROPERTY} each time, and passes the report of the second build in the
+ * {@value #CHANGES_PROPERTY} system property. Without that property, only the method that reads the
+ * build time value runs.
+ */
+public class CompiledMethodFingerprintsTest {
+
+    private static final String VALUE_PROPERTY = "com.oracle.svm.test.CompiledMethodFingerprintsTest.value";
+    private static final String CHANGES_PROPERTY = "com.oracle.svm.test.CompiledMethodFingerprintsTest.changes";
+
+    /**
+     * Initialized at image build time. Only the contents of the array differ between the two
+     * builds, so the code that reads it is the same and only the referenced constant changes.
+     */
+    static final class Holder {
+        static final int[] VALUES = {Integer.getInteger(VALUE_PROPERTY, 0)};
+    }
+
+    @Test
+    public void readBuildTimeValue() {
+        Assert.assertTrue(Holder.VALUES[0] >= 0);
+    }
+
+    @Test
+    public void changedMethods() throws IOException {
+        String file = System.getProperty(CHANGES_PROPERTY);
+        Assume.assumeTrue("Changed methods report not specified", file != null);
+
+        Map<String, String> reasons = new HashMap<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            Assert.assertEquals("malformed line: " + line, 2, parts.length);
+            reasons.put(parts[1], parts[0]);
+        }
+        String className = CompiledMethodFingerprintsTest.class.getName();
+        Assert.assertEquals("changed", reasons.get(className + ".readBuildTimeValue()void"));
+        /* Methods can still be affected by a change of the image as a whole, but not changed. */
+        String reason = reasons.get(className + ".changedMethods()void");
+        Assert.assertTrue("unexpected reason " + reason, reason == null || reason.equals("image-changed"));
+    }
+}
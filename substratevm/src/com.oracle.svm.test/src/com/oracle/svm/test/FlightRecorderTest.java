@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Reads back the recording that the flight recorder writes while the tests run. The native unittest
+ * gate runs this test with {@code -XX:+FlightRecorder} and passes the file of the recording in the
+ * {@value #FILE_PROPERTY} system property. Without that property, the test is skipped.
+ * <p>
+ * The chunk is only complete when the image exits, so this test only checks that events are
+ * flushed while the image runs. The gate then validates the complete recording with the JFR parser
+ * of the JDK ({@code com.oracle.svm.test.jdk11.FlightRecordingChecker}).
+ */
+public class FlightRecorderTest {
+
+    private static final String FILE_PROPERTY = "com.oracle.svm.test.FlightRecorderTest.file";
+
+    /** The size of the chunk header, after which the events start. */
+    private static final int CHUNK_HEADER_SIZE = 68;
+    private static final long GARBAGE_COLLECTION_ID = 100;
+    private static final long THREAD_START_ID = 103;
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    @Test
+    public void readRecording() throws IOException, InterruptedException {
+        String file = System.getProperty(FILE_PROPERTY);
+        Assume.assumeTrue("Flight recorder file not specified", file != null);
+
+        Thread thread = new Thread(() -> {
+        });
+        thread.start();
+        thread.join();
+        System.gc();
+
+        /* The events reach the file when the flusher thread runs next. */
+        Path path = Paths.get(file);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        Set<Long> eventTypes;
+        do {
+            Thread.sleep(10);
+            eventTypes = readEventTypes(Files.readAllBytes(path));
+        } while (!(eventTypes.contains(GARBAGE_COLLECTION_ID) && eventTypes.contains(THREAD_START_ID)) && System.currentTimeMillis() < deadline);
+
+        Assert.assertTrue("no garbage collection event in " + eventTypes, eventTypes.contains(GARBAGE_COLLECTION_ID));
+        Assert.assertTrue("no thread start event in " + eventTypes, eventTypes.contains(THREAD_START_ID));
+    }
+
+    /**
+     * Checks the chunk header and returns the type ids of the events written so far. The chunk is
+     * only completed when the VM exits, so a flush can still be in progress at the end of the file.
+     */
+    private static Set<Long> readEventTypes(byte[] data) {
+        Assert.assertTrue("recording too short: " + data.length + " bytes", data.length >= CHUNK_HEADER_SIZE);
+        Assert.assertArrayEquals(new byte[]{'F', 'L', 'R', 0}, new byte[]{data[0], data[1], data[2], data[3]});
+        Assert.assertEquals("major version", 2, ((data[4] & 0xFF) << 8) | (data[5] & 0xFF));
+
+        Set<Long> eventTypes = new HashSet<>();
+        int[] position = {CHUNK_HEADER_SIZE};
+        while (position[0] < data.length) {
+            int start = position[0];
+            long size = readLong(data, position);
+            if (size <= 0 || start + size > data.length) {
+                break;
+            }
+            eventTypes.add(readLong(data, position));
+            position[0] = (int) (start + size);
+        }
+        return eventTypes;
+    }
+
+    /** Reads a value in the variable-length encoding of JFR, which uses all bits of a 9th byte. */
+    private static long readLong(byte[] data, int[] position) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            if (position[0] >= data.length) {
+                return -1;
+            }
+            byte b = data[position[0]++];
+            value |= (b & 0x7FL) << (7 * i);
+            if (b >= 0) {
+                return value;
+            }
+        }
+        if (position[0] >= data.length) {
+            return -1;
+        }
+        return value | (data[position[0]++] & 0xFFL) << 56;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the integrity of the heap while objects in the old generation die and new objects are
+ * promoted. The native unittest gate runs this test with each of the optional modes of the garbage
+ * collector, with a small young generation so that many incremental collections happen, and checks
+ * the counters of {@code -XX:+PrintGCSummary} afterwards.
+ */
+public class GarbageCollectionTest {
+
+    private static final int NODES = 32 * 1024;
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 10;
+    /** Bytes of garbage allocated per round, which is well above the young generation size. */
+    private static final int GARBAGE_BYTES_PER_ROUND = 32 * 1024 * 1024;
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    static final class Node {
+        final int id;
+        final long[] payload;
+        Node next;
+
+        Node(int id) {
+            this.id = id;
+            /* Varying sizes, so that the gaps that dead nodes leave behind have varying sizes too. */
+            this.payload = new long[1 + id % 13];
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = (long) id * 31 + i;
+            }
+        }
+
+        void verify() {
+            Assert.assertEquals(1 + id % 13, payload.length);
+            for (int i = 0; i < payload.length; i++) {
+                Assert.assertEquals((long) id * 31 + i, payload[i]);
+            }
+        }
+    }
+
+    /** Keeps garbage from being optimized away. */
+    static volatile Object sink;
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += bean.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static void allocateGarbage(int bytes) {
+        for (int i = 0; i < bytes / 1024; i++) {
+            sink = new byte[1024 - 16];
+        }
+    }
+
+    /** Links all nodes into a ring in index order. */
+    private static void link(Node[] nodes) {
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].next = nodes[(i + 1) % nodes.length];
+        }
+    }
+
+    private static void verify(Node[] nodes) {
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            node.verify();
+            Assert.assertSame(nodes[(i + 1) % nodes.length], node.next);
+        }
+    }
+
+    /**
+     * Every round, a different part of the old nodes dies, a complete collection reclaims it, and
+     * replacements are promoted by incremental collections into the memory that the dead nodes left
+     * behind.
+     */
+    @Test
+    public void reachableGraphSurvives() {
+        long collections = collectionCount();
+        int nextId = 0;
+        Node[] nodes = new Node[NODES];
+        for (int i = 0; i < NODES; i++) {
+            nodes[i] = new Node(nextId++);
+        }
+        link(nodes);
+        System.gc();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = round % 3; i < NODES; i += 3) {
+                nodes[i] = null;
+            }
+            for (int i = 0; i < NODES; i++) {
+                if (nodes[i] != null) {
+                    nodes[i].next = null;
+                }
+            }
+            System.gc();
+            for (int i = 0; i < NODES; i++) {
+                if (nodes[i] == null) {
+                    nodes[i] = new Node(nextId++);
+                }
+            }
+            link(nodes);
+            allocateGarbage(GARBAGE_BYTES_PER_ROUND);
+            verify(nodes);
+        }
+        System.gc();
+        verify(nodes);
+        /* Every System.gc() is a complete collection. */
+        Assert.assertTrue(collectionCount() >= collections + ROUNDS + 2);
+    }
+
+    /**
+     * Several threads replace the nodes of their own graphs and allocate garbage at the same time,
+     * so that collections find many roots and grey objects.
+     */
+    @Test
+    public void concurrentAllocation() throws InterruptedException {
+        Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    Node[] nodes = new Node[NODES / THREADS];
+                    for (int i = 0; i < nodes.length; i++) {
+                        nodes[i] = new Node(i);
+                    }
+                    link(nodes);
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = round % 2; i < nodes.length; i += 2) {
+                            nodes[i] = new Node(nodes[i].id + nodes.length);
+                        }
+                        link(nodes);
+                        allocateGarbage(GARBAGE_BYTES_PER_ROUND / THREADS);
+                        verify(nodes);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new AssertionError(failure[0]);
+            }
+        }
+    }
+
+    private static WeakReference<?>[] createWeakReferences(Object[] strong, ReferenceQueue<Object> queue) {
+        WeakReference<?>[] references = new WeakReference<?>[strong.length];
+        for (int i = 0; i < strong.length; i++) {
+            Node node = new Node(i);
+            references[i] = new WeakReference<>(node, queue);
+            if (i % 2 == 0) {
+                strong[i] = node;
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Weak references to old objects that die are cleared and enqueued by a complete collection,
+     * and those to objects that are still reachable are not.
+     */
+    @Test
+    public void weakReferencesClearedAndEnqueued() throws InterruptedException {
+        ReferenceQueue<Object> queue = new ReferenceQueue<>();
+        Object[] strong = new Object[1024];
+        WeakReference<?>[] references = createWeakReferences(strong, queue);
+        /* Promote the referents while they are still all reachable. */
+        System.gc();
+        for (int i = 0; i < strong.length; i += 4) {
+            strong[i] = null;
+        }
+        allocateGarbage(GARBAGE_BYTES_PER_ROUND);
+        System.gc();
+
+        Set<Reference<?>> cleared = new HashSet<>();
+        for (int i = 0; i < references.length; i++) {
+            if (strong[i] != null) {
+                Assert.assertSame(strong[i], references[i].get());
+                ((Node) strong[i]).verify();
+            } else {
+                Assert.assertNull(references[i].get());
+                cleared.add(references[i]);
+            }
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!cleared.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            Assert.assertTrue("Cleared references not enqueued: " + cleared.size(), remaining > 0);
+            Reference<?> reference = queue.remove(remaining);
+            if (reference != null) {
+                Assert.assertTrue("Reference enqueued twice or although its referent is reachable", cleared.remove(reference));
+            }
+        }
+        Assert.assertNull(queue.poll());
+    }
+}
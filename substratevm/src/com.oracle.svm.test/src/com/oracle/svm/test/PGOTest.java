@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs code with a known branch probability and a known receiver type distribution. The native
+ * unittest gate runs this test in an image built with {@code -H:+PGOInstrument}, checks the
+ * recorded profile for these methods, and then runs the test again in an image built with the
+ * profile.
+ */
+public class PGOTest {
+
+    static final int CALLS = 10_000;
+
+    interface Shape {
+        int area();
+    }
+
+    static final class Square implements Shape {
+        final int side;
+
+        Square(int side) {
+            this.side = side;
+        }
+
+        @Override
+        public int area() {
+            return side * side;
+        }
+    }
+
+    static final class Rectangle implements Shape {
+        final int width;
+        final int height;
+
+        Rectangle(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int area() {
+            return width * height;
+        }
+    }
+
+    /** Its single branch goes one way for one in ten calls. */
+    static int classify(int value) {
+        if (value % 10 == 0) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /** Its single virtual call sees three squares for every rectangle. */
+    static int totalArea(Shape[] shapes) {
+        int total = 0;
+        for (Shape shape : shapes) {
+            total += shape.area();
+        }
+        return total;
+    }
+
+    @Test
+    public void branches() {
+        int ones = 0;
+        for (int i = 0; i < CALLS; i++) {
+            ones += classify(i);
+        }
+        Assert.assertEquals(CALLS / 10, ones);
+    }
+
+    @Test
+    public void receivers() {
+        Shape[] shapes = {new Square(2), new Square(3), new Rectangle(2, 5), new Square(4)};
+        long total = 0;
+        for (int i = 0; i < CALLS / shapes.length; i++) {
+            total += totalArea(shapes);
+        }
+        Assert.assertEquals((long) (4 + 9 + 10 + 16) * (CALLS / shapes.length), total);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Keeps two threads busy in known methods while the sampling profiler runs. The native unittest
+ * gate runs this test with {@code -XX:+SamplingProfiler}, sets the {@value #ENABLED_PROPERTY}
+ * system property, and checks the collapsed stacks that the profiler writes at exit. Without that
+ * property, the test is skipped.
+ */
+public class SamplingProfilerTest {
+
+    private static final String ENABLED_PROPERTY = "com.oracle.svm.test.SamplingProfilerTest.enabled";
+    private static final long SPIN_NANOS = 2_000_000_000L;
+
+    static volatile long seed = 17;
+
+    /** The hot method, which only computes. */
+    static long spin(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long value = seed;
+        long iterations = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 10_000; i++) {
+                value = value * 6364136223846793005L + 1442695040888963407L;
+            }
+            iterations++;
+        }
+        return iterations == 0 ? 0 : value | 1;
+    }
+
+    static void spinInThread(long[] result) {
+        result[0] = spin(SPIN_NANOS);
+    }
+
+    @Test
+    public void spinInTwoThreads() throws InterruptedException {
+        Assume.assumeTrue("Sampling profiler test not enabled", Boolean.getBoolean(ENABLED_PROPERTY));
+
+        long[] threadResult = new long[1];
+        Thread thread = new Thread(() -> spinInThread(threadResult));
+        thread.start();
+        long result = spin(SPIN_NANOS);
+        thread.join();
+        Assert.assertNotEquals(0, result);
+        Assert.assertNotEquals(0, threadResult[0]);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests object monitors of objects that have no monitor slot. Arrays never get a monitor slot, so
+ * their monitors are kept in the secondary storage, which is striped by identity hash code.
+ */
+public class SecondaryMonitorTest {
+
+    private static final int THREADS = 8;
+    /** Many more objects than stripes, so every stripe is used by several threads. */
+    private static final int OBJECTS = 1024;
+    private static final int ROUNDS = 50;
+
+    private static Thread[] startThreads(Runnable task) {
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(task);
+            threads[i].start();
+        }
+        return threads;
+    }
+
+    private static void joinThreads(Thread[] threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /** All threads lock all objects, each starting at a different object. */
+    @Test
+    public void manyObjects() throws InterruptedException {
+        int[][] counters = new int[OBJECTS][1];
+        CountDownLatch start = new CountDownLatch(1);
+        int[] nextOffset = {0};
+        Thread[] threads = startThreads(() -> {
+            int offset;
+            synchronized (nextOffset) {
+                offset = nextOffset[0];
+                nextOffset[0] += OBJECTS / THREADS;
+            }
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < OBJECTS; i++) {
+                    int[] counter = counters[(offset + i) % OBJECTS];
+                    synchronized (counter) {
+                        synchronized (counter) {
+                            counter[0]++;
+                        }
+                    }
+                }
+            }
+        });
+        start.countDown();
+        joinThreads(threads);
+        for (int[] counter : counters) {
+            Assert.assertEquals(THREADS * ROUNDS, counter[0]);
+            Assert.assertFalse(Thread.holdsLock(counter));
+        }
+    }
+
+    /**
+     * Every thread locks objects that become unreachable right away, so that the monitors of
+     * collected objects are expunged while other threads use the same stripes.
+     */
+    @Test
+    public void freshObjects() throws InterruptedException {
+        int[] total = new int[1];
+        Thread[] threads = startThreads(() -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < OBJECTS; i++) {
+                    int[] counter = new int[1];
+                    synchronized (counter) {
+                        counter[0]++;
+                    }
+                    synchronized (total) {
+                        total[0] += counter[0];
+                    }
+                }
+                if (round % 10 == 0) {
+                    System.gc();
+                }
+            }
+        });
+        joinThreads(threads);
+        Assert.assertEquals(THREADS * ROUNDS * OBJECTS, total[0]);
+    }
+
+    /** Waiting releases the monitor of an object in the secondary storage. */
+    @Test
+    public void waitAndNotify() throws InterruptedException {
+        int[][] flags = new int[THREADS][1];
+        CountDownLatch waiting = new CountDownLatch(THREADS);
+        int[] nextIndex = {0};
+        Thread[] threads = startThreads(() -> {
+            int[] flag;
+            synchronized (nextIndex) {
+                flag = flags[nextIndex[0]++];
+            }
+            synchronized (flag) {
+                waiting.countDown();
+                while (flag[0] == 0) {
+                    try {
+                        flag.wait();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                flag[0]++;
+            }
+        });
+        Assert.assertTrue(waiting.await(1, TimeUnit.MINUTES));
+        for (int[] flag : flags) {
+            /* Only possible because the waiting thread released the monitor. */
+            synchronized (flag) {
+                flag[0] = 1;
+                flag.notifyAll();
+            }
+        }
+        joinThreads(threads);
+        for (int[] flag : flags) {
+            Assert.assertEquals(2, flag[0]);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests object monitors of objects that have a monitor slot. The native unittest gate also runs
+ * these tests in an image built with {@code -H:+ThinLocks -H:+DeoptimizeAll}, so that the monitors
+ * start out as thin locks and frames with eliminated locks are deoptimized.
+ */
+public class ThinLockTest {
+
+    private static final int THREADS = 4;
+    private static final int ITERATIONS = 10_000;
+    /** More than the number of thin lock tokens of a thread. */
+    private static final int RECURSION_DEPTH = 20;
+
+    static class Counter {
+        int value;
+    }
+
+    @Test
+    public void contention() throws InterruptedException {
+        Counter counter = new Counter();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    synchronized (counter) {
+                        synchronized (counter) {
+                            counter.value++;
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(THREADS * ITERATIONS, counter.value);
+        Assert.assertFalse(Thread.holdsLock(counter));
+    }
+
+    /** The lock is inflated by a contending thread while the owner holds it recursively. */
+    @Test
+    public void inflationKeepsOwnerAndDepth() throws InterruptedException {
+        Counter counter = new Counter();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch contended = new CountDownLatch(1);
+        int[] valueSeenByContender = {-1};
+        Thread contender = new Thread(() -> {
+            try {
+                locked.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            contended.countDown();
+            synchronized (counter) {
+                valueSeenByContender[0] = counter.value;
+                counter.value++;
+            }
+        });
+        contender.start();
+        synchronized (counter) {
+            synchronized (counter) {
+                synchronized (counter) {
+                    locked.countDown();
+                    contended.await();
+                    waitUntilBlocked(contender);
+                    Assert.assertTrue(Thread.holdsLock(counter));
+                    counter.value++;
+                }
+                Assert.assertTrue(Thread.holdsLock(counter));
+                counter.value++;
+            }
+            Assert.assertTrue(Thread.holdsLock(counter));
+            counter.value++;
+        }
+        Assert.assertFalse(Thread.holdsLock(counter));
+        contender.join();
+        Assert.assertEquals("Contender acquired the lock before the owner released it", 3, valueSeenByContender[0]);
+        Assert.assertEquals(4, counter.value);
+    }
+
+    @Test
+    public void waitAndNotify() throws InterruptedException {
+        Counter counter = new Counter();
+        Thread notifier = new Thread(() -> {
+            synchronized (counter) {
+                counter.value = 1;
+                counter.notifyAll();
+            }
+        });
+        synchronized (counter) {
+            notifier.start();
+            while (counter.value == 0) {
+                counter.wait(TimeUnit.SECONDS.toMillis(1));
+            }
+            Assert.assertTrue(Thread.holdsLock(counter));
+        }
+        notifier.join();
+        Assert.assertFalse(Thread.holdsLock(counter));
+    }
+
+    @Test
+    public void waitWithRecursiveLock() throws InterruptedException {
+        Counter counter = new Counter();
+        synchronized (counter) {
+            synchronized (counter) {
+                counter.wait(1);
+                Assert.assertTrue(Thread.holdsLock(counter));
+            }
+            Assert.assertTrue(Thread.holdsLock(counter));
+        }
+        Assert.assertFalse(Thread.holdsLock(counter));
+        assertLockableByOtherThread(counter);
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void notifyWithoutLock() {
+        Counter counter = new Counter();
+        synchronized (counter) {
+            counter.value++;
+        }
+        counter.notify();
+    }
+
+    @Test
+    public void recursionOverflow() throws InterruptedException {
+        Counter counter = new Counter();
+        lockRecursively(counter, RECURSION_DEPTH);
+        Assert.assertEquals(RECURSION_DEPTH, counter.value);
+        Assert.assertFalse(Thread.holdsLock(counter));
+        assertLockableByOtherThread(counter);
+    }
+
+    private static void lockRecursively(Counter counter, int depth) {
+        if (depth == 0) {
+            return;
+        }
+        synchronized (counter) {
+            counter.value++;
+            lockRecursively(counter, depth - 1);
+            Assert.assertTrue(Thread.holdsLock(counter));
+        }
+    }
+
+    /**
+     * The locks of the object are eliminated while it is virtual. When the frame is deoptimized,
+     * for example with {@code -H:+DeoptimizeAll}, the object is materialized and re-locked.
+     */
+    @Test
+    public void relockDuringDeoptimization() {
+        Assert.assertEquals(2 * ITERATIONS, lockVirtualObject(ITERATIONS));
+    }
+
+    private static int lockVirtualObject(int iterations) {
+        Counter counter = new Counter();
+        for (int i = 0; i < iterations; i++) {
+            synchronized (counter) {
+                synchronized (counter) {
+                    counter.value += increment();
+                }
+            }
+        }
+        return counter.value;
+    }
+
+    private static int increment() {
+        return Integer.parseInt("2");
+    }
+
+    private static void assertLockableByOtherThread(Object obj) throws InterruptedException {
+        boolean[] acquired = {false};
+        Thread thread = new Thread(() -> {
+            synchronized (obj) {
+                acquired[0] = true;
+            }
+        });
+        thread.start();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertTrue("Lock is still held after all unlocks", acquired[0]);
+    }
+
+    private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.BLOCKED && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -42,6 +42,7 @@ package org.graalvm.wasm.test;
 
 import com.oracle.truffle.api.TruffleLanguage;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
@@ -115,6 +116,117 @@ public class WasmPolyglotTestSuite {
         Assert.assertEquals("Should be equal: ", 11, result.asInt());
     }
 
+    @Test
+    public void sharedEngine() throws IOException, InterruptedException {
+        final Source counter = Source.newBuilder("wasm", ByteSequence.create(compileWat("counter", textCounter)), "counter").build();
+        final Source other = Source.newBuilder("wasm", ByteSequence.create(compileWat("other", textOverwriteElement)), "other").build();
+        try (Engine engine = Engine.create()) {
+            try (Context first = Context.newBuilder("wasm").engine(engine).build(); Context second = Context.newBuilder("wasm").engine(engine).build()) {
+                first.eval(counter);
+                final Value firstIncrement = first.getBindings("wasm").getMember("main").getMember("increment");
+                Assert.assertEquals("Should be equal: ", 1, firstIncrement.execute().asInt());
+                Assert.assertEquals("Should be equal: ", 2, firstIncrement.execute().asInt());
+
+                // The first module evaluated in every context is named main.
+                second.eval(other);
+                Assert.assertEquals("Should be equal: ", 11, second.getBindings("wasm").getMember("main").getMember("main").execute().asInt());
+
+                // Each context has its own instance of the shared module, with its own globals.
+                second.eval(counter);
+                final Value secondIncrement = second.getBindings("wasm").getMember("counter").getMember("increment");
+                Assert.assertEquals("Should be equal: ", 1, secondIncrement.execute().asInt());
+                Assert.assertEquals("Should be equal: ", 3, firstIncrement.execute().asInt());
+
+                // Evaluating the same source again returns the existing instance.
+                second.eval(counter);
+                Assert.assertEquals("Should be equal: ", 2, secondIncrement.execute().asInt());
+                Assert.assertTrue("Must not be instantiated under another name.", !second.getBindings("wasm").getMember("main").hasMember("increment"));
+            }
+        }
+    }
+
+    @Test
+    public void sharedEngineIndirectCallTypes() throws IOException, InterruptedException {
+        final Source table = Source.newBuilder("wasm", ByteSequence.create(compileWat("table", textFunctionTable)), "table").build();
+        final byte[] caller = compileWat("caller", textTableCaller);
+        try (Engine engine = Engine.create()) {
+            try (Context first = Context.newBuilder("wasm").engine(engine).build(); Context second = Context.newBuilder("wasm").engine(engine).build()) {
+                first.eval(table);
+                first.eval(Source.newBuilder("wasm", ByteSequence.create(caller), "caller").build());
+                checkIndirectCallTypes(first.getBindings("wasm").getMember("caller"));
+
+                // The table module is shared, and linked together with a module that is new in
+                // this context, so the type equivalence classes must agree across contexts.
+                second.eval(table);
+                second.eval(Source.newBuilder("wasm", ByteSequence.create(caller), "otherCaller").build());
+                checkIndirectCallTypes(second.getBindings("wasm").getMember("otherCaller"));
+            }
+        }
+    }
+
+    private static void checkIndirectCallTypes(Value caller) {
+        Assert.assertEquals("Should be equal: ", 42, caller.getMember("answer").execute().asInt());
+        try {
+            caller.getMember("mismatch").execute();
+            Assert.fail("An indirect call with a different type must fail.");
+        } catch (PolyglotException pex) {
+            Assert.assertTrue("Must not be an internal error.", !pex.isInternalError());
+        }
+    }
+
+    private static Context functionParsingContext(String option) {
+        return Context.newBuilder("wasm").allowExperimentalOptions(true).option(option, "true").build();
+    }
+
+    @Test
+    public void lazyFunctionParsing() throws IOException, InterruptedException {
+        final Source source = Source.newBuilder("wasm", ByteSequence.create(compileWat("test", textOverwriteElement)), "main").build();
+        try (Context context = functionParsingContext("wasm.LazyFunctionParsing")) {
+            context.eval(source);
+            Value mainFunction = context.getBindings("wasm").getMember("main").getMember("main");
+            Assert.assertEquals("Should be equal: ", 11, mainFunction.execute().asInt());
+            Assert.assertEquals("Should be equal: ", 11, mainFunction.execute().asInt());
+        }
+    }
+
+    @Test
+    public void lazyFunctionParsingDefersValidation() throws IOException {
+        final Source source = Source.newBuilder("wasm", ByteSequence.create(binaryInvalidFunction), "main").build();
+        try (Context context = functionParsingContext("wasm.LazyFunctionParsing")) {
+            context.eval(source);
+            final Value mainModule = context.getBindings("wasm").getMember("main");
+            Assert.assertEquals("Should be equal: ", 42, mainModule.getMember("valid").execute().asInt());
+            try {
+                mainModule.getMember("invalid").execute();
+                Assert.fail("Calling an invalid function must fail.");
+            } catch (PolyglotException pex) {
+                Assert.assertTrue("Must not be an internal error.", !pex.isInternalError());
+            }
+            Assert.assertEquals("Should be equal: ", 42, mainModule.getMember("valid").execute().asInt());
+        }
+    }
+
+    @Test
+    public void parallelFunctionParsing() throws IOException, InterruptedException {
+        final Source source = Source.newBuilder("wasm", ByteSequence.create(compileWat("test", textOverwriteElement)), "main").build();
+        try (Context context = functionParsingContext("wasm.ParallelFunctionParsing")) {
+            context.eval(source);
+            Value mainFunction = context.getBindings("wasm").getMember("main").getMember("main");
+            Assert.assertEquals("Should be equal: ", 11, mainFunction.execute().asInt());
+        }
+    }
+
+    @Test
+    public void parallelFunctionParsingReportsInvalidFunction() throws IOException {
+        final Source source = Source.newBuilder("wasm", ByteSequence.create(binaryInvalidFunction), "main").build();
+        try (Context context = functionParsingContext("wasm.ParallelFunctionParsing")) {
+            context.eval(source);
+            Assert.fail("Instantiating a module with an invalid function must fail.");
+        } catch (PolyglotException pex) {
+            Assert.assertTrue("Must not be an internal error.", !pex.isInternalError());
+        }
+    }
+
     // (module
     // (type (;0;) (func))
     // (type (;1;) (func (result i32)))
@@ -140,6 +252,20 @@ public class WasmPolyglotTestSuite {
                     "74615f656e6403020a090202000b0400",
                     "412a0b");
 
+    // (module
+    // (type (;0;) (func (result i32)))
+    // (func (;0;) (type 0) (result i32)
+    // i32.const 42)
+    // (func (;1;) (type 0) (result i32))
+    // (export "valid" (func 0))
+    // (export "invalid" (func 1)))
+    // The body of the second function does not produce its result, so it is invalid.
+    private static final byte[] binaryInvalidFunction = hexStringToByteArray(
+                    "0061736d010000000105016000017f03",
+                    "030200000713020576616c6964000007",
+                    "696e76616c696400010a0902040041",
+                    "2a0b02000b");
+
     private static final String textOverwriteElement = "(module" +
                     "  (table 10 funcref)\n" +
                     "  (type (func (result i32)))\n" +
@@ -157,4 +283,38 @@ public class WasmPolyglotTestSuite {
                     "  (elem (i32.const 5) $f)\n" +
                     "  (elem (i32.const 3) $g)\n" +
                     ")";
+
+    private static final String textCounter = "(module" +
+                    "  (global $counter (mut i32) (i32.const 0))\n" +
+                    "  (func (export \"increment\") (result i32)\n" +
+                    "    global.get $counter\n" +
+                    "    i32.const 1\n" +
+                    "    i32.add\n" +
+                    "    global.set $counter\n" +
+                    "    global.get $counter)\n" +
+                    ")";
+
+    private static final String textFunctionTable = "(module" +
+                    "  (type (func (param i64) (result i64)))\n" +
+                    "  (type (func (result i32)))\n" +
+                    "  (table (export \"table\") 2 funcref)\n" +
+                    "  (func $identity (type 0)\n" +
+                    "    local.get 0)\n" +
+                    "  (func $answer (type 1)\n" +
+                    "    i32.const 42)\n" +
+                    "  (elem (i32.const 0) $identity $answer)\n" +
+                    ")";
+
+    private static final String textTableCaller = "(module" +
+                    "  (type (func (result i32)))\n" +
+                    "  (type (func (param i32) (result i32)))\n" +
+                    "  (import \"main\" \"table\" (table 2 funcref))\n" +
+                    "  (func (export \"answer\") (result i32)\n" +
+                    "    i32.const 1\n" +
+                    "    call_indirect (type 0))\n" +
+                    "  (func (export \"mismatch\") (result i32)\n" +
+                    "    i32.const 0\n" +
+                    "    i32.const 1\n" +
+                    "    call_indirect (type 1))\n" +
+                    ")";
 }
@@ -70,6 +70,11 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 
 import static org.graalvm.wasm.WasmType.F32_TYPE;
 import static org.graalvm.wasm.WasmType.F64_TYPE;
@@ -108,6 +113,18 @@ public class BinaryParser extends BinaryStreamParser {
     private final ModuleLimits moduleLimits;
     private final int[] limitsResult;
 
+    /**
+     * If not {@code null}, the link actions of the parsed code entry are collected here instead of
+     * being added to the instance, so that code entries can be parsed in parallel. See
+     * {@link #readCodeEntriesInParallel}.
+     */
+    private ArrayList<BiConsumer<WasmContext, WasmInstance>> codeEntryLinkActions;
+    /**
+     * If not {@code null}, the code entry is parsed after the instance was linked, and its call
+     * sites are resolved directly after parsing. See {@link #readLazyCodeEntry}.
+     */
+    private ArrayList<Runnable> callsiteResolutions;
+
     public BinaryParser(WasmLanguage language, WasmModule module) {
         this(language, module, null);
     }
@@ -144,9 +161,7 @@ public class BinaryParser extends BinaryStreamParser {
                 }
             };
             final String name = "wasm-parsing-thread(" + instance.name() + ")";
-            final int requestedSize = WasmOptions.AsyncParsingStackSize.getValue(context.environment().getOptions()) * 1000;
-            final int defaultSize = Math.max(MIN_DEFAULT_STACK_SIZE, Math.min(2 * binarySize, MAX_DEFAULT_ASYNC_STACK_SIZE));
-            final int stackSize = requestedSize != 0 ? requestedSize : defaultSize;
+            final int stackSize = parsingStackSize(context, binarySize);
             final Thread parsingThread = new Thread(null, parsing, name, stackSize);
             final ParsingExceptionHandler handler = new ParsingExceptionHandler();
             parsingThread.setUncaughtExceptionHandler(handler);
@@ -162,6 +177,12 @@ public class BinaryParser extends BinaryStreamParser {
         }
     }
 
+    private static int parsingStackSize(WasmContext context, int size) {
+        final int requestedSize = WasmOptions.AsyncParsingStackSize.getValue(context.environment().getOptions()) * 1000;
+        final int defaultSize = Math.max(MIN_DEFAULT_STACK_SIZE, Math.min(2 * size, MAX_DEFAULT_ASYNC_STACK_SIZE));
+        return requestedSize != 0 ? requestedSize : defaultSize;
+    }
+
     private void readInstanceSynchronously(WasmContext context, WasmInstance instance) {
         if (tryJumpToSection(Section.CODE)) {
             readCodeSection(context, instance);
@@ -365,20 +386,106 @@ public class BinaryParser extends BinaryStreamParser {
         for (int entry = 0; entry != numCodeEntries; ++entry) {
             rootNodes[entry] = createCodeEntry(instance, functionIndexOffset + entry);
         }
+        final int[] entryOffsets = new int[numCodeEntries];
+        final int[] entrySizes = new int[numCodeEntries];
+        int maxEntrySize = 0;
         for (int entryIndex = 0; entryIndex != numCodeEntries; ++entryIndex) {
-            int codeEntrySize = readUnsignedInt32();
-            int startOffset = offset;
-            readCodeEntry(instance, functionIndexOffset + entryIndex, rootNodes[entryIndex]);
-            Assert.assertIntEqual(offset - startOffset, codeEntrySize, String.format("Code entry %d size is incorrect", entryIndex), Failure.UNSPECIFIED_MALFORMED);
-            final int currentEntryIndex = entryIndex;
-            context.linker().resolveCodeEntry(module, currentEntryIndex);
+            entrySizes[entryIndex] = readUnsignedInt32();
+            entryOffsets[entryIndex] = offset;
+            maxEntrySize = Math.max(maxEntrySize, entrySizes[entryIndex]);
+            offset += entrySizes[entryIndex];
+        }
+        final int sectionEnd = offset;
+        if (WasmOptions.LazyFunctionParsing.getValue(context.environment().getOptions())) {
+            for (int entryIndex = 0; entryIndex != numCodeEntries; ++entryIndex) {
+                final int funcIndex = functionIndexOffset + entryIndex;
+                final int entryOffset = entryOffsets[entryIndex];
+                final int entrySize = entrySizes[entryIndex];
+                final int currentEntryIndex = entryIndex;
+                rootNodes[entryIndex].setBodyParser(rootNode -> new BinaryParser(language, module).readLazyCodeEntry(instance, funcIndex, rootNode, entryOffset, entrySize, currentEntryIndex));
+            }
+        } else if (numCodeEntries > 1 && WasmOptions.ParallelFunctionParsing.getValue(context.environment().getOptions())) {
+            readCodeEntriesInParallel(instance, rootNodes, functionIndexOffset, entryOffsets, entrySizes, parsingStackSize(context, maxEntrySize));
+        } else {
+            for (int entryIndex = 0; entryIndex != numCodeEntries; ++entryIndex) {
+                offset = entryOffsets[entryIndex];
+                readCodeEntry(instance, functionIndexOffset + entryIndex, rootNodes[entryIndex]);
+                checkCodeEntrySize(entryOffsets[entryIndex], entrySizes[entryIndex], entryIndex);
+            }
+        }
+        for (int entryIndex = 0; entryIndex != numCodeEntries; ++entryIndex) {
+            context.linker().resolveCodeEntry(module, entryIndex);
+        }
+        offset = sectionEnd;
+    }
+
+    private void checkCodeEntrySize(int startOffset, int codeEntrySize, int entryIndex) {
+        Assert.assertIntEqual(offset - startOffset, codeEntrySize, String.format("Code entry %d size is incorrect", entryIndex), Failure.UNSPECIFIED_MALFORMED);
+    }
+
+    /**
+     * Parses and validates the code entries on the {@linkplain WasmLanguage#parsingExecutor pool of
+     * parsing threads}. Each code entry is read by a separate parser, and the link actions of the
+     * code entries are added to the instance in the order of the code entries, as if they were
+     * parsed sequentially. The parsing threads use at least the same stack size as asynchronous
+     * parsing, because the body of a code entry is parsed recursively.
+     */
+    private void readCodeEntriesInParallel(WasmInstance instance, WasmRootNode[] rootNodes, int functionIndexOffset, int[] entryOffsets, int[] entrySizes, int stackSize) {
+        final int numCodeEntries = rootNodes.length;
+        final ExecutorService executor = language.parsingExecutor(stackSize);
+        final List<Future<ArrayList<BiConsumer<WasmContext, WasmInstance>>>> results = new ArrayList<>(numCodeEntries);
+        try {
+            for (int entryIndex = 0; entryIndex != numCodeEntries; ++entryIndex) {
+                final int currentEntryIndex = entryIndex;
+                results.add(executor.submit(() -> {
+                    final BinaryParser parser = new BinaryParser(language, module);
+                    parser.offset = entryOffsets[currentEntryIndex];
+                    parser.codeEntryLinkActions = new ArrayList<>();
+                    parser.readCodeEntry(instance, functionIndexOffset + currentEntryIndex, rootNodes[currentEntryIndex]);
+                    parser.checkCodeEntrySize(entryOffsets[currentEntryIndex], entrySizes[currentEntryIndex], currentEntryIndex);
+                    return parser.codeEntryLinkActions;
+                }));
+            }
+            for (Future<ArrayList<BiConsumer<WasmContext, WasmInstance>>> result : results) {
+                for (BiConsumer<WasmContext, WasmInstance> linkAction : result.get()) {
+                    instance.addLinkAction(linkAction);
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Parallel parsing failed.", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw WasmException.create(Failure.UNSPECIFIED_INVALID, "Parallel parsing interrupted.");
+        } finally {
+            for (Future<?> result : results) {
+                result.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Parses and validates a code entry on the first call of its function, after the instance was
+     * linked. See {@link WasmOptions#LazyFunctionParsing}.
+     */
+    private void readLazyCodeEntry(WasmInstance instance, int funcIndex, WasmRootNode rootNode, int entryOffset, int entrySize, int entryIndex) {
+        offset = entryOffset;
+        callsiteResolutions = new ArrayList<>();
+        readCodeEntry(instance, funcIndex, rootNode);
+        checkCodeEntrySize(entryOffset, entrySize, entryIndex);
+        for (Runnable resolution : callsiteResolutions) {
+            resolution.run();
         }
     }
 
     private WasmRootNode createCodeEntry(WasmInstance instance, int funcIndex) {
         final WasmFunction function = module.symbolTable().function(funcIndex);
         WasmCodeEntry codeEntry = new WasmCodeEntry(function, data);
-        function.setCodeEntry(codeEntry);
 
         /*
          * Create the root node and create and set the call target for the body. This needs to be
@@ -396,7 +503,7 @@ public class BinaryParser extends BinaryStreamParser {
         /*
          * Initialise the code entry local variables (which contain the parameters and the locals).
          */
-        initCodeEntryLocals(funcIndex);
+        initCodeEntryLocals(funcIndex, rootNode.codeEntry());
 
         /* Read (parse) and abstractly interpret the code entry */
         final WasmFunction function = module.symbolTable().function(funcIndex);
@@ -435,8 +542,7 @@ public class BinaryParser extends BinaryStreamParser {
         return localTypes;
     }
 
-    private void initCodeEntryLocals(int funcIndex) {
-        WasmCodeEntry codeEntry = module.symbolTable().function(funcIndex).codeEntry();
+    private void initCodeEntryLocals(int funcIndex, WasmCodeEntry codeEntry) {
         int typeIndex = module.symbolTable().function(funcIndex).typeIndex();
         ByteArrayList argumentTypes = module.symbolTable().functionTypeArgumentTypes(typeIndex);
         ByteArrayList localTypes = readCodeEntryLocals();
@@ -454,6 +560,16 @@ public class BinaryParser extends BinaryStreamParser {
         return readLoop(instance, codeEntry, state, blockTypeId);
     }
 
+    private void addCallsiteLinkAction(WasmInstance instance, WasmBlockNode block, int stubIndex, WasmFunction function) {
+        if (callsiteResolutions != null) {
+            callsiteResolutions.add(() -> block.resolveCallNode(stubIndex));
+        } else if (codeEntryLinkActions != null) {
+            codeEntryLinkActions.add((context, inst) -> context.linker().resolveCallsite(inst, block, stubIndex, function));
+        } else {
+            instance.addLinkAction((context, inst) -> context.linker().resolveCallsite(inst, block, stubIndex, function));
+        }
+    }
+
     private WasmBlockNode readBlockBody(WasmInstance instance, WasmCodeEntry codeEntry, ExecutionState state, byte returnTypeId, boolean isLoopBody) {
         ArrayList<Node> children = new ArrayList<>();
         int startStackSize = state.stackSize();
@@ -522,7 +638,9 @@ public class BinaryParser extends BinaryStreamParser {
                     }
                     break;
                 case Instructions.BR: {
+                    final int immediateOffset = offset();
                     final int unwindLevel = readTargetOffset();
+                    state.useImmediate(unwindLevel, offset() - immediateOffset);
                     final int targetStackSize = state.getStackSize(unwindLevel);
                     state.useIntConstant(targetStackSize);
                     state.useIntConstant(state.getContinuationLength(unwindLevel));
@@ -533,7 +651,9 @@ public class BinaryParser extends BinaryStreamParser {
                 }
                 case Instructions.BR_IF: {
                     state.popChecked(I32_TYPE); // condition
+                    final int immediateOffset = offset();
                     final int unwindLevel = readTargetOffset();
+                    state.useImmediate(unwindLevel, offset() - immediateOffset);
                     final int targetStackSize = state.getStackSize(unwindLevel);
                     state.useIntConstant(targetStackSize);
                     final int continuationReturnLength = state.getContinuationLength(unwindLevel);
@@ -588,7 +708,9 @@ public class BinaryParser extends BinaryStreamParser {
                     break;
                 }
                 case Instructions.CALL: {
+                    final int immediateOffset = offset();
                     final int functionIndex = readFunctionIndex();
+                    state.useImmediate(functionIndex, offset() - immediateOffset);
 
                     // Pop arguments
                     final WasmFunction function = module.symbolTable().function(functionIndex);
@@ -612,11 +734,12 @@ public class BinaryParser extends BinaryStreamParser {
                     // after the call target from the other module exists.
                     children.add(new WasmCallStubNode(function));
                     final int stubIndex = children.size() - 1;
-                    module.addLinkAction((context, inst) -> context.linker().resolveCallsite(inst, currentBlock, stubIndex, function));
+                    addCallsiteLinkAction(instance, currentBlock, stubIndex, function);
 
                     break;
                 }
                 case Instructions.CALL_INDIRECT: {
+                    final int immediateOffset = offset();
                     int expectedFunctionTypeIndex = readTypeIndex();
 
                     // Pop the function index to call
@@ -635,6 +758,7 @@ public class BinaryParser extends BinaryStreamParser {
 
                     children.add(WasmIndirectCallNode.create());
                     Assert.assertIntEqual(read1(), CallIndirect.ZERO_TABLE, "CALL_INDIRECT: Instruction must end with 0x00", Failure.UNSPECIFIED_MALFORMED);
+                    state.useImmediate(expectedFunctionTypeIndex, offset() - immediateOffset);
                     break;
                 }
                 case Instructions.DROP:
@@ -647,21 +771,27 @@ public class BinaryParser extends BinaryStreamParser {
                     state.push(t);
                     break;
                 case Instructions.LOCAL_GET: {
+                    final int immediateOffset = offset();
                     final int localIndex = readLocalIndex();
+                    state.useImmediate(localIndex, offset() - immediateOffset);
                     // Assert localIndex exists.
                     Assert.assertIntLessOrEqual(localIndex, codeEntry.numLocals(), "Invalid local index for local.get", Failure.UNSPECIFIED_MALFORMED);
                     state.push(codeEntry.localType(localIndex));
                     break;
                 }
                 case Instructions.LOCAL_SET: {
+                    final int immediateOffset = offset();
                     final int localIndex = readLocalIndex();
+                    state.useImmediate(localIndex, offset() - immediateOffset);
                     // Assert localIndex exists.
                     Assert.assertIntLessOrEqual(localIndex, codeEntry.numLocals(), "Invalid local index for local.set", Failure.UNSPECIFIED_MALFORMED);
                     state.popChecked(codeEntry.localType(localIndex));
                     break;
                 }
                 case Instructions.LOCAL_TEE: {
+                    final int immediateOffset = offset();
                     final int localIndex = readLocalIndex();
+                    state.useImmediate(localIndex, offset() - immediateOffset);
                     // Assert localIndex exists.
                     Assert.assertIntLessOrEqual(localIndex, codeEntry.numLocals(), "Invalid local index for local.tee", Failure.UNSPECIFIED_MALFORMED);
                     state.popChecked(codeEntry.localType(localIndex));
@@ -669,14 +799,18 @@ public class BinaryParser extends BinaryStreamParser {
                     break;
                 }
                 case Instructions.GLOBAL_GET: {
+                    final int immediateOffset = offset();
                     final int index = readGlobalIndex();
+                    state.useImmediate(index, offset() - immediateOffset);
                     Assert.assertIntLessOrEqual(index, module.symbolTable().maxGlobalIndex(),
                                     "Invalid global index for global.get.", Failure.UNSPECIFIED_MALFORMED);
                     state.push(module.symbolTable().globalValueType(index));
                     break;
                 }
                 case Instructions.GLOBAL_SET: {
+                    final int immediateOffset = offset();
                     final int index = readGlobalIndex();
+                    state.useImmediate(index, offset() - immediateOffset);
                     // Assert localIndex exists.
                     Assert.assertIntLessOrEqual(index, module.symbolTable().maxGlobalIndex(),
                                     "Invalid global index for global.set.", Failure.UNSPECIFIED_MALFORMED);
@@ -737,14 +871,20 @@ public class BinaryParser extends BinaryStreamParser {
                     state.push(I32_TYPE);
                     break;
                 }
-                case Instructions.I32_CONST:
-                    readSignedInt32();
+                case Instructions.I32_CONST: {
+                    final int immediateOffset = offset();
+                    final int value = readSignedInt32();
+                    state.useImmediate(value, offset() - immediateOffset);
                     state.push(I32_TYPE);
                     break;
-                case Instructions.I64_CONST:
-                    readSignedInt64();
+                }
+                case Instructions.I64_CONST: {
+                    final int immediateOffset = offset();
+                    final long value = readSignedInt64();
+                    state.useImmediate(value, offset() - immediateOffset);
                     state.push(I64_TYPE);
                     break;
+                }
                 case Instructions.F32_CONST:
                     read4();
                     state.push(F32_TYPE);
@@ -992,8 +1132,10 @@ public class BinaryParser extends BinaryStreamParser {
         // We don't store the `align` literal, as our implementation does not make use
         // of it, but we need to store its byte length, so that we can skip it
         // during the execution.
+        final int immediateOffset = offset();
         readUnsignedInt32(); // align hint
-        readUnsignedInt32(); // store offset
+        final int storeOffset = readUnsignedInt32(); // store offset
+        state.useImmediate(storeOffset, offset() - immediateOffset);
         state.popChecked(type); // value to store
         state.popChecked(I32_TYPE); // base address
     }
@@ -1002,8 +1144,10 @@ public class BinaryParser extends BinaryStreamParser {
         // We don't store the `align` literal, as our implementation does not make use
         // of it, but we need to store its byte length, so that we can skip it
         // during execution.
+        final int immediateOffset = offset();
         readUnsignedInt32(); // align hint
-        readUnsignedInt32(); // load offset
+        final int loadOffset = readUnsignedInt32(); // load offset
+        state.useImmediate(loadOffset, offset() - immediateOffset);
         state.popChecked(I32_TYPE); // base address
         state.push(type); // loaded value
     }
@@ -145,6 +145,25 @@ public class ExecutionState {
         intConstants.add(constant);
     }
 
+    /**
+     * Stores the decoded value of an immediate operand and the number of bytes that the operand and
+     * any following fixed operands take up in the instruction stream, so that the interpreter does
+     * not have to decode the LEB128 encoding again.
+     */
+    public void useImmediate(int value, int byteLength) {
+        intConstants.add(value);
+        intConstants.add(byteLength);
+    }
+
+    /**
+     * Like {@link #useImmediate(int, int)}, with the value split into its high and low halves.
+     */
+    public void useImmediate(long value, int byteLength) {
+        intConstants.add((int) (value >>> 32));
+        intConstants.add((int) value);
+        intConstants.add(byteLength);
+    }
+
     public int depth() {
         return ancestors.size();
     }
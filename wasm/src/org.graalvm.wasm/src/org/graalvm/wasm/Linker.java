@@ -47,7 +47,6 @@ import org.graalvm.wasm.Linker.ResolutionDag.ExportMemorySym;
 import org.graalvm.wasm.Linker.ResolutionDag.ImportMemorySym;
 import org.graalvm.wasm.Linker.ResolutionDag.Resolver;
 import org.graalvm.wasm.Linker.ResolutionDag.Sym;
-import org.graalvm.wasm.SymbolTable.FunctionType;
 import org.graalvm.wasm.constants.GlobalModifier;
 import org.graalvm.wasm.exception.Failure;
 import org.graalvm.wasm.exception.WasmException;
@@ -116,13 +115,19 @@ public class Linker {
                     for (BiConsumer<WasmContext, WasmInstance> action : instance.module().linkActions()) {
                         action.accept(context, instance);
                     }
+                    for (BiConsumer<WasmContext, WasmInstance> action : instance.linkActions()) {
+                        action.accept(context, instance);
+                    }
                 }
             }
             linkTopologically();
             assignTypeEquivalenceClasses();
             for (WasmInstance instance : instances.values()) {
                 if (instance.isLinkInProgress()) {
-                    instance.module().setParsed();
+                    final WasmModule module = instance.module();
+                    synchronized (module) {
+                        module.setParsed();
+                    }
                 }
             }
             for (WasmInstance instance : instances.values()) {
@@ -144,31 +149,36 @@ public class Linker {
         }
     }
 
+    /**
+     * Assigns the type equivalence classes of the modules that are linked for the first time. The
+     * classes come from the language-wide table, because a parsed module is shared by all the
+     * contexts of the engine, and an indirect call compares the classes of types from different
+     * modules.
+     */
     private static void assignTypeEquivalenceClasses() {
-        final Map<String, WasmInstance> instances = WasmContext.getCurrent().moduleInstances();
-        final Map<FunctionType, Integer> equivalenceClasses = new HashMap<>();
-        int nextEquivalenceClass = SymbolTable.FIRST_EQUIVALENCE_CLASS;
-        for (WasmInstance instance : instances.values()) {
-            if (instance.isLinkInProgress() && !instance.module().isParsed()) {
-                final SymbolTable symtab = instance.symbolTable();
-                for (int index = 0; index < symtab.typeCount(); index++) {
-                    FunctionType type = symtab.typeAt(index);
-                    Integer equivalenceClass = equivalenceClasses.get(type);
-                    if (equivalenceClass == null) {
-                        equivalenceClass = nextEquivalenceClass;
-                        equivalenceClasses.put(type, equivalenceClass);
-                        nextEquivalenceClass++;
+        final WasmContext context = WasmContext.getCurrent();
+        for (WasmInstance instance : context.moduleInstances().values()) {
+            if (instance.isLinkInProgress()) {
+                final WasmModule module = instance.module();
+                synchronized (module) {
+                    if (!module.isParsed()) {
+                        assignTypeEquivalenceClasses(context.language(), module.symbolTable());
                     }
-                    symtab.setEquivalenceClass(index, equivalenceClass);
-                }
-                for (int index = 0; index < symtab.numFunctions(); index++) {
-                    final WasmFunction function = symtab.function(index);
-                    function.setTypeEquivalenceClass(symtab.equivalenceClass(function.typeIndex()));
                 }
             }
         }
     }
 
+    private static void assignTypeEquivalenceClasses(WasmLanguage language, SymbolTable symtab) {
+        for (int index = 0; index < symtab.typeCount(); index++) {
+            symtab.setEquivalenceClass(index, language.equivalenceClass(symtab.typeAt(index)));
+        }
+        for (int index = 0; index < symtab.numFunctions(); index++) {
+            final WasmFunction function = symtab.function(index);
+            function.setTypeEquivalenceClass(symtab.equivalenceClass(function.typeIndex()));
+        }
+    }
+
     void resolveGlobalImport(WasmContext context, WasmInstance instance, ImportDescriptor importDescriptor, int globalIndex, byte valueType, byte mutability) {
         final String importedGlobalName = importDescriptor.memberName;
         final String importedModuleName = importDescriptor.moduleName;
@@ -327,10 +337,7 @@ public class Linker {
             } else {
                 baseAddress = offsetAddress;
             }
-            for (int writeOffset = 0; writeOffset != byteLength; ++writeOffset) {
-                byte b = data[writeOffset];
-                memory.store_i32_8(null, baseAddress + writeOffset, b);
-            }
+            memory.initialize(data, 0, baseAddress, byteLength);
         };
         final ArrayList<Sym> dependencies = new ArrayList<>();
         if (instance.symbolTable().importedMemory() != null) {
@@ -110,15 +110,7 @@ public abstract class SymbolTable {
                 return false;
             }
             FunctionType that = (FunctionType) object;
-            if (this.returnType != that.returnType) {
-                return false;
-            }
-            for (int i = 0; i < paramTypes.length; i++) {
-                if (this.paramTypes[i] != that.paramTypes[i]) {
-                    return false;
-                }
-            }
-            return true;
+            return this.returnType == that.returnType && Arrays.equals(this.paramTypes, that.paramTypes);
         }
     }
 
@@ -427,7 +419,7 @@ public abstract class SymbolTable {
 
     void setEquivalenceClass(int index, int eqClass) {
         checkNotParsed();
-        if (typeEquivalenceClasses[index] != NO_EQUIVALENCE_CLASS) {
+        if (typeEquivalenceClasses[index] != NO_EQUIVALENCE_CLASS && typeEquivalenceClasses[index] != eqClass) {
             throw WasmException.create(Failure.UNSPECIFIED_INVALID, "Type at index " + index + " already has an equivalence class.");
         }
         typeEquivalenceClasses[index] = eqClass;
@@ -57,6 +57,7 @@ public final class WasmContext {
     private final Linker linker;
     private final Map<String, WasmInstance> moduleInstances;
     private int moduleNameCount;
+    private boolean isFirstEvaluatedModule;
 
     public static WasmContext getCurrent() {
         return WasmLanguage.getCurrentContext();
@@ -71,6 +72,7 @@ public final class WasmContext {
         this.moduleInstances = new LinkedHashMap<>();
         this.linker = new Linker();
         this.moduleNameCount = 0;
+        this.isFirstEvaluatedModule = true;
         instantiateBuiltinInstances();
     }
 
@@ -135,6 +137,22 @@ public final class WasmContext {
         }
     }
 
+    /**
+     * Returns the name of the next module evaluated from a source in this context. The first such
+     * module is named {@code main}, the others are named after their source.
+     */
+    public String evaluatedModuleName(String sourceName) {
+        return isFirstEvaluatedModule ? "main" : sourceName;
+    }
+
+    /**
+     * Called when a module evaluated from a source was instantiated in this context. See
+     * {@link #evaluatedModuleName}.
+     */
+    public void evaluatedModuleInstantiated() {
+        isFirstEvaluatedModule = false;
+    }
+
     private String freshModuleName() {
         return "module-" + moduleNameCount++;
     }
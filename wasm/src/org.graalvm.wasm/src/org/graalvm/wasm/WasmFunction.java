@@ -46,7 +46,6 @@ public class WasmFunction {
     private final SymbolTable symbolTable;
     private final int index;
     private ImportDescriptor importDescriptor;
-    private WasmCodeEntry codeEntry;
     private final int typeIndex;
     private int typeEquivalenceClass;
 
@@ -57,7 +56,6 @@ public class WasmFunction {
         this.symbolTable = symbolTable;
         this.index = index;
         this.importDescriptor = importDescriptor;
-        this.codeEntry = null;
         this.typeIndex = typeIndex;
         this.typeEquivalenceClass = -1;
     }
@@ -103,17 +101,6 @@ public class WasmFunction {
         return "wasm-function:" + index;
     }
 
-    public WasmCodeEntry codeEntry() {
-        return codeEntry;
-    }
-
-    public void setCodeEntry(WasmCodeEntry codeEntry) {
-        if (isImported()) {
-            throw new RuntimeException("Cannot set the code entry for an imported function.");
-        }
-        this.codeEntry = codeEntry;
-    }
-
     public boolean isImported() {
         return importDescriptor != null;
     }
@@ -51,7 +51,9 @@ import org.graalvm.wasm.collection.IntArrayList;
 import org.graalvm.wasm.constants.GlobalModifier;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 import static com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import static com.oracle.truffle.api.CompilerDirectives.transferToInterpreter;
@@ -63,14 +65,29 @@ import static com.oracle.truffle.api.CompilerDirectives.transferToInterpreter;
 @SuppressWarnings("static-method")
 public final class WasmInstance extends RuntimeState implements TruffleObject {
 
+    /**
+     * Link actions that refer to the nodes of this instance, such as the resolution of call sites.
+     * These cannot be kept in the module, because a module can be instantiated more than once.
+     */
+    private final ArrayList<BiConsumer<WasmContext, WasmInstance>> linkActions;
+
     public WasmInstance(WasmModule module) {
         super(module);
+        this.linkActions = new ArrayList<>();
     }
 
     public String name() {
         return module().name();
     }
 
+    public List<BiConsumer<WasmContext, WasmInstance>> linkActions() {
+        return Collections.unmodifiableList(linkActions);
+    }
+
+    public void addLinkAction(BiConsumer<WasmContext, WasmInstance> action) {
+        linkActions.add(action);
+    }
+
     /**
      * Try to infer the entry function for this instance. Not part from the spec, for testing
      * purpose only.
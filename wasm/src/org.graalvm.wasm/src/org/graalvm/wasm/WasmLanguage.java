@@ -41,6 +41,7 @@
 package org.graalvm.wasm;
 
 import com.oracle.truffle.api.CallTarget;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.TruffleLanguage;
 import com.oracle.truffle.api.frame.VirtualFrame;
@@ -50,10 +51,23 @@ import org.graalvm.wasm.api.WebAssembly;
 import org.graalvm.wasm.memory.UnsafeWasmMemory;
 import org.graalvm.wasm.memory.WasmMemory;
 
-@TruffleLanguage.Registration(id = "wasm", name = "WebAssembly", defaultMimeType = "application/wasm", byteMimeTypes = "application/wasm", contextPolicy = TruffleLanguage.ContextPolicy.EXCLUSIVE, fileTypeDetectors = WasmFileDetector.class, //
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@TruffleLanguage.Registration(id = "wasm", name = "WebAssembly", defaultMimeType = "application/wasm", byteMimeTypes = "application/wasm", contextPolicy = TruffleLanguage.ContextPolicy.SHARED, fileTypeDetectors = WasmFileDetector.class, //
                 interactive = false)
 public final class WasmLanguage extends TruffleLanguage<WasmContext> {
-    private boolean isFirst = true;
+    private static final long PARSING_THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private ThreadPoolExecutor parsingExecutor;
+    private int parsingExecutorStackSize;
+
+    private final Map<SymbolTable.FunctionType, Integer> equivalenceClasses = new HashMap<>();
+    private int nextEquivalenceClass = SymbolTable.FIRST_EQUIVALENCE_CLASS;
 
     @Override
     protected WasmContext createContext(Env env) {
@@ -64,20 +78,115 @@ public final class WasmLanguage extends TruffleLanguage<WasmContext> {
         return context;
     }
 
+    /**
+     * Parses and validates the module, which is cached with the source and shared by all the
+     * contexts of the engine. Each context creates its own instance of the module, with its own
+     * memories, globals and tables. The code entries are still parsed for every instance, because
+     * the nodes created for them refer to the instance.
+     */
     @Override
     protected CallTarget parse(ParsingRequest request) {
-        final WasmContext context = getCurrentContext();
-        final String moduleName = isFirst ? "main" : request.getSource().getName();
-        isFirst = false;
+        final String sourceName = request.getSource().getName();
         final byte[] data = request.getSource().getBytes().toByteArray();
-        final WasmModule module = context.readModule(moduleName, data, null);
-        final WasmInstance instance = context.readInstance(module);
-        return Truffle.getRuntime().createCallTarget(new RootNode(this) {
-            @Override
-            public WasmInstance execute(VirtualFrame frame) {
-                return instance;
+        final WasmModule module = readModule(getCurrentContext().evaluatedModuleName(sourceName), data);
+        return Truffle.getRuntime().createCallTarget(new InstantiateModuleRootNode(this, sourceName, data, module));
+    }
+
+    private WasmModule readModule(String name, byte[] data) {
+        final WasmModule module = new WasmModule(name, data);
+        new BinaryParser(this, module).readModule();
+        return module;
+    }
+
+    /**
+     * Instantiates the module of a source in the current context. The first module evaluated in a
+     * context is named {@code main}, so the same source can be instantiated under two different
+     * names, and its module is read at most once for each of them.
+     */
+    private static final class InstantiateModuleRootNode extends RootNode {
+        private final WasmLanguage language;
+        private final String sourceName;
+        private final byte[] data;
+        private final Map<String, WasmModule> modules;
+
+        InstantiateModuleRootNode(WasmLanguage language, String sourceName, byte[] data, WasmModule module) {
+            super(language);
+            this.language = language;
+            this.sourceName = sourceName;
+            this.data = data;
+            this.modules = new HashMap<>();
+            this.modules.put(module.name(), module);
+        }
+
+        @Override
+        public WasmInstance execute(VirtualFrame frame) {
+            return instantiate();
+        }
+
+        @TruffleBoundary
+        private WasmInstance instantiate() {
+            final WasmContext context = WasmLanguage.getCurrentContext();
+            final WasmInstance existing = existingInstance(context);
+            if (existing != null) {
+                return existing;
             }
-        });
+            final WasmInstance instance = context.readInstance(module(context.evaluatedModuleName(sourceName)));
+            context.evaluatedModuleInstantiated();
+            return instance;
+        }
+
+        private synchronized WasmInstance existingInstance(WasmContext context) {
+            for (WasmModule module : modules.values()) {
+                final WasmInstance instance = context.moduleInstances().get(module.name());
+                if (instance != null && instance.module() == module) {
+                    return instance;
+                }
+            }
+            return null;
+        }
+
+        private synchronized WasmModule module(String name) {
+            WasmModule module = modules.get(name);
+            if (module == null) {
+                module = language.readModule(name, data);
+                modules.put(name, module);
+            }
+            return module;
+        }
+    }
+
+    /**
+     * Gets the pool of threads that parse code entries in parallel, which is shared by all the
+     * contexts of the engine. Idle threads terminate after a while, so the pool does not have to be
+     * shut down. If a module needs larger stacks than the threads of the current pool have, the
+     * pool is replaced, and the threads of the old pool terminate once they are idle.
+     */
+    synchronized ExecutorService parsingExecutor(int stackSize) {
+        if (parsingExecutor == null || parsingExecutorStackSize < stackSize) {
+            final int numThreads = Runtime.getRuntime().availableProcessors();
+            parsingExecutor = new ThreadPoolExecutor(numThreads, numThreads, PARSING_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                final Thread thread = new Thread(null, r, "wasm-parsing-thread", stackSize);
+                thread.setDaemon(true);
+                return thread;
+            });
+            parsingExecutor.allowCoreThreadTimeOut(true);
+            parsingExecutorStackSize = stackSize;
+        }
+        return parsingExecutor;
+    }
+
+    /**
+     * Gets the type equivalence class of a function type. The classes are shared by all the
+     * contexts of the engine, like the parsed modules whose symbol tables store them.
+     */
+    synchronized int equivalenceClass(SymbolTable.FunctionType type) {
+        Integer equivalenceClass = equivalenceClasses.get(type);
+        if (equivalenceClass == null) {
+            equivalenceClass = nextEquivalenceClass;
+            equivalenceClasses.put(type, equivalenceClass);
+            nextEquivalenceClass++;
+        }
+        return equivalenceClass;
     }
 
     @Override
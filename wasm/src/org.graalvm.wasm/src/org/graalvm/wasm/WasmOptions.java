@@ -57,6 +57,12 @@ public class WasmOptions {
     @Option(help = "The stack size in kilobytes to use during async parsing, or zero to use defaults.", category = OptionCategory.USER, stability = OptionStability.STABLE)//
     public static final OptionKey<Integer> AsyncParsingStackSize = new OptionKey<>(0);
 
+    @Option(help = "Parse and validate function bodies on their first call instead of when the module is instantiated. Invalid function bodies are only reported when they are called.", category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL)//
+    public static final OptionKey<Boolean> LazyFunctionParsing = new OptionKey<>(false);
+
+    @Option(help = "Parse and validate the function bodies of a module on multiple threads when the module is instantiated.", category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL)//
+    public static final OptionKey<Boolean> ParallelFunctionParsing = new OptionKey<>(false);
+
     public enum ConstantsStorePolicy {
         ALL,
         LARGE_ONLY,
@@ -74,6 +74,15 @@ public final class ByteArrayWasmMemory extends WasmMemory {
         }
     }
 
+    @Override
+    public void initialize(byte[] source, int sourceOffset, int address, int length) {
+        try {
+            System.arraycopy(source, sourceOffset, buffer, address, length);
+        } catch (IndexOutOfBoundsException e) {
+            throw trapOutOfBounds(null, address, length);
+        }
+    }
+
     @Override
     public void clear() {
         Arrays.fill(buffer, (byte) 0);
@@ -83,6 +83,12 @@ public class UnsafeWasmMemory extends WasmMemory implements AutoCloseable {
                         offset, address, address, byteSize());
     }
 
+    @Override
+    public void initialize(byte[] source, int sourceOffset, int address, int length) {
+        validateAddress(null, address, length);
+        unsafe.copyMemory(source, Unsafe.ARRAY_BYTE_BASE_OFFSET + sourceOffset, null, startAddress + address, length);
+    }
+
     @Override
     public void copy(Node node, int src, int dst, int n) {
         validateAddress(node, src, n);
@@ -60,6 +60,12 @@ public abstract class WasmMemory implements TruffleObject {
 
     public abstract void copy(Node node, int src, int dst, int n);
 
+    /**
+     * Copies {@code length} bytes from {@code source} into this memory at {@code address}, as done
+     * when a data segment is applied at instantiation.
+     */
+    public abstract void initialize(byte[] source, int sourceOffset, int address, int length);
+
     /**
      * The size of the memory, measured in number of pages.
      */
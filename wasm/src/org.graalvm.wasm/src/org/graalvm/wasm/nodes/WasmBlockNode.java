@@ -449,10 +449,10 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                     case END:
                         break;
                     case BR: {
-                        // region Load LEB128 Unsigned32 -> unwindCounter
-                        int unwindCounter = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> unwindCounter
+                        int unwindCounter = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
 
                         // Reset the stack pointer to the target block stack pointer.
@@ -473,10 +473,10 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                     }
                     case BR_IF: {
                         stackPointer--;
-                        // region Load LEB128 Unsigned32 -> unwindCounter
-                        int unwindCounter = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> unwindCounter
+                        int unwindCounter = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         // region Load int continuationStackPointer
                         int continuationStackPointer = codeEntry.intConstant(intConstantOffset);
@@ -539,10 +539,10 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                         return unwindCounter;
                     }
                     case CALL: {
-                        // region Load LEB128 Unsigned32 -> functionIndex
-                        int functionIndex = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> functionIndex
+                        int functionIndex = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
 
                         WasmFunction function = instance().symbolTable().function(functionIndex);
@@ -618,16 +618,14 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                         }
 
                         // Extract the function type index.
-                        // region Load LEB128 Unsigned32 -> expectedFunctionTypeIndex
-                        int expectedFunctionTypeIndex = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> expectedFunctionTypeIndex
+                        int expectedFunctionTypeIndex = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
+                        // The pre-decoded length includes the ZERO_TABLE constant at the end of the
+                        // CALL_INDIRECT instruction.
                         int expectedTypeEquivalenceClass = symtab.equivalenceClass(expectedFunctionTypeIndex);
-                        // Consume the ZERO_TABLE constant at the end of the CALL_INDIRECT
-                        // instruction.
-                        // TODO: Add validation that this is really zero.
-                        offset += 1;
 
                         // Validate that the function type matches the expected type.
                         if (function != null && expectedTypeEquivalenceClass != function.typeEquivalenceClass()) {
@@ -701,49 +699,49 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                         break;
                     }
                     case LOCAL_GET: {
-                        // region Load LEB128 Unsigned32 -> index
-                        int index = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> index
+                        int index = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         local_get(locals, stack, stackPointer, index);
                         stackPointer++;
                         break;
                     }
                     case LOCAL_SET: {
-                        // region Load LEB128 Unsigned32 -> index
-                        int index = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> index
+                        int index = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         stackPointer--;
                         local_set(locals, stack, stackPointer, index);
                         break;
                     }
                     case LOCAL_TEE: {
-                        // region Load LEB128 Unsigned32 -> index
-                        int index = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> index
+                        int index = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         local_tee(locals, stack, stackPointer - 1, index);
                         break;
                     }
                     case GLOBAL_GET: {
-                        // region Load LEB128 Unsigned32 -> index
-                        int index = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> index
+                        int index = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         global_get(context, stack, stackPointer, index);
                         stackPointer++;
                         break;
                     }
                     case GLOBAL_SET: {
-                        // region Load LEB128 Unsigned32 -> index
-                        int index = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Unsigned32 -> index
+                        int index = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         stackPointer--;
                         global_set(context, stack, stackPointer, index);
@@ -763,14 +761,14 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                     case I64_LOAD16_U:
                     case I64_LOAD32_S:
                     case I64_LOAD32_U: {
-                        /* The memAlign hint is not currently used or taken into account. */
-                        int memAlignOffsetDelta = offsetDelta(data, offset);
-                        offset += memAlignOffsetDelta;
-
-                        // region Load LEB128 Unsigned32 -> memOffset
-                        int memOffset = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        /*
+                         * The memAlign hint is not currently used or taken into account. The
+                         * pre-decoded length includes it.
+                         */
+                        // region Load pre-decoded Unsigned32 -> memOffset
+                        int memOffset = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
 
                         load(memory, stack, stackPointer - 1, opcode, memOffset);
@@ -785,14 +783,14 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                     case I64_STORE_8:
                     case I64_STORE_16:
                     case I64_STORE_32: {
-                        /* The memAlign hint is not currently used or taken into account. */
-                        int memAlignOffsetDelta = offsetDelta(data, offset);
-                        offset += memAlignOffsetDelta;
-
-                        // region Load LEB128 Unsigned32 -> memOffset
-                        int memOffset = unsignedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        /*
+                         * The memAlign hint is not currently used or taken into account. The
+                         * pre-decoded length includes it.
+                         */
+                        // region Load pre-decoded Unsigned32 -> memOffset
+                        int memOffset = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
 
                         store(memory, stack, stackPointer, opcode, memOffset);
@@ -824,20 +822,20 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
                         break;
                     }
                     case I32_CONST: {
-                        // region Load LEB128 Signed32 -> value
-                        int value = signedIntConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Signed32 -> value
+                        int value = codeEntry.intConstant(intConstantOffset);
+                        offset += codeEntry.intConstant(intConstantOffset + 1);
+                        intConstantOffset += 2;
                         // endregion
                         pushInt(stack, stackPointer, value);
                         stackPointer++;
                         break;
                     }
                     case I64_CONST: {
-                        // region Load LEB128 Signed64 -> value
-                        long value = signedLongConstant(data, offset);
-                        int offsetDelta = offsetDelta(data, offset);
-                        offset += offsetDelta;
+                        // region Load pre-decoded Signed64 -> value
+                        long value = ((long) codeEntry.intConstant(intConstantOffset) << 32) | (codeEntry.intConstant(intConstantOffset + 1) & 0xFFFF_FFFFL);
+                        offset += codeEntry.intConstant(intConstantOffset + 2);
+                        intConstantOffset += 3;
                         // endregion
                         push(stack, stackPointer, value);
                         stackPointer++;
@@ -2760,24 +2758,4 @@ public final class WasmBlockNode extends WasmNode implements RepeatingNode {
     public byte returnTypeId() {
         return returnTypeId;
     }
-
-    private static int unsignedIntConstant(byte[] data, int offset) {
-        return BinaryStreamParser.peekUnsignedInt32(data, offset, false);
-    }
-
-    private static int signedIntConstant(byte[] data, int offset) {
-        return BinaryStreamParser.peekSignedInt32(data, offset);
-    }
-
-    private static long signedLongConstant(byte[] data, int offset) {
-        return BinaryStreamParser.peekSignedInt64(data, offset);
-    }
-
-    private static int offsetDelta(byte[] data, int offset) {
-        return peekLeb128Length(data, offset);
-    }
-
-    private static int peekLeb128Length(byte[] data, int offset) {
-        return BinaryStreamParser.peekLeb128Length(data, offset);
-    }
 }
@@ -57,6 +57,8 @@ import org.graalvm.wasm.WasmVoidResult;
 import org.graalvm.wasm.exception.Failure;
 import org.graalvm.wasm.exception.WasmException;
 
+import java.util.function.Consumer;
+
 @NodeInfo(language = "wasm", description = "The root node of all WebAssembly functions")
 public class WasmRootNode extends RootNode implements WasmNodeInterface {
 
@@ -64,6 +66,11 @@ public class WasmRootNode extends RootNode implements WasmNodeInterface {
     private final WasmCodeEntry codeEntry;
     @CompilationFinal private ContextReference<WasmContext> rawContextReference;
     @Child private WasmNode body;
+    /**
+     * Parses the body on the first execution if function bodies are parsed lazily, {@code null}
+     * once the body is set.
+     */
+    @CompilationFinal private Consumer<WasmRootNode> bodyParser;
 
     public WasmRootNode(TruffleLanguage<?> language, WasmInstance instance, WasmCodeEntry codeEntry) {
         super(language);
@@ -84,6 +91,20 @@ public class WasmRootNode extends RootNode implements WasmNodeInterface {
         this.body = insert(body);
     }
 
+    public void setBodyParser(Consumer<WasmRootNode> bodyParser) {
+        this.bodyParser = bodyParser;
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    private synchronized void parseBody() {
+        if (bodyParser != null) {
+            // The parser is only cleared after the body was parsed successfully,
+            // so that an invalid body is reported on every call.
+            bodyParser.accept(this);
+            bodyParser = null;
+        }
+    }
+
     @Override
     protected boolean isInstrumentable() {
         return false;
@@ -100,6 +121,10 @@ public class WasmRootNode extends RootNode implements WasmNodeInterface {
     public final Object execute(VirtualFrame frame) {
         final WasmContext context = contextReference().get();
         tryInitialize(context);
+        if (bodyParser != null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            parseBody();
+        }
         return executeWithContext(frame, context);
     }
 